@@ -0,0 +1,58 @@
+package az.kb.mscore.benchmark;
+
+import az.kb.mscore.util.JwtUtil;
+import az.kb.mscore.util.ServiceTokenProvider;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of stamping the service token on one outbound Feign request: signing a new token per
+ * request as FeignConfig used to, against the cached token from ServiceTokenProvider.
+ * Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ServiceAuthInterceptorBenchmark {
+
+    private RequestInterceptor signPerRequest;
+    private RequestInterceptor cachedToken;
+
+    @Setup
+    public void setUp() {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret",
+                "fb04617512345678901234567890123456789012345678901234567890123456");
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 3_600_000L);
+        ServiceTokenProvider provider = new ServiceTokenProvider(jwtUtil, 3_600_000L, Duration.ofMinutes(5));
+
+        signPerRequest = template -> template.header("Authorization",
+                "Bearer " + jwtUtil.generateServiceToken("ms-core"));
+        cachedToken = template -> template.header("Authorization", provider.bearerToken("ms-core"));
+    }
+
+    @Benchmark
+    public RequestTemplate signPerRequest() {
+        RequestTemplate template = new RequestTemplate();
+        signPerRequest.apply(template);
+        return template;
+    }
+
+    @Benchmark
+    public RequestTemplate cachedToken() {
+        RequestTemplate template = new RequestTemplate();
+        cachedToken.apply(template);
+        return template;
+    }
+}
@@ -0,0 +1,43 @@
+package az.kb.mscore.client;
+
+import az.kb.mscore.model.BulkCreateResponseDto;
+import az.kb.mscore.util.ServiceTokenProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.InputStream;
+
+/**
+ * Bulk customer uploads to ms-customer. Feign encodes request bodies into a byte array, so
+ * this client sends the upload with a {@link RestClient} instead, copying the caller's stream
+ * onto a chunked request body as it is read.
+ */
+@Component
+public class CustomerBulkClient {
+
+    private final RestClient restClient;
+    private final ServiceTokenProvider serviceTokenProvider;
+
+    public CustomerBulkClient(@Value("${client.ms-customer.url}") String url,
+                              ServiceTokenProvider serviceTokenProvider) {
+        this.restClient = RestClient.builder()
+                .baseUrl(url)
+                .requestFactory(new JdkClientHttpRequestFactory())
+                .build();
+        this.serviceTokenProvider = serviceTokenProvider;
+    }
+
+    public BulkCreateResponseDto createCustomers(MediaType contentType, InputStream body) {
+        return restClient.post()
+                .uri("/api/v1/customers/bulk")
+                .header(HttpHeaders.AUTHORIZATION, serviceTokenProvider.bearerToken("ms-core"))
+                .contentType(contentType)
+                .body(body::transferTo)
+                .retrieve()
+                .body(BulkCreateResponseDto.class);
+    }
+}
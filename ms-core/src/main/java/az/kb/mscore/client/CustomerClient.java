@@ -8,6 +8,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.List;
 
 @FeignClient(name = "ms-customer", url = "${client.ms-customer.url}",configuration = FeignConfig.class)
 public interface CustomerClient {
@@ -15,6 +18,15 @@ public interface CustomerClient {
     @GetMapping("/api/v1/customers/{id}")
     CustomerResponseDto getCustomer(@PathVariable("id") Long customerId);
 
+    @GetMapping("/api/v1/customers/phone/{phoneNumber}")
+    CustomerResponseDto getCustomerByPhoneNumber(@PathVariable("phoneNumber") String phoneNumber);
+
+    @GetMapping("/api/v1/customers/search")
+    List<CustomerResponseDto> searchCustomers(@RequestParam(value = "surname", required = false) String surname,
+                                              @RequestParam(value = "name", required = false) String name,
+                                              @RequestParam("page") int page,
+                                              @RequestParam("size") int size);
+
     @PostMapping("/api/v1/customers")
     CustomerResponseDto createCustomer(@RequestBody CustomerCreateRequestDto request);
 }
\ No newline at end of file
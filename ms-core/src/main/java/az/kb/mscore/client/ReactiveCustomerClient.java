@@ -0,0 +1,48 @@
+package az.kb.mscore.client;
+
+import az.kb.mscore.model.BulkCreateResponseDto;
+import az.kb.mscore.model.CustomerCreateRequestDto;
+import az.kb.mscore.model.CustomerResponseDto;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.service.annotation.GetExchange;
+import org.springframework.web.service.annotation.HttpExchange;
+import org.springframework.web.service.annotation.PostExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link CustomerClient} and {@link CustomerBulkClient} for the
+ * reactive mode, backed by a WebClient; see {@code WebClientConfig}.
+ */
+@HttpExchange("/api/v1/customers")
+public interface ReactiveCustomerClient {
+
+    @GetExchange("/{id}")
+    Mono<CustomerResponseDto> getCustomer(@PathVariable("id") Long customerId);
+
+    @GetExchange("/phone/{phoneNumber}")
+    Mono<CustomerResponseDto> getCustomerByPhoneNumber(@PathVariable("phoneNumber") String phoneNumber);
+
+    @GetExchange("/search")
+    Mono<List<CustomerResponseDto>> searchCustomers(@RequestParam(value = "surname", required = false) String surname,
+                                                    @RequestParam(value = "name", required = false) String name,
+                                                    @RequestParam("page") int page,
+                                                    @RequestParam("size") int size);
+
+    @PostExchange
+    Mono<CustomerResponseDto> createCustomer(@RequestBody CustomerCreateRequestDto request);
+
+    /**
+     * Streams the upload through as its buffers arrive.
+     */
+    @PostExchange("/bulk")
+    Mono<BulkCreateResponseDto> createCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                @RequestBody Flux<DataBuffer> body);
+}
@@ -0,0 +1,61 @@
+package az.kb.mscore.client;
+
+import az.kb.mscore.model.TransactionPage;
+import az.kb.mscore.model.TransactionRequest;
+import az.kb.mscore.model.TransactionResponse;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.service.annotation.GetExchange;
+import org.springframework.web.service.annotation.HttpExchange;
+import org.springframework.web.service.annotation.PostExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static az.kb.mscore.client.TransactionClient.IDEMPOTENCY_KEY;
+
+/**
+ * Non-blocking counterpart of {@link TransactionClient} for the reactive mode, backed by a
+ * WebClient; see {@code WebClientConfig}.
+ */
+@HttpExchange("/api/v1/transactions")
+public interface ReactiveTransactionClient {
+
+    @PostExchange("/topup")
+    Mono<TransactionResponse> doTopup(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                      @RequestBody TransactionRequest request);
+
+    @PostExchange("/purchase")
+    Mono<TransactionResponse> doPurchase(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                         @RequestBody TransactionRequest request);
+
+    @PostExchange("/refund")
+    Mono<TransactionResponse> doRefund(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                       @RequestBody TransactionRequest request);
+
+    @GetExchange
+    Mono<TransactionPage> getTransactions(@RequestParam(value = "after", required = false) Long after,
+                                          @RequestParam(value = "limit", required = false) Integer limit);
+
+    /**
+     * The NDJSON stream, passed on buffer by buffer without decoding it.
+     */
+    @GetExchange(value = "/stream", accept = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<DataBuffer> streamTransactions();
+
+    @GetExchange("/{customerId}/by-customer")
+    Mono<List<TransactionResponse>> getCustomerTransactions(@PathVariable Long customerId,
+                                                            @RequestParam(value = "from", required = false) LocalDateTime from,
+                                                            @RequestParam(value = "to", required = false) LocalDateTime to,
+                                                            @RequestParam(value = "page", required = false) Integer page,
+                                                            @RequestParam(value = "size", required = false) Integer size);
+
+    @GetExchange("/{id}")
+    Mono<TransactionResponse> getTransactionById(@PathVariable Long id);
+}
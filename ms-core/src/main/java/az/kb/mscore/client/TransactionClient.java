@@ -1,32 +1,50 @@
 package az.kb.mscore.client;
 
+import az.kb.mscore.model.TransactionPage;
 import az.kb.mscore.model.TransactionRequest;
 import az.kb.mscore.model.TransactionResponse;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @FeignClient(name = "ms-transaction", url = "${client.ms-transaction.url}")
 public interface TransactionClient {
 
+    String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     @PostMapping("/api/v1/transactions/topup")
-    TransactionResponse doTopup(@RequestBody TransactionRequest request);
+    TransactionResponse doTopup(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                @RequestBody TransactionRequest request);
 
     @PostMapping("/api/v1/transactions/purchase")
-    TransactionResponse doPurchase(@RequestBody TransactionRequest request);
+    TransactionResponse doPurchase(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                   @RequestBody TransactionRequest request);
 
     @PostMapping("/api/v1/transactions/refund")
-    TransactionResponse doRefund(@RequestBody TransactionRequest request);
+    TransactionResponse doRefund(@RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                 @RequestBody TransactionRequest request);
 
     @GetMapping("/api/v1/transactions")
-    List<TransactionResponse> getAllTransactions();
+    TransactionPage getTransactions(@RequestParam("after") Long after, @RequestParam("limit") Integer limit);
+
+    @GetMapping(value = "/api/v1/transactions/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Response streamTransactions();
 
     @GetMapping("/api/v1/transactions/{customerId}/by-customer")
-    List<TransactionResponse> getCustomerTransactions(@PathVariable Long customerId);
+    List<TransactionResponse> getCustomerTransactions(@PathVariable Long customerId,
+                                                      @RequestParam("from") LocalDateTime from,
+                                                      @RequestParam("to") LocalDateTime to,
+                                                      @RequestParam("page") Integer page,
+                                                      @RequestParam("size") Integer size);
 
     @GetMapping("/api/v1/transactions//{id}")
     TransactionResponse getTransactionById(@PathVariable Long id);
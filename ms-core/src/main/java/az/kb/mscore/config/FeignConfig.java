@@ -1,6 +1,6 @@
 package az.kb.mscore.config;
 
-import az.kb.mscore.util.JwtUtil;
+import az.kb.mscore.util.ServiceTokenProvider;
 import feign.RequestInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -10,13 +10,10 @@ import org.springframework.context.annotation.Configuration;
 public class FeignConfig {
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private ServiceTokenProvider serviceTokenProvider;
 
     @Bean
     public RequestInterceptor serviceAuthInterceptor() {
-        return requestTemplate -> {
-            String token = jwtUtil.generateServiceToken("ms-core");
-            requestTemplate.header("Authorization", "Bearer " + token);
-        };
+        return requestTemplate -> requestTemplate.header("Authorization", serviceTokenProvider.bearerToken("ms-core"));
     }
 }
@@ -0,0 +1,89 @@
+package az.kb.mscore.config;
+
+import az.kb.mscore.client.ReactiveCustomerClient;
+import az.kb.mscore.client.ReactiveTransactionClient;
+import az.kb.mscore.util.ServiceTokenProvider;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.support.WebClientAdapter;
+import org.springframework.web.service.invoker.HttpServiceProxyFactory;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Downstream clients of the reactive mode. Every request carries the ms-core service token, as
+ * {@link FeignConfig} adds it to the Feign clients, and parameters are written with
+ * {@code toString()} as Feign writes them, so a null date is left out rather than sent empty.
+ * Both clients share one connection pool of {@code client.max-connections}; requests beyond it
+ * wait for a connection, up to {@code client.max-pending-acquires} of them, and fail beyond that.
+ * Connect and response timeouts default to those of the Feign clients, 10 s and 60 s.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class WebClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider connectionProvider(@Value("${client.max-connections:1000}") int maxConnections,
+                                                 @Value("${client.max-pending-acquires:2000}") int maxPendingAcquires) {
+        return ConnectionProvider.builder("ms-core")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxPendingAcquires)
+                .build();
+    }
+
+    @Bean
+    public HttpClient httpClient(ConnectionProvider connectionProvider,
+                                 @Value("${client.connect-timeout:10s}") Duration connectTimeout,
+                                 @Value("${client.response-timeout:60s}") Duration responseTimeout) {
+        return HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+    }
+
+    @Bean
+    public ExchangeFilterFunction serviceAuthFilter(ServiceTokenProvider serviceTokenProvider) {
+        return (request, next) -> next.exchange(ClientRequest.from(request)
+                .header(HttpHeaders.AUTHORIZATION, serviceTokenProvider.bearerToken("ms-core"))
+                .build());
+    }
+
+    @Bean
+    public ReactiveCustomerClient reactiveCustomerClient(WebClient.Builder builder,
+                                                         HttpClient httpClient,
+                                                         ExchangeFilterFunction serviceAuthFilter,
+                                                         @Value("${client.ms-customer.url}") String url) {
+        return client(builder, httpClient, serviceAuthFilter, url, ReactiveCustomerClient.class);
+    }
+
+    @Bean
+    public ReactiveTransactionClient reactiveTransactionClient(WebClient.Builder builder,
+                                                               HttpClient httpClient,
+                                                               ExchangeFilterFunction serviceAuthFilter,
+                                                               @Value("${client.ms-transaction.url}") String url) {
+        return client(builder, httpClient, serviceAuthFilter, url, ReactiveTransactionClient.class);
+    }
+
+    private static <T> T client(WebClient.Builder builder, HttpClient httpClient,
+                                ExchangeFilterFunction serviceAuthFilter, String url, Class<T> type) {
+        WebClient webClient = builder.clone()
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .filter(serviceAuthFilter)
+                .build();
+        return HttpServiceProxyFactory.builderFor(WebClientAdapter.create(webClient))
+                .conversionService(new DefaultConversionService())
+                .build()
+                .createClient(type);
+    }
+}
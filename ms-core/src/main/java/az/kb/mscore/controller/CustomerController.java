@@ -1,31 +1,68 @@
 package az.kb.mscore.controller;
 
+import az.kb.mscore.model.BulkCreateResponseDto;
 import az.kb.mscore.model.CustomerCreateRequestDto;
+import az.kb.mscore.model.CustomerOverviewDto;
 import az.kb.mscore.model.CustomerResponseDto;
+import az.kb.mscore.service.CustomerOverviewService;
 import az.kb.mscore.service.CustomerService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/customers")
 @RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
     private final CustomerService customerService;
+    private final CustomerOverviewService customerOverviewService;
 
     @GetMapping("/{customerId}")
     public ResponseEntity<CustomerResponseDto> getCustomer(@PathVariable Long customerId) {
         return ResponseEntity.ok(customerService.getCustomerById(customerId));
     }
 
+    @GetMapping("/{customerId}/overview")
+    public ResponseEntity<CustomerOverviewDto> getOverview(@PathVariable Long customerId) {
+        return ResponseEntity.ok(customerOverviewService.getOverview(customerId));
+    }
+
+    @GetMapping("/phone/{phoneNumber}")
+    public ResponseEntity<CustomerResponseDto> getCustomerByPhoneNumber(@PathVariable String phoneNumber) {
+        return ResponseEntity.ok(customerService.getCustomerByPhoneNumber(phoneNumber));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<CustomerResponseDto>> searchCustomers(@RequestParam(required = false) String surname,
+                                                                     @RequestParam(required = false) String name,
+                                                                     @RequestParam(defaultValue = "0") int page,
+                                                                     @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(customerService.searchCustomers(surname, name, page, size));
+    }
+
     @PostMapping
     public ResponseEntity<CustomerResponseDto> createCustomer(@RequestBody CustomerCreateRequestDto customerCreateRequestDto) {
         return ResponseEntity.ok(customerService.createCustomer(customerCreateRequestDto));
     }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<BulkCreateResponseDto> createCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                                 InputStream body) {
+        return ResponseEntity.ok(customerService.createCustomers(contentType, body));
+    }
 }
@@ -0,0 +1,72 @@
+package az.kb.mscore.controller;
+
+import az.kb.mscore.model.BulkCreateResponseDto;
+import az.kb.mscore.model.CustomerCreateRequestDto;
+import az.kb.mscore.model.CustomerOverviewDto;
+import az.kb.mscore.model.CustomerResponseDto;
+import az.kb.mscore.service.ReactiveCustomerOverviewService;
+import az.kb.mscore.service.ReactiveCustomerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@link CustomerController} for the reactive mode, with the same paths, parameters and bodies.
+ */
+@RestController
+@RequestMapping("/api/v1/customers")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+    private final ReactiveCustomerService customerService;
+    private final ReactiveCustomerOverviewService customerOverviewService;
+
+    @GetMapping("/{customerId}")
+    public Mono<ResponseEntity<CustomerResponseDto>> getCustomer(@PathVariable Long customerId) {
+        return customerService.getCustomerById(customerId).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{customerId}/overview")
+    public Mono<ResponseEntity<CustomerOverviewDto>> getOverview(@PathVariable Long customerId) {
+        return customerOverviewService.getOverview(customerId).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/phone/{phoneNumber}")
+    public Mono<ResponseEntity<CustomerResponseDto>> getCustomerByPhoneNumber(@PathVariable String phoneNumber) {
+        return customerService.getCustomerByPhoneNumber(phoneNumber).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/search")
+    public Mono<ResponseEntity<List<CustomerResponseDto>>> searchCustomers(@RequestParam(required = false) String surname,
+                                                                           @RequestParam(required = false) String name,
+                                                                           @RequestParam(defaultValue = "0") int page,
+                                                                           @RequestParam(defaultValue = "20") int size) {
+        return customerService.searchCustomers(surname, name, page, size).map(ResponseEntity::ok);
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<CustomerResponseDto>> createCustomer(@RequestBody CustomerCreateRequestDto customerCreateRequestDto) {
+        return customerService.createCustomer(customerCreateRequestDto).map(ResponseEntity::ok);
+    }
+
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public Mono<ResponseEntity<BulkCreateResponseDto>> createCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                                       @RequestBody Flux<DataBuffer> body) {
+        return customerService.createCustomers(contentType, body).map(ResponseEntity::ok);
+    }
+}
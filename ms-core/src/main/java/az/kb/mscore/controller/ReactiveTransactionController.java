@@ -0,0 +1,123 @@
+package az.kb.mscore.controller;
+
+import az.kb.mscore.model.TransactionPage;
+import az.kb.mscore.model.TransactionRequest;
+import az.kb.mscore.model.TransactionResponse;
+import az.kb.mscore.service.ReactiveTransactionService;
+import az.kb.mscore.service.TransactionRateLimiter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+import static az.kb.mscore.client.TransactionClient.IDEMPOTENCY_KEY;
+
+/**
+ * {@link TransactionController} for the reactive mode, with the same paths, parameters, bodies
+ * and rate limits.
+ */
+@RestController
+@RequestMapping("/api/v1/transactions")
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransactionController {
+    private final ReactiveTransactionService transactionService;
+    private final TransactionRateLimiter rateLimiter;
+
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<TransactionResponse>> getTransactionById(@PathVariable Long id) {
+        return transactionService.getTransactionById(id).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{customerId}/customer")
+    public Mono<ResponseEntity<List<TransactionResponse>>> getTransactionsByCustomerId(
+            @PathVariable Long customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+        return transactionService.getTransactionsByCustomerId(customerId, from, to, page, size).map(ResponseEntity::ok);
+    }
+
+    @GetMapping
+    public Mono<ResponseEntity<TransactionPage>> getTransactions(@RequestParam(required = false) Long after,
+                                                                 @RequestParam(required = false) Integer limit) {
+        return transactionService.getTransactions(after, limit).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<DataBuffer>> streamTransactions() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(transactionService.streamTransactions());
+    }
+
+    @PostMapping("/topup")
+    public Mono<ResponseEntity<TransactionResponse>> topupTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest transactionRequest,
+            ServerWebExchange exchange) {
+        return limited(transactionRequest, exchange, idempotencyKey, transactionService::doTopup);
+    }
+
+    @PostMapping("/purchase")
+    public Mono<ResponseEntity<TransactionResponse>> purchaseTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest transactionRequest,
+            ServerWebExchange exchange) {
+        return limited(transactionRequest, exchange, idempotencyKey, transactionService::doPurchase);
+    }
+
+    @PostMapping("/refund")
+    public Mono<ResponseEntity<TransactionResponse>> refundTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest transactionRequest,
+            ServerWebExchange exchange) {
+        return limited(transactionRequest, exchange, idempotencyKey, transactionService::doRefund);
+    }
+
+    /**
+     * Takes a rate limit permit for the caller and customer, then forwards the transaction.
+     */
+    private Mono<ResponseEntity<TransactionResponse>> limited(
+            TransactionRequest transactionRequest, ServerWebExchange exchange, String idempotencyKey,
+            BiFunction<String, TransactionRequest, Mono<TransactionResponse>> call) {
+        return exchange.getPrincipal()
+                .filter(principal -> !(principal instanceof AnonymousAuthenticationToken))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(principal -> {
+                    rateLimiter.acquire(transactionRequest.getCustomerId(), principal.orElse(null), remoteAddress(exchange));
+                    return call.apply(idempotencyKey, transactionRequest);
+                })
+                .map(ResponseEntity::ok);
+    }
+
+    private static String remoteAddress(ServerWebExchange exchange) {
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+        if (address == null) {
+            return null;
+        }
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+}
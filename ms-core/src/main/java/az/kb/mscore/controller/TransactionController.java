@@ -1,24 +1,38 @@
 package az.kb.mscore.controller;
 
+import az.kb.mscore.model.TransactionPage;
 import az.kb.mscore.model.TransactionRequest;
 import az.kb.mscore.model.TransactionResponse;
+import az.kb.mscore.service.TransactionRateLimiter;
 import az.kb.mscore.service.TransactionService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import static az.kb.mscore.client.TransactionClient.IDEMPOTENCY_KEY;
+
 @RestController
 @RequestMapping("/api/v1/transactions")
 @RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class TransactionController {
     private final TransactionService transactionService;
+    private final TransactionRateLimiter rateLimiter;
 
     @GetMapping("{id}")
     public ResponseEntity<TransactionResponse> getTransactionById(@PathVariable Long id) {
@@ -26,27 +40,52 @@ public class TransactionController {
     }
 
     @GetMapping("/{customerId}/customer")
-    public ResponseEntity<List<TransactionResponse>> getTransactionsByCustomerId(@PathVariable Long customerId) {
-        return ResponseEntity.ok(transactionService.getTransactionsByCustomerId(customerId));
+    public ResponseEntity<List<TransactionResponse>> getTransactionsByCustomerId(
+            @PathVariable Long customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(transactionService.getTransactionsByCustomerId(customerId, from, to, page, size));
     }
 
     @GetMapping
-    public ResponseEntity<List<TransactionResponse>> getAllTransactions() {
-        return ResponseEntity.ok(transactionService.getAllTransactions());
+    public ResponseEntity<TransactionPage> getTransactions(@RequestParam(required = false) Long after,
+                                                           @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(transactionService.getTransactions(after, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTransactions() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(transactionService::streamTransactions);
     }
 
     @PostMapping("/topup")
-    public ResponseEntity<TransactionResponse> topupTransaction(@RequestBody TransactionRequest transactionRequest) {
-        return ResponseEntity.ok(transactionService.doTopup(transactionRequest));
+    public ResponseEntity<TransactionResponse> topupTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest transactionRequest,
+            HttpServletRequest httpRequest) {
+        rateLimiter.acquire(transactionRequest.getCustomerId(), httpRequest);
+        return ResponseEntity.ok(transactionService.doTopup(idempotencyKey, transactionRequest));
     }
 
     @PostMapping("/purchase")
-    public ResponseEntity<TransactionResponse> purchaseTransaction(@RequestBody TransactionRequest transactionRequest) {
-        return ResponseEntity.ok(transactionService.doPurchase(transactionRequest));
+    public ResponseEntity<TransactionResponse> purchaseTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest transactionRequest,
+            HttpServletRequest httpRequest) {
+        rateLimiter.acquire(transactionRequest.getCustomerId(), httpRequest);
+        return ResponseEntity.ok(transactionService.doPurchase(idempotencyKey, transactionRequest));
     }
 
     @PostMapping("/refund")
-    public ResponseEntity<TransactionResponse> refundTransaction(@RequestBody TransactionRequest transactionRequest) {
-        return ResponseEntity.ok(transactionService.doRefund(transactionRequest));
+    public ResponseEntity<TransactionResponse> refundTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+            @RequestBody TransactionRequest transactionRequest,
+            HttpServletRequest httpRequest) {
+        rateLimiter.acquire(transactionRequest.getCustomerId(), httpRequest);
+        return ResponseEntity.ok(transactionService.doRefund(idempotencyKey, transactionRequest));
     }
 }
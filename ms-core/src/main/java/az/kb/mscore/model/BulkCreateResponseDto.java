@@ -0,0 +1,21 @@
+package az.kb.mscore.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+public class BulkCreateResponseDto {
+    int created;
+    List<Long> ids;
+    List<BulkCreateErrorDto> errors;
+}
@@ -0,0 +1,24 @@
+package az.kb.mscore.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+public class CustomerOverviewDto {
+    CustomerResponseDto customer;
+    List<TransactionResponse> transactions;
+    /**
+     * Parts that failed or did not answer in time and are left null: "customer", "transactions".
+     */
+    List<String> unavailable;
+}
@@ -0,0 +1,120 @@
+package az.kb.mscore.service;
+
+import az.kb.mscore.model.CustomerOverviewDto;
+import az.kb.mscore.model.CustomerResponseDto;
+import az.kb.mscore.model.TransactionResponse;
+import feign.FeignException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Builds the customer overview from the customer and the latest page of their transactions,
+ * fetched at the same time on virtual threads, so it takes as long as the slower of the two
+ * calls. Each call has its own timeout; a call that fails or runs out of time leaves its part
+ * null and is listed as unavailable. A customer that does not exist fails the overview as it
+ * fails a plain customer read, and so does an overview with neither part available.
+ */
+@Slf4j
+@Service
+public class CustomerOverviewService {
+
+    static final String CUSTOMER = "customer";
+    static final String TRANSACTIONS = "transactions";
+
+    private final CustomerService customerService;
+    private final TransactionService transactionService;
+    private final Duration customerTimeout;
+    private final Duration transactionsTimeout;
+    private final int transactionsPageSize;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public CustomerOverviewService(CustomerService customerService,
+                                   TransactionService transactionService,
+                                   @Value("${core.overview.customer-timeout:2s}") Duration customerTimeout,
+                                   @Value("${core.overview.transactions-timeout:2s}") Duration transactionsTimeout,
+                                   @Value("${core.overview.transactions-page-size:20}") int transactionsPageSize) {
+        this.customerService = customerService;
+        this.transactionService = transactionService;
+        this.customerTimeout = customerTimeout;
+        this.transactionsTimeout = transactionsTimeout;
+        this.transactionsPageSize = transactionsPageSize;
+    }
+
+    public CustomerOverviewDto getOverview(Long customerId) {
+        long startedAt = System.nanoTime();
+        Future<CustomerResponseDto> customer = executor.submit(() -> customerService.getCustomerById(customerId));
+        Future<List<TransactionResponse>> transactions = executor.submit(() ->
+                transactionService.getTransactionsByCustomerId(customerId, null, null, 0, transactionsPageSize));
+
+        List<String> unavailable = new ArrayList<>();
+        CustomerResponseDto customerPart = null;
+        RuntimeException customerFailure = null;
+        try {
+            customerPart = await(customer, startedAt, customerTimeout);
+        } catch (FeignException.NotFound e) {
+            transactions.cancel(false);
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Customer {} unavailable for overview: {}", customerId, e.getMessage());
+            unavailable.add(CUSTOMER);
+            customerFailure = e;
+        }
+
+        List<TransactionResponse> transactionsPart = null;
+        try {
+            transactionsPart = await(transactions, startedAt, transactionsTimeout);
+        } catch (RuntimeException e) {
+            log.warn("Transactions of customer {} unavailable for overview: {}", customerId, e.getMessage());
+            unavailable.add(TRANSACTIONS);
+        }
+        if (customerFailure != null && transactionsPart == null) {
+            throw customerFailure;
+        }
+        return CustomerOverviewDto.builder()
+                .customer(customerPart)
+                .transactions(transactionsPart)
+                .unavailable(unavailable)
+                .build();
+    }
+
+    /**
+     * Waits for {@code call} until {@code timeout} after {@code startedAt}, and stops waiting when
+     * that passes. The call is not interrupted: plain reads of the same customer may be coalesced
+     * on it and still need its result.
+     */
+    private static <T> T await(Future<T> call, long startedAt, Duration timeout) {
+        long remaining = timeout.toNanos() - (System.nanoTime() - startedAt);
+        try {
+            return call.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(false);
+            throw new IllegalStateException("Timed out after " + timeout.toMillis() + " ms", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.cancel(false);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,23 +1,55 @@
 package az.kb.mscore.service;
 
+import az.kb.mscore.client.CustomerBulkClient;
 import az.kb.mscore.client.CustomerClient;
+import az.kb.mscore.model.BulkCreateResponseDto;
 import az.kb.mscore.model.CustomerCreateRequestDto;
 import az.kb.mscore.model.CustomerResponseDto;
+import az.kb.mscore.util.SingleFlight;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
+import java.util.List;
+
 @Service
 @RequiredArgsConstructor
 public class CustomerService {
+    static final String CUSTOMER_FLIGHT = "customer";
+
     private final CustomerClient customerClient;
+    private final CustomerBulkClient customerBulkClient;
+    private final ResponseCache responseCache;
+    private final SingleFlight singleFlight;
 
 
+    /**
+     * Concurrent reads of one customer share a single cache lookup, and on a miss a single call
+     * to ms-customer, whose result or error they all get.
+     */
     public CustomerResponseDto getCustomerById(Long id) {
-        return customerClient.getCustomer(id);
+        return singleFlight.execute(CUSTOMER_FLIGHT, id, () -> responseCache.getCustomer(id, customerClient::getCustomer));
+    }
+
+    public CustomerResponseDto getCustomerByPhoneNumber(String phoneNumber) {
+        return customerClient.getCustomerByPhoneNumber(phoneNumber);
+    }
+
+    public List<CustomerResponseDto> searchCustomers(String surname, String name, int page, int size) {
+        return customerClient.searchCustomers(surname, name, page, size);
     }
 
     public CustomerResponseDto createCustomer(CustomerCreateRequestDto requestDto) {
         return customerClient.createCustomer(requestDto);
     }
 
+    /**
+     * Passes a JSON array or CSV upload through to ms-customer as it arrives, without reading
+     * it into memory here.
+     */
+    public BulkCreateResponseDto createCustomers(MediaType contentType, InputStream body) {
+        return customerBulkClient.createCustomers(contentType, body);
+    }
+
 }
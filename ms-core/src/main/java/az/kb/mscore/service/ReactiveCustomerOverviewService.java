@@ -0,0 +1,99 @@
+package az.kb.mscore.service;
+
+import az.kb.mscore.model.CustomerOverviewDto;
+import az.kb.mscore.model.CustomerResponseDto;
+import az.kb.mscore.model.TransactionResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static az.kb.mscore.service.CustomerOverviewService.CUSTOMER;
+import static az.kb.mscore.service.CustomerOverviewService.TRANSACTIONS;
+
+/**
+ * {@link CustomerOverviewService} for the reactive mode: both parts are requested together
+ * without holding a thread, under the same timeouts and with the same handling of failures.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerOverviewService {
+
+    private final ReactiveCustomerService customerService;
+    private final ReactiveTransactionService transactionService;
+    private final Duration customerTimeout;
+    private final Duration transactionsTimeout;
+    private final int transactionsPageSize;
+
+    public ReactiveCustomerOverviewService(ReactiveCustomerService customerService,
+                                           ReactiveTransactionService transactionService,
+                                           @Value("${core.overview.customer-timeout:2s}") Duration customerTimeout,
+                                           @Value("${core.overview.transactions-timeout:2s}") Duration transactionsTimeout,
+                                           @Value("${core.overview.transactions-page-size:20}") int transactionsPageSize) {
+        this.customerService = customerService;
+        this.transactionService = transactionService;
+        this.customerTimeout = customerTimeout;
+        this.transactionsTimeout = transactionsTimeout;
+        this.transactionsPageSize = transactionsPageSize;
+    }
+
+    /**
+     * A customer that does not exist fails the overview at once and cancels the transactions
+     * call.
+     */
+    public Mono<CustomerOverviewDto> getOverview(Long customerId) {
+        Mono<Part<CustomerResponseDto>> customer = customerService.getCustomerById(customerId)
+                .timeout(customerTimeout)
+                .map(Part::of)
+                .onErrorResume(e -> !(e instanceof WebClientResponseException.NotFound), e -> {
+                    log.warn("Customer {} unavailable for overview: {}", customerId, e.getMessage());
+                    return Mono.just(Part.failed(e));
+                });
+        Mono<Part<List<TransactionResponse>>> transactions = transactionService
+                .getTransactionsByCustomerId(customerId, null, null, 0, transactionsPageSize)
+                .timeout(transactionsTimeout)
+                .map(Part::of)
+                .onErrorResume(e -> {
+                    log.warn("Transactions of customer {} unavailable for overview: {}", customerId, e.getMessage());
+                    return Mono.just(Part.failed(e));
+                });
+
+        return Mono.zip(customer, transactions).flatMap(parts -> {
+            Part<CustomerResponseDto> customerPart = parts.getT1();
+            Part<List<TransactionResponse>> transactionsPart = parts.getT2();
+            if (customerPart.failure() != null && transactionsPart.failure() != null) {
+                return Mono.error(customerPart.failure());
+            }
+            List<String> unavailable = new ArrayList<>();
+            if (customerPart.failure() != null) {
+                unavailable.add(CUSTOMER);
+            }
+            if (transactionsPart.failure() != null) {
+                unavailable.add(TRANSACTIONS);
+            }
+            return Mono.just(CustomerOverviewDto.builder()
+                    .customer(customerPart.value())
+                    .transactions(transactionsPart.value())
+                    .unavailable(unavailable)
+                    .build());
+        });
+    }
+
+    private record Part<T>(T value, Throwable failure) {
+
+        static <T> Part<T> of(T value) {
+            return new Part<>(value, null);
+        }
+
+        static <T> Part<T> failed(Throwable failure) {
+            return new Part<>(null, failure);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package az.kb.mscore.service;
+
+import az.kb.mscore.client.ReactiveCustomerClient;
+import az.kb.mscore.model.BulkCreateResponseDto;
+import az.kb.mscore.model.CustomerCreateRequestDto;
+import az.kb.mscore.model.CustomerResponseDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@link CustomerService} for the reactive mode, with the same caching.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+    private final ReactiveCustomerClient customerClient;
+    private final ResponseCache responseCache;
+
+    /**
+     * Concurrent reads of one customer share the cached customer or, on a miss, a single call
+     * to ms-customer. A reader that goes away does not cancel the call for the others.
+     */
+    public Mono<CustomerResponseDto> getCustomerById(Long id) {
+        return Mono.fromFuture(() -> responseCache.getCustomerAsync(id, key -> customerClient.getCustomer(key).toFuture()), true);
+    }
+
+    public Mono<CustomerResponseDto> getCustomerByPhoneNumber(String phoneNumber) {
+        return customerClient.getCustomerByPhoneNumber(phoneNumber);
+    }
+
+    public Mono<List<CustomerResponseDto>> searchCustomers(String surname, String name, int page, int size) {
+        return customerClient.searchCustomers(surname, name, page, size);
+    }
+
+    public Mono<CustomerResponseDto> createCustomer(CustomerCreateRequestDto requestDto) {
+        return customerClient.createCustomer(requestDto);
+    }
+
+    /**
+     * Passes the upload through to ms-customer buffer by buffer as it arrives.
+     */
+    public Mono<BulkCreateResponseDto> createCustomers(MediaType contentType, Flux<DataBuffer> body) {
+        return customerClient.createCustomers(contentType.toString(), body);
+    }
+}
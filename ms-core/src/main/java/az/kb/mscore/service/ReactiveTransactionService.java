@@ -0,0 +1,87 @@
+package az.kb.mscore.service;
+
+import az.kb.mscore.client.ReactiveTransactionClient;
+import az.kb.mscore.model.TransactionPage;
+import az.kb.mscore.model.TransactionRequest;
+import az.kb.mscore.model.TransactionResponse;
+import az.kb.mscore.util.SingleFlight;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * {@link TransactionService} for the reactive mode, with the same caching, cache eviction and
+ * coalescing of history reads.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransactionService {
+
+    private final ReactiveTransactionClient transactionClient;
+    private final ResponseCache responseCache;
+    private final SingleFlight singleFlight;
+
+    public Mono<TransactionResponse> getTransactionById(Long id) {
+        return Mono.fromFuture(() -> responseCache.getTransactionAsync(id, key -> transactionClient.getTransactionById(key).toFuture()), true);
+    }
+
+    /**
+     * Identical concurrent history requests share one call to ms-transaction.
+     */
+    public Mono<List<TransactionResponse>> getTransactionsByCustomerId(Long customerId, LocalDateTime from, LocalDateTime to,
+                                                                       Integer page, Integer size) {
+        return Mono.fromFuture(() -> singleFlight.executeAsync("customer-transactions", Arrays.asList(customerId, from, to, page, size),
+                () -> transactionClient.getCustomerTransactions(customerId, from, to, page, size).toFuture()), true);
+    }
+
+    public Mono<TransactionPage> getTransactions(Long after, Integer limit) {
+        return transactionClient.getTransactions(after, limit);
+    }
+
+    public Flux<DataBuffer> streamTransactions() {
+        return transactionClient.streamTransactions();
+    }
+
+    public Mono<TransactionResponse> doTopup(String idempotencyKey, TransactionRequest transactionRequest) {
+        return invalidating(transactionRequest, transactionClient.doTopup(idempotencyKey, transactionRequest));
+    }
+
+    public Mono<TransactionResponse> doPurchase(String idempotencyKey, TransactionRequest transactionRequest) {
+        return invalidating(transactionRequest, transactionClient.doPurchase(idempotencyKey, transactionRequest));
+    }
+
+    public Mono<TransactionResponse> doRefund(String idempotencyKey, TransactionRequest transactionRequest) {
+        return invalidating(transactionRequest, transactionClient.doRefund(idempotencyKey, transactionRequest));
+    }
+
+    /**
+     * Evicts as {@link TransactionService} does, before the outcome is passed on, also when the
+     * call fails or is cancelled.
+     */
+    private Mono<TransactionResponse> invalidating(TransactionRequest request, Mono<TransactionResponse> call) {
+        return call
+                .doOnSuccess(response -> {
+                    responseCache.putTransaction(response);
+                    evict(request, response);
+                })
+                .doOnError(e -> evict(request, null))
+                .doOnCancel(() -> evict(request, null));
+    }
+
+    private void evict(TransactionRequest request, TransactionResponse response) {
+        responseCache.evictCustomer(request.getCustomerId());
+        responseCache.evictTransaction(request.getRelatedTransactionId());
+        if (response != null && !Objects.equals(response.getCustomerId(), request.getCustomerId())) {
+            responseCache.evictCustomer(response.getCustomerId());
+        }
+    }
+}
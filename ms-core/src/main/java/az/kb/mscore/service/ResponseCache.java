@@ -0,0 +1,225 @@
+package az.kb.mscore.service;
+
+import az.kb.mscore.enums.TransactionStatus;
+import az.kb.mscore.model.CustomerResponseDto;
+import az.kb.mscore.model.TransactionResponse;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * In-process cache of the customer and single-transaction responses ms-core proxies. A customer
+ * is dropped whenever ms-core forwards a top-up, purchase or refund for it; changes made past
+ * ms-core show up at the latest after {@code core.cache.customers.ttl}. A forwarded transaction
+ * that is not final yet, e.g. one accepted into the outbox as PENDING, still changes the balance
+ * later, so its customer is not cached again until ms-core sees the transaction in a final
+ * status, or for at most {@code core.cache.customers.ttl}. Only transactions in a final status
+ * are cached, as PENDING and AUTHORIZED ones still change. A load holds the entry until it
+ * completes and concurrent lookups wait for it; an eviction racing it discards its result, so
+ * the eviction is never lost. Besides the {@code cache.*} meters of each cache,
+ * {@code cache.hit.ratio} reports its hit ratio since start, tagged {@code cache=customers} or
+ * {@code cache=transactions}.
+ */
+@Component
+public class ResponseCache {
+
+    private static final Set<TransactionStatus> FINAL_STATUSES =
+            EnumSet.of(TransactionStatus.SUCCESS, TransactionStatus.FAILED, TransactionStatus.RELEASED, TransactionStatus.EXPIRED);
+
+    private final AsyncCache<Long, CustomerResponseDto> customers;
+    private final AsyncCache<Long, TransactionResponse> transactions;
+    /**
+     * Ids of the transactions of a customer that were not final when ms-core last saw them.
+     */
+    private final Cache<Long, Set<Long>> unsettled;
+
+    public ResponseCache(MeterRegistry meterRegistry,
+                         @Value("${core.cache.customers.maximum-size:100000}") long customersMaximumSize,
+                         @Value("${core.cache.customers.ttl:30s}") Duration customersTtl,
+                         @Value("${core.cache.transactions.maximum-size:100000}") long transactionsMaximumSize,
+                         @Value("${core.cache.transactions.ttl:10m}") Duration transactionsTtl) {
+        this.customers = monitor(meterRegistry, "customers", builder(customersMaximumSize, customersTtl)
+                .executor(Runnable::run)
+                .buildAsync());
+        this.transactions = monitor(meterRegistry, "transactions", builder(transactionsMaximumSize, transactionsTtl)
+                .executor(Runnable::run)
+                .buildAsync());
+        this.unsettled = Caffeine.newBuilder()
+                .maximumSize(customersMaximumSize)
+                .expireAfterWrite(customersTtl)
+                .build();
+    }
+
+    public CustomerResponseDto getCustomer(Long id, Function<Long, CustomerResponseDto> loader) {
+        CompletableFuture<CustomerResponseDto> customer = load(customers, id, loader);
+        CustomerResponseDto loaded = join(customer);
+        if (unsettled.getIfPresent(id) != null) {
+            customers.asMap().remove(id, customer);
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the cached customer, or the load already in flight for it, or starts
+     * {@code loader}; for callers that must not block on the load.
+     */
+    public CompletableFuture<CustomerResponseDto> getCustomerAsync(Long id,
+                                                                   Function<Long, CompletableFuture<CustomerResponseDto>> loader) {
+        CompletableFuture<CustomerResponseDto> customer = customers.get(id, (key, executor) -> loader.apply(key));
+        return customer.thenApply(loaded -> {
+            if (unsettled.getIfPresent(id) != null) {
+                customers.asMap().remove(id, customer);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Returns the cached transaction or loads it; a loaded transaction is kept only when its
+     * status is final.
+     */
+    public TransactionResponse getTransaction(Long id, Function<Long, TransactionResponse> loader) {
+        CompletableFuture<TransactionResponse> transaction = load(transactions, id, loader);
+        TransactionResponse loaded = join(transaction);
+        keepIfFinal(id, transaction, loaded);
+        return loaded;
+    }
+
+    /**
+     * Like {@link #getTransaction}, for callers that must not block on the load.
+     */
+    public CompletableFuture<TransactionResponse> getTransactionAsync(Long id,
+                                                                      Function<Long, CompletableFuture<TransactionResponse>> loader) {
+        CompletableFuture<TransactionResponse> transaction = transactions.get(id, (key, executor) -> loader.apply(key));
+        return transaction.thenApply(loaded -> {
+            keepIfFinal(id, transaction, loaded);
+            return loaded;
+        });
+    }
+
+    /**
+     * Caches a transaction ms-core forwarded when its status is final; otherwise keeps its
+     * customer out of the cache until it is.
+     */
+    public void putTransaction(TransactionResponse transaction) {
+        if (transaction == null || transaction.getId() == null) {
+            return;
+        }
+        if (FINAL_STATUSES.contains(transaction.getStatus())) {
+            transactions.synchronous().put(transaction.getId(), transaction);
+        }
+        track(transaction);
+    }
+
+    public void evictCustomer(Long id) {
+        if (id != null) {
+            customers.synchronous().invalidate(id);
+        }
+    }
+
+    public void evictTransaction(Long id) {
+        if (id != null) {
+            transactions.synchronous().invalidate(id);
+        }
+    }
+
+    /**
+     * Returns the cached entry, completed by {@code loader} on the calling thread if it was
+     * missing. While the load runs the entry holds an unfinished future, so lookups of the same
+     * id wait for it and lookups of other ids are not held up behind it.
+     */
+    private static <V> CompletableFuture<V> load(AsyncCache<Long, V> cache, Long id, Function<Long, V> loader) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> entry = cache.get(id, (key, executor) -> loading);
+        if (entry == loading) {
+            try {
+                loading.complete(loader.apply(id));
+            } catch (RuntimeException | Error e) {
+                loading.completeExceptionally(e);
+            }
+        }
+        return entry;
+    }
+
+    private static <V> V join(CompletableFuture<V> entry) {
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops {@code entry} unless {@code transaction}, its value, is final. The entry is removed
+     * as the future it is, since removing by value would wait for a load another caller may have
+     * started since.
+     */
+    private void keepIfFinal(Long id, CompletableFuture<TransactionResponse> entry, TransactionResponse transaction) {
+        if (transaction == null) {
+            return;
+        }
+        if (!FINAL_STATUSES.contains(transaction.getStatus())) {
+            transactions.asMap().remove(id, entry);
+        }
+        track(transaction);
+    }
+
+    /**
+     * Records a transaction that is not final as unsettled for its customer, and settles one
+     * that is.
+     */
+    private void track(TransactionResponse transaction) {
+        Long customerId = transaction.getCustomerId();
+        if (customerId == null) {
+            return;
+        }
+        if (FINAL_STATUSES.contains(transaction.getStatus())) {
+            unsettled.asMap().computeIfPresent(customerId, (key, ids) -> {
+                Set<Long> remaining = new HashSet<>(ids);
+                remaining.remove(transaction.getId());
+                return remaining.isEmpty() ? null : remaining;
+            });
+        } else {
+            unsettled.asMap().compute(customerId, (key, ids) -> {
+                Set<Long> pending = ids == null ? new HashSet<>() : new HashSet<>(ids);
+                pending.add(transaction.getId());
+                return pending;
+            });
+        }
+    }
+
+    private static Caffeine<Object, Object> builder(long maximumSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats();
+    }
+
+    private static <V> AsyncCache<Long, V> monitor(MeterRegistry meterRegistry, String name, AsyncCache<Long, V> cache) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .tag("cache", name)
+                .description("Share of lookups answered from the cache")
+                .register(meterRegistry);
+        return cache;
+    }
+}
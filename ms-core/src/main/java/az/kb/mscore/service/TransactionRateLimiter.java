@@ -0,0 +1,88 @@
+package az.kb.mscore.service;
+
+import az.kb.mscore.exception.RateLimitExceededException;
+import az.kb.mscore.util.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.time.Duration;
+
+/**
+ * Limits the balance-changing transactions ms-core forwards, per customer and per caller, so
+ * one integration flooding a customer or the whole API is turned away with 429 before it
+ * reaches ms-transaction. The caller is the authenticated principal, or the client address
+ * without one. Rejections are counted in {@code ratelimit.rejected}, tagged
+ * {@code limit=customer} or {@code limit=caller}.
+ */
+@Component
+public class TransactionRateLimiter {
+
+    private final boolean enabled;
+    private final RateLimiter customers;
+    private final RateLimiter callers;
+    private final Counter customerRejections;
+    private final Counter callerRejections;
+
+    public TransactionRateLimiter(MeterRegistry meterRegistry,
+                                  @Value("${core.rate-limit.enabled:true}") boolean enabled,
+                                  @Value("${core.rate-limit.customer.permits-per-second:20}") double customerRate,
+                                  @Value("${core.rate-limit.customer.burst:40}") int customerBurst,
+                                  @Value("${core.rate-limit.caller.permits-per-second:500}") double callerRate,
+                                  @Value("${core.rate-limit.caller.burst:1000}") int callerBurst,
+                                  @Value("${core.rate-limit.maximum-keys:100000}") long maximumKeys) {
+        this.enabled = enabled;
+        this.customers = new RateLimiter(customerRate, customerBurst, maximumKeys);
+        this.callers = new RateLimiter(callerRate, callerBurst, maximumKeys);
+        this.customerRejections = rejections(meterRegistry, "customer");
+        this.callerRejections = rejections(meterRegistry, "caller");
+    }
+
+    /**
+     * Takes a permit from the caller's bucket and then from the customer's; throws
+     * {@link RateLimitExceededException} with the time until the next permit when either is
+     * empty. A call turned away for its customer gives the caller's permit back, so it only
+     * counts against the limit that rejected it.
+     */
+    public void acquire(Long customerId, HttpServletRequest request) {
+        acquire(customerId, request.getUserPrincipal(), request.getRemoteAddr());
+    }
+
+    /**
+     * As {@link #acquire(Long, HttpServletRequest)}, for a caller given by its principal, null
+     * when unauthenticated, and address.
+     */
+    public void acquire(Long customerId, Principal principal, String remoteAddress) {
+        if (!enabled) {
+            return;
+        }
+        String caller = callerOf(principal, remoteAddress);
+        Duration wait = callers.tryAcquire(caller);
+        if (!wait.isZero()) {
+            callerRejections.increment();
+            throw new RateLimitExceededException("Too many transactions from this caller", wait);
+        }
+        if (customerId != null) {
+            wait = customers.tryAcquire(customerId);
+            if (!wait.isZero()) {
+                callers.release(caller);
+                customerRejections.increment();
+                throw new RateLimitExceededException("Too many transactions for customer " + customerId, wait);
+            }
+        }
+    }
+
+    private static String callerOf(Principal principal, String remoteAddress) {
+        return principal != null ? "principal:" + principal.getName() : "address:" + remoteAddress;
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String limit) {
+        return Counter.builder("ratelimit.rejected")
+                .tag("limit", limit)
+                .description("Transactions turned away by the rate limiter")
+                .register(meterRegistry);
+    }
+}
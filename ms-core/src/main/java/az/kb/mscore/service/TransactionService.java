@@ -1,40 +1,99 @@
 package az.kb.mscore.service;
 
 import az.kb.mscore.client.TransactionClient;
+import az.kb.mscore.model.TransactionPage;
 import az.kb.mscore.model.TransactionRequest;
 import az.kb.mscore.model.TransactionResponse;
+import az.kb.mscore.util.SingleFlight;
+import feign.Response;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
 
     private final TransactionClient transactionClient;
+    private final ResponseCache responseCache;
+    private final SingleFlight singleFlight;
 
     public TransactionResponse getTransactionById(Long id) {
-        return transactionClient.getTransactionById(id);
+        return responseCache.getTransaction(id, transactionClient::getTransactionById);
     }
 
-    public List<TransactionResponse> getTransactionsByCustomerId(Long customerId) {
-        return transactionClient.getCustomerTransactions(customerId);
+    /**
+     * Identical concurrent history requests share one call to ms-transaction.
+     */
+    public List<TransactionResponse> getTransactionsByCustomerId(Long customerId, LocalDateTime from, LocalDateTime to,
+                                                                 Integer page, Integer size) {
+        return singleFlight.execute("customer-transactions", Arrays.asList(customerId, from, to, page, size),
+                () -> transactionClient.getCustomerTransactions(customerId, from, to, page, size));
     }
 
-    public List<TransactionResponse> getAllTransactions() {
-        return transactionClient.getAllTransactions();
+    public TransactionPage getTransactions(Long after, Integer limit) {
+        return transactionClient.getTransactions(after, limit);
     }
 
-    public TransactionResponse doTopup(TransactionRequest transactionRequest) {
-        return transactionClient.doTopup(transactionRequest);
+    /**
+     * Copies the NDJSON stream from ms-transaction to {@code out} chunk by chunk without decoding it.
+     */
+    public void streamTransactions(OutputStream out) throws IOException {
+        try (Response response = transactionClient.streamTransactions()) {
+            if (response.status() >= 300 || response.body() == null) {
+                throw new IllegalStateException("Transaction stream failed with status " + response.status());
+            }
+            try (InputStream body = response.body().asInputStream()) {
+                body.transferTo(out);
+            }
+        }
     }
 
-    public TransactionResponse doPurchase(TransactionRequest transactionRequest) {
-        return transactionClient.doPurchase(transactionRequest);
+    public TransactionResponse doTopup(String idempotencyKey, TransactionRequest transactionRequest) {
+        return invalidating(transactionRequest, () -> transactionClient.doTopup(idempotencyKey, transactionRequest));
     }
 
-    public TransactionResponse doRefund(TransactionRequest transactionRequest) {
-        return transactionClient.doRefund(transactionRequest);
+    public TransactionResponse doPurchase(String idempotencyKey, TransactionRequest transactionRequest) {
+        return invalidating(transactionRequest, () -> transactionClient.doPurchase(idempotencyKey, transactionRequest));
+    }
+
+    public TransactionResponse doRefund(String idempotencyKey, TransactionRequest transactionRequest) {
+        return invalidating(transactionRequest, () -> transactionClient.doRefund(idempotencyKey, transactionRequest));
+    }
+
+    /**
+     * Forwards a balance-changing transaction and then drops the cached customer, and for a
+     * refund the refunded transaction. The eviction also happens when the call fails, since a
+     * timed out call may still have changed the balance. A customer read already in flight is
+     * forgotten too, so later reads do not join one that started before the write. A response
+     * that is not final yet keeps the customer out of the cache until it is, as the balance
+     * still changes.
+     */
+    private TransactionResponse invalidating(TransactionRequest request, Supplier<TransactionResponse> call) {
+        TransactionResponse response = null;
+        try {
+            response = call.get();
+            responseCache.putTransaction(response);
+            return response;
+        } finally {
+            evictCustomer(request.getCustomerId());
+            responseCache.evictTransaction(request.getRelatedTransactionId());
+            if (response != null && !Objects.equals(response.getCustomerId(), request.getCustomerId())) {
+                evictCustomer(response.getCustomerId());
+            }
+        }
+    }
+
+    private void evictCustomer(Long customerId) {
+        responseCache.evictCustomer(customerId);
+        singleFlight.forget(CustomerService.CUSTOMER_FLIGHT, customerId);
     }
 }
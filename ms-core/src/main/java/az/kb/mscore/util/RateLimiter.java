@@ -0,0 +1,73 @@
+package az.kb.mscore.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per key, kept as the generic cell rate algorithm: each bucket is one
+ * {@link AtomicLong} holding the time at which it is next completely full, advanced by one
+ * emission interval per permit with a compare-and-set, so permits are taken without locks.
+ * A bucket left alone for {@code burst} intervals is full again and is evicted, which loses
+ * nothing; beyond {@code maximumKeys} buckets the least recently used ones are dropped, which
+ * only ever lets a dropped key start over with a full bucket.
+ */
+public class RateLimiter {
+
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final LongSupplier nanoClock;
+    private final Cache<Object, AtomicLong> buckets;
+
+    public RateLimiter(double permitsPerSecond, int burst, long maximumKeys) {
+        this(permitsPerSecond, burst, maximumKeys, System::nanoTime);
+    }
+
+    public RateLimiter(double permitsPerSecond, int burst, long maximumKeys, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.emissionInterval = Math.max(1L, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstTolerance = emissionInterval * (burst - 1);
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(Duration.ofNanos(emissionInterval * burst))
+                .ticker(nanoClock::getAsLong)
+                .build();
+    }
+
+    /**
+     * Takes one permit for {@code key}. Returns zero when it was granted, otherwise how long
+     * until the next permit; a rejected call takes nothing.
+     */
+    public Duration tryAcquire(Object key) {
+        AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long current = fullAt.get();
+            long allowedAt = Math.max(current, now);
+            long wait = allowedAt - now - burstTolerance;
+            if (wait > 0) {
+                return Duration.ofNanos(wait);
+            }
+            if (fullAt.compareAndSet(current, allowedAt + emissionInterval)) {
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit {@link #tryAcquire} granted for {@code key}, for a call turned away by
+     * another limit after all. Does nothing if the bucket has since been evicted, as it is full.
+     */
+    public void release(Object key) {
+        AtomicLong fullAt = buckets.getIfPresent(key);
+        if (fullAt != null) {
+            fullAt.addAndGet(-emissionInterval);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package az.kb.mscore.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent downstream reads: while a call for a name and key is in
+ * flight, further callers wait for it and get its result or exception instead of making their
+ * own call. Nothing is kept once the call completes, so callers arriving after it start a new
+ * one. Callers are counted in {@code singleflight.calls}, tagged with the call name and
+ * {@code result=executed} or {@code result=coalesced}.
+ */
+@Component
+public class SingleFlight {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public SingleFlight(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs {@code call} unless a call with the same {@code name} and {@code key} is already in
+     * flight, in which case it waits for that one. Keys are compared with {@code equals}.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String name, Object key, Supplier<T> call) {
+        Flight flight = new Flight(name, key);
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flight, own);
+        Counters calls = counters.computeIfAbsent(name, this::counters);
+        if (existing != null) {
+            calls.coalesced().increment();
+            return (T) await(existing);
+        }
+        calls.executed().increment();
+        try {
+            T result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, own);
+        }
+    }
+
+    /**
+     * Like {@link #execute}, for calls that complete a future instead of blocking: callers of an
+     * identical call in flight get its future. Cancelling the returned future does not cancel
+     * the call.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(String name, Object key, Supplier<CompletableFuture<T>> call) {
+        Flight flight = new Flight(name, key);
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flight, own);
+        Counters calls = counters.computeIfAbsent(name, this::counters);
+        if (existing != null) {
+            calls.coalesced().increment();
+            return (CompletableFuture<T>) existing.copy();
+        }
+        calls.executed().increment();
+        CompletableFuture<T> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException | Error e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, failure) -> {
+            inFlight.remove(flight, own);
+            if (failure != null) {
+                own.completeExceptionally(failure instanceof CompletionException ? failure.getCause() : failure);
+            } else {
+                own.complete(result);
+            }
+        });
+        return (CompletableFuture<T>) own.copy();
+    }
+
+    /**
+     * Lets the next caller for {@code name} and {@code key} start a new call instead of joining
+     * the one in flight, for when a write has made its result stale. Callers already waiting
+     * still get that call's result.
+     */
+    public void forget(String name, Object key) {
+        inFlight.remove(new Flight(name, key));
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private Counters counters(String name) {
+        return new Counters(
+                Counter.builder("singleflight.calls").tag("call", name).tag("result", "executed").register(meterRegistry),
+                Counter.builder("singleflight.calls").tag("call", name).tag("result", "coalesced").register(meterRegistry));
+    }
+
+    private record Flight(String name, Object key) {
+    }
+
+    private record Counters(Counter executed, Counter coalesced) {
+    }
+}
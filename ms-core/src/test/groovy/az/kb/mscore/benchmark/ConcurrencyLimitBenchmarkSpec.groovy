@@ -0,0 +1,92 @@
+package az.kb.mscore.benchmark
+
+import az.kb.mscore.MsCoreApplication
+import com.sun.net.httpserver.HttpServer
+import org.springframework.boot.builder.SpringApplicationBuilder
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+
+/**
+ * Starts ms-core with a 20-thread Tomcat in front of an ms-transaction stub that answers after
+ * one second, then sends 400 concurrent requests. With platform threads they queue behind the
+ * pool (at least 400 / 20 * 1 s = 20 s); with virtual threads they all wait on the stub together.
+ * Run with {@code gradle benchmark}.
+ */
+class ConcurrencyLimitBenchmarkSpec extends Specification {
+
+    static final int TOMCAT_THREADS = 20
+    static final int REQUESTS = 400
+    static final long DOWNSTREAM_DELAY_MS = 1000
+
+    @Shared
+    HttpServer transactionStub
+
+    @Shared
+    HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build()
+
+    def setupSpec() {
+        transactionStub = HttpServer.create(new InetSocketAddress(0), 1000)
+        transactionStub.executor = Executors.newCachedThreadPool()
+        transactionStub.createContext("/api/v1/transactions/") { exchange ->
+            Thread.sleep(DOWNSTREAM_DELAY_MS)
+            byte[] body = '{"id":1,"status":"SUCCESS"}'.bytes
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(200, body.length)
+            exchange.responseBody.withCloseable { it.write(body) }
+        }
+        transactionStub.start()
+    }
+
+    def cleanupSpec() {
+        transactionStub.stop(0)
+    }
+
+    def "400 concurrent requests through a 20-thread Tomcat with virtual threads #virtual"() {
+        given:
+        def context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(MsCoreApplication)
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=${TOMCAT_THREADS}",
+                        "--server.tomcat.accept-count=${REQUESTS}",
+                        "--spring.threads.virtual.enabled=${virtual}",
+                        "--client.ms-transaction.url=http://localhost:${transactionStub.address.port}")
+        def uri = URI.create("http://localhost:${context.webServer.port}/api/v1/transactions/1")
+        fire(uri, REQUESTS.intdiv(4))
+
+        when:
+        long start = System.nanoTime()
+        def statuses = fire(uri, REQUESTS)
+        long elapsedMs = (System.nanoTime() - start).intdiv(1_000_000)
+        println String.format("virtual=%-5s %d requests in %,d ms (%.0f req/s)",
+                virtual, REQUESTS, elapsedMs, REQUESTS * 1000d / elapsedMs)
+
+        then:
+        statuses.every { it == 200 }
+        virtual ? elapsedMs < platformFloorMs() : elapsedMs >= platformFloorMs()
+
+        cleanup:
+        context?.close()
+
+        where:
+        virtual << [false, true]
+    }
+
+    private List<Integer> fire(URI uri, int count) {
+        def request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build()
+        List<CompletableFuture<HttpResponse<String>>> responses = (1..count).collect {
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+        }
+        responses*.join()*.statusCode()
+    }
+
+    private static long platformFloorMs() {
+        REQUESTS.intdiv(TOMCAT_THREADS) * DOWNSTREAM_DELAY_MS
+    }
+}
@@ -0,0 +1,242 @@
+package az.kb.mscore.benchmark
+
+import az.kb.mscore.MsCoreApplication
+import com.sun.net.httpserver.HttpServer
+import spock.lang.Shared
+import spock.lang.Specification
+
+import javax.management.MBeanServerConnection
+import javax.management.remote.JMXConnectorFactory
+import javax.management.remote.JMXServiceURL
+import java.lang.management.ManagementFactory
+import java.lang.management.MemoryMXBean
+import java.lang.management.ThreadMXBean
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Sends 2000 concurrent transaction reads through ms-core in front of an ms-transaction stub
+ * that answers after two seconds, once per gateway mode: servlet on 200 platform threads,
+ * servlet on virtual threads and reactive. ms-core runs in a JVM of its own, so the stub and the
+ * load generated here do not count towards its figures, which are read over JMX. Prints the p50
+ * and p99 latency and the peak thread count, then repeats the requests for the peak live heap,
+ * both above those of ms-core at rest. The servlet mode on platform threads queues behind its
+ * pool (at least 2000 / 200 * 2 s = 20 s at p99); the reactive mode serves them all at once on a
+ * handful of event loop threads, close to the two seconds of the stub given a few cores, as
+ * the stub and the load generator need CPU too. Run with {@code gradle benchmark}.
+ */
+class GatewayModeBenchmarkSpec extends Specification {
+
+    static final int TOMCAT_THREADS = 200
+    static final int REQUESTS = 2000
+    static final long DOWNSTREAM_DELAY_MS = 2000
+
+    @Shared
+    HttpServer transactionStub
+
+    @Shared
+    HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build()
+
+    def setupSpec() {
+        transactionStub = HttpServer.create(new InetSocketAddress(0), REQUESTS * 2)
+        def stubThreads = (ThreadPoolExecutor) Executors.newFixedThreadPool(REQUESTS)
+        stubThreads.prestartAllCoreThreads()
+        transactionStub.executor = stubThreads
+        transactionStub.createContext("/api/v1/transactions/") { exchange ->
+            Thread.sleep(DOWNSTREAM_DELAY_MS)
+            byte[] body = '{"id":1,"status":"PENDING"}'.bytes
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(200, body.length)
+            exchange.responseBody.withCloseable { it.write(body) }
+        }
+        transactionStub.start()
+    }
+
+    def cleanupSpec() {
+        transactionStub.stop(0)
+        ((ExecutorService) transactionStub.executor).shutdownNow()
+    }
+
+    def "2000 concurrent requests through the #mode gateway"() {
+        given:
+        int port = freePort()
+        int jmxPort = freePort()
+        def core = startCore(mode, port, jmxPort, arguments)
+        awaitReady(core, URI.create("http://localhost:${port}/actuator/health"))
+        def jmx = JMXConnectorFactory.connect(new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:${jmxPort}/jmxrmi"))
+        def jvm = new CoreJvm(jmx.MBeanServerConnection)
+        jvm.memory.gc()
+        def baseline = jvm.sample()
+        def uri = URI.create("http://localhost:${port}/api/v1/transactions/1")
+        fire(uri, REQUESTS)
+
+        when:
+        def threads = new Sampler(jvm, 20, false).start()
+        def results = fire(uri, REQUESTS)
+        long peakThreads = threads.stop()[1]
+        def heap = new Sampler(jvm, 500, true).start()
+        fire(uri, REQUESTS)
+        long peakLiveHeap = heap.stop()[0]
+
+        def latencies = results*.latencyMs.sort()
+        long p50 = percentile(latencies, 50)
+        long p99 = percentile(latencies, 99)
+        println String.format("%-15s p50 %,6d ms  p99 %,6d ms  live heap +%,4d MB  threads +%,4d",
+                mode, p50, p99, (peakLiveHeap - baseline[0]).intdiv(1024 * 1024), peakThreads - baseline[1])
+
+        then:
+        results.every { it.status == 200 }
+        mode == "servlet" ? p99 >= platformFloorMs() : p99 < platformFloorMs()
+        mode != "reactive" || p99 < DOWNSTREAM_DELAY_MS * 3 / 2
+
+        cleanup:
+        jmx?.close()
+        core?.destroy()
+        core?.waitFor(30, TimeUnit.SECONDS)
+
+        where:
+        mode              | arguments
+        "servlet"         | ["--spring.threads.virtual.enabled=false"]
+        "servlet-virtual" | ["--spring.threads.virtual.enabled=true"]
+        "reactive"        | ["--spring.main.web-application-type=reactive"]
+    }
+
+    /**
+     * Starts ms-core on the classpath the {@code benchmark} task passes in, logging to
+     * {@code build/benchmark-<mode>.log}.
+     */
+    private Process startCore(String mode, int port, int jmxPort, List<String> arguments) {
+        def command = [Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                       "-Xmx1g",
+                       "-Dcom.sun.management.jmxremote.port=${jmxPort}",
+                       "-Dcom.sun.management.jmxremote.authenticate=false",
+                       "-Dcom.sun.management.jmxremote.ssl=false",
+                       "-cp", System.getProperty("benchmark.core.classpath"),
+                       MsCoreApplication.name,
+                       "--server.port=${port}",
+                       "--server.tomcat.threads.max=${TOMCAT_THREADS}",
+                       "--server.tomcat.accept-count=${REQUESTS}",
+                       "--client.max-connections=${REQUESTS}",
+                       "--client.ms-transaction.url=http://localhost:${transactionStub.address.port}",
+                       "--core.rate-limit.enabled=false"] + arguments
+        new ProcessBuilder(command*.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(new File("build/benchmark-${mode}.log"))
+                .start()
+    }
+
+    private void awaitReady(Process core, URI health) {
+        def request = HttpRequest.newBuilder(health).timeout(Duration.ofSeconds(5)).GET().build()
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2)
+        while (System.nanoTime() < deadline) {
+            if (!core.alive) {
+                throw new IllegalStateException("ms-core exited with " + core.exitValue())
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return
+                }
+            } catch (IOException ignored) {
+                // not listening yet
+            }
+            Thread.sleep(200)
+        }
+        throw new IllegalStateException("ms-core did not start in time")
+    }
+
+    private List<Map> fire(URI uri, int count) {
+        def request = HttpRequest.newBuilder(uri).timeout(Duration.ofMinutes(2)).GET().build()
+        List<CompletableFuture<Map>> responses = (1..count).collect {
+            long start = System.nanoTime()
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply { response ->
+                [status: response.statusCode(), latencyMs: (System.nanoTime() - start).intdiv(1_000_000)]
+            }
+        }
+        responses*.join()
+    }
+
+    /**
+     * The memory and thread MXBeans of the ms-core JVM.
+     */
+    private static class CoreJvm {
+        final MemoryMXBean memory
+        final ThreadMXBean threads
+
+        CoreJvm(MBeanServerConnection connection) {
+            memory = ManagementFactory.newPlatformMXBeanProxy(connection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean)
+            threads = ManagementFactory.newPlatformMXBeanProxy(connection, ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean)
+        }
+
+        /**
+         * Used heap and live thread count.
+         */
+        long[] sample() {
+            [memory.heapMemoryUsage.used, threads.threadCount] as long[]
+        }
+    }
+
+    /**
+     * Records the peak of {@link CoreJvm#sample()} in the background, collecting garbage before
+     * each sample when {@code collect} is set, so the heap figure is live data only. Kept to a
+     * separate run, as the collections pause the requests.
+     */
+    private static class Sampler {
+        final CoreJvm jvm
+        final long intervalMs
+        final boolean collect
+        final long[] peak = new long[2]
+        final AtomicBoolean running = new AtomicBoolean(true)
+        Thread thread
+
+        Sampler(CoreJvm jvm, long intervalMs, boolean collect) {
+            this.jvm = jvm
+            this.intervalMs = intervalMs
+            this.collect = collect
+        }
+
+        Sampler start() {
+            thread = Thread.startVirtualThread {
+                while (running.get()) {
+                    if (collect) {
+                        jvm.memory.gc()
+                    }
+                    def now = jvm.sample()
+                    peak[0] = Math.max(peak[0], now[0])
+                    peak[1] = Math.max(peak[1], now[1])
+                    Thread.sleep(intervalMs)
+                }
+            }
+            this
+        }
+
+        long[] stop() {
+            running.set(false)
+            thread.join()
+            peak
+        }
+    }
+
+    private static int freePort() {
+        new ServerSocket(0).withCloseable { it.localPort }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        sorted[Math.min(sorted.size() - 1, (int) Math.ceil(sorted.size() * percentile / 100d) - 1)]
+    }
+
+    private static long platformFloorMs() {
+        REQUESTS.intdiv(TOMCAT_THREADS) * DOWNSTREAM_DELAY_MS
+    }
+}
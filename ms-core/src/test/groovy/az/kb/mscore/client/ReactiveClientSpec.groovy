@@ -0,0 +1,131 @@
+package az.kb.mscore.client
+
+import az.kb.mscore.config.WebClientConfig
+import az.kb.mscore.model.TransactionRequest
+import az.kb.mscore.util.ServiceTokenProvider
+import com.sun.net.httpserver.HttpServer
+import org.springframework.core.io.buffer.DefaultDataBufferFactory
+import org.springframework.web.reactive.function.client.WebClient
+import org.springframework.web.reactive.function.client.WebClientRequestException
+import org.springframework.web.reactive.function.client.WebClientResponseException
+import reactor.core.publisher.Flux
+import reactor.netty.resources.ConnectionProvider
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+
+class ReactiveClientSpec extends Specification {
+
+    HttpServer stub
+
+    @Shared
+    ConnectionProvider connectionProvider = new WebClientConfig().connectionProvider(10, 10)
+
+    List<Map> received = Collections.synchronizedList([])
+    ServiceTokenProvider serviceTokenProvider = Stub() {
+        bearerToken("ms-core") >> "Bearer service-token"
+    }
+    WebClientConfig config = new WebClientConfig()
+    ReactiveCustomerClient customerClient
+    ReactiveTransactionClient transactionClient
+
+    def setup() {
+        stub = HttpServer.create(new InetSocketAddress(0), 10)
+        stub.createContext("/") { exchange ->
+            received << [method       : exchange.requestMethod,
+                         uri          : exchange.requestURI.toString(),
+                         authorization: exchange.requestHeaders.getFirst("Authorization"),
+                         idempotency  : exchange.requestHeaders.getFirst("Idempotency-Key"),
+                         contentType  : exchange.requestHeaders.getFirst("Content-Type"),
+                         body         : new String(exchange.requestBody.readAllBytes(), StandardCharsets.UTF_8)]
+            def path = exchange.requestURI.path
+            if (path.endsWith("/504")) {
+                Thread.sleep(1500)
+            }
+            def missing = path.endsWith("/404")
+            byte[] body = (missing ? '{"message":"not found"}'
+                    : path.endsWith("/by-customer") ? '[]' : '{"id":9,"status":"SUCCESS"}').bytes
+            exchange.responseHeaders.add("Content-Type", "application/json")
+            exchange.sendResponseHeaders(missing ? 404 : 200, body.length)
+            exchange.responseBody.withCloseable { it.write(body) }
+        }
+        stub.start()
+        def url = "http://localhost:${stub.address.port}"
+        def filter = config.serviceAuthFilter(serviceTokenProvider)
+        def httpClient = config.httpClient(connectionProvider, Duration.ofSeconds(1), Duration.ofMillis(500))
+        customerClient = config.reactiveCustomerClient(WebClient.builder(), httpClient, filter, url)
+        transactionClient = config.reactiveTransactionClient(WebClient.builder(), httpClient, filter, url)
+    }
+
+    def cleanup() {
+        stub.stop(0)
+    }
+
+    def cleanupSpec() {
+        connectionProvider.dispose()
+    }
+
+    def "transactions should be forwarded with the service token and the idempotency key"() {
+        when:
+        def response = transactionClient.doPurchase("retry-1",
+                TransactionRequest.builder().customerId(7L).amount(BigDecimal.TEN).build()).block()
+
+        then:
+        response.id == 9L
+        received.size() == 1
+        with(received[0]) {
+            method == "POST"
+            uri == "/api/v1/transactions/purchase"
+            authorization == "Bearer service-token"
+            idempotency == "retry-1"
+            body.contains('"customerId":7')
+        }
+    }
+
+    def "a missing idempotency key or query parameter should be left out"() {
+        when:
+        transactionClient.doTopup(null, TransactionRequest.builder().customerId(7L).build()).block()
+        transactionClient.getCustomerTransactions(7L, null, null, 0, 20).block()
+
+        then:
+        received[0].idempotency == null
+        received[1].uri == "/api/v1/transactions/7/by-customer?page=0&size=20"
+        received.every { it.authorization == "Bearer service-token" }
+    }
+
+    def "a bulk upload should be passed through with its content type"() {
+        given:
+        def buffers = new DefaultDataBufferFactory()
+        def csv = Flux.just("name,surname,birthDate,phoneNumber\n", "Ali,Aliyev,01.01.1990,+994501234567\n")
+                .map { buffers.wrap(it.getBytes(StandardCharsets.UTF_8)) }
+
+        when:
+        customerClient.createCustomers("text/csv", csv).block()
+
+        then:
+        with(received[0]) {
+            uri == "/api/v1/customers/bulk"
+            contentType == "text/csv"
+            authorization == "Bearer service-token"
+            body == "name,surname,birthDate,phoneNumber\nAli,Aliyev,01.01.1990,+994501234567\n"
+        }
+    }
+
+    def "an error status should surface as a WebClientResponseException"() {
+        when:
+        customerClient.getCustomer(404L).block()
+
+        then:
+        thrown(WebClientResponseException.NotFound)
+    }
+
+    def "a downstream slower than the response timeout should fail the call"() {
+        when:
+        transactionClient.getTransactionById(504L).block()
+
+        then:
+        thrown(WebClientRequestException)
+    }
+}
@@ -1,8 +1,12 @@
 package az.kb.mscore.controller
+import az.kb.mscore.model.BulkCreateResponseDto
+import az.kb.mscore.model.CustomerOverviewDto
 import az.kb.mscore.model.CustomerResponseDto
 import az.kb.mscore.model.CustomerCreateRequestDto
+import az.kb.mscore.service.CustomerOverviewService
 import az.kb.mscore.service.CustomerService
 import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
 import spock.lang.Specification
 import java.time.LocalDate
@@ -12,7 +16,8 @@ import java.time.LocalDateTime
 class CustomerControllerSpec extends Specification {
 
     CustomerService customerService = Mock()
-    CustomerController customerController = new CustomerController(customerService)
+    CustomerOverviewService customerOverviewService = Mock()
+    CustomerController customerController = new CustomerController(customerService, customerOverviewService)
 
     def "getCustomer should return customer when found"() {
         given: "a customer exists"
@@ -141,4 +146,61 @@ class CustomerControllerSpec extends Specification {
         1 * customerService.createCustomer(customerCreateRequest) >> { throw new RuntimeException("Invalid phone number") }
         thrown(RuntimeException)
     }
-}
\ No newline at end of file
+
+    def "createCustomers should pass the upload stream and its content type to the service"() {
+        given:
+        def body = new ByteArrayInputStream('[{"name": "Ali"}]'.bytes)
+        def contentType = MediaType.APPLICATION_JSON
+        def response = BulkCreateResponseDto.builder().created(1).ids([7L]).errors([]).build()
+
+        when:
+        def result = customerController.createCustomers(contentType, body)
+
+        then:
+        1 * customerService.createCustomers(contentType, body) >> response
+        result.statusCode == HttpStatus.OK
+        result.body == response
+    }
+
+    def "getCustomerByPhoneNumber should return the customer found by the service"() {
+        given:
+        def customer = CustomerResponseDto.builder().id(1L).phoneNumber("+994501234567").build()
+
+        when:
+        def result = customerController.getCustomerByPhoneNumber("+994501234567")
+
+        then:
+        1 * customerService.getCustomerByPhoneNumber("+994501234567") >> customer
+        result.statusCode == HttpStatus.OK
+        result.body == customer
+    }
+
+    def "searchCustomers should pass the prefixes and page through"() {
+        given:
+        def customers = [CustomerResponseDto.builder().id(1L).surname("Mammadzade").build()]
+
+        when:
+        def result = customerController.searchCustomers("Mamm", "Mu", 1, 20)
+
+        then:
+        1 * customerService.searchCustomers("Mamm", "Mu", 1, 20) >> customers
+        result.body == customers
+    }
+
+    def "getOverview should return the overview built by the overview service"() {
+        given:
+        def overview = CustomerOverviewDto.builder()
+                .customer(CustomerResponseDto.builder().id(1L).build())
+                .transactions([])
+                .unavailable([])
+                .build()
+
+        when:
+        def result = customerController.getOverview(1L)
+
+        then:
+        1 * customerOverviewService.getOverview(1L) >> overview
+        result.statusCode == HttpStatus.OK
+        result.body == overview
+    }
+}
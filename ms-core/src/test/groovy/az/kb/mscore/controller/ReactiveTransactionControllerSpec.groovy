@@ -0,0 +1,84 @@
+package az.kb.mscore.controller
+
+import az.kb.mscore.exception.GlobalExceptionHandler
+import az.kb.mscore.exception.RateLimitExceededException
+import az.kb.mscore.model.TransactionRequest
+import az.kb.mscore.model.TransactionResponse
+import az.kb.mscore.enums.TransactionStatus
+import az.kb.mscore.service.ReactiveTransactionService
+import az.kb.mscore.service.TransactionRateLimiter
+import org.springframework.http.HttpHeaders
+import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
+import org.springframework.test.web.reactive.server.WebTestClient
+import org.springframework.web.reactive.function.client.WebClientResponseException
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Duration
+
+class ReactiveTransactionControllerSpec extends Specification {
+
+    ReactiveTransactionService transactionService = Mock()
+    TransactionRateLimiter rateLimiter = Mock()
+    WebTestClient webTestClient = WebTestClient
+            .bindToController(new ReactiveTransactionController(transactionService, rateLimiter))
+            .controllerAdvice(new GlobalExceptionHandler())
+            .build()
+
+    def "topup should take a rate limit permit and forward the Idempotency-Key"() {
+        when:
+        def response = webTestClient.post().uri("/api/v1/transactions/topup")
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue('{"customerId":100,"amount":10.00}')
+                .exchange()
+
+        then:
+        1 * rateLimiter.acquire(100L, null, _)
+        1 * transactionService.doTopup("retry-1", { it.customerId == 100L }) >>
+                Mono.just(TransactionResponse.builder().id(9L).status(TransactionStatus.SUCCESS).build())
+        response.expectStatus().isOk()
+                .expectBody().jsonPath('$.id').isEqualTo(9)
+    }
+
+    def "a rate limited purchase should be answered with 429 and Retry-After"() {
+        when:
+        def response = webTestClient.post().uri("/api/v1/transactions/purchase")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue('{"customerId":100,"amount":10.00}')
+                .exchange()
+
+        then:
+        1 * rateLimiter.acquire(100L, null, _) >> {
+            throw new RateLimitExceededException("Too many transactions for customer 100", Duration.ofMillis(1500))
+        }
+        0 * transactionService._
+        response.expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2")
+    }
+
+    def "getTransactionsByCustomerId should bind the same query parameters as the servlet controller"() {
+        when:
+        def response = webTestClient.get()
+                .uri("/api/v1/transactions/7/customer?from=2024-03-01T00:00:00&page=1&size=5")
+                .exchange()
+
+        then:
+        1 * transactionService.getTransactionsByCustomerId(7L, { it.dayOfMonth == 1 }, null, 1, 5) >>
+                Mono.just([TransactionResponse.builder().id(3L).build()])
+        response.expectStatus().isOk()
+                .expectBody().jsonPath('$[0].id').isEqualTo(3)
+    }
+
+    def "a downstream error should be answered as in the servlet mode"() {
+        when:
+        def response = webTestClient.get().uri("/api/v1/transactions/5").exchange()
+
+        then:
+        1 * transactionService.getTransactionById(5L) >> Mono.error(
+                WebClientResponseException.create(404, "Not Found", new HttpHeaders(), new byte[0], null))
+        response.expectStatus().isBadRequest()
+                .expectBody().jsonPath('$.error').isEqualTo("NotFound")
+    }
+}
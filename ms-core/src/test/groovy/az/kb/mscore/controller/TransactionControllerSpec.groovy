@@ -1,22 +1,31 @@
 package az.kb.mscore.controller
 
 
+import az.kb.mscore.exception.RateLimitExceededException
+import az.kb.mscore.model.TransactionPage
 import az.kb.mscore.model.TransactionRequest
 import az.kb.mscore.model.TransactionResponse
 import az.kb.mscore.enums.TransactionStatus
 import az.kb.mscore.enums.TransactionType
+import az.kb.mscore.service.TransactionRateLimiter
 import az.kb.mscore.service.TransactionService
 import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
+import org.springframework.mock.web.MockHttpServletRequest
 import spock.lang.Specification
 
+import java.time.Duration
+
 class TransactionControllerSpec extends Specification {
 
     TransactionController transactionController
     TransactionService transactionService = Mock()
+    TransactionRateLimiter rateLimiter = Mock()
+    MockHttpServletRequest httpRequest = new MockHttpServletRequest()
 
     def setup() {
-        transactionController = new TransactionController(transactionService)
+        transactionController = new TransactionController(transactionService, rateLimiter)
     }
 
     def "getTransactionById should return transaction when found"() {
@@ -69,10 +78,10 @@ class TransactionControllerSpec extends Specification {
         def expectedTransactions = [transaction1, transaction2]
 
         when: "getTransactionsByCustomerId is called"
-        ResponseEntity<List<TransactionResponse>> result = transactionController.getTransactionsByCustomerId(customerId)
+        ResponseEntity<List<TransactionResponse>> result = transactionController.getTransactionsByCustomerId(customerId, null, null, 0, 20)
 
         then: "service is called and transactions are returned"
-        1 * transactionService.getTransactionsByCustomerId(customerId) >> expectedTransactions
+        1 * transactionService.getTransactionsByCustomerId(customerId, null, null, 0, 20) >> expectedTransactions
         result.statusCode == HttpStatus.OK
         result.body == expectedTransactions
         result.body.size() == 2
@@ -86,16 +95,16 @@ class TransactionControllerSpec extends Specification {
         def expectedTransactions = []
 
         when: "getTransactionsByCustomerId is called"
-        ResponseEntity<List<TransactionResponse>> result = transactionController.getTransactionsByCustomerId(customerId)
+        ResponseEntity<List<TransactionResponse>> result = transactionController.getTransactionsByCustomerId(customerId, null, null, 0, 20)
 
         then: "service is called and empty list is returned"
-        1 * transactionService.getTransactionsByCustomerId(customerId) >> expectedTransactions
+        1 * transactionService.getTransactionsByCustomerId(customerId, null, null, 0, 20) >> expectedTransactions
         result.statusCode == HttpStatus.OK
         result.body == expectedTransactions
         result.body.size() == 0
     }
 
-    def "getAllTransactions should return all transactions"() {
+    def "getTransactions should return a page of transactions"() {
         given: "multiple transactions exist"
         def transaction1 = TransactionResponse.builder()
                 .id(1L)
@@ -115,30 +124,47 @@ class TransactionControllerSpec extends Specification {
                 .relatedTransactionId(null)
                 .build()
 
-        def expectedTransactions = [transaction1, transaction2]
+        def expectedPage = TransactionPage.builder()
+                .items([transaction1, transaction2])
+                .nextCursor(2L)
+                .build()
 
-        when: "getAllTransactions is called"
-        ResponseEntity<List<TransactionResponse>> result = transactionController.getAllTransactions()
+        when: "getTransactions is called"
+        ResponseEntity<TransactionPage> result = transactionController.getTransactions(null, 2)
 
-        then: "service is called and all transactions are returned"
-        1 * transactionService.getAllTransactions() >> expectedTransactions
+        then: "service is called and the page is returned"
+        1 * transactionService.getTransactions(null, 2) >> expectedPage
         result.statusCode == HttpStatus.OK
-        result.body == expectedTransactions
-        result.body.size() == 2
+        result.body == expectedPage
+        result.body.items.size() == 2
+        result.body.nextCursor == 2L
     }
 
-    def "getAllTransactions should return empty list when no transactions exist"() {
+    def "getTransactions should return empty page when no transactions exist"() {
         given: "no transactions exist"
-        def expectedTransactions = []
+        def expectedPage = TransactionPage.builder().items([]).build()
 
-        when: "getAllTransactions is called"
-        ResponseEntity<List<TransactionResponse>> result = transactionController.getAllTransactions()
+        when: "getTransactions is called after the last id"
+        ResponseEntity<TransactionPage> result = transactionController.getTransactions(500L, null)
 
-        then: "service is called and empty list is returned"
-        1 * transactionService.getAllTransactions() >> expectedTransactions
+        then: "service is called and empty page is returned"
+        1 * transactionService.getTransactions(500L, null) >> expectedPage
         result.statusCode == HttpStatus.OK
-        result.body == expectedTransactions
-        result.body.size() == 0
+        result.body.items.size() == 0
+        result.body.nextCursor == null
+    }
+
+    def "streamTransactions should pass the downstream stream through"() {
+        given: "an output stream"
+        def out = new ByteArrayOutputStream()
+
+        when: "the streaming body is written"
+        def result = transactionController.streamTransactions()
+        result.body.writeTo(out)
+
+        then: "service copies the stream"
+        1 * transactionService.streamTransactions(out)
+        result.headers.getContentType() == MediaType.APPLICATION_NDJSON
     }
 
     def "topupTransaction should process topup successfully"() {
@@ -159,10 +185,10 @@ class TransactionControllerSpec extends Specification {
                 .build()
 
         when: "topupTransaction is called"
-        ResponseEntity<TransactionResponse> result = transactionController.topupTransaction(transactionRequest)
+        ResponseEntity<TransactionResponse> result = transactionController.topupTransaction(null, transactionRequest, httpRequest)
 
         then: "service is called and topup is processed"
-        1 * transactionService.doTopup(transactionRequest) >> expectedResponse
+        1 * transactionService.doTopup(null, transactionRequest) >> expectedResponse
         result.statusCode == HttpStatus.OK
         result.body == expectedResponse
         result.body.type == TransactionType.TOP_UP
@@ -188,10 +214,10 @@ class TransactionControllerSpec extends Specification {
                 .build()
 
         when: "purchaseTransaction is called"
-        ResponseEntity<TransactionResponse> result = transactionController.purchaseTransaction(transactionRequest)
+        ResponseEntity<TransactionResponse> result = transactionController.purchaseTransaction(null, transactionRequest, httpRequest)
 
         then: "service is called and purchase is processed"
-        1 * transactionService.doPurchase(transactionRequest) >> expectedResponse
+        1 * transactionService.doPurchase(null, transactionRequest) >> expectedResponse
         result.statusCode == HttpStatus.OK
         result.body == expectedResponse
         result.body.type == TransactionType.PURCHASE
@@ -217,10 +243,10 @@ class TransactionControllerSpec extends Specification {
                 .build()
 
         when: "refundTransaction is called"
-        ResponseEntity<TransactionResponse> result = transactionController.refundTransaction(transactionRequest)
+        ResponseEntity<TransactionResponse> result = transactionController.refundTransaction(null, transactionRequest, httpRequest)
 
         then: "service is called and refund is processed"
-        1 * transactionService.doRefund(transactionRequest) >> expectedResponse
+        1 * transactionService.doRefund(null, transactionRequest) >> expectedResponse
         result.statusCode == HttpStatus.OK
         result.body == expectedResponse
         result.body.type == TransactionType.REFUND
@@ -247,10 +273,10 @@ class TransactionControllerSpec extends Specification {
                 .build()
 
         when: "topupTransaction is called"
-        ResponseEntity<TransactionResponse> result = transactionController.topupTransaction(transactionRequest)
+        ResponseEntity<TransactionResponse> result = transactionController.topupTransaction(null, transactionRequest, httpRequest)
 
         then: "service is called and large amount is processed"
-        1 * transactionService.doTopup(transactionRequest) >> expectedResponse
+        1 * transactionService.doTopup(null, transactionRequest) >> expectedResponse
         result.statusCode == HttpStatus.OK
         result.body.amount == new BigDecimal("999999.99")
     }
@@ -273,10 +299,10 @@ class TransactionControllerSpec extends Specification {
                 .build()
 
         when: "purchaseTransaction is called"
-        ResponseEntity<TransactionResponse> result = transactionController.purchaseTransaction(transactionRequest)
+        ResponseEntity<TransactionResponse> result = transactionController.purchaseTransaction(null, transactionRequest, httpRequest)
 
         then: "service is called and zero amount is processed"
-        1 * transactionService.doPurchase(transactionRequest) >> expectedResponse
+        1 * transactionService.doPurchase(null, transactionRequest) >> expectedResponse
         result.statusCode == HttpStatus.OK
         result.body.amount == BigDecimal.ZERO
     }
@@ -300,12 +326,49 @@ class TransactionControllerSpec extends Specification {
                 .build()
 
         when: "refundTransaction is called"
-        ResponseEntity<TransactionResponse> result = transactionController.refundTransaction(transactionRequest)
+        ResponseEntity<TransactionResponse> result = transactionController.refundTransaction(null, transactionRequest, httpRequest)
 
         then: "service is called and partial refund is processed"
-        1 * transactionService.doRefund(transactionRequest) >> expectedResponse
+        1 * transactionService.doRefund(null, transactionRequest) >> expectedResponse
         result.statusCode == HttpStatus.OK
         result.body.amount == new BigDecimal("15.50")
         result.body.relatedTransactionId == originalTransactionId
     }
+
+    def "topupTransaction should forward the Idempotency-Key to ms-transaction"() {
+        given:
+        def transactionRequest = TransactionRequest.builder()
+                .customerId(100L)
+                .amount(new BigDecimal("10.00"))
+                .build()
+        def expectedResponse = TransactionResponse.builder()
+                .id(9L)
+                .status(TransactionStatus.SUCCESS)
+                .build()
+
+        when:
+        ResponseEntity<TransactionResponse> result = transactionController.topupTransaction("retry-1", transactionRequest, httpRequest)
+
+        then:
+        1 * transactionService.doTopup("retry-1", transactionRequest) >> expectedResponse
+        result.body == expectedResponse
+    }
+
+    def "a rate limited transaction should not reach ms-transaction"() {
+        given:
+        def transactionRequest = TransactionRequest.builder()
+                .customerId(100L)
+                .amount(new BigDecimal("10.00"))
+                .build()
+
+        when:
+        transactionController.purchaseTransaction(null, transactionRequest, httpRequest)
+
+        then:
+        1 * rateLimiter.acquire(100L, httpRequest) >> {
+            throw new RateLimitExceededException("Too many transactions for customer 100", Duration.ofMillis(1500))
+        }
+        0 * transactionService._
+        thrown(RateLimitExceededException)
+    }
 }
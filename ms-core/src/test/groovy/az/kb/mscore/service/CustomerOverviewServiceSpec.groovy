@@ -0,0 +1,144 @@
+package az.kb.mscore.service
+
+import az.kb.mscore.client.CustomerBulkClient
+import az.kb.mscore.client.CustomerClient
+import az.kb.mscore.model.CustomerResponseDto
+import az.kb.mscore.model.TransactionResponse
+import az.kb.mscore.util.SingleFlight
+import feign.FeignException
+import feign.Request
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class CustomerOverviewServiceSpec extends Specification {
+
+    CustomerService customerService = Mock()
+    TransactionService transactionService = Mock()
+    CustomerOverviewService overviewService = new CustomerOverviewService(customerService, transactionService,
+            Duration.ofSeconds(1), Duration.ofSeconds(1), 20)
+
+    def cleanup() {
+        overviewService.shutdown()
+    }
+
+    def "getOverview should fetch both parts at the same time"() {
+        given:
+        customerService.getCustomerById(1L) >> {
+            Thread.sleep(500)
+            return customer()
+        }
+        transactionService.getTransactionsByCustomerId(1L, null, null, 0, 20) >> {
+            Thread.sleep(500)
+            return [TransactionResponse.builder().id(5L).customerId(1L).build()]
+        }
+
+        when:
+        long startedAt = System.nanoTime()
+        def overview = overviewService.getOverview(1L)
+        long elapsedMillis = (System.nanoTime() - startedAt).intdiv(1_000_000)
+
+        then:
+        overview.customer.id == 1L
+        overview.transactions*.id == [5L]
+        overview.unavailable.isEmpty()
+        elapsedMillis < 1000
+    }
+
+    def "getOverview should leave out a part that is too slow or fails"() {
+        given:
+        customerService.getCustomerById(1L) >> customer()
+        transactionService.getTransactionsByCustomerId(*_) >> failure
+
+        when:
+        def overview = overviewService.getOverview(1L)
+
+        then:
+        overview.customer.id == 1L
+        overview.transactions == null
+        overview.unavailable == [CustomerOverviewService.TRANSACTIONS]
+
+        where:
+        failure << [{ Thread.sleep(2000); [] }, { throw new RuntimeException("ms-transaction unavailable") }]
+    }
+
+    def "getOverview should return transactions when only the customer is unavailable"() {
+        given:
+        customerService.getCustomerById(1L) >> { throw new RuntimeException("ms-customer unavailable") }
+        transactionService.getTransactionsByCustomerId(*_) >> []
+
+        when:
+        def overview = overviewService.getOverview(1L)
+
+        then:
+        overview.customer == null
+        overview.transactions == []
+        overview.unavailable == [CustomerOverviewService.CUSTOMER]
+    }
+
+    def "a timed out overview should not fail a plain read coalesced on its customer call"() {
+        given:
+        def meterRegistry = new SimpleMeterRegistry()
+        def singleFlight = new SingleFlight(meterRegistry)
+        def responseCache = new ResponseCache(meterRegistry, 100, Duration.ofMinutes(1), 100, Duration.ofMinutes(1))
+        CustomerClient customerClient = Mock()
+        def coalescingService = new CustomerService(customerClient, Mock(CustomerBulkClient), responseCache, singleFlight)
+        def slowOverviewService = new CustomerOverviewService(coalescingService, transactionService,
+                Duration.ofMillis(200), Duration.ofMillis(500), 20)
+        def called = new CountDownLatch(1)
+        customerClient.getCustomer(1L) >> {
+            called.countDown()
+            Thread.sleep(600)
+            return customer()
+        }
+        transactionService.getTransactionsByCustomerId(*_) >> []
+
+        when:
+        def overview = CompletableFuture.supplyAsync { slowOverviewService.getOverview(1L) }
+        called.await(5, TimeUnit.SECONDS)
+        def plainRead = CompletableFuture.supplyAsync { coalescingService.getCustomerById(1L) }
+
+        then:
+        overview.get(5, TimeUnit.SECONDS).unavailable == [CustomerOverviewService.CUSTOMER]
+        plainRead.get(5, TimeUnit.SECONDS).id == 1L
+        meterRegistry.get("singleflight.calls").tag("call", "customer").tag("result", "coalesced").counter().count() == 1
+
+        cleanup:
+        slowOverviewService.shutdown()
+    }
+
+    def "getOverview should fail for an unknown customer or when nothing is available"() {
+        given:
+        customerService.getCustomerById(1L) >> { throw customerFailure }
+        transactionService.getTransactionsByCustomerId(*_) >> transactions
+
+        when:
+        overviewService.getOverview(1L)
+
+        then:
+        thrown(expected)
+
+        where:
+        customerFailure                  | transactions                                  || expected
+        notFound()                       | { [] }                                        || FeignException.NotFound
+        new IllegalStateException("504") | { throw new RuntimeException("unavailable") } || IllegalStateException
+    }
+
+    private static CustomerResponseDto customer() {
+        CustomerResponseDto.builder().id(1L).balance(BigDecimal.TEN).build()
+    }
+
+    private static FeignException notFound() {
+        def request = Request.create(Request.HttpMethod.GET, "/api/v1/customers/1", [:], null, StandardCharsets.UTF_8, null)
+        FeignException.errorStatus("getCustomer", feign.Response.builder()
+                .status(404)
+                .request(request)
+                .headers([:])
+                .build())
+    }
+}
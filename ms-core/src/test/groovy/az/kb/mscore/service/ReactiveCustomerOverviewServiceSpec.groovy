@@ -0,0 +1,86 @@
+package az.kb.mscore.service
+
+import az.kb.mscore.model.CustomerResponseDto
+import az.kb.mscore.model.TransactionResponse
+import org.springframework.http.HttpHeaders
+import org.springframework.web.reactive.function.client.WebClientResponseException
+import reactor.core.publisher.Mono
+import spock.lang.Specification
+
+import java.time.Duration
+
+class ReactiveCustomerOverviewServiceSpec extends Specification {
+
+    ReactiveCustomerService customerService = Mock()
+    ReactiveTransactionService transactionService = Mock()
+    ReactiveCustomerOverviewService overviewService = new ReactiveCustomerOverviewService(customerService, transactionService,
+            Duration.ofSeconds(1), Duration.ofSeconds(1), 20)
+
+    def "getOverview should fetch both parts at the same time"() {
+        given:
+        customerService.getCustomerById(1L) >> Mono.just(customer()).delayElement(Duration.ofMillis(500))
+        transactionService.getTransactionsByCustomerId(1L, null, null, 0, 20) >>
+                Mono.just([TransactionResponse.builder().id(5L).customerId(1L).build()]).delayElement(Duration.ofMillis(500))
+
+        when:
+        long startedAt = System.nanoTime()
+        def overview = overviewService.getOverview(1L).block()
+        long elapsedMillis = (System.nanoTime() - startedAt).intdiv(1_000_000)
+
+        then:
+        overview.customer.id == 1L
+        overview.transactions*.id == [5L]
+        overview.unavailable.isEmpty()
+        elapsedMillis < 1000
+    }
+
+    def "getOverview should leave out a part that is too slow or fails"() {
+        given:
+        customerService.getCustomerById(1L) >> Mono.just(customer())
+        transactionService.getTransactionsByCustomerId(*_) >> failure
+
+        when:
+        def overview = overviewService.getOverview(1L).block()
+
+        then:
+        overview.customer.id == 1L
+        overview.transactions == null
+        overview.unavailable == [CustomerOverviewService.TRANSACTIONS]
+
+        where:
+        failure << [Mono.just([]).delayElement(Duration.ofSeconds(2)), Mono.error(new RuntimeException("ms-transaction unavailable"))]
+    }
+
+    def "getOverview should fail for a customer that does not exist and cancel the transactions call"() {
+        given:
+        boolean cancelled = false
+        customerService.getCustomerById(1L) >> Mono.error(
+                WebClientResponseException.create(404, "Not Found", new HttpHeaders(), new byte[0], null))
+        transactionService.getTransactionsByCustomerId(*_) >>
+                Mono.just([]).delayElement(Duration.ofSeconds(2)).doOnCancel { cancelled = true }
+
+        when:
+        overviewService.getOverview(1L).block()
+
+        then:
+        thrown(WebClientResponseException.NotFound)
+        cancelled
+    }
+
+    def "getOverview should fail with the customer error when neither part is available"() {
+        given:
+        customerService.getCustomerById(1L) >> Mono.error(new IllegalStateException("ms-customer unavailable"))
+        transactionService.getTransactionsByCustomerId(*_) >> Mono.error(new RuntimeException("ms-transaction unavailable"))
+
+        when:
+        overviewService.getOverview(1L).block()
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "ms-customer unavailable"
+    }
+
+    private static CustomerResponseDto customer() {
+        CustomerResponseDto.builder().id(1L).build()
+    }
+}
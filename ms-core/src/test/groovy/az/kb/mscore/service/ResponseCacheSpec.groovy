@@ -0,0 +1,218 @@
+package az.kb.mscore.service
+
+import az.kb.mscore.client.CustomerBulkClient
+import az.kb.mscore.client.CustomerClient
+import az.kb.mscore.client.TransactionClient
+import az.kb.mscore.enums.TransactionStatus
+import az.kb.mscore.model.CustomerResponseDto
+import az.kb.mscore.model.TransactionRequest
+import az.kb.mscore.model.TransactionResponse
+import az.kb.mscore.util.SingleFlight
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ResponseCacheSpec extends Specification {
+
+    CustomerClient customerClient = Mock()
+    TransactionClient transactionClient = Mock()
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    ResponseCache responseCache = new ResponseCache(meterRegistry, 100, Duration.ofMinutes(1), 100, Duration.ofMinutes(1))
+    SingleFlight singleFlight = new SingleFlight(meterRegistry)
+    CustomerService customerService = new CustomerService(customerClient, Mock(CustomerBulkClient), responseCache, singleFlight)
+    TransactionService transactionService = new TransactionService(transactionClient, responseCache, singleFlight)
+
+    def "repeated customer reads should be answered from the cache and counted as hits"() {
+        when:
+        3.times { customerService.getCustomerById(1L) }
+
+        then:
+        1 * customerClient.getCustomer(1L) >> customer(1L, "100.00")
+        meterRegistry.get("cache.hit.ratio").tag("cache", "customers").gauge().value() == 2 / 3d
+    }
+
+    def "top-ups, purchases and refunds should drop the cached customer"() {
+        given:
+        customerClient.getCustomer(1L) >>> [customer(1L, "100.00"), customer(1L, "150.00")]
+        customerService.getCustomerById(1L)
+
+        when:
+        call(transactionService, TransactionRequest.builder().customerId(1L).amount(50.00).build())
+        def result = customerService.getCustomerById(1L)
+
+        then:
+        result.balance == new BigDecimal("150.00")
+
+        where:
+        call << [{ service, request -> service.doTopup(null, request) },
+                 { service, request -> service.doPurchase("key-1", request) },
+                 { service, request -> service.doRefund(null, request) }]
+    }
+
+    def "a failed purchase should still drop the cached customer"() {
+        given:
+        customerClient.getCustomer(1L) >>> [customer(1L, "100.00"), customer(1L, "60.00")]
+        transactionClient.doPurchase(*_) >> { throw new RuntimeException("read timed out") }
+        customerService.getCustomerById(1L)
+
+        when:
+        transactionService.doPurchase(null, TransactionRequest.builder().customerId(1L).amount(40.00).build())
+
+        then:
+        thrown(RuntimeException)
+        customerService.getCustomerById(1L).balance == new BigDecimal("60.00")
+    }
+
+    def "a purchase accepted as pending should keep the customer out of the cache until it settles"() {
+        given:
+        customerClient.getCustomer(1L) >>> [customer(1L, "100.00"), customer(1L, "100.00"), customer(1L, "60.00"), customer(1L, "60.00")]
+        transactionClient.doPurchase(*_) >> transaction(5L, TransactionStatus.PENDING)
+        customerService.getCustomerById(1L)
+
+        when:
+        transactionService.doPurchase("key-1", TransactionRequest.builder().customerId(1L).amount(40.00).build())
+        def whilePending = (1..2).collect { customerService.getCustomerById(1L).balance }
+
+        then:
+        whilePending == [new BigDecimal("100.00"), new BigDecimal("60.00")]
+
+        when:
+        transactionService.getTransactionById(5L)
+        def settled = (1..2).collect { customerService.getCustomerById(1L).balance }
+
+        then:
+        1 * transactionClient.getTransactionById(5L) >> transaction(5L, TransactionStatus.SUCCESS)
+        settled == [new BigDecimal("60.00"), new BigDecimal("60.00")]
+    }
+
+    def "only transactions in a final status should be cached"() {
+        when:
+        2.times { transactionService.getTransactionById(1L) }
+
+        then:
+        loads * transactionClient.getTransactionById(1L) >> transaction(1L, status)
+
+        where:
+        status                       || loads
+        TransactionStatus.SUCCESS    || 1
+        TransactionStatus.FAILED     || 1
+        TransactionStatus.PENDING    || 2
+        TransactionStatus.AUTHORIZED || 2
+    }
+
+    def "a refund should drop the refunded transaction and cache the refund"() {
+        given:
+        transactionClient.getTransactionById(1L) >> transaction(1L, TransactionStatus.SUCCESS)
+        transactionService.getTransactionById(1L)
+
+        when:
+        transactionService.doRefund(null, TransactionRequest.builder().customerId(1L).relatedTransactionId(1L).build())
+        transactionService.getTransactionById(1L)
+        transactionService.getTransactionById(2L)
+
+        then:
+        1 * transactionClient.doRefund(*_) >> transaction(2L, TransactionStatus.SUCCESS)
+        1 * transactionClient.getTransactionById(1L) >> transaction(1L, TransactionStatus.SUCCESS)
+        0 * transactionClient.getTransactionById(2L)
+    }
+
+    def "an eviction racing a transaction load should not be overwritten by the load"() {
+        given:
+        def loading = new CountDownLatch(1)
+        def released = new CountDownLatch(1)
+        transactionClient.getTransactionById(1L) >> {
+            loading.countDown()
+            released.await(5, TimeUnit.SECONDS)
+            return transaction(1L, TransactionStatus.SUCCESS)
+        }
+
+        when:
+        def read = CompletableFuture.supplyAsync { transactionService.getTransactionById(1L) }
+        loading.await(5, TimeUnit.SECONDS)
+        def eviction = CompletableFuture.runAsync { responseCache.evictTransaction(1L) }
+        released.countDown()
+        read.get(5, TimeUnit.SECONDS)
+        eviction.get(5, TimeUnit.SECONDS)
+        transactionService.getTransactionById(1L)
+
+        then:
+        meterRegistry.get("cache.gets").tag("cache", "transactions").tag("result", "miss").functionCounter().count() == 2
+    }
+
+    def "concurrent reads of a transaction should wait for one load instead of queueing behind it"() {
+        given:
+        def released = new CountDownLatch(1)
+
+        when:
+        def reads = (1..5).collect { CompletableFuture.supplyAsync { transactionService.getTransactionById(1L) } }
+        def waiting = awaitCount(4) { meterRegistry.get("cache.gets").tag("cache", "transactions").tag("result", "hit").functionCounter().count() }
+        released.countDown()
+        def results = reads*.get(5, TimeUnit.SECONDS)
+
+        then:
+        1 * transactionClient.getTransactionById(1L) >> {
+            released.await(5, TimeUnit.SECONDS)
+            return transaction(1L, TransactionStatus.PENDING)
+        }
+        waiting
+        results*.id == [1L] * 5
+    }
+
+    def "a read should not wait for a newer load of the same transaction"() {
+        given:
+        def firstLoading = new CountDownLatch(1)
+        def firstReleased = new CountDownLatch(1)
+        def secondLoading = new CountDownLatch(1)
+        def secondReleased = new CountDownLatch(1)
+        def loads = new AtomicInteger()
+        transactionClient.getTransactionById(1L) >> {
+            if (loads.incrementAndGet() == 1) {
+                firstLoading.countDown()
+                firstReleased.await(5, TimeUnit.SECONDS)
+            } else {
+                secondLoading.countDown()
+                secondReleased.await(5, TimeUnit.SECONDS)
+            }
+            return transaction(1L, TransactionStatus.PENDING)
+        }
+
+        when: "the first load is evicted and a second one starts before it completes"
+        def first = CompletableFuture.supplyAsync { transactionService.getTransactionById(1L) }
+        firstLoading.await(5, TimeUnit.SECONDS)
+        responseCache.evictTransaction(1L)
+        def second = CompletableFuture.supplyAsync { transactionService.getTransactionById(1L) }
+        secondLoading.await(5, TimeUnit.SECONDS)
+        firstReleased.countDown()
+
+        then:
+        first.get(1, TimeUnit.SECONDS).id == 1L
+
+        cleanup:
+        secondReleased.countDown()
+        second?.get(5, TimeUnit.SECONDS)
+    }
+
+    private static boolean awaitCount(double expected, Closure<Double> count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (count() < expected) {
+            if (System.nanoTime() > deadline) {
+                return false
+            }
+            Thread.sleep(10)
+        }
+        return true
+    }
+
+    private static CustomerResponseDto customer(Long id, String balance) {
+        CustomerResponseDto.builder().id(id).balance(new BigDecimal(balance)).build()
+    }
+
+    private static TransactionResponse transaction(Long id, TransactionStatus status) {
+        TransactionResponse.builder().id(id).customerId(1L).status(status).amount(BigDecimal.TEN).build()
+    }
+}
@@ -0,0 +1,122 @@
+package az.kb.mscore.util
+
+import az.kb.mscore.exception.RateLimitExceededException
+import az.kb.mscore.service.TransactionRateLimiter
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.mock.web.MockHttpServletRequest
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicLong
+
+class RateLimiterSpec extends Specification {
+
+    AtomicLong clock = new AtomicLong()
+    RateLimiter rateLimiter = new RateLimiter(10, 3, 1000, clock::get)
+
+    def "a full bucket should grant the burst and then reject with the time to the next permit"() {
+        expect:
+        (1..3).every { rateLimiter.tryAcquire(7L).isZero() }
+        rateLimiter.tryAcquire(7L) == Duration.ofMillis(100)
+
+        when:
+        clock.addAndGet(Duration.ofMillis(40).toNanos())
+
+        then:
+        rateLimiter.tryAcquire(7L) == Duration.ofMillis(60)
+    }
+
+    def "permits should refill at the configured rate"() {
+        given:
+        3.times { rateLimiter.tryAcquire(7L) }
+
+        when:
+        clock.addAndGet(Duration.ofMillis(200).toNanos())
+
+        then:
+        rateLimiter.tryAcquire(7L).isZero()
+        rateLimiter.tryAcquire(7L).isZero()
+        !rateLimiter.tryAcquire(7L).isZero()
+    }
+
+    def "keys should have their own buckets"() {
+        given:
+        3.times { rateLimiter.tryAcquire(7L) }
+
+        expect:
+        !rateLimiter.tryAcquire(7L).isZero()
+        rateLimiter.tryAcquire(8L).isZero()
+    }
+
+    def "an idle bucket should be evicted once it would be full again"() {
+        given:
+        3.times { rateLimiter.tryAcquire(7L) }
+
+        when:
+        clock.addAndGet(Duration.ofMillis(300).toNanos())
+
+        then:
+        (1..3).every { rateLimiter.tryAcquire(7L).isZero() }
+        !rateLimiter.tryAcquire(7L).isZero()
+    }
+
+    def "concurrent callers should never be granted more than the burst"() {
+        given:
+        def limiter = new RateLimiter(0.001, 100, 1000)
+        def executor = Executors.newFixedThreadPool(16)
+
+        when:
+        def granted = executor.invokeAll((1..1000).collect {
+            { -> limiter.tryAcquire(7L).isZero() } as Callable<Boolean>
+        }).count { it.get() }
+
+        then:
+        granted == 100
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "a released permit should be granted again"() {
+        given:
+        3.times { rateLimiter.tryAcquire(7L) }
+
+        when:
+        rateLimiter.release(7L)
+        rateLimiter.release(8L)
+
+        then:
+        rateLimiter.tryAcquire(7L).isZero()
+        !rateLimiter.tryAcquire(7L).isZero()
+        (1..3).every { rateLimiter.tryAcquire(8L).isZero() }
+        !rateLimiter.tryAcquire(8L).isZero()
+    }
+
+    def "transactions should be limited per caller before the customer"() {
+        given:
+        def meterRegistry = new SimpleMeterRegistry()
+        def limiter = new TransactionRateLimiter(meterRegistry, true, 0.001, 2, 0.001, 3, 1000)
+        def request = new MockHttpServletRequest()
+        request.remoteAddr = "10.0.0.1"
+
+        when:
+        2.times { limiter.acquire(7L, request) }
+        limiter.acquire(7L, request)
+
+        then:
+        def customerLimited = thrown(RateLimitExceededException)
+        customerLimited.retryAfter > Duration.ZERO
+        meterRegistry.get("ratelimit.rejected").tag("limit", "customer").counter().count() == 1
+
+        when:
+        limiter.acquire(8L, request)
+        limiter.acquire(8L, request)
+
+        then:
+        def callerLimited = thrown(RateLimitExceededException)
+        callerLimited.message == "Too many transactions from this caller"
+        meterRegistry.get("ratelimit.rejected").tag("limit", "caller").counter().count() == 1
+    }
+}
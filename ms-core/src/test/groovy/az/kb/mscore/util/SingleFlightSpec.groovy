@@ -0,0 +1,191 @@
+package az.kb.mscore.util
+
+import az.kb.mscore.client.CustomerBulkClient
+import az.kb.mscore.client.CustomerClient
+import az.kb.mscore.client.TransactionClient
+import az.kb.mscore.enums.TransactionStatus
+import az.kb.mscore.model.CustomerResponseDto
+import az.kb.mscore.model.TransactionRequest
+import az.kb.mscore.model.TransactionResponse
+import az.kb.mscore.service.CustomerService
+import az.kb.mscore.service.ResponseCache
+import az.kb.mscore.service.TransactionService
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class SingleFlightSpec extends Specification {
+
+    static final int BURST = 50
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    SingleFlight singleFlight = new SingleFlight(meterRegistry)
+    CustomerClient customerClient = Mock()
+    TransactionClient transactionClient = Mock()
+    ResponseCache responseCache = new ResponseCache(meterRegistry, 100, Duration.ofMinutes(1), 100, Duration.ofMinutes(1))
+    CustomerService customerService = new CustomerService(customerClient, Mock(CustomerBulkClient), responseCache, singleFlight)
+    TransactionService transactionService = new TransactionService(transactionClient, responseCache, singleFlight)
+
+    def "a burst of identical history reads should make one downstream call and share its result"() {
+        given:
+        def released = new CountDownLatch(1)
+        def history = [TransactionResponse.builder().id(1L).customerId(7L).build()]
+
+        when:
+        def results = burst(released) { transactionService.getTransactionsByCustomerId(7L, null, null, 0, 20) }
+
+        then:
+        1 * transactionClient.getCustomerTransactions(7L, null, null, 0, 20) >> {
+            released.await(5, TimeUnit.SECONDS)
+            return history
+        }
+        results.every { it.is(history) }
+        calls("customer-transactions", "executed") == 1
+        calls("customer-transactions", "coalesced") == BURST - 1
+    }
+
+    def "a burst of reads of one customer should share the downstream error"() {
+        given:
+        def released = new CountDownLatch(1)
+
+        when:
+        def results = burst(released) {
+            try {
+                customerService.getCustomerById(1L)
+            } catch (IllegalStateException e) {
+                return e
+            }
+        }
+
+        then:
+        1 * customerClient.getCustomer(1L) >> {
+            released.await(5, TimeUnit.SECONDS)
+            throw new IllegalStateException("ms-customer unavailable")
+        }
+        results.toSet().size() == 1
+        results.first() instanceof IllegalStateException
+    }
+
+    def "calls that do not overlap or differ in key should not be coalesced"() {
+        when:
+        customerService.getCustomerById(1L)
+        customerService.getCustomerById(2L)
+        transactionService.getTransactionsByCustomerId(7L, null, null, 0, 20)
+        transactionService.getTransactionsByCustomerId(7L, null, null, 0, 20)
+
+        then:
+        1 * customerClient.getCustomer(1L) >> CustomerResponseDto.builder().id(1L).build()
+        1 * customerClient.getCustomer(2L) >> CustomerResponseDto.builder().id(2L).build()
+        2 * transactionClient.getCustomerTransactions(7L, null, null, 0, 20) >> []
+        calls("customer-transactions", "coalesced") == 0
+    }
+
+    def "async callers of a call in flight should share its result and error without cancelling it"() {
+        given:
+        def call = new CompletableFuture<String>()
+
+        when:
+        def first = singleFlight.executeAsync("lookup", 1L) { call }
+        def second = singleFlight.executeAsync("lookup", 1L) { throw new AssertionError("coalesced caller ran the call") }
+        second.cancel(true)
+        call.complete("done")
+
+        then:
+        first.join() == "done"
+        !call.isCancelled()
+        calls("lookup", "executed") == 1
+        calls("lookup", "coalesced") == 1
+
+        when:
+        def failed = singleFlight.executeAsync("lookup", 1L) { CompletableFuture.failedFuture(new IllegalStateException("down")) }
+        failed.join()
+
+        then:
+        def e = thrown(CompletionException)
+        e.cause instanceof IllegalStateException
+        calls("lookup", "executed") == 2
+    }
+
+    def "a read after a purchase should not join a customer read that started before it"() {
+        given:
+        def released = new CountDownLatch(1)
+        def stale = CustomerResponseDto.builder().id(1L).balance(100G).build()
+        def fresh = CustomerResponseDto.builder().id(1L).balance(60G).build()
+        def request = new TransactionRequest(customerId: 1L, amount: 40G)
+        def pool = Executors.newSingleThreadExecutor()
+
+        when:
+        def before = pool.submit({ customerService.getCustomerById(1L) } as Callable)
+        awaitCalls("executed", 1)
+        transactionService.doPurchase("key-1", request)
+        def after = customerService.getCustomerById(1L)
+        released.countDown()
+
+        then:
+        1 * customerClient.getCustomer(1L) >> {
+            released.await(5, TimeUnit.SECONDS)
+            return stale
+        }
+        1 * transactionClient.doPurchase("key-1", request) >> TransactionResponse.builder().id(9L).customerId(1L).status(TransactionStatus.SUCCESS).build()
+        1 * customerClient.getCustomer(1L) >> fresh
+        after.is(fresh)
+        before.get(5, TimeUnit.SECONDS).is(stale)
+        calls("customer", "coalesced") == 0
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    /**
+     * Starts {@link #BURST} callers together and lets the downstream answer once all but the
+     * first have joined its call.
+     */
+    private List<Object> burst(CountDownLatch released, Closure call) {
+        def pool = Executors.newFixedThreadPool(BURST)
+        def ready = new CountDownLatch(BURST)
+        try {
+            def futures = (1..BURST).collect {
+                pool.submit({
+                    ready.countDown()
+                    ready.await()
+                    call.call()
+                } as Callable)
+            }
+            ready.await(5, TimeUnit.SECONDS)
+            awaitCalls("coalesced", BURST - 1)
+            released.countDown()
+            return futures.collect {
+                try {
+                    it.get(5, TimeUnit.SECONDS)
+                } catch (ExecutionException e) {
+                    e.cause
+                }
+            }
+        } finally {
+            pool.shutdownNow()
+        }
+    }
+
+    /**
+     * Waits until {@code count} callers of any call have been counted with {@code result}.
+     */
+    private void awaitCalls(String result, int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (meterRegistry.find("singleflight.calls").tag("result", result).counters().sum { it.count() } < count) {
+            assert System.nanoTime() < deadline: "fewer than $count callers counted as $result"
+            Thread.sleep(1)
+        }
+    }
+
+    private double calls(String name, String result) {
+        meterRegistry.get("singleflight.calls").tag("call", name).tag("result", result).counter().count()
+    }
+}
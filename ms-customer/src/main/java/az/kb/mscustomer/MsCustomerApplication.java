@@ -2,8 +2,10 @@ package az.kb.mscustomer;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MsCustomerApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,114 @@
+package az.kb.mscustomer.config;
+
+import az.kb.mscustomer.service.CustomerCache;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the customer caches of several replicas coherent through Postgres LISTEN/NOTIFY. Every
+ * write sends {@code <node>:<customer id>} on the {@code customer_cache} channel from inside its
+ * transaction, so the notification is delivered only if the write commits; every other replica
+ * drops that id from its cache. The listener holds one pooled connection for as long as it
+ * runs. If that connection is lost, notifications may have been missed, so the whole cache is
+ * cleared before listening again.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "customer.cache.cluster-invalidation", havingValue = "true")
+public class CustomerCacheInvalidationListener implements SmartLifecycle {
+
+    private static final String CHANNEL = "customer_cache";
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerCache customerCache;
+    private final String nodeId = UUID.randomUUID().toString();
+    private volatile Thread listener;
+
+    public CustomerCacheInvalidationListener(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                             CustomerCache customerCache) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.customerCache = customerCache;
+        customerCache.onWrite(this::publish);
+    }
+
+    private void publish(long customerId) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", resultSet -> null, CHANNEL, nodeId + ":" + customerId);
+    }
+
+    @Override
+    public void start() {
+        listener = Thread.ofPlatform().name("customer-cache-listener").daemon().start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = listener;
+        listener = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return listener != null;
+    }
+
+    private void listen() {
+        while (listener != null) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (listener != null) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (listener == null) {
+                    return;
+                }
+                log.warn("Customer cache listener lost its connection, clearing the cache: {}", e.getMessage());
+                customerCache.invalidateAll();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        try {
+            customerCache.invalidate(Long.valueOf(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed customer cache notification {}", payload);
+        }
+    }
+}
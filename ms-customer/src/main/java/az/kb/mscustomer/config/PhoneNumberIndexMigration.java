@@ -0,0 +1,113 @@
+package az.kb.mscustomer.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Run-once migration that brings phone numbers written before they were normalized (see
+ * {@link az.kb.mscustomer.util.PhoneNumberUtil}) to the stored format and then builds the unique
+ * phone number index. It runs in the background after startup, on one replica at a time under
+ * an advisory lock, and is recorded in {@code schema_migrations} once done. The index is built
+ * CONCURRENTLY so writes go on meanwhile. Duplicates left after normalization are logged and
+ * the index is not built; the service keeps running on its own phone number checks, and the
+ * migration is tried again on the next start once they have been resolved by hand.
+ */
+@Slf4j
+@Component
+public class PhoneNumberIndexMigration {
+
+    static final String VERSION = "customers-phone-number-unique";
+    static final String INDEX = "uk_customers_phone_number";
+
+    private static final int REPORTED_DUPLICATES = 100;
+
+    private final DataSource dataSource;
+    private final boolean onStartup;
+
+    public PhoneNumberIndexMigration(DataSource dataSource,
+                                     @Value("${customer.phone-number-index.migrate-on-startup:true}") boolean onStartup) {
+        this.dataSource = dataSource;
+        this.onStartup = onStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (onStartup) {
+            Thread.ofPlatform().name("phone-number-index-migration").daemon().start(this::migrate);
+        }
+    }
+
+    /**
+     * Applies the migration unless it has been already. Returns whether it is applied; false when
+     * another replica holds the lock, duplicates block the index or the database failed.
+     */
+    public boolean migrate() {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations " +
+                    "(version varchar(100) PRIMARY KEY, applied_at timestamp NOT NULL)");
+            if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_lock(hashtext(?))", Boolean.class, VERSION))) {
+                log.info("Migration {} is running on another replica", VERSION);
+                return false;
+            }
+            try {
+                return apply(jdbcTemplate);
+            } finally {
+                jdbcTemplate.queryForObject("SELECT pg_advisory_unlock(hashtext(?))", Boolean.class, VERSION);
+            }
+        } catch (SQLException | DataAccessException e) {
+            log.error("Migration {} failed, phone numbers stay without a unique index", VERSION, e);
+            return false;
+        }
+    }
+
+    private boolean apply(JdbcTemplate jdbcTemplate) {
+        Integer applied = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM schema_migrations WHERE version = ?", Integer.class, VERSION);
+        if (applied != null && applied > 0) {
+            return true;
+        }
+
+        int normalized = jdbcTemplate.update("UPDATE customers SET phone_number = CASE " +
+                "WHEN btrim(phone_number) LIKE '+%' THEN '+' || regexp_replace(phone_number, '[^0-9]', '', 'g') " +
+                "WHEN regexp_replace(phone_number, '[^0-9]', '', 'g') ~ '^00[0-9]' " +
+                "THEN '+' || substr(regexp_replace(phone_number, '[^0-9]', '', 'g'), 3) " +
+                "ELSE nullif(regexp_replace(phone_number, '[^0-9]', '', 'g'), '') END " +
+                "WHERE phone_number !~ '^\\+?[0-9]+$' OR phone_number ~ '^00[0-9]'");
+
+        List<String> duplicates = jdbcTemplate.queryForList("SELECT phone_number || ' (ids ' || " +
+                "string_agg(id::text, ', ' ORDER BY id) || ')' FROM customers WHERE phone_number IS NOT NULL " +
+                "GROUP BY phone_number HAVING count(*) > 1 ORDER BY phone_number LIMIT " + REPORTED_DUPLICATES, String.class);
+        if (!duplicates.isEmpty()) {
+            log.error("Migration {} normalized {} phone numbers but cannot build {} until these duplicates are " +
+                    "resolved (first {} shown): {}", VERSION, normalized, INDEX, REPORTED_DUPLICATES, duplicates);
+            return false;
+        }
+
+        // A CONCURRENTLY build that was interrupted leaves an invalid index behind.
+        List<Boolean> valid = jdbcTemplate.queryForList("SELECT i.indisvalid FROM pg_index i " +
+                "JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?", Boolean.class, INDEX);
+        if (valid.contains(Boolean.FALSE)) {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY " + INDEX);
+        }
+        if (!valid.contains(Boolean.TRUE)) {
+            jdbcTemplate.execute("CREATE UNIQUE INDEX CONCURRENTLY " + INDEX + " ON customers (phone_number)");
+        }
+        jdbcTemplate.update("INSERT INTO schema_migrations (version, applied_at) VALUES (?, localtimestamp)", VERSION);
+        log.info("Migration {} applied: {} phone numbers normalized, {} built", VERSION, normalized, INDEX);
+        return true;
+    }
+}
@@ -5,4 +5,27 @@ public class ErrorMessage {
     public static final String CUSTOMER_NOT_FOUND = "Customer not found with given id";
     public static final String INSUFFICIENT_BALANCE_MESSAGE = "Insufficient balance: balance cannot be negative";
     public static final String INTERNAL_SERVER_ERROR = "Internal server error";
+    public static final String BATCH_TOO_LARGE = "Batch size exceeds the limit of";
+    public static final String INVALID_BALANCE_UPDATE = "Customer id and amount are required";
+    public static final String DUPLICATE_OPERATION_ID = "Operation id appears more than once in the batch";
+    public static final String STRIPES_OUT_OF_RANGE = "Stripe count must be between 1 and";
+    public static final String BALANCE_OPERATION_VOIDED = "Balance operation was voided and can no longer be applied:";
+    public static final String CUSTOMER_NOT_FOUND_BY_PHONE = "Customer not found with given phone number";
+    public static final String INVALID_PHONE_NUMBER = "Phone number must contain digits";
+    public static final String PHONE_NUMBER_TAKEN = "Phone number is already used by another customer:";
+    public static final String SEARCH_PREFIX_REQUIRED = "Surname or name prefix is required";
+    public static final String BULK_TOO_LARGE = "Upload exceeds the limit of rows:";
+    public static final String BULK_ROW_INCOMPLETE = "Name, surname and phone number are required";
+    public static final String BULK_CSV_HEADER = "CSV header must name the columns name, surname, birthDate and phoneNumber";
+    public static final String BULK_CSV_COLUMNS = "Row does not have as many columns as the header";
+    public static final String BULK_CHUNK_CONFLICT = "Row was not created: phone numbers in its chunk kept conflicting with concurrent creates";
+    public static final String BULK_INVALID_BIRTH_DATE = "Birth date must be formatted as dd.MM.yyyy";
+    public static final String HOLD_NOT_FOUND = "Hold not found with given id";
+    public static final String HOLD_AMOUNT_NOT_POSITIVE = "Hold amount must be positive";
+    public static final String HOLD_TTL_OUT_OF_RANGE = "Hold ttl in seconds must be between 1 and";
+    public static final String HOLD_EXCEEDS_AMOUNT = "Capture amount cannot be greater than the held amount";
+    public static final String HOLD_NOT_ACTIVE = "Hold is no longer active:";
+    public static final String HOLD_ID_TAKEN = "Hold id is already used for another customer:";
+    public static final String HOLDS_ON_STRIPED_BALANCE = "Holds cannot be taken on a striped balance";
+    public static final String STRIPES_WITH_ACTIVE_HOLDS = "Balance with active holds cannot be striped";
 }
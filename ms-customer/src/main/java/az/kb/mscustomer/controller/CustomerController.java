@@ -1,11 +1,25 @@
 package az.kb.mscustomer.controller;
 
 
+import az.kb.mscustomer.entity.BalanceHold;
+import az.kb.mscustomer.entity.BalanceOperation;
 import az.kb.mscustomer.entity.Customer;
+import az.kb.mscustomer.model.BalanceUpdate;
+import az.kb.mscustomer.model.BalanceUpdateResult;
+import az.kb.mscustomer.model.BulkCreateResult;
+import az.kb.mscustomer.model.CaptureHoldRequest;
 import az.kb.mscustomer.model.CreateCustomerRequest;
+import az.kb.mscustomer.model.CustomerBalance;
+import az.kb.mscustomer.model.HistoricalBalance;
+import az.kb.mscustomer.model.HoldRequest;
 import az.kb.mscustomer.model.UpdateBalanceRequest;
+import az.kb.mscustomer.service.BalanceHistoryService;
+import az.kb.mscustomer.service.BulkCustomerService;
 import az.kb.mscustomer.service.CustomerService;
+import az.kb.mscustomer.service.HoldService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,28 +28,109 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/customers")
 @RequiredArgsConstructor
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final BalanceHistoryService balanceHistoryService;
+    private final HoldService holdService;
+    private final BulkCustomerService bulkCustomerService;
 
     @PostMapping
     public ResponseEntity<Customer> createCustomer(@RequestBody CreateCustomerRequest request) {
         return ResponseEntity.ok(customerService.createCustomer(request));
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkCreateResult> createCustomersFromJson(InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkCustomerService.createFromJson(body));
+    }
+
+    @PostMapping(value = "/bulk", consumes = BulkCustomerService.TEXT_CSV)
+    public ResponseEntity<BulkCreateResult> createCustomersFromCsv(InputStream body) throws IOException {
+        return ResponseEntity.ok(bulkCustomerService.createFromCsv(body));
+    }
+
+    @GetMapping("/balances")
+    public ResponseEntity<List<CustomerBalance>> getBalances(@RequestParam(required = false) Long after,
+                                                             @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(customerService.getBalances(after, limit));
+    }
+
+    @PutMapping("/balances")
+    public ResponseEntity<List<BalanceUpdateResult>> updateBalances(@RequestBody List<BalanceUpdate> updates) {
+        return ResponseEntity.ok(customerService.updateBalances(updates));
+    }
+
+    @GetMapping("/phone/{phoneNumber}")
+    public ResponseEntity<Customer> getCustomerByPhoneNumber(@PathVariable String phoneNumber) {
+        return ResponseEntity.ok(customerService.getCustomerByPhoneNumber(phoneNumber));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<Customer>> searchCustomers(@RequestParam(required = false) String surname,
+                                                          @RequestParam(required = false) String name,
+                                                          @RequestParam(defaultValue = "0") int page,
+                                                          @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(customerService.searchCustomers(surname, name, page, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Customer> getCustomer(@PathVariable Long id) {
         return ResponseEntity.ok(customerService.getCustomer(id));
     }
 
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<HistoricalBalance> getBalance(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
+        return ResponseEntity.ok(balanceHistoryService.getBalance(id, asOf));
+    }
+
     @PutMapping("/{id}/balance")
     public ResponseEntity<Customer> updateBalance(@PathVariable Long id, @RequestBody UpdateBalanceRequest request) {
-        return ResponseEntity.ok(customerService.updateBalance(id, request.getAmount()));
+        return ResponseEntity.ok(customerService.updateBalance(id, request.getAmount(), request.getOperationId()));
+    }
+
+    @PutMapping("/{id}/stripes")
+    public ResponseEntity<Customer> configureStripes(@PathVariable Long id, @RequestParam int count) {
+        return ResponseEntity.ok(customerService.configureStripes(id, count));
+    }
+
+    @PostMapping("/{id}/holds")
+    public ResponseEntity<BalanceHold> reserveHold(@PathVariable Long id, @RequestBody HoldRequest request) {
+        return ResponseEntity.ok(holdService.reserve(id, request));
+    }
+
+    @GetMapping("/holds/{holdId}")
+    public ResponseEntity<BalanceHold> getHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(holdService.getHold(holdId));
+    }
+
+    @PostMapping("/holds/{holdId}/capture")
+    public ResponseEntity<BalanceHold> captureHold(@PathVariable String holdId,
+                                                   @RequestBody(required = false) CaptureHoldRequest request) {
+        return ResponseEntity.ok(holdService.capture(holdId, request != null ? request.getAmount() : null));
+    }
+
+    @PostMapping("/holds/{holdId}/release")
+    public ResponseEntity<BalanceHold> releaseHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(holdService.release(holdId));
+    }
+
+    @PostMapping("/balance-operations/{operationId}/resolve")
+    public ResponseEntity<BalanceOperation> resolveBalanceOperation(@PathVariable String operationId) {
+        return ResponseEntity.ok(customerService.resolveBalanceOperation(operationId));
     }
 
 }
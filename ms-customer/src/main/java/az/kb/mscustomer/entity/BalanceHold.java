@@ -0,0 +1,50 @@
+package az.kb.mscustomer.entity;
+
+import az.kb.mscustomer.enums.HoldStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Amount reserved against a customer's balance until it is captured, released or expires. While
+ * ACTIVE it counts towards {@link Customer#getHeldBalance()}, which debits cannot dip into. The
+ * (status, expires_at) index lets the expiry sweep read only the holds that are due.
+ */
+@Entity
+@Table(name = "balance_holds", indexes = {
+        @Index(name = "idx_balance_holds_status_expires", columnList = "status, expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceHold {
+    @Id
+    String holdId;
+    @Column(nullable = false)
+    Long customerId;
+    @Column(nullable = false)
+    BigDecimal amount;
+    BigDecimal capturedAmount;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    HoldStatus status;
+    @Column(nullable = false)
+    LocalDateTime expiresAt;
+    LocalDateTime createdAt;
+    LocalDateTime updatedAt;
+}
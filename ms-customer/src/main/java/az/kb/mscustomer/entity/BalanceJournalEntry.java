@@ -0,0 +1,45 @@
+package az.kb.mscustomer.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Append-only record of one balance change, written by the same statement as the change
+ * itself. Replaying a customer's entries on top of a {@link BalanceSnapshot} gives the balance
+ * at any point in time.
+ */
+@Entity
+@Table(name = "balance_journal", indexes = {
+        @Index(name = "idx_balance_journal_customer_created", columnList = "customer_id, created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+    @Column(nullable = false)
+    Long customerId;
+    @Column(nullable = false)
+    BigDecimal amount;
+    String operationId;
+    @Column(nullable = false)
+    LocalDateTime createdAt;
+}
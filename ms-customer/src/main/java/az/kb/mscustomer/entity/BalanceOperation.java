@@ -0,0 +1,41 @@
+package az.kb.mscustomer.entity;
+
+import az.kb.mscustomer.enums.BalanceOperationStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Record of a balance change made under a caller-supplied operation id. An APPLIED row is
+ * written in the same transaction as the balance change; a VOIDED row fences off an operation
+ * that was never applied so a late retry cannot apply it any more.
+ */
+@Entity
+@Table(name = "balance_operations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceOperation {
+    @Id
+    String operationId;
+    Long customerId;
+    BigDecimal amount;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    BalanceOperationStatus status;
+    LocalDateTime createdAt;
+}
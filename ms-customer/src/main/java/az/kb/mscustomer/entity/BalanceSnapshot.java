@@ -0,0 +1,51 @@
+package az.kb.mscustomer.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A customer's balance including every journal entry created at or before {@code takenAt}. The
+ * opening snapshot of a customer is taken at {@link #OPENING} and holds the balance the
+ * journal started from.
+ */
+@Entity
+@Table(name = "balance_snapshots")
+@IdClass(BalanceSnapshot.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceSnapshot {
+
+    public static final LocalDateTime OPENING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Id
+    Long customerId;
+    @Id
+    LocalDateTime takenAt;
+    @Column(nullable = false)
+    BigDecimal balance;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Key implements Serializable {
+        Long customerId;
+        LocalDateTime takenAt;
+    }
+}
@@ -0,0 +1,46 @@
+package az.kb.mscustomer.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * One slice of a striped customer's balance. The customer's balance is the sum of its stripes
+ * plus whatever is left on the customer row, so concurrent changes can lock different rows.
+ */
+@Entity
+@Table(name = "balance_stripes")
+@IdClass(BalanceStripe.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceStripe {
+    @Id
+    Long customerId;
+    @Id
+    Integer stripe;
+    @Column(nullable = false)
+    BigDecimal balance;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Key implements Serializable {
+        Long customerId;
+        Integer stripe;
+    }
+}
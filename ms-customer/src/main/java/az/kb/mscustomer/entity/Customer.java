@@ -1,6 +1,7 @@
 package az.kb.mscustomer.entity;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -13,6 +14,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -25,7 +27,7 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class Customer {
     @Id
@@ -35,13 +37,32 @@ public class Customer {
     String surname;
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd.MM.yyyy")
     LocalDate birthDate;
+    /**
+     * Normalized with {@link az.kb.mscustomer.util.PhoneNumberUtil}; unique across customers.
+     */
     String phoneNumber;
     @Column(nullable = false)
     BigDecimal balance;
+    /**
+     * Sum of the customer's ACTIVE {@link BalanceHold}s; debits may not take the balance below it.
+     */
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    BigDecimal heldBalance = BigDecimal.ZERO;
+    /**
+     * Number of {@link BalanceStripe} rows the balance is split over; null for a plain balance.
+     */
+    @JsonIgnore
+    Integer stripes;
     @CreationTimestamp
     LocalDateTime createdAt;
     @UpdateTimestamp
     LocalDateTime updatedAt;
 
+    @JsonIgnore
+    public boolean isStriped() {
+        return stripes != null && stripes > 1;
+    }
 }
 
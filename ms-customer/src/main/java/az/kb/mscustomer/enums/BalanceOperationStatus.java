@@ -0,0 +1,6 @@
+package az.kb.mscustomer.enums;
+
+public enum BalanceOperationStatus {
+    APPLIED,
+    VOIDED
+}
@@ -0,0 +1,7 @@
+package az.kb.mscustomer.exception;
+
+public class BalanceOperationConflictException extends RuntimeException {
+    public BalanceOperationConflictException(String message, String operationId) {
+        super(message + " " + operationId);
+    }
+}
@@ -48,6 +48,18 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(BalanceOperationConflictException.class)
+    public ResponseEntity<ErrorModel> handleBalanceOperationConflict(BalanceOperationConflictException ex) {
+        ErrorModel error = new ErrorModel(HttpStatus.CONFLICT, ex.getMessage());
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(HoldConflictException.class)
+    public ResponseEntity<ErrorModel> handleHoldConflict(HoldConflictException ex) {
+        ErrorModel error = new ErrorModel(HttpStatus.CONFLICT, ex.getMessage());
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorModel> handleIllegalArgument(IllegalArgumentException ex) {
         ErrorModel error = new ErrorModel(HttpStatus.BAD_REQUEST, ex.getMessage());
@@ -0,0 +1,7 @@
+package az.kb.mscustomer.exception;
+
+public class HoldConflictException extends RuntimeException {
+    public HoldConflictException(String message, String holdId) {
+        super(message + " " + holdId);
+    }
+}
@@ -4,4 +4,8 @@ public class NotFoundException extends RuntimeException {
     public NotFoundException(String message, Long id) {
         super(message + " " + id);
     }
+
+    public NotFoundException(String message, String id) {
+        super(message + " " + id);
+    }
 }
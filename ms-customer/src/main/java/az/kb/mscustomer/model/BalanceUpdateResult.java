@@ -0,0 +1,29 @@
+package az.kb.mscustomer.model;
+
+import az.kb.mscustomer.enums.BalanceUpdateStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of one item of a batch balance update; {@code balance} is the customer's balance once
+ * the whole batch has been applied.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceUpdateResult {
+    int index;
+    Long customerId;
+    String operationId;
+    BalanceUpdateStatus status;
+    BigDecimal balance;
+    String message;
+}
@@ -0,0 +1,24 @@
+package az.kb.mscustomer.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkCreateResult {
+    int created;
+    /**
+     * Id of the customer created from each row, in upload order; null for rejected rows.
+     */
+    List<Long> ids;
+    List<BulkCreateError> errors;
+}
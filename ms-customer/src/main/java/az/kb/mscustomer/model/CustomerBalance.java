@@ -0,0 +1,6 @@
+package az.kb.mscustomer.model;
+
+import java.math.BigDecimal;
+
+public record CustomerBalance(Long id, BigDecimal balance) {
+}
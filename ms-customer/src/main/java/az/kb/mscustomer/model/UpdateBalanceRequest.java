@@ -10,4 +10,5 @@ import java.math.BigDecimal;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class UpdateBalanceRequest {
     BigDecimal amount;
+    String operationId;
 }
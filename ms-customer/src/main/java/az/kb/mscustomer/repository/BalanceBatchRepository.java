@@ -0,0 +1,55 @@
+package az.kb.mscustomer.repository;
+
+import az.kb.mscustomer.model.BalanceUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JDBC batches for multi-customer balance updates: each statement list is sent in one round
+ * trip and executed in list order, and the returned counts line up with the list. Callers pass
+ * the updates sorted so that concurrent batches take their row locks in the same order.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BalanceBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Claims each update's operation id; a count of 0 means the id was already taken.
+     */
+    public int[] claimOperations(List<BalanceUpdate> updates) {
+        return jdbcTemplate.batchUpdate(
+                "INSERT INTO balance_operations (operation_id, customer_id, amount, status, created_at) " +
+                        "VALUES (?, ?, ?, 'APPLIED', now()) ON CONFLICT (operation_id) DO NOTHING",
+                updates, updates.size(), (statement, update) -> {
+                    statement.setString(1, update.getOperationId());
+                    statement.setLong(2, update.getCustomerId());
+                    statement.setBigDecimal(3, update.getAmount());
+                })[0];
+    }
+
+    /**
+     * Applies each amount with the same conditional update and journal entry as a single
+     * change; a count of 0 means the customer does not exist, the balance would have dropped
+     * below its held amount or is striped.
+     */
+    public int[] addToBalances(List<BalanceUpdate> updates) {
+        return jdbcTemplate.batchUpdate(
+                "WITH updated AS (" +
+                        "UPDATE customers SET balance = balance + ?, updated_at = now() " +
+                        "WHERE id = ? AND balance + ? >= held_balance AND COALESCE(stripes, 0) <= 1 RETURNING id) " +
+                        "INSERT INTO balance_journal (customer_id, amount, operation_id, created_at) " +
+                        "SELECT id, ?, ?, now() FROM updated",
+                updates, updates.size(), (statement, update) -> {
+                    statement.setBigDecimal(1, update.getAmount());
+                    statement.setLong(2, update.getCustomerId());
+                    statement.setBigDecimal(3, update.getAmount());
+                    statement.setBigDecimal(4, update.getAmount());
+                    statement.setString(5, update.getOperationId());
+                })[0];
+    }
+}
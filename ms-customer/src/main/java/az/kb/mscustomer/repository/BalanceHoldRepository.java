@@ -0,0 +1,48 @@
+package az.kb.mscustomer.repository;
+
+import az.kb.mscustomer.entity.BalanceHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface BalanceHoldRepository extends JpaRepository<BalanceHold, String> {
+
+    /**
+     * Inserts an ACTIVE hold expiring {@code ttlSeconds} from now on the database clock. Returns 0
+     * when the hold id is already taken; a concurrent claim of the same id waits on the primary
+     * key until the first one commits.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO balance_holds (hold_id, customer_id, amount, status, expires_at, created_at, updated_at) " +
+            "VALUES (:holdId, :customerId, :amount, 'ACTIVE', now() + :ttlSeconds * interval '1 second', now(), now()) " +
+            "ON CONFLICT (hold_id) DO NOTHING", nativeQuery = true)
+    int claim(@Param("holdId") String holdId,
+              @Param("customerId") Long customerId,
+              @Param("amount") BigDecimal amount,
+              @Param("ttlSeconds") long ttlSeconds);
+
+    /**
+     * Expires up to {@code limit} due holds, oldest expiry first, and gives their amounts back,
+     * all in one statement. Due holds are found along the (status, expires_at) index, holds being
+     * captured or released right now are skipped, and the customer rows are locked in id order
+     * like every other multi-customer change. Returns the ids of the customers whose held
+     * balance changed; empty once nothing is due.
+     */
+    @Transactional
+    @Query(value = "WITH due AS (" +
+            "SELECT hold_id FROM balance_holds WHERE status = 'ACTIVE' AND expires_at <= now() " +
+            "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED), expired AS (" +
+            "UPDATE balance_holds h SET status = 'EXPIRED', updated_at = now() FROM due " +
+            "WHERE h.hold_id = due.hold_id RETURNING h.customer_id, h.amount), totals AS (" +
+            "SELECT customer_id, SUM(amount) AS amount FROM expired GROUP BY customer_id), locked AS (" +
+            "SELECT c.id FROM customers c JOIN totals t ON t.customer_id = c.id ORDER BY c.id FOR UPDATE OF c) " +
+            "UPDATE customers c SET held_balance = c.held_balance - t.amount, updated_at = now() " +
+            "FROM totals t JOIN locked l ON l.id = t.customer_id WHERE c.id = t.customer_id " +
+            "RETURNING c.id", nativeQuery = true)
+    List<Long> expireDue(@Param("limit") int limit);
+}
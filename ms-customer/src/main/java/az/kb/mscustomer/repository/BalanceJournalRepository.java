@@ -0,0 +1,23 @@
+package az.kb.mscustomer.repository;
+
+import az.kb.mscustomer.entity.BalanceJournalEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+
+public interface BalanceJournalRepository extends JpaRepository<BalanceJournalEntry, Long> {
+
+    /**
+     * Appends an entry stamped with the database clock, like the entries written together with
+     * the balance updates.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO balance_journal (customer_id, amount, operation_id, created_at) " +
+            "VALUES (:customerId, :amount, :operationId, now())", nativeQuery = true)
+    void append(@Param("customerId") Long customerId,
+                @Param("amount") BigDecimal amount,
+                @Param("operationId") String operationId);
+}
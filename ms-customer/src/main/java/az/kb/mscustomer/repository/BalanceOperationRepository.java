@@ -0,0 +1,30 @@
+package az.kb.mscustomer.repository;
+
+import az.kb.mscustomer.entity.BalanceOperation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+
+public interface BalanceOperationRepository extends JpaRepository<BalanceOperation, String> {
+
+    /**
+     * Claims the operation id for a balance change. Returns 0 when the id is already taken; a
+     * concurrent claim of the same id waits on the primary key until the first one commits.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO balance_operations (operation_id, customer_id, amount, status, created_at) " +
+            "VALUES (:operationId, :customerId, :amount, 'APPLIED', now()) " +
+            "ON CONFLICT (operation_id) DO NOTHING", nativeQuery = true)
+    int claim(@Param("operationId") String operationId,
+              @Param("customerId") Long customerId,
+              @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "INSERT INTO balance_operations (operation_id, status, created_at) " +
+            "VALUES (:operationId, 'VOIDED', now()) " +
+            "ON CONFLICT (operation_id) DO NOTHING", nativeQuery = true)
+    int voidIfAbsent(@Param("operationId") String operationId);
+}
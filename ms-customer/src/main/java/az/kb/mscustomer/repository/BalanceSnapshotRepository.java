@@ -0,0 +1,64 @@
+package az.kb.mscustomer.repository;
+
+import az.kb.mscustomer.entity.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, BalanceSnapshot.Key> {
+
+    /**
+     * Balance at {@code asOf} from the nearest snapshot at or before it plus the journal entries
+     * in between; empty when the customer has no such snapshot yet.
+     */
+    @Query(value = "SELECT b.balance + COALESCE((SELECT SUM(j.amount) FROM balance_journal j " +
+            "WHERE j.customer_id = b.customer_id AND j.created_at > b.taken_at AND j.created_at <= :asOf), 0) " +
+            "FROM balance_snapshots b WHERE b.customer_id = :customerId AND b.taken_at <= :asOf " +
+            "ORDER BY b.taken_at DESC LIMIT 1", nativeQuery = true)
+    Optional<BigDecimal> findBalanceAsOf(@Param("customerId") Long customerId, @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * Balance at {@code asOf} by taking back every journal entry after it from the current
+     * balance; a single statement, so balance and journal are read from the same snapshot.
+     */
+    @Query(value = "SELECT c.balance " +
+            "+ COALESCE((SELECT SUM(s.balance) FROM balance_stripes s WHERE s.customer_id = c.id), 0) " +
+            "- COALESCE((SELECT SUM(j.amount) FROM balance_journal j WHERE j.customer_id = c.id AND j.created_at > :asOf), 0) " +
+            "FROM customers c WHERE c.id = :customerId", nativeQuery = true)
+    Optional<BigDecimal> findBalanceBackFrom(@Param("customerId") Long customerId, @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * Opening snapshots for customers in {@code (after, upTo]} that have none: the current
+     * balance minus everything the journal holds, i.e. the balance before journaling began.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO balance_snapshots (customer_id, taken_at, balance) " +
+            "SELECT c.id, :openingAt, c.balance " +
+            "+ COALESCE((SELECT SUM(s.balance) FROM balance_stripes s WHERE s.customer_id = c.id), 0) " +
+            "- COALESCE((SELECT SUM(j.amount) FROM balance_journal j WHERE j.customer_id = c.id), 0) " +
+            "FROM customers c WHERE c.id > :after AND c.id <= :upTo " +
+            "AND NOT EXISTS (SELECT 1 FROM balance_snapshots b WHERE b.customer_id = c.id) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertOpening(@Param("after") Long after, @Param("upTo") Long upTo, @Param("openingAt") LocalDateTime openingAt);
+
+    /**
+     * Rolls the latest snapshot of every customer in {@code (after, upTo]} that has journal
+     * entries since then forward to {@code takenAt}.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO balance_snapshots (customer_id, taken_at, balance) " +
+            "SELECT p.customer_id, :takenAt, p.balance + SUM(j.amount) " +
+            "FROM (SELECT DISTINCT ON (customer_id) customer_id, taken_at, balance FROM balance_snapshots " +
+            "      WHERE customer_id > :after AND customer_id <= :upTo AND taken_at < :takenAt " +
+            "      ORDER BY customer_id, taken_at DESC) p " +
+            "JOIN balance_journal j ON j.customer_id = p.customer_id " +
+            "AND j.created_at > p.taken_at AND j.created_at <= :takenAt " +
+            "GROUP BY p.customer_id, p.balance " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int rollForward(@Param("after") Long after, @Param("upTo") Long upTo, @Param("takenAt") LocalDateTime takenAt);
+}
@@ -0,0 +1,48 @@
+package az.kb.mscustomer.repository;
+
+import az.kb.mscustomer.entity.BalanceStripe;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+public interface BalanceStripeRepository extends JpaRepository<BalanceStripe, BalanceStripe.Key> {
+
+    /**
+     * Applies {@code amount} to one stripe unless that would make the stripe negative, and
+     * appends the journal entry in the same statement. Returns 0 when the stripe cannot cover a
+     * debit or no longer exists.
+     */
+    @Modifying
+    @Query(value = "WITH updated AS (" +
+            "UPDATE balance_stripes SET balance = balance + :amount " +
+            "WHERE customer_id = :customerId AND stripe = :stripe AND balance + :amount >= 0 " +
+            "RETURNING customer_id) " +
+            "INSERT INTO balance_journal (customer_id, amount, operation_id, created_at) " +
+            "SELECT customer_id, :amount, :operationId, now() FROM updated", nativeQuery = true)
+    int addToStripe(@Param("customerId") Long customerId,
+                    @Param("stripe") int stripe,
+                    @Param("amount") BigDecimal amount,
+                    @Param("operationId") String operationId);
+
+    /**
+     * Locks all stripes of a customer in stripe order, the order every multi-stripe change uses.
+     */
+    @Query(value = "SELECT * FROM balance_stripes WHERE customer_id = :customerId ORDER BY stripe FOR UPDATE",
+            nativeQuery = true)
+    List<BalanceStripe> lockAll(@Param("customerId") Long customerId);
+
+    /**
+     * Locks all stripes of several customers in customer id and then stripe order.
+     */
+    @Query(value = "SELECT * FROM balance_stripes WHERE customer_id IN (:customerIds) " +
+            "ORDER BY customer_id, stripe FOR UPDATE", nativeQuery = true)
+    List<BalanceStripe> lockAllIn(@Param("customerIds") Collection<Long> customerIds);
+
+    @Query("SELECT COALESCE(SUM(s.balance), 0) FROM BalanceStripe s WHERE s.customerId = :customerId")
+    BigDecimal sumBalance(@Param("customerId") Long customerId);
+}
@@ -1,7 +1,144 @@
 package az.kb.mscustomer.repository;
 
 import az.kb.mscustomer.entity.Customer;
+import az.kb.mscustomer.model.CustomerBalance;
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
+
+    String TOTAL_BALANCE = "c.balance + COALESCE((SELECT SUM(s.balance) FROM BalanceStripe s WHERE s.customerId = c.id), 0)";
+
+    /**
+     * Id-ordered page of balances after {@code after}; reads only the primary key index and the
+     * two columns, so a full scan can be paged through with constant memory.
+     */
+    @Query("SELECT new az.kb.mscustomer.model.CustomerBalance(c.id, " + TOTAL_BALANCE + ") FROM Customer c " +
+            "WHERE c.id > :after ORDER BY c.id")
+    List<CustomerBalance> findBalancesAfter(@Param("after") Long after, Limit limit);
+
+    @Query("SELECT new az.kb.mscustomer.model.CustomerBalance(c.id, " + TOTAL_BALANCE + ") FROM Customer c " +
+            "WHERE c.id IN :ids")
+    List<CustomerBalance> findBalancesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT c.id FROM Customer c WHERE c.id IN :ids AND c.stripes > 1")
+    List<Long> findStripedIdsIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Stripe count of the customer, 0 when its balance is not striped; empty when it does not exist.
+     */
+    @Query(value = "SELECT COALESCE(stripes, 0) FROM customers WHERE id = :id", nativeQuery = true)
+    Optional<Integer> findStripes(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Customer c WHERE c.id = :id")
+    Optional<Customer> findForUpdate(@Param("id") Long id);
+
+    /**
+     * Exact lookup on the unique phone number index; {@code phoneNumber} must be normalized.
+     */
+    Optional<Customer> findByPhoneNumber(String phoneNumber);
+
+    boolean existsByPhoneNumber(String phoneNumber);
+
+    /**
+     * Customers whose surname starts with {@code surname} and name with {@code name}, ignoring
+     * case, ordered by surname, name and id. The prefix is matched as a range over the
+     * (lower(surname), lower(name), id) index in the "C" collation, which also yields the order,
+     * so a page costs an index range scan whatever the plan cache does with the parameters.
+     */
+    @Query(value = "SELECT * FROM customers " +
+            "WHERE lower(surname) COLLATE \"C\" >= lower(:surname) " +
+            "AND lower(surname) COLLATE \"C\" < lower(:surname) || chr(1114111) " +
+            "AND starts_with(lower(COALESCE(name, '')), lower(:name)) " +
+            "ORDER BY lower(surname) COLLATE \"C\", lower(name) COLLATE \"C\", id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Customer> searchBySurnamePrefix(@Param("surname") String surname,
+                                         @Param("name") String name,
+                                         @Param("limit") int limit,
+                                         @Param("offset") long offset);
+
+    /**
+     * Customers whose name starts with {@code name}, ignoring case, over the (lower(name), id)
+     * index in the same way as {@link #searchBySurnamePrefix}.
+     */
+    @Query(value = "SELECT * FROM customers " +
+            "WHERE lower(name) COLLATE \"C\" >= lower(:name) " +
+            "AND lower(name) COLLATE \"C\" < lower(:name) || chr(1114111) " +
+            "ORDER BY lower(name) COLLATE \"C\", id " +
+            "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Customer> searchByNamePrefix(@Param("name") String name,
+                                      @Param("limit") int limit,
+                                      @Param("offset") long offset);
+
+    /**
+     * Applies {@code amount} to the balance in a single conditional statement that also appends
+     * the journal entry, and returns the updated row. Empty when the customer does not exist,
+     * the balance would drop below its held amount (never negative) or is striped.
+     */
+    @Transactional
+    @Query(value = "WITH updated AS (" +
+            "UPDATE customers SET balance = balance + :amount, updated_at = now() " +
+            "WHERE id = :id AND balance + :amount >= held_balance AND COALESCE(stripes, 0) <= 1 " +
+            "RETURNING *), journal AS (" +
+            "INSERT INTO balance_journal (customer_id, amount, operation_id, created_at) " +
+            "SELECT id, :amount, :operationId, now() FROM updated) " +
+            "SELECT * FROM updated", nativeQuery = true)
+    Optional<Customer> addToBalance(@Param("id") Long id,
+                                    @Param("amount") BigDecimal amount,
+                                    @Param("operationId") String operationId);
+
+    /**
+     * Adds {@code amount} to the held balance if the unheld part of the balance covers it, and
+     * returns the updated row. Empty when the customer does not exist, cannot cover the amount
+     * or is striped; holds are only taken on plain balances.
+     */
+    @Transactional
+    @Query(value = "UPDATE customers SET held_balance = held_balance + :amount, updated_at = now() " +
+            "WHERE id = :id AND balance - held_balance >= :amount AND COALESCE(stripes, 0) <= 1 " +
+            "RETURNING *", nativeQuery = true)
+    Optional<Customer> reserve(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Marks an ACTIVE, unexpired hold CAPTURED and, in the same statement, debits
+     * {@code amount} from the balance, gives back the whole hold and journals the debit under
+     * the hold id. A capture below the hold amount releases the rest. Empty when the hold is not
+     * ACTIVE, has expired or is smaller than {@code amount}.
+     */
+    @Transactional
+    @Query(value = "WITH hold AS (" +
+            "UPDATE balance_holds SET status = 'CAPTURED', captured_amount = :amount, updated_at = now() " +
+            "WHERE hold_id = :holdId AND status = 'ACTIVE' AND expires_at > now() AND amount >= :amount " +
+            "RETURNING customer_id, amount), updated AS (" +
+            "UPDATE customers c SET balance = c.balance - :amount, held_balance = c.held_balance - hold.amount, " +
+            "updated_at = now() FROM hold WHERE c.id = hold.customer_id RETURNING c.*), journal AS (" +
+            "INSERT INTO balance_journal (customer_id, amount, operation_id, created_at) " +
+            "SELECT id, 0 - :amount, :holdId, now() FROM updated) " +
+            "SELECT * FROM updated", nativeQuery = true)
+    Optional<Customer> captureHold(@Param("holdId") String holdId, @Param("amount") BigDecimal amount);
+
+    /**
+     * Moves an ACTIVE hold to {@code status}, RELEASED or EXPIRED, and gives its amount back in
+     * the same statement. Empty when the hold is not ACTIVE.
+     */
+    @Transactional
+    @Query(value = "WITH hold AS (" +
+            "UPDATE balance_holds SET status = :status, updated_at = now() " +
+            "WHERE hold_id = :holdId AND status = 'ACTIVE' RETURNING customer_id, amount) " +
+            "UPDATE customers c SET held_balance = c.held_balance - hold.amount, updated_at = now() " +
+            "FROM hold WHERE c.id = hold.customer_id RETURNING c.*", nativeQuery = true)
+    Optional<Customer> releaseHold(@Param("holdId") String holdId, @Param("status") String status);
+
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM Customer c")
+    long findMaxId();
 }
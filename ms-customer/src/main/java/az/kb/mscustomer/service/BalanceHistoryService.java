@@ -0,0 +1,106 @@
+package az.kb.mscustomer.service;
+
+import az.kb.mscustomer.entity.BalanceSnapshot;
+import az.kb.mscustomer.exception.NotFoundException;
+import az.kb.mscustomer.model.HistoricalBalance;
+import az.kb.mscustomer.repository.BalanceSnapshotRepository;
+import az.kb.mscustomer.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static az.kb.mscustomer.constant.ErrorMessage.CUSTOMER_NOT_FOUND;
+
+/**
+ * Point-in-time balances from the balance journal. A periodic job rolls per-customer snapshots
+ * forward, so a historical query replays at most one snapshot interval of entries. Snapshots
+ * are taken {@code customer.journal.settle-lag} in the past, long enough for every change
+ * stamped before that time to have committed.
+ */
+@Slf4j
+@Service
+public class BalanceHistoryService {
+
+    private final CustomerRepository customerRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean snapshotsEnabled;
+    private final Duration settleLag;
+    private final long chunkSize;
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+
+    public BalanceHistoryService(CustomerRepository customerRepository,
+                                 BalanceSnapshotRepository snapshotRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${customer.journal.snapshots.enabled:true}") boolean snapshotsEnabled,
+                                 @Value("${customer.journal.settle-lag:5m}") Duration settleLag,
+                                 @Value("${customer.journal.snapshots.chunk-size:10000}") long chunkSize) {
+        this.customerRepository = customerRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.snapshotsEnabled = snapshotsEnabled;
+        this.settleLag = settleLag;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Balance including every change stamped at or before {@code asOf}, or the current balance
+     * without it. Answers from the nearest earlier snapshot, or backwards from the current
+     * balance for customers that have not been snapshotted yet. History starts when the journal
+     * was introduced; earlier points in time all read as the opening balance.
+     */
+    public HistoricalBalance getBalance(Long customerId, LocalDateTime asOf) {
+        LocalDateTime pointInTime = asOf != null ? asOf : LocalDateTime.now();
+        BigDecimal balance = snapshotRepository.findBalanceAsOf(customerId, pointInTime)
+                .or(() -> snapshotRepository.findBalanceBackFrom(customerId, pointInTime))
+                .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND, customerId));
+        return HistoricalBalance.builder()
+                .customerId(customerId)
+                .asOf(pointInTime)
+                .balance(balance)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${customer.journal.snapshots.interval:3600000}",
+            initialDelayString = "${customer.journal.snapshots.interval:3600000}")
+    public void poll() {
+        if (snapshotsEnabled) {
+            takeSnapshots();
+        }
+    }
+
+    /**
+     * Walks all customers in id ranges of {@code chunkSize}, one transaction per range: gives
+     * customers without a snapshot their opening one, then rolls the latest snapshot of every
+     * customer with new entries forward. Returns the number of snapshots written.
+     */
+    public int takeSnapshots() {
+        if (!snapshotting.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime takenAt = LocalDateTime.now().minus(settleLag).truncatedTo(ChronoUnit.SECONDS);
+            long maxId = customerRepository.findMaxId();
+            int written = 0;
+            for (long after = 0; after < maxId; after += chunkSize) {
+                long from = after;
+                long upTo = after + chunkSize;
+                written += transactionTemplate.execute(status ->
+                        snapshotRepository.insertOpening(from, upTo, BalanceSnapshot.OPENING)
+                                + snapshotRepository.rollForward(from, upTo, takenAt));
+            }
+            log.info("Wrote {} balance snapshots as of {}", written, takenAt);
+            return written;
+        } finally {
+            snapshotting.set(false);
+        }
+    }
+}
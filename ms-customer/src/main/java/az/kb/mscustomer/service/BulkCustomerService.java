@@ -0,0 +1,285 @@
+package az.kb.mscustomer.service;
+
+import az.kb.mscustomer.model.BulkCreateError;
+import az.kb.mscustomer.model.BulkCreateResult;
+import az.kb.mscustomer.model.CreateCustomerRequest;
+import az.kb.mscustomer.repository.CustomerBulkRepository;
+import az.kb.mscustomer.util.PhoneNumberUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static az.kb.mscustomer.constant.ErrorMessage.BULK_CHUNK_CONFLICT;
+import static az.kb.mscustomer.constant.ErrorMessage.BULK_CSV_COLUMNS;
+import static az.kb.mscustomer.constant.ErrorMessage.BULK_CSV_HEADER;
+import static az.kb.mscustomer.constant.ErrorMessage.BULK_INVALID_BIRTH_DATE;
+import static az.kb.mscustomer.constant.ErrorMessage.BULK_ROW_INCOMPLETE;
+import static az.kb.mscustomer.constant.ErrorMessage.BULK_TOO_LARGE;
+import static az.kb.mscustomer.constant.ErrorMessage.INVALID_PHONE_NUMBER;
+import static az.kb.mscustomer.constant.ErrorMessage.PHONE_NUMBER_TAKEN;
+
+/**
+ * Creates customers from a JSON array or CSV upload in one transaction. The body is read row by
+ * row and written in COPY chunks of {@code customer.bulk.chunk-size}, so only one chunk is held
+ * in memory. Rows that fail validation, or whose phone number is taken by an existing customer
+ * or an earlier row, are reported and skipped, as are rows of a chunk that keeps running into
+ * concurrent creates of the same numbers; a malformed body or an upload over
+ * {@code customer.bulk.max-rows} creates nothing.
+ */
+@Service
+@RequiredArgsConstructor
+public class BulkCustomerService {
+
+    public static final String TEXT_CSV = "text/csv";
+
+    private static final DateTimeFormatter BIRTH_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final List<String> CSV_COLUMNS = List.of("name", "surname", "birthDate", "phoneNumber");
+    private static final int MAX_COPY_ATTEMPTS = 2;
+
+    private final CustomerBulkRepository bulkRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${customer.initial-balance:100}")
+    private BigDecimal initialBalance = BigDecimal.valueOf(100);
+
+    @Value("${customer.bulk.chunk-size:5000}")
+    private int chunkSize = 5000;
+
+    @Value("${customer.bulk.max-rows:1000000}")
+    private int maxRows = 1000000;
+
+    /**
+     * Reads the elements of a top-level JSON array one at a time, in the format of a single
+     * create request.
+     */
+    @Transactional
+    public BulkCreateResult createFromJson(InputStream body) throws IOException {
+        try (MappingIterator<JsonNode> nodes = objectMapper.readerFor(JsonNode.class).readValues(body)) {
+            return create(() -> {
+                if (!nodes.hasNextValue()) {
+                    return null;
+                }
+                JsonNode node = nodes.nextValue();
+                try {
+                    return Row.of(objectMapper.treeToValue(node, CreateCustomerRequest.class));
+                } catch (JsonProcessingException e) {
+                    return Row.rejected(e.getOriginalMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads CSV with a header row naming the columns, in any order; birth dates are dd.MM.yyyy
+     * as in JSON. Fields may be quoted, with embedded quotes doubled.
+     */
+    @Transactional
+    public BulkCreateResult createFromCsv(InputStream body) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            List<String> columns = header != null ? fields(header) : List.of();
+            int[] positions = CSV_COLUMNS.stream().mapToInt(columns::indexOf).toArray();
+            if (columns.size() != CSV_COLUMNS.size() || Arrays.stream(positions).anyMatch(i -> i < 0)) {
+                throw new IllegalArgumentException(BULK_CSV_HEADER);
+            }
+            return create(() -> {
+                String line = reader.readLine();
+                while (line != null && line.isBlank()) {
+                    line = reader.readLine();
+                }
+                return line != null ? csvRow(fields(line), positions) : null;
+            });
+        }
+    }
+
+    private BulkCreateResult create(RowReader rows) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        List<BulkCreateError> errors = new ArrayList<>();
+        List<CreateCustomerRequest> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        Set<String> phoneNumbers = new HashSet<>();
+        int created = 0;
+
+        for (Row row = rows.next(); row != null; row = rows.next()) {
+            int index = ids.size();
+            if (index >= maxRows) {
+                throw new IllegalArgumentException(BULK_TOO_LARGE + " " + maxRows);
+            }
+            ids.add(null);
+            String error = row.error() != null ? row.error() : validate(row.request(), phoneNumbers);
+            if (error != null) {
+                errors.add(error(index, error));
+                continue;
+            }
+            chunk.add(row.request());
+            chunkIndexes.add(index);
+            if (chunk.size() == chunkSize) {
+                created += flush(chunk, chunkIndexes, ids, errors);
+            }
+        }
+        created += flush(chunk, chunkIndexes, ids, errors);
+        errors.sort(Comparator.comparingInt(BulkCreateError::getIndex));
+        return BulkCreateResult.builder()
+                .created(created)
+                .ids(ids)
+                .errors(errors)
+                .build();
+    }
+
+    /**
+     * Drops the rows whose phone number an existing customer already has, then copies the rest
+     * and records their ids. A copy turned away because a concurrent create took one of the
+     * numbers since the check is checked and tried again; if that fails too, the rest of the
+     * chunk is reported as not created.
+     */
+    private int flush(List<CreateCustomerRequest> chunk, List<Integer> chunkIndexes, List<Long> ids,
+                      List<BulkCreateError> errors) {
+        List<CreateCustomerRequest> customers = new ArrayList<>(chunk);
+        List<Integer> indexes = new ArrayList<>(chunkIndexes);
+        chunk.clear();
+        chunkIndexes.clear();
+        for (int attempt = 1; ; attempt++) {
+            dropTaken(customers, indexes, errors);
+            if (customers.isEmpty()) {
+                return 0;
+            }
+            try {
+                List<Long> created = bulkRepository.insertAll(customers, initialBalance);
+                for (int i = 0; i < created.size(); i++) {
+                    ids.set(indexes.get(i), created.get(i));
+                }
+                return customers.size();
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_COPY_ATTEMPTS) {
+                    indexes.forEach(index -> errors.add(error(index, BULK_CHUNK_CONFLICT)));
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private void dropTaken(List<CreateCustomerRequest> customers, List<Integer> indexes, List<BulkCreateError> errors) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        Set<String> taken = bulkRepository.findTakenPhoneNumbers(customers.stream().map(CreateCustomerRequest::getPhoneNumber).toList());
+        for (int i = customers.size() - 1; i >= 0; i--) {
+            String phoneNumber = customers.get(i).getPhoneNumber();
+            if (taken.contains(phoneNumber)) {
+                errors.add(error(indexes.get(i), PHONE_NUMBER_TAKEN + " " + phoneNumber));
+                customers.remove(i);
+                indexes.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Checks the row and normalizes its phone number in place.
+     */
+    private static String validate(CreateCustomerRequest request, Set<String> phoneNumbers) {
+        if (isBlank(request.getName()) || isBlank(request.getSurname()) || isBlank(request.getPhoneNumber())) {
+            return BULK_ROW_INCOMPLETE;
+        }
+        String phoneNumber = PhoneNumberUtil.normalize(request.getPhoneNumber());
+        if (phoneNumber == null) {
+            return INVALID_PHONE_NUMBER;
+        }
+        if (!phoneNumbers.add(phoneNumber)) {
+            return PHONE_NUMBER_TAKEN + " " + phoneNumber;
+        }
+        request.setPhoneNumber(phoneNumber);
+        return null;
+    }
+
+    private static BulkCreateError error(int index, String message) {
+        return BulkCreateError.builder().index(index).message(message).build();
+    }
+
+    private static Row csvRow(List<String> fields, int[] positions) {
+        if (fields.size() != CSV_COLUMNS.size()) {
+            return Row.rejected(BULK_CSV_COLUMNS);
+        }
+        CreateCustomerRequest request = new CreateCustomerRequest();
+        request.setName(fields.get(positions[0]));
+        request.setSurname(fields.get(positions[1]));
+        request.setPhoneNumber(fields.get(positions[3]));
+        String birthDate = fields.get(positions[2]);
+        if (!birthDate.isEmpty()) {
+            try {
+                request.setBirthDate(LocalDate.parse(birthDate, BIRTH_DATE));
+            } catch (DateTimeParseException e) {
+                return Row.rejected(BULK_INVALID_BIRTH_DATE);
+            }
+        }
+        return Row.of(request);
+    }
+
+    static List<String> fields(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().strip());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().strip());
+        return fields;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private interface RowReader {
+        Row next() throws IOException;
+    }
+
+    private record Row(CreateCustomerRequest request, String error) {
+
+        static Row of(CreateCustomerRequest request) {
+            return new Row(request, null);
+        }
+
+        static Row rejected(String error) {
+            return new Row(null, error);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package az.kb.mscustomer.service;
+
+import az.kb.mscustomer.entity.Customer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+
+/**
+ * In-process cache of customers by id. Writes go through it: the new row replaces the cached
+ * one once the writing transaction commits, so this node never serves a balance older than its
+ * own last write. A put that races a load for the same id waits for the load and wins. Other
+ * replicas learn about the write through {@link #onWrite}, or at the latest when the entry
+ * expires after {@code customer.cache.ttl}. Hits, misses and evictions are published as the
+ * {@code cache.*} meters tagged {@code cache=customers}.
+ */
+@Component
+public class CustomerCache {
+
+    private final Cache<Long, Customer> cache;
+    private volatile LongConsumer writeListener = id -> {
+    };
+
+    public CustomerCache(MeterRegistry meterRegistry,
+                         @Value("${customer.cache.maximum-size:100000}") long maximumSize,
+                         @Value("${customer.cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "customers");
+    }
+
+    public Optional<Customer> get(Long id, Function<Long, Optional<Customer>> loader) {
+        return Optional.ofNullable(cache.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    /**
+     * Caches {@code customer} as its latest state, after the surrounding transaction commits if
+     * there is one; nothing is cached for a rolled back write.
+     */
+    public void put(Customer customer) {
+        writeListener.accept(customer.getId());
+        afterCommit(() -> cache.put(customer.getId(), customer));
+    }
+
+    /**
+     * Drops the entry once the surrounding transaction commits; for writes that do not return
+     * the whole row.
+     */
+    public void evict(Long id) {
+        writeListener.accept(id);
+        afterCommit(() -> cache.invalidate(id));
+    }
+
+    public void invalidate(Long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Registers the callback told about every write, inside the writing transaction; used to
+     * invalidate the entry on other replicas.
+     */
+    public void onWrite(LongConsumer listener) {
+        this.writeListener = listener;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,18 +1,50 @@
 package az.kb.mscustomer.service;
 
+import az.kb.mscustomer.entity.BalanceOperation;
 import az.kb.mscustomer.entity.Customer;
+import az.kb.mscustomer.enums.BalanceOperationStatus;
+import az.kb.mscustomer.enums.BalanceUpdateStatus;
+import az.kb.mscustomer.exception.BalanceOperationConflictException;
 import az.kb.mscustomer.exception.InsufficientBalanceException;
 import az.kb.mscustomer.exception.NotFoundException;
+import az.kb.mscustomer.model.BalanceUpdate;
+import az.kb.mscustomer.model.BalanceUpdateResult;
 import az.kb.mscustomer.model.CreateCustomerRequest;
+import az.kb.mscustomer.model.CustomerBalance;
+import az.kb.mscustomer.repository.BalanceBatchRepository;
+import az.kb.mscustomer.repository.BalanceJournalRepository;
+import az.kb.mscustomer.repository.BalanceOperationRepository;
 import az.kb.mscustomer.repository.CustomerRepository;
+import az.kb.mscustomer.util.PhoneNumberUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import static az.kb.mscustomer.constant.ErrorMessage.BALANCE_OPERATION_VOIDED;
+import static az.kb.mscustomer.constant.ErrorMessage.BATCH_TOO_LARGE;
 import static az.kb.mscustomer.constant.ErrorMessage.CUSTOMER_NOT_FOUND;
+import static az.kb.mscustomer.constant.ErrorMessage.CUSTOMER_NOT_FOUND_BY_PHONE;
+import static az.kb.mscustomer.constant.ErrorMessage.DUPLICATE_OPERATION_ID;
 import static az.kb.mscustomer.constant.ErrorMessage.INSUFFICIENT_BALANCE_MESSAGE;
+import static az.kb.mscustomer.constant.ErrorMessage.INVALID_BALANCE_UPDATE;
+import static az.kb.mscustomer.constant.ErrorMessage.INVALID_PHONE_NUMBER;
+import static az.kb.mscustomer.constant.ErrorMessage.PHONE_NUMBER_TAKEN;
+import static az.kb.mscustomer.constant.ErrorMessage.SEARCH_PREFIX_REQUIRED;
 
 @Slf4j
 @Service
@@ -20,32 +52,332 @@ import static az.kb.mscustomer.constant.ErrorMessage.INSUFFICIENT_BALANCE_MESSAG
 public class CustomerService {
 
     private final CustomerRepository repository;
+    private final BalanceOperationRepository operationRepository;
+    private final BalanceBatchRepository batchRepository;
+    private final BalanceJournalRepository journalRepository;
+    private final StripedBalanceService stripedBalances;
+    private final CustomerCache customerCache;
 
+    private static final int MAX_STRIPE_ATTEMPTS = 3;
+
+    @Value("${customer.initial-balance:100}")
+    private BigDecimal initialBalance = BigDecimal.valueOf(100);
+
+    @Value("${customer.balances.max-page-size:10000}")
+    private int maxBalancePageSize = 10000;
+
+    @Value("${customer.balances.max-batch-size:1000}")
+    private int maxBatchSize = 1000;
+
+    @Value("${customer.search.max-page-size:100}")
+    private int maxSearchPageSize = 100;
+
+    /**
+     * Creates the customer with the initial balance, journaled as its first entry. The phone
+     * number is stored normalized and must not belong to another customer; the unique index
+     * turns away a concurrent create with the same number that passed the check.
+     */
+    @Transactional
     public Customer createCustomer(CreateCustomerRequest request) {
+        String phoneNumber = PhoneNumberUtil.normalize(request.getPhoneNumber());
+        if (phoneNumber == null) {
+            throw new IllegalArgumentException(INVALID_PHONE_NUMBER);
+        }
+        if (repository.existsByPhoneNumber(phoneNumber)) {
+            throw new IllegalArgumentException(PHONE_NUMBER_TAKEN + " " + phoneNumber);
+        }
         Customer customer = Customer.builder()
                 .name(request.getName())
                 .surname(request.getSurname())
                 .birthDate(request.getBirthDate())
-                .phoneNumber(request.getPhoneNumber())
-                .balance(BigDecimal.valueOf(100))
+                .phoneNumber(phoneNumber)
+                .balance(initialBalance)
                 .build();
-        return repository.save(customer);
+        Customer saved;
+        try {
+            saved = repository.saveAndFlush(customer);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException(PHONE_NUMBER_TAKEN + " " + phoneNumber, e);
+        }
+        journalRepository.append(saved.getId(), initialBalance, null);
+        customerCache.put(saved);
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public List<CustomerBalance> getBalances(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), maxBalancePageSize);
+        return repository.findBalancesAfter(after != null ? after : 0L, Limit.of(pageSize));
     }
 
     public Customer getCustomer(Long id) {
-        return repository.findById(id)
+        return customerCache.get(id, key -> repository.findById(key).map(stripedBalances::withTotalBalance))
                 .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND, id));
     }
 
-    public Customer updateBalance(Long id, BigDecimal amount) {
-        Customer customer = getCustomer(id);
-        BigDecimal newBalance = customer.getBalance().add(amount);
+    /**
+     * Looks the customer up by phone number, in any format {@link PhoneNumberUtil} normalizes.
+     */
+    public Customer getCustomerByPhoneNumber(String phoneNumber) {
+        String normalized = PhoneNumberUtil.normalize(phoneNumber);
+        if (normalized == null) {
+            throw new IllegalArgumentException(INVALID_PHONE_NUMBER);
+        }
+        return repository.findByPhoneNumber(normalized)
+                .map(stripedBalances::withTotalBalance)
+                .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND_BY_PHONE, normalized));
+    }
+
+    /**
+     * Page of customers whose surname and/or name start with the given prefixes, ignoring case.
+     * With a surname the page follows surname, name and id; with only a name, name and id.
+     */
+    @Transactional(readOnly = true)
+    public List<Customer> searchCustomers(String surname, String name, int page, int size) {
+        boolean bySurname = surname != null && !surname.isBlank();
+        boolean byName = name != null && !name.isBlank();
+        if (!bySurname && !byName) {
+            throw new IllegalArgumentException(SEARCH_PREFIX_REQUIRED);
+        }
+        int pageSize = Math.min(Math.max(size, 1), maxSearchPageSize);
+        long offset = (long) Math.max(page, 0) * pageSize;
+        List<Customer> customers = bySurname
+                ? repository.searchBySurnamePrefix(surname.strip(), byName ? name.strip() : "", pageSize, offset)
+                : repository.searchByNamePrefix(name.strip(), pageSize, offset);
+        return customers.stream().map(stripedBalances::withTotalBalance).toList();
+    }
+
+    /**
+     * With an operation id the change is applied at most once: the id is claimed in the same
+     * transaction as the balance update, and a repeat of an applied operation returns the
+     * customer unchanged. An operation voided by {@link #resolveBalanceOperation} is rejected.
+     */
+    @Transactional
+    public Customer updateBalance(Long id, BigDecimal amount, String operationId) {
+        if (operationId != null && operationRepository.claim(operationId, id, amount) == 0) {
+            BalanceOperation existing = operationRepository.findById(operationId)
+                    .orElseThrow(() -> new IllegalStateException("Balance operation disappeared: " + operationId));
+            if (existing.getStatus() == BalanceOperationStatus.VOIDED) {
+                throw new BalanceOperationConflictException(BALANCE_OPERATION_VOIDED, operationId);
+            }
+            return getCustomer(id);
+        }
+        Customer updated = applyToBalance(id, amount, operationId);
+        if (updated.isStriped()) {
+            customerCache.evict(id);
+        } else {
+            customerCache.put(updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Tries the plain single-row update first; it matches no row for a striped customer, whose
+     * change then goes to its stripes. Retries when the striping changed in between.
+     */
+    private Customer applyToBalance(Long id, BigDecimal amount, String operationId) {
+        for (int attempt = 0; attempt < MAX_STRIPE_ATTEMPTS; attempt++) {
+            Optional<Customer> updated = repository.addToBalance(id, amount, operationId);
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            int stripes = repository.findStripes(id)
+                    .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND, id));
+            if (stripes <= 1) {
+                throw new InsufficientBalanceException(INSUFFICIENT_BALANCE_MESSAGE);
+            }
+            if (stripedBalances.add(id, stripes, amount, operationId)) {
+                return repository.findById(id)
+                        .map(stripedBalances::withTotalBalance)
+                        .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND, id));
+            }
+        }
+        throw new IllegalStateException("Balance stripes kept changing for customer " + id);
+    }
+
+    /**
+     * Splits the customer's balance over {@code count} stripes for high-contention accounts, or
+     * back onto one row with {@code count} 1. Reads keep returning the whole balance.
+     */
+    @Transactional
+    public Customer configureStripes(Long id, int count) {
+        Customer customer = stripedBalances.configure(id, count);
+        customerCache.evict(id);
+        return customer;
+    }
+
+    /**
+     * Applies many balance changes in one transaction and reports an outcome per item; a
+     * rejected item does not affect the others. Operation ids are claimed in id order and
+     * balances are updated in customer id order, each as one JDBC batch, and the stripes of
+     * striped customers are all locked in customer id order before any of them changes, so
+     * concurrent batches lock rows in the same order and cannot deadlock each other. Items for
+     * the same customer are applied in request order. The claim of an item that is then
+     * rejected is removed, so the same operation id can be retried.
+     */
+    @Transactional
+    public List<BalanceUpdateResult> updateBalances(List<BalanceUpdate> updates) {
+        if (updates.size() > maxBatchSize) {
+            throw new IllegalArgumentException(BATCH_TOO_LARGE + " " + maxBatchSize);
+        }
+        BalanceUpdateResult[] results = new BalanceUpdateResult[updates.size()];
+        List<Integer> accepted = validate(updates, results);
+
+        List<Integer> withOperation = accepted.stream()
+                .filter(index -> updates.get(index).getOperationId() != null)
+                .sorted(Comparator.comparing(index -> updates.get(index).getOperationId()))
+                .toList();
+        if (!withOperation.isEmpty()) {
+            int[] claimed = batchRepository.claimOperations(itemsAt(updates, withOperation));
+            List<Integer> unclaimed = new ArrayList<>();
+            for (int i = 0; i < claimed.length; i++) {
+                if (claimed[i] == 0) {
+                    unclaimed.add(withOperation.get(i));
+                }
+            }
+            resolveUnclaimed(updates, unclaimed, results);
+            accepted = accepted.stream().filter(index -> results[index] == null).toList();
+        }
+
+        List<Integer> ordered = accepted.stream()
+                .sorted(Comparator.comparing((Integer index) -> updates.get(index).getCustomerId())
+                        .thenComparing(Function.identity()))
+                .toList();
+        int[] applied = ordered.isEmpty() ? new int[0] : batchRepository.addToBalances(itemsAt(updates, ordered));
+
+        List<Integer> rejected = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            int index = ordered.get(i);
+            if (applied[i] > 0) {
+                results[index] = result(index, updates.get(index), BalanceUpdateStatus.APPLIED, null);
+            } else {
+                rejected.add(index);
+            }
+        }
+        applyStriped(updates, rejected, results);
+
+        Set<Long> customerIds = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            if (results[i] == null || results[i].getStatus() == BalanceUpdateStatus.ALREADY_APPLIED
+                    || results[i].getStatus() == BalanceUpdateStatus.APPLIED) {
+                customerIds.add(updates.get(i).getCustomerId());
+            }
+        }
+        Map<Long, BigDecimal> balances = customerIds.isEmpty() ? Map.of()
+                : repository.findBalancesByIdIn(customerIds).stream()
+                .collect(Collectors.toMap(CustomerBalance::id, CustomerBalance::balance));
+
+        List<String> rejectedOperations = new ArrayList<>();
+        for (int index : ordered) {
+            BalanceUpdate update = updates.get(index);
+            if (results[index] != null && results[index].getStatus() == BalanceUpdateStatus.APPLIED) {
+                customerCache.evict(update.getCustomerId());
+                continue;
+            }
+            if (results[index] == null) {
+                results[index] = balances.containsKey(update.getCustomerId())
+                        ? result(index, update, BalanceUpdateStatus.INSUFFICIENT_BALANCE, INSUFFICIENT_BALANCE_MESSAGE)
+                        : result(index, update, BalanceUpdateStatus.NOT_FOUND, CUSTOMER_NOT_FOUND);
+            }
+            if (update.getOperationId() != null) {
+                rejectedOperations.add(update.getOperationId());
+            }
+        }
+        if (!rejectedOperations.isEmpty()) {
+            operationRepository.deleteAllByIdInBatch(rejectedOperations);
+        }
+        for (BalanceUpdateResult result : results) {
+            if (result.getStatus() == BalanceUpdateStatus.APPLIED
+                    || result.getStatus() == BalanceUpdateStatus.ALREADY_APPLIED) {
+                result.setBalance(balances.get(result.getCustomerId()));
+            }
+        }
+        return List.of(results);
+    }
+
+    /**
+     * The batched row update skips striped customers; their items are applied one by one
+     * through the stripes, in customer id order, once all their stripes are locked.
+     */
+    private void applyStriped(List<BalanceUpdate> updates, List<Integer> rejected, BalanceUpdateResult[] results) {
+        if (rejected.isEmpty()) {
+            return;
+        }
+        Set<Long> striped = new HashSet<>(repository.findStripedIdsIn(
+                rejected.stream().map(index -> updates.get(index).getCustomerId()).collect(Collectors.toSet())));
+        stripedBalances.lockAll(striped);
+        for (int index : rejected) {
+            BalanceUpdate update = updates.get(index);
+            if (!striped.contains(update.getCustomerId())) {
+                continue;
+            }
+            try {
+                applyToBalance(update.getCustomerId(), update.getAmount(), update.getOperationId());
+                results[index] = result(index, update, BalanceUpdateStatus.APPLIED, null);
+            } catch (InsufficientBalanceException e) {
+                results[index] = result(index, update, BalanceUpdateStatus.INSUFFICIENT_BALANCE, e.getMessage());
+            }
+        }
+    }
 
-        if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
-            throw new InsufficientBalanceException(INSUFFICIENT_BALANCE_MESSAGE);
+    private List<Integer> validate(List<BalanceUpdate> updates, BalanceUpdateResult[] results) {
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> operationIds = new HashSet<>();
+        for (int i = 0; i < updates.size(); i++) {
+            BalanceUpdate update = updates.get(i);
+            if (update.getCustomerId() == null || update.getAmount() == null) {
+                results[i] = result(i, update, BalanceUpdateStatus.INVALID, INVALID_BALANCE_UPDATE);
+            } else if (update.getOperationId() != null && !operationIds.add(update.getOperationId())) {
+                results[i] = result(i, update, BalanceUpdateStatus.INVALID, DUPLICATE_OPERATION_ID);
+            } else {
+                accepted.add(i);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Items whose operation id was already taken are not applied again: an applied operation
+     * is reported as such, a voided one is rejected.
+     */
+    private void resolveUnclaimed(List<BalanceUpdate> updates, List<Integer> unclaimed, BalanceUpdateResult[] results) {
+        if (unclaimed.isEmpty()) {
+            return;
+        }
+        Map<String, BalanceOperationStatus> statuses = operationRepository
+                .findAllById(unclaimed.stream().map(index -> updates.get(index).getOperationId()).toList())
+                .stream()
+                .collect(Collectors.toMap(BalanceOperation::getOperationId, BalanceOperation::getStatus));
+        for (int index : unclaimed) {
+            BalanceUpdate update = updates.get(index);
+            results[index] = statuses.get(update.getOperationId()) == BalanceOperationStatus.VOIDED
+                    ? result(index, update, BalanceUpdateStatus.VOIDED, BALANCE_OPERATION_VOIDED + " " + update.getOperationId())
+                    : result(index, update, BalanceUpdateStatus.ALREADY_APPLIED, null);
         }
+    }
+
+    private static List<BalanceUpdate> itemsAt(List<BalanceUpdate> updates, List<Integer> indexes) {
+        return indexes.stream().map(updates::get).toList();
+    }
+
+    private static BalanceUpdateResult result(int index, BalanceUpdate update, BalanceUpdateStatus status, String message) {
+        return BalanceUpdateResult.builder()
+                .index(index)
+                .customerId(update.getCustomerId())
+                .operationId(update.getOperationId())
+                .status(status)
+                .message(message)
+                .build();
+    }
 
-        customer.setBalance(newBalance);
-        return repository.save(customer);
+    /**
+     * Settles the fate of an operation whose caller lost track of it: an applied operation is
+     * returned as is, an unknown one is voided so it can never be applied afterwards.
+     */
+    @Transactional
+    public BalanceOperation resolveBalanceOperation(String operationId) {
+        operationRepository.voidIfAbsent(operationId);
+        return operationRepository.findById(operationId)
+                .orElseThrow(() -> new IllegalStateException("Balance operation disappeared: " + operationId));
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package az.kb.mscustomer.service;
+
+import az.kb.mscustomer.entity.BalanceHold;
+import az.kb.mscustomer.entity.Customer;
+import az.kb.mscustomer.enums.HoldStatus;
+import az.kb.mscustomer.exception.HoldConflictException;
+import az.kb.mscustomer.exception.InsufficientBalanceException;
+import az.kb.mscustomer.exception.NotFoundException;
+import az.kb.mscustomer.model.HoldRequest;
+import az.kb.mscustomer.repository.BalanceHoldRepository;
+import az.kb.mscustomer.repository.CustomerRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static az.kb.mscustomer.constant.ErrorMessage.CUSTOMER_NOT_FOUND;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLDS_ON_STRIPED_BALANCE;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLD_AMOUNT_NOT_POSITIVE;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLD_EXCEEDS_AMOUNT;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLD_ID_TAKEN;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLD_NOT_ACTIVE;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLD_NOT_FOUND;
+import static az.kb.mscustomer.constant.ErrorMessage.HOLD_TTL_OUT_OF_RANGE;
+import static az.kb.mscustomer.constant.ErrorMessage.INSUFFICIENT_BALANCE_MESSAGE;
+
+/**
+ * Two-phase debits: a hold reserves an amount against the balance and is later captured,
+ * released, or expires. Each step is one short transaction, so callers such as a merchant flow
+ * never keep a database transaction open across their own external steps. Holds that are
+ * neither captured nor released are expired by a periodic sweep that reads only the due holds
+ * from the (status, expires_at) index.
+ */
+@Slf4j
+@Service
+public class HoldService {
+
+    private final CustomerRepository customerRepository;
+    private final BalanceHoldRepository holdRepository;
+    private final CustomerCache customerCache;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final boolean sweepEnabled;
+    private final int chunkSize;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public HoldService(CustomerRepository customerRepository,
+                       BalanceHoldRepository holdRepository,
+                       CustomerCache customerCache,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${customer.holds.default-ttl:15m}") Duration defaultTtl,
+                       @Value("${customer.holds.max-ttl:7d}") Duration maxTtl,
+                       @Value("${customer.holds.sweep.enabled:true}") boolean sweepEnabled,
+                       @Value("${customer.holds.sweep.chunk-size:500}") int chunkSize) {
+        this.customerRepository = customerRepository;
+        this.holdRepository = holdRepository;
+        this.customerCache = customerCache;
+        this.transactionTemplate = transactionTemplate;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.sweepEnabled = sweepEnabled;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reserves the amount against the customer's unheld balance. The hold id is claimed in the
+     * same transaction, so repeating a request with the same hold id returns the existing hold
+     * instead of holding the amount twice; without a hold id one is generated.
+     */
+    @Transactional
+    public BalanceHold reserve(Long customerId, HoldRequest request) {
+        if (request.getAmount() == null || request.getAmount().signum() <= 0) {
+            throw new IllegalArgumentException(HOLD_AMOUNT_NOT_POSITIVE);
+        }
+        long ttlSeconds = ttlSeconds(request.getTtlSeconds());
+        String holdId = request.getHoldId() != null ? request.getHoldId() : UUID.randomUUID().toString();
+
+        if (holdRepository.claim(holdId, customerId, request.getAmount(), ttlSeconds) == 0) {
+            BalanceHold existing = getHold(holdId);
+            if (!existing.getCustomerId().equals(customerId)) {
+                throw new HoldConflictException(HOLD_ID_TAKEN, holdId);
+            }
+            return existing;
+        }
+        Customer updated = customerRepository.reserve(customerId, request.getAmount())
+                .orElseThrow(() -> reserveFailure(customerId));
+        customerCache.put(updated);
+        return getHold(holdId);
+    }
+
+    /**
+     * Debits {@code amount}, or the whole hold without one, and releases the rest of the hold.
+     * Capturing a hold that is already captured returns it unchanged; a released or expired
+     * hold cannot be captured any more.
+     */
+    public BalanceHold capture(String holdId, BigDecimal amount) {
+        BalanceHold hold = getHold(holdId);
+        BigDecimal captured = amount != null ? amount : hold.getAmount();
+        if (captured.signum() <= 0) {
+            throw new IllegalArgumentException(HOLD_AMOUNT_NOT_POSITIVE);
+        }
+        if (captured.compareTo(hold.getAmount()) > 0) {
+            throw new IllegalArgumentException(HOLD_EXCEEDS_AMOUNT);
+        }
+        Optional<Customer> updated = customerRepository.captureHold(holdId, captured);
+        if (updated.isPresent()) {
+            customerCache.put(updated.get());
+            return getHold(holdId);
+        }
+        return settled(holdId, HoldStatus.CAPTURED);
+    }
+
+    /**
+     * Gives the held amount back. Releasing a hold that is already released returns it
+     * unchanged; a captured or expired hold cannot be released.
+     */
+    public BalanceHold release(String holdId) {
+        Optional<Customer> updated = customerRepository.releaseHold(holdId, HoldStatus.RELEASED.name());
+        if (updated.isPresent()) {
+            customerCache.put(updated.get());
+            return getHold(holdId);
+        }
+        return settled(holdId, HoldStatus.RELEASED);
+    }
+
+    public BalanceHold getHold(String holdId) {
+        return holdRepository.findById(holdId)
+                .orElseThrow(() -> new NotFoundException(HOLD_NOT_FOUND, holdId));
+    }
+
+    @Scheduled(fixedDelayString = "${customer.holds.sweep.interval:10000}",
+            initialDelayString = "${customer.holds.sweep.interval:10000}")
+    public void poll() {
+        if (sweepEnabled) {
+            expireDue();
+        }
+    }
+
+    /**
+     * Expires due holds in chunks of {@code chunkSize}, one transaction per chunk, until none is
+     * due. Returns the number of customers whose held balance was given back.
+     */
+    public int expireDue() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            int customers = 0;
+            List<Long> released;
+            do {
+                released = transactionTemplate.execute(status -> {
+                    List<Long> ids = holdRepository.expireDue(chunkSize);
+                    ids.forEach(customerCache::evict);
+                    return ids;
+                });
+                customers += released.size();
+            } while (!released.isEmpty());
+            if (customers > 0) {
+                log.info("Expired holds of {} customers", customers);
+            }
+            return customers;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Outcome of a capture or release that changed nothing: a repeat of the same step returns
+     * the hold, anything else is a conflict. An ACTIVE hold past its expiry is expired on the
+     * spot rather than waiting for the sweep.
+     */
+    private BalanceHold settled(String holdId, HoldStatus requested) {
+        BalanceHold hold = getHold(holdId);
+        if (hold.getStatus() == requested) {
+            return hold;
+        }
+        if (hold.getStatus() == HoldStatus.ACTIVE && !hold.getExpiresAt().isAfter(LocalDateTime.now())) {
+            customerRepository.releaseHold(holdId, HoldStatus.EXPIRED.name())
+                    .ifPresent(customer -> customerCache.evict(customer.getId()));
+        }
+        throw new HoldConflictException(HOLD_NOT_ACTIVE, holdId);
+    }
+
+    private RuntimeException reserveFailure(Long customerId) {
+        int stripes = customerRepository.findStripes(customerId)
+                .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND, customerId));
+        return stripes > 1
+                ? new IllegalArgumentException(HOLDS_ON_STRIPED_BALANCE)
+                : new InsufficientBalanceException(INSUFFICIENT_BALANCE_MESSAGE);
+    }
+
+    private long ttlSeconds(Long requested) {
+        long ttl = requested != null ? requested : defaultTtl.toSeconds();
+        if (ttl < 1 || ttl > maxTtl.toSeconds()) {
+            throw new IllegalArgumentException(HOLD_TTL_OUT_OF_RANGE + " " + maxTtl.toSeconds());
+        }
+        return ttl;
+    }
+}
@@ -0,0 +1,143 @@
+package az.kb.mscustomer.service;
+
+import az.kb.mscustomer.entity.BalanceStripe;
+import az.kb.mscustomer.entity.Customer;
+import az.kb.mscustomer.exception.InsufficientBalanceException;
+import az.kb.mscustomer.exception.NotFoundException;
+import az.kb.mscustomer.repository.BalanceJournalRepository;
+import az.kb.mscustomer.repository.BalanceStripeRepository;
+import az.kb.mscustomer.repository.CustomerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static az.kb.mscustomer.constant.ErrorMessage.CUSTOMER_NOT_FOUND;
+import static az.kb.mscustomer.constant.ErrorMessage.INSUFFICIENT_BALANCE_MESSAGE;
+import static az.kb.mscustomer.constant.ErrorMessage.STRIPES_OUT_OF_RANGE;
+import static az.kb.mscustomer.constant.ErrorMessage.STRIPES_WITH_ACTIVE_HOLDS;
+
+/**
+ * Balances of hot customers, e.g. merchants, split over several stripe rows so concurrent
+ * changes do not all queue on one row lock. Credits go to a random stripe. Debits try the
+ * stripes one by one from a random start, and only when no single stripe can cover the amount
+ * are all stripes locked, in stripe order, and drained together.
+ */
+@Service
+@RequiredArgsConstructor
+public class StripedBalanceService {
+
+    private final CustomerRepository repository;
+    private final BalanceStripeRepository stripeRepository;
+    private final BalanceJournalRepository journalRepository;
+
+    @Value("${customer.stripes.max:64}")
+    private int maxStripes = 64;
+
+    /**
+     * Applies {@code amount} to the stripes of a customer striped {@code stripes} ways. Returns
+     * false when the stripes changed underneath, e.g. because striping was reconfigured, so the
+     * caller should look the customer up again.
+     */
+    public boolean add(Long customerId, int stripes, BigDecimal amount, String operationId) {
+        int first = ThreadLocalRandom.current().nextInt(stripes);
+        if (amount.signum() >= 0) {
+            return stripeRepository.addToStripe(customerId, first, amount, operationId) > 0;
+        }
+        for (int i = 0; i < stripes; i++) {
+            if (stripeRepository.addToStripe(customerId, (first + i) % stripes, amount, operationId) > 0) {
+                return true;
+            }
+        }
+        return drain(customerId, amount, operationId);
+    }
+
+    private boolean drain(Long customerId, BigDecimal amount, String operationId) {
+        BigDecimal debit = amount.negate();
+        List<BalanceStripe> locked = stripeRepository.lockAll(customerId);
+        if (locked.isEmpty()) {
+            return false;
+        }
+        BigDecimal total = locked.stream().map(BalanceStripe::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (total.compareTo(debit) < 0) {
+            throw new InsufficientBalanceException(INSUFFICIENT_BALANCE_MESSAGE);
+        }
+        BigDecimal remaining = debit;
+        for (BalanceStripe stripe : locked) {
+            BigDecimal taken = stripe.getBalance().min(remaining);
+            stripe.setBalance(stripe.getBalance().subtract(taken));
+            remaining = remaining.subtract(taken);
+        }
+        stripeRepository.saveAll(locked);
+        journalRepository.append(customerId, amount, operationId);
+        return true;
+    }
+
+    /**
+     * Locks all stripes of {@code customerIds} up front, for a transaction about to change
+     * several of them: the stripes it then picks at random are already its own, so it never
+     * waits on one stripe while holding another.
+     */
+    public void lockAll(Collection<Long> customerIds) {
+        if (!customerIds.isEmpty()) {
+            stripeRepository.lockAllIn(customerIds);
+        }
+    }
+
+    /**
+     * Returns {@code customer} with its balance including the stripes, as a copy so a managed
+     * entity is never modified.
+     */
+    public Customer withTotalBalance(Customer customer) {
+        if (!customer.isStriped()) {
+            return customer;
+        }
+        return customer.toBuilder()
+                .balance(customer.getBalance().add(stripeRepository.sumBalance(customer.getId())))
+                .build();
+    }
+
+    /**
+     * Splits the customer's balance evenly over {@code count} stripes, or folds it back onto
+     * the customer row when {@code count} is 1. Balances with active holds cannot be striped, as
+     * holds are kept on the customer row. Takes the customer row and all stripes locked,
+     * so changes in flight either finish before or retry against the new layout.
+     */
+    @Transactional
+    public Customer configure(Long customerId, int count) {
+        if (count < 1 || count > maxStripes) {
+            throw new IllegalArgumentException(STRIPES_OUT_OF_RANGE + " " + maxStripes);
+        }
+        Customer customer = repository.findForUpdate(customerId)
+                .orElseThrow(() -> new NotFoundException(CUSTOMER_NOT_FOUND, customerId));
+        if (count > 1 && customer.getHeldBalance().signum() > 0) {
+            throw new IllegalArgumentException(STRIPES_WITH_ACTIVE_HOLDS);
+        }
+        List<BalanceStripe> existing = stripeRepository.lockAll(customerId);
+        BigDecimal total = existing.stream().map(BalanceStripe::getBalance).reduce(customer.getBalance(), BigDecimal::add);
+        stripeRepository.deleteAllInBatch(existing);
+
+        if (count == 1) {
+            customer.setBalance(total);
+            customer.setStripes(null);
+            return repository.save(customer);
+        }
+        BigDecimal share = total.divide(BigDecimal.valueOf(count), total.scale(), RoundingMode.DOWN);
+        List<BalanceStripe> stripes = new ArrayList<>(count);
+        for (int stripe = 0; stripe < count; stripe++) {
+            BigDecimal balance = stripe == 0 ? total.subtract(share.multiply(BigDecimal.valueOf(count - 1))) : share;
+            stripes.add(BalanceStripe.builder().customerId(customerId).stripe(stripe).balance(balance).build());
+        }
+        stripeRepository.saveAll(stripes);
+        customer.setBalance(BigDecimal.ZERO);
+        customer.setStripes(count);
+        return withTotalBalance(repository.save(customer));
+    }
+}
@@ -1,9 +1,8 @@
 package az.kb.mscustomer.util;
 
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -14,7 +13,11 @@ public class JwtUtil {
     @Value("${security.secret-key}")
     private String secretKey;
 
-    public boolean validateServiceToken(String token) {
+    /**
+     * Parses and verifies the token once. Returns null when the signature is wrong, the token has
+     * expired or its subject is not a known service.
+     */
+    public VerifiedToken verifyServiceToken(String token) {
         try {
             Claims claims = Jwts.parser()
                     .setSigningKey(secretKey)
@@ -27,25 +30,15 @@ public class JwtUtil {
                             "ms-core".equals(subject) ||
                             "ms-transaction".equals(subject) ||
                             "ms-customer".equals(subject));
-            boolean audienceValid = true;
-
-            return subjectValid;
-
-        } catch (ExpiredJwtException e) {
-            return false;
-        } catch (SignatureException e) {
-            return false;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+            if (!subjectValid) {
+                return null;
+            }
+            return new VerifiedToken(subject, claims.getExpiration());
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
         }
     }
 
-    public String getServiceName(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(secretKey)
-                .parseClaimsJws(token)
-                .getBody();
-        return claims.getSubject();
+    public record VerifiedToken(String serviceName, Date expiration) {
     }
 }
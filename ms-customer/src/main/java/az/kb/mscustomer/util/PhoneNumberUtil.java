@@ -0,0 +1,32 @@
+package az.kb.mscustomer.util;
+
+/**
+ * Brings phone numbers to the single format they are stored and looked up in: digits only,
+ * with a leading {@code +} for international numbers, so "+994 (50) 123-45-67",
+ * "00994501234567" and "+994501234567" are the same number.
+ */
+public final class PhoneNumberUtil {
+
+    private PhoneNumberUtil() {
+    }
+
+    /**
+     * Returns the normalized number, or null when {@code phoneNumber} is null or has no digits.
+     */
+    public static String normalize(String phoneNumber) {
+        if (phoneNumber == null) {
+            return null;
+        }
+        String digits = phoneNumber.replaceAll("[^0-9]", "");
+        if (digits.isEmpty()) {
+            return null;
+        }
+        if (phoneNumber.strip().startsWith("+")) {
+            return "+" + digits;
+        }
+        if (digits.startsWith("00") && digits.length() > 2) {
+            return "+" + digits.substring(2);
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,101 @@
+package az.kb.mscustomer.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers service tokens that already passed verification, keyed by their SHA-256 digest and
+ * kept only until the token's own expiry, so a repeated token costs a hash and one lookup
+ * instead of a signature check. Rejected tokens are never cached.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private static final Set<String> SERVICES = Set.of("ms-transaction", "ms-customer", "ms-core", "ms-notification");
+    private static final List<GrantedAuthority> SERVICE_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_SERVICE"));
+
+    private final JwtUtil jwtUtil;
+    private final Cache<ByteBuffer, ServicePrincipal> cache;
+    private final MessageDigest sha256;
+
+    public VerifiedTokenCache(JwtUtil jwtUtil,
+                              @Value("${security.verified-token-cache-size:10000}") long maximumSize) {
+        this.jwtUtil = jwtUtil;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<ByteBuffer, ServicePrincipal>() {
+                    @Override
+                    public long expireAfterCreate(ByteBuffer key, ServicePrincipal principal, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(
+                                Math.max(0, principal.expiresAt() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ByteBuffer key, ServicePrincipal principal,
+                                                  long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(ByteBuffer key, ServicePrincipal principal,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the principal of a valid service token, or null if the token is rejected.
+     */
+    public ServicePrincipal verify(String token) {
+        ByteBuffer key = digest(token);
+        ServicePrincipal cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        JwtUtil.VerifiedToken verified = jwtUtil.verifyServiceToken(token);
+        if (verified == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = SERVICES.contains(verified.serviceName()) ? SERVICE_AUTHORITIES : List.of();
+        if (verified.expiration() == null) {
+            return new ServicePrincipal(verified.serviceName(), authorities, 0);
+        }
+        ServicePrincipal principal = new ServicePrincipal(verified.serviceName(), authorities,
+                verified.expiration().getTime());
+        cache.put(key, principal);
+        return principal;
+    }
+
+    private ByteBuffer digest(String token) {
+        try {
+            MessageDigest digest = (MessageDigest) sha256.clone();
+            return ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public record ServicePrincipal(String name, List<GrantedAuthority> authorities, long expiresAt) {
+    }
+}
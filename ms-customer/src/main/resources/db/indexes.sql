@@ -0,0 +1,11 @@
+-- Runs after Hibernate has updated the schema (spring.jpa.defer-datasource-initialization), on
+-- every start, so it may only hold idempotent statements. The phone number normalization and
+-- its unique index are a run-once migration, see PhoneNumberIndexMigration.
+
+-- Prefix search compares lower-cased names in the "C" collation, so a prefix is a plain range
+-- of the index and results come back in index order.
+CREATE INDEX IF NOT EXISTS idx_customers_surname_prefix
+    ON customers ((lower(surname)) COLLATE "C", (lower(name)) COLLATE "C", id);
+
+CREATE INDEX IF NOT EXISTS idx_customers_name_prefix
+    ON customers ((lower(name)) COLLATE "C", id);
@@ -0,0 +1,105 @@
+package az.kb.mscustomer.benchmark
+
+import az.kb.mscustomer.service.CustomerService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+
+/**
+ * Grows the customers table from 100k to 10M rows and measures the latency of a phone number
+ * lookup and of the first and a later page of surname and name prefix searches. Run with
+ * {@code gradle benchmark}.
+ */
+@Stepwise
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class CustomerSearchBenchmarkSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    static final List<String> SURNAMES = ["Mammadov", "Aliyev", "Hasanov", "Huseynov", "Guliyev", "Ismayilov",
+                                          "Abbasov", "Rzayev", "Karimov", "Jafarov", "Babayev", "Mustafayev"]
+    static final List<String> NAMES = ["Ali", "Aysel", "Elvin", "Leyla", "Murad", "Nigar", "Orxan", "Rashad",
+                                       "Sabina", "Tural", "Ulviyya", "Zaur"]
+    static final int WARMUP = 50
+    static final int SAMPLES = 200
+
+    @Autowired
+    CustomerService customerService
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    @Shared
+    int seeded = 0
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+        registry.add("spring.jpa.show-sql", { "false" })
+        registry.add("customer.journal.snapshots.enabled", { "false" })
+        registry.add("customer.holds.sweep.enabled", { "false" })
+    }
+
+    def "lookup and prefix search latency with #rows customers"() {
+        given:
+        seedUpTo(rows)
+        def phoneNumber = "+994 " + String.format("%09d", rows.intdiv(2))
+
+        when:
+        double byPhone = medianMillis { customerService.getCustomerByPhoneNumber(phoneNumber) }
+        double bySurname = medianMillis { customerService.searchCustomers("Huse", null, 0, 20) }
+        double bySurnameDeep = medianMillis { customerService.searchCustomers("Huse", null, 50, 20) }
+        double bySurnameAndName = medianMillis { customerService.searchCustomers("huseynov7", "Mu", 0, 20) }
+        double byName = medianMillis { customerService.searchCustomers(null, "Nig", 0, 20) }
+        println String.format("rows=%,11d  phone p50=%.3f ms  surname p50=%.3f ms  surname page 50 p50=%.3f ms  " +
+                "surname+name p50=%.3f ms  name p50=%.3f ms", rows, byPhone, bySurname, bySurnameDeep, bySurnameAndName, byName)
+
+        then:
+        customerService.getCustomerByPhoneNumber(phoneNumber).phoneNumber == "+994" + String.format("%09d", rows.intdiv(2))
+        customerService.searchCustomers("Huse", null, 0, 20).every { it.surname.startsWith("Huseynov") }
+        byPhone < 5d
+        bySurname < 20d
+        byName < 20d
+
+        where:
+        rows << [100_000, 1_000_000, 10_000_000]
+    }
+
+    /**
+     * Surnames are a family name with a numeric suffix, so a short prefix matches a twelfth of
+     * the table and a suffixed one only a few hundred rows.
+     */
+    private void seedUpTo(int rows) {
+        jdbcTemplate.update("""
+                INSERT INTO customers (name, surname, phone_number, balance, held_balance, created_at, updated_at)
+                SELECT (?::text[])[1 + (g / 12) % 12], (?::text[])[1 + g % 12] || (g % 1000),
+                       '+994' || lpad(g::text, 9, '0'), 100, 0, now(), now()
+                FROM generate_series(?, ?) g
+                """,
+                NAMES.toArray(new String[0]), SURNAMES.toArray(new String[0]), seeded + 1, rows)
+        jdbcTemplate.execute("ANALYZE customers")
+        seeded = rows
+    }
+
+    private static double medianMillis(Closure query) {
+        WARMUP.times { query.call() }
+        List<Long> samples = (1..SAMPLES).collect {
+            long start = System.nanoTime()
+            query.call()
+            System.nanoTime() - start
+        }.sort()
+        return samples[SAMPLES.intdiv(2)] / 1_000_000d
+    }
+}
@@ -0,0 +1,76 @@
+package az.kb.mscustomer.config
+
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Specification
+
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class PhoneNumberIndexMigrationSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    @Autowired
+    PhoneNumberIndexMigration migration
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+        registry.add("customer.phone-number-index.migrate-on-startup", { "false" })
+    }
+
+    def "legacy numbers are normalized and duplicates among them hold back the index without failing"() {
+        given: "numbers written before normalization, two of them the same number"
+        def first = insert("+994 (50) 111-11-11")
+        def duplicate = insert("00994501111111")
+        def local = insert(" 050.222.22.22 ")
+        def blank = insert("n/a")
+
+        when:
+        def applied = migration.migrate()
+
+        then:
+        !applied
+        phoneNumber(first) == "+994501111111"
+        phoneNumber(duplicate) == "+994501111111"
+        phoneNumber(local) == "0502222222"
+        phoneNumber(blank) == null
+        indexValid() == []
+        jdbcTemplate.queryForObject("SELECT count(*) FROM schema_migrations", Long) == 0
+
+        when: "the duplicate is resolved by hand"
+        jdbcTemplate.update("DELETE FROM customers WHERE id = ?", duplicate)
+
+        then: "the index is built and the migration is recorded once"
+        migration.migrate()
+        indexValid() == [true]
+        migration.migrate()
+        jdbcTemplate.queryForObject("SELECT count(*) FROM schema_migrations", Long) == 1
+    }
+
+    private Long insert(String phoneNumber) {
+        jdbcTemplate.queryForObject("INSERT INTO customers (name, surname, phone_number, balance) " +
+                "VALUES ('Legacy', 'Customer', ?, 100) RETURNING id", Long, phoneNumber)
+    }
+
+    private String phoneNumber(Long id) {
+        jdbcTemplate.queryForObject("SELECT phone_number FROM customers WHERE id = ?", String, id)
+    }
+
+    private List<Boolean> indexValid() {
+        jdbcTemplate.queryForList("SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid " +
+                "WHERE c.relname = ?", Boolean, PhoneNumberIndexMigration.INDEX)
+    }
+}
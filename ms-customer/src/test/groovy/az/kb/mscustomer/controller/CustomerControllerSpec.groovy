@@ -1,20 +1,37 @@
 package az.kb.mscustomer.controller
 
+import az.kb.mscustomer.entity.BalanceHold
+import az.kb.mscustomer.entity.BalanceOperation
 import az.kb.mscustomer.entity.Customer
+import az.kb.mscustomer.enums.BalanceOperationStatus
+import az.kb.mscustomer.enums.BalanceUpdateStatus
+import az.kb.mscustomer.enums.HoldStatus
+import az.kb.mscustomer.model.BalanceUpdate
+import az.kb.mscustomer.model.BalanceUpdateResult
+import az.kb.mscustomer.model.BulkCreateResult
 import az.kb.mscustomer.model.CreateCustomerRequest
 import az.kb.mscustomer.model.UpdateBalanceRequest
+import az.kb.mscustomer.model.HistoricalBalance
+import az.kb.mscustomer.service.BalanceHistoryService
+import az.kb.mscustomer.service.BulkCustomerService
 import az.kb.mscustomer.service.CustomerService
+import az.kb.mscustomer.service.HoldService
 import org.springframework.http.HttpStatus
 import org.springframework.http.ResponseEntity
 import spock.lang.Specification
 
 import java.time.LocalDate
+import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
 
 class CustomerControllerSpec extends Specification {
 
     CustomerService customerService = Mock()
-    CustomerController customerController = new CustomerController(customerService)
+    BalanceHistoryService balanceHistoryService = Mock()
+    HoldService holdService = Mock()
+    BulkCustomerService bulkCustomerService = Mock()
+    CustomerController customerController = new CustomerController(customerService, balanceHistoryService, holdService,
+            bulkCustomerService)
 
     def "CreateCustomer Success"() {
         given:
@@ -43,6 +60,33 @@ class CustomerControllerSpec extends Specification {
         response.body == customer
     }
 
+    def "createCustomersFromCsv should hand the body stream to the bulk service"() {
+        given:
+        def body = new ByteArrayInputStream("name,surname,birthDate,phoneNumber\n".bytes)
+        def result = BulkCreateResult.builder().created(0).ids([]).errors([]).build()
+
+        when:
+        def response = customerController.createCustomersFromCsv(body)
+
+        then:
+        1 * bulkCustomerService.createFromCsv(body) >> result
+        response.statusCode == HttpStatus.OK
+        response.body == result
+    }
+
+    def "searchCustomers should return the page found by the service"() {
+        given:
+        def customers = [Customer.builder().id(1L).name("Mubariz").surname("Mammadzade").build()]
+
+        when:
+        def response = customerController.searchCustomers("Mamm", null, 0, 20)
+
+        then:
+        1 * customerService.searchCustomers("Mamm", null, 0, 20) >> customers
+        response.statusCode == HttpStatus.OK
+        response.body == customers
+    }
+
     def "GetCustomer Success"() {
         given:
         Long customerId = 1L
@@ -83,8 +127,76 @@ class CustomerControllerSpec extends Specification {
         ResponseEntity<Customer> response = customerController.updateBalance(customerId, request)
 
         then:
-        1 * customerService.updateBalance(customerId, request.amount) >> updatedCustomer
+        1 * customerService.updateBalance(customerId, request.amount, null) >> updatedCustomer
         response.statusCode == HttpStatus.OK
         response.body == updatedCustomer
     }
-}
\ No newline at end of file
+
+    def "resolveBalanceOperation should return the resolved operation"() {
+        given:
+        def operation = BalanceOperation.builder().operationId("txn-5").status(BalanceOperationStatus.APPLIED).build()
+
+        when:
+        ResponseEntity<BalanceOperation> response = customerController.resolveBalanceOperation("txn-5")
+
+        then:
+        1 * customerService.resolveBalanceOperation("txn-5") >> operation
+        response.statusCode == HttpStatus.OK
+        response.body == operation
+    }
+
+    def "updateBalances should return one result per item"() {
+        given:
+        def updates = [new BalanceUpdate(1L, BigDecimal.TEN, "op-1")]
+        def results = [BalanceUpdateResult.builder().index(0).customerId(1L).status(BalanceUpdateStatus.APPLIED).build()]
+
+        when:
+        def response = customerController.updateBalances(updates)
+
+        then:
+        1 * customerService.updateBalances(updates) >> results
+        response.statusCode == HttpStatus.OK
+        response.body == results
+    }
+
+    def "configureStripes should return the customer with its whole balance"() {
+        given:
+        def customer = Customer.builder().id(1L).balance(BigDecimal.TEN).stripes(4).build()
+
+        when:
+        def response = customerController.configureStripes(1L, 4)
+
+        then:
+        1 * customerService.configureStripes(1L, 4) >> customer
+        response.statusCode == HttpStatus.OK
+        response.body.balance == BigDecimal.TEN
+    }
+
+    def "getBalance should return the balance as of the requested time"() {
+        given:
+        def asOf = LocalDateTime.of(2024, 3, 1, 12, 0)
+        def balance = HistoricalBalance.builder().customerId(1L).asOf(asOf).balance(BigDecimal.TEN).build()
+
+        when:
+        def response = customerController.getBalance(1L, asOf)
+
+        then:
+        1 * balanceHistoryService.getBalance(1L, asOf) >> balance
+        response.statusCode == HttpStatus.OK
+        response.body == balance
+    }
+
+    def "captureHold without a body should capture the whole hold"() {
+        given:
+        def hold = BalanceHold.builder().holdId("txn-1").customerId(1L).amount(BigDecimal.TEN)
+                .capturedAmount(BigDecimal.TEN).status(HoldStatus.CAPTURED).build()
+
+        when:
+        def response = customerController.captureHold("txn-1", null)
+
+        then:
+        1 * holdService.capture("txn-1", null) >> hold
+        response.statusCode == HttpStatus.OK
+        response.body == hold
+    }
+}
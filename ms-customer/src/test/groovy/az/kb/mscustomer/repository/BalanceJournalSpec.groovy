@@ -0,0 +1,77 @@
+package az.kb.mscustomer.repository
+
+import az.kb.mscustomer.model.CreateCustomerRequest
+import az.kb.mscustomer.service.BalanceHistoryService
+import az.kb.mscustomer.service.CustomerService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class BalanceJournalSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    @Autowired
+    CustomerService customerService
+
+    @Autowired
+    BalanceHistoryService balanceHistoryService
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+        registry.add("customer.journal.settle-lag", { "0s" })
+    }
+
+    def "every balance change is journaled and past balances are answered with and without snapshots"() {
+        given:
+        Long id = customerService.createCustomer(new CreateCustomerRequest(name: "Ada", surname: "L", phoneNumber: "+1")).id
+        def afterCreate = pause()
+        customerService.updateBalance(id, 50.00, "txn-1")
+        def afterTopUp = pause()
+        customerService.configureStripes(id, 4)
+        customerService.updateBalance(id, -30.00, "txn-2")
+        def afterPurchase = pause()
+
+        expect: "one entry per change, the stripe split itself is not a change"
+        jdbcTemplate.queryForObject("SELECT count(*) FROM balance_journal WHERE customer_id = ?", Long, id) == 3
+
+        and: "before any snapshot, balances are replayed back from the current one"
+        balanceHistoryService.getBalance(id, afterCreate).balance == 100.00
+        balanceHistoryService.getBalance(id, afterTopUp).balance == 150.00
+        balanceHistoryService.getBalance(id, afterPurchase).balance == 120.00
+
+        when:
+        balanceHistoryService.takeSnapshots()
+        customerService.updateBalance(id, 5.00, "txn-3")
+
+        then: "the same answers come from the snapshots plus the entries after them"
+        balanceHistoryService.getBalance(id, afterCreate).balance == 100.00
+        balanceHistoryService.getBalance(id, afterPurchase).balance == 120.00
+        balanceHistoryService.getBalance(id, null).balance == 125.00
+        customerService.getCustomer(id).balance == 125.00
+    }
+
+    private static LocalDateTime pause() {
+        sleep(20)
+        def now = LocalDateTime.now()
+        sleep(20)
+        now
+    }
+}
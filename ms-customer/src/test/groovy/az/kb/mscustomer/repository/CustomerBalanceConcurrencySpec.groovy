@@ -0,0 +1,306 @@
+package az.kb.mscustomer.repository
+
+import az.kb.mscustomer.entity.Customer
+import az.kb.mscustomer.enums.BalanceOperationStatus
+import az.kb.mscustomer.enums.BalanceUpdateStatus
+import az.kb.mscustomer.enums.HoldStatus
+import az.kb.mscustomer.exception.BalanceOperationConflictException
+import az.kb.mscustomer.exception.InsufficientBalanceException
+import az.kb.mscustomer.model.BalanceUpdate
+import az.kb.mscustomer.model.HoldRequest
+import az.kb.mscustomer.service.BulkCustomerService
+import az.kb.mscustomer.service.CustomerService
+import az.kb.mscustomer.service.HoldService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.transaction.support.TransactionTemplate
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class CustomerBalanceConcurrencySpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    static final int THREADS = 16
+    static final int UPDATES_PER_THREAD = 200
+
+    static final AtomicLong phoneNumbers = new AtomicLong()
+
+    @Autowired
+    CustomerRepository customerRepository
+
+    @Autowired
+    CustomerService customerService
+
+    @Autowired
+    TransactionTemplate transactionTemplate
+
+    @Autowired
+    HoldService holdService
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    @Autowired
+    BulkCustomerService bulkCustomerService
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+    }
+
+    def "concurrent top-ups on one customer lose no updates and outpace read-modify-write"() {
+        given:
+        Long atomicId = newCustomer(BigDecimal.ZERO).id
+        Long legacyId = newCustomer(BigDecimal.ZERO).id
+        BigDecimal expected = BigDecimal.valueOf(THREADS * UPDATES_PER_THREAD)
+
+        when:
+        double legacyOpsPerSecond = hammer {
+            transactionTemplate.executeWithoutResult {
+                Customer customer = customerRepository.findById(legacyId).get()
+                customer.balance = customer.balance.add(BigDecimal.ONE)
+                customerRepository.save(customer)
+            }
+        }
+        double atomicOpsPerSecond = hammer {
+            customerService.updateBalance(atomicId, BigDecimal.ONE, null)
+        }
+
+        then:
+        customerRepository.findById(atomicId).get().balance == expected
+        customerRepository.findById(legacyId).get().balance <= expected
+        atomicOpsPerSecond > legacyOpsPerSecond
+    }
+
+    def "concurrent purchases never drive the balance negative"() {
+        given:
+        Long customerId = newCustomer(BigDecimal.valueOf(100)).id
+        AtomicInteger accepted = new AtomicInteger()
+        AtomicInteger rejected = new AtomicInteger()
+
+        when:
+        hammer {
+            try {
+                customerService.updateBalance(customerId, BigDecimal.valueOf(-1), null)
+                accepted.incrementAndGet()
+            } catch (InsufficientBalanceException ignored) {
+                rejected.incrementAndGet()
+            }
+        }
+
+        then:
+        accepted.get() == 100
+        rejected.get() == THREADS * UPDATES_PER_THREAD - 100
+        customerRepository.findById(customerId).get().balance == BigDecimal.ZERO
+    }
+
+    def "replays of one operation id apply the balance change once"() {
+        given:
+        Long customerId = newCustomer(BigDecimal.ZERO).id
+
+        when:
+        hammer {
+            customerService.updateBalance(customerId, BigDecimal.TEN, "txn-replayed")
+        }
+
+        then:
+        customerRepository.findById(customerId).get().balance == BigDecimal.TEN
+        customerService.resolveBalanceOperation("txn-replayed").status == BalanceOperationStatus.APPLIED
+    }
+
+    def "a voided operation id can no longer be applied"() {
+        given:
+        Long customerId = newCustomer(BigDecimal.ZERO).id
+
+        when:
+        def resolved = customerService.resolveBalanceOperation("txn-lost")
+        customerService.updateBalance(customerId, BigDecimal.TEN, "txn-lost")
+
+        then:
+        resolved.status == BalanceOperationStatus.VOIDED
+        thrown(BalanceOperationConflictException)
+        customerRepository.findById(customerId).get().balance == BigDecimal.ZERO
+    }
+
+    def "concurrent batches over the same customers in opposite orders do not deadlock"() {
+        given:
+        List<Long> ids = (1..10).collect { newCustomer(BigDecimal.ZERO).id }
+        def forward = ids.collect { new BalanceUpdate(it, BigDecimal.ONE, null) }
+        def backward = forward.reverse()
+        AtomicInteger calls = new AtomicInteger()
+
+        when:
+        hammer {
+            def results = customerService.updateBalances(calls.incrementAndGet() % 2 == 0 ? forward : backward)
+            assert results*.status.every { it == BalanceUpdateStatus.APPLIED }
+        }
+
+        then:
+        ids.every { customerRepository.findById(it).get().balance == BigDecimal.valueOf(THREADS * UPDATES_PER_THREAD) }
+    }
+
+    def "concurrent batches over the same striped customers do not deadlock"() {
+        given:
+        List<Long> ids = (1..3).collect { newCustomer(BigDecimal.valueOf(1_000_000)).id }
+        ids.each { customerService.configureStripes(it, 4) }
+        def forward = ids.collectMany { id -> [new BalanceUpdate(id, 2.00, null), new BalanceUpdate(id, -1.00, null)] }
+        def backward = forward.reverse()
+        AtomicInteger calls = new AtomicInteger()
+
+        when:
+        hammer {
+            def results = customerService.updateBalances(calls.incrementAndGet() % 2 == 0 ? forward : backward)
+            assert results*.status.every { it == BalanceUpdateStatus.APPLIED }
+        }
+
+        then:
+        ids.every { customerService.getCustomer(it).balance == BigDecimal.valueOf(1_000_000 + THREADS * UPDATES_PER_THREAD) }
+    }
+
+    def "striping a hot account scales mixed traffic with the number of stripes"() {
+        given:
+        Map<Integer, Double> opsPerSecond = [:]
+
+        when:
+        [1, 4, 16].each { stripes ->
+            Long customerId = newCustomer(BigDecimal.valueOf(1_000_000)).id
+            customerService.configureStripes(customerId, stripes)
+            AtomicInteger calls = new AtomicInteger()
+            opsPerSecond[stripes] = hammer {
+                customerService.updateBalance(customerId, calls.incrementAndGet() % 4 == 0 ? -3.00 : 1.00, null)
+            }
+            int debits = THREADS * UPDATES_PER_THREAD / 4
+            assert customerService.getCustomer(customerId).balance ==
+                    BigDecimal.valueOf(1_000_000 + (THREADS * UPDATES_PER_THREAD - debits) - 3 * debits)
+        }
+        opsPerSecond.each { stripes, ops -> println String.format("stripes=%2d  %,.0f updates/s", stripes, ops) }
+
+        then:
+        opsPerSecond[4] > opsPerSecond[1]
+        opsPerSecond[16] > opsPerSecond[1]
+    }
+
+    def "concurrent holds never reserve more than the balance and debits cannot take held funds"() {
+        given:
+        Long customerId = newCustomer(BigDecimal.valueOf(100)).id
+        AtomicInteger held = new AtomicInteger()
+
+        when:
+        hammer {
+            try {
+                holdService.reserve(customerId, HoldRequest.builder().amount(BigDecimal.ONE).build())
+                held.incrementAndGet()
+            } catch (InsufficientBalanceException ignored) {
+            }
+        }
+        customerService.updateBalance(customerId, BigDecimal.valueOf(-1), null)
+
+        then:
+        thrown(InsufficientBalanceException)
+        held.get() == 100
+        customerRepository.findById(customerId).get().heldBalance == BigDecimal.valueOf(100)
+    }
+
+    def "capture debits and journals the captured amount and gives back the rest of the hold"() {
+        given:
+        Long customerId = newCustomer(BigDecimal.valueOf(100)).id
+        holdService.reserve(customerId, HoldRequest.builder().holdId("hold-capture").amount(BigDecimal.valueOf(40)).build())
+
+        when:
+        def hold = holdService.capture("hold-capture", BigDecimal.valueOf(25))
+        def replay = holdService.capture("hold-capture", null)
+
+        then:
+        hold.status == HoldStatus.CAPTURED
+        replay.capturedAmount == BigDecimal.valueOf(25)
+        with(customerRepository.findById(customerId).get()) {
+            balance == BigDecimal.valueOf(75)
+            heldBalance == BigDecimal.ZERO
+        }
+        jdbcTemplate.queryForObject("SELECT amount FROM balance_journal WHERE operation_id = 'hold-capture'",
+                BigDecimal) == BigDecimal.valueOf(-25)
+    }
+
+    def "the expiry sweep releases due holds only"() {
+        given:
+        Long customerId = newCustomer(BigDecimal.valueOf(100)).id
+        holdService.reserve(customerId, HoldRequest.builder().holdId("hold-due").amount(BigDecimal.TEN).ttlSeconds(60L).build())
+        holdService.reserve(customerId, HoldRequest.builder().holdId("hold-open").amount(BigDecimal.ONE).ttlSeconds(600L).build())
+        jdbcTemplate.update("UPDATE balance_holds SET expires_at = now() - interval '1 second' WHERE hold_id = 'hold-due'")
+
+        when:
+        holdService.expireDue()
+
+        then:
+        holdService.getHold("hold-due").status == HoldStatus.EXPIRED
+        holdService.getHold("hold-open").status == HoldStatus.ACTIVE
+        customerRepository.findById(customerId).get().heldBalance == BigDecimal.ONE
+    }
+
+    def "bulk uploads are copied in chunks with their journal entries and ids in row order"() {
+        given:
+        int rows = 12_000
+        def csv = new StringBuilder("name,surname,birthDate,phoneNumber\n")
+        rows.times { csv.append("Bulk,\"Row, $it\",01.01.1990,+994${it}\n") }
+
+        when:
+        def result = bulkCustomerService.createFromCsv(new ByteArrayInputStream(csv.toString().bytes))
+        Long next = newCustomer(BigDecimal.ZERO).id
+
+        then:
+        result.created == rows
+        result.ids == result.ids.toSorted()
+        customerRepository.findById(result.ids.last()).get().surname == "Row, ${rows - 1}"
+        jdbcTemplate.queryForObject("SELECT count(*) FROM balance_journal WHERE customer_id BETWEEN ? AND ?",
+                Long, result.ids.first(), result.ids.last()) == rows
+        next > result.ids.last()
+    }
+
+    private Customer newCustomer(BigDecimal balance) {
+        customerRepository.save(Customer.builder()
+                .name("Load")
+                .surname("Test")
+                .phoneNumber("+000" + phoneNumbers.incrementAndGet())
+                .balance(balance)
+                .build())
+    }
+
+    private static double hammer(Closure operation) {
+        def pool = Executors.newFixedThreadPool(THREADS)
+        def start = new CountDownLatch(1)
+        def done = new CountDownLatch(THREADS)
+        THREADS.times {
+            pool.submit {
+                start.await()
+                try {
+                    UPDATES_PER_THREAD.times { operation.call() }
+                } finally {
+                    done.countDown()
+                }
+            }
+        }
+        long startedAt = System.nanoTime()
+        start.countDown()
+        done.await(2, TimeUnit.MINUTES)
+        long elapsed = System.nanoTime() - startedAt
+        pool.shutdown()
+        return THREADS * UPDATES_PER_THREAD / (elapsed / 1_000_000_000d)
+    }
+}
@@ -0,0 +1,79 @@
+package az.kb.mscustomer.service
+
+import az.kb.mscustomer.entity.BalanceSnapshot
+import az.kb.mscustomer.exception.NotFoundException
+import az.kb.mscustomer.repository.BalanceSnapshotRepository
+import az.kb.mscustomer.repository.CustomerRepository
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.LocalDateTime
+
+class BalanceHistoryServiceSpec extends Specification {
+
+    CustomerRepository customerRepository = Mock()
+    BalanceSnapshotRepository snapshotRepository = Mock()
+    BalanceHistoryService historyService = new BalanceHistoryService(customerRepository, snapshotRepository,
+            new TransactionTemplate(Mock(PlatformTransactionManager)), true, Duration.ofMinutes(5), 100)
+
+    def asOf = LocalDateTime.of(2024, 3, 1, 12, 0)
+
+    def "getBalance should answer from the nearest snapshot plus journal replay"() {
+        when:
+        def result = historyService.getBalance(1L, asOf)
+
+        then:
+        1 * snapshotRepository.findBalanceAsOf(1L, asOf) >> Optional.of(new BigDecimal("42.00"))
+        0 * snapshotRepository.findBalanceBackFrom(_, _)
+        result.customerId == 1L
+        result.asOf == asOf
+        result.balance == new BigDecimal("42.00")
+    }
+
+    def "getBalance should replay back from the current balance for a customer without snapshots"() {
+        when:
+        def result = historyService.getBalance(1L, asOf)
+
+        then:
+        1 * snapshotRepository.findBalanceAsOf(1L, asOf) >> Optional.empty()
+        1 * snapshotRepository.findBalanceBackFrom(1L, asOf) >> Optional.of(new BigDecimal("7.00"))
+        result.balance == new BigDecimal("7.00")
+    }
+
+    def "getBalance should throw NotFoundException for an unknown customer"() {
+        given:
+        snapshotRepository.findBalanceAsOf(*_) >> Optional.empty()
+        snapshotRepository.findBalanceBackFrom(*_) >> Optional.empty()
+
+        when:
+        historyService.getBalance(99L, asOf)
+
+        then:
+        thrown(NotFoundException)
+    }
+
+    def "takeSnapshots should walk all customers in id ranges, settle-lag in the past"() {
+        given:
+        List<LocalDateTime> takenAts = []
+
+        when:
+        def written = historyService.takeSnapshots()
+
+        then:
+        1 * customerRepository.findMaxId() >> 250L
+        1 * snapshotRepository.insertOpening(0L, 100L, BalanceSnapshot.OPENING) >> 3
+        1 * snapshotRepository.insertOpening(100L, 200L, BalanceSnapshot.OPENING) >> 0
+        1 * snapshotRepository.insertOpening(200L, 300L, BalanceSnapshot.OPENING) >> 0
+        3 * snapshotRepository.rollForward(_, _, _) >> { Long after, Long upTo, LocalDateTime takenAt ->
+            takenAts << takenAt
+            return 2
+        }
+
+        and:
+        written == 9
+        takenAts.unique().size() == 1
+        takenAts[0].isBefore(LocalDateTime.now().minusMinutes(4))
+    }
+}
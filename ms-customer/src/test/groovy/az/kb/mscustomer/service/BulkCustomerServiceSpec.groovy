@@ -0,0 +1,183 @@
+package az.kb.mscustomer.service
+
+import az.kb.mscustomer.constant.ErrorMessage
+import az.kb.mscustomer.model.CreateCustomerRequest
+import az.kb.mscustomer.repository.CustomerBulkRepository
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.springframework.dao.DuplicateKeyException
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.time.LocalDate
+
+class BulkCustomerServiceSpec extends Specification {
+
+    CustomerBulkRepository bulkRepository = Mock()
+    BulkCustomerService bulkCustomerService = new BulkCustomerService(bulkRepository, new ObjectMapper().findAndRegisterModules())
+
+    def setup() {
+        bulkCustomerService.chunkSize = 2
+        bulkCustomerService.maxRows = 5
+        bulkRepository.findTakenPhoneNumbers(_) >> ([] as Set)
+    }
+
+    def "createFromJson should insert valid rows in chunks and return ids in upload order"() {
+        given:
+        def body = '''[
+            {"name": "Ali", "surname": "Aliyev", "birthDate": "01.02.1990", "phoneNumber": "+994501111111"},
+            {"name": "", "surname": "Mammadov", "phoneNumber": "+994502222222"},
+            {"name": "Leyla", "surname": "Hasanova", "phoneNumber": "+994503333333"},
+            {"name": "Nigar", "surname": "Quliyeva", "birthDate": "1990-02-01", "phoneNumber": "+994504444444"},
+            {"name": "Orxan", "surname": "Karimov", "phoneNumber": "+994505555555"}
+        ]'''
+
+        when:
+        def result = bulkCustomerService.createFromJson(stream(body))
+
+        then:
+        1 * bulkRepository.insertAll({ it*.name == ["Ali", "Leyla"] }, new BigDecimal("100")) >> [11L, 12L]
+        1 * bulkRepository.insertAll({ it*.name == ["Orxan"] }, _) >> [13L]
+
+        and:
+        result.created == 3
+        result.ids == [11L, null, 12L, null, 13L]
+        result.errors*.index == [1, 3]
+        result.errors[0].message == ErrorMessage.BULK_ROW_INCOMPLETE
+    }
+
+    def "createFromCsv should match columns by header name and unquote fields"() {
+        given:
+        def body = '''phoneNumber,name,surname,birthDate
++994501111111,"Aliyev, Ali","Said ""Junior""",01.02.1990
+
++994502222222,Leyla,Hasanova,
++994503333333,Nigar,Quliyeva,1990-02-01
++994504444444,Orxan
+'''
+        List<CreateCustomerRequest> inserted = null
+
+        when:
+        def result = bulkCustomerService.createFromCsv(stream(body))
+
+        then:
+        1 * bulkRepository.insertAll(_, _) >> { List<CreateCustomerRequest> customers, BigDecimal balance ->
+            inserted = new ArrayList<>(customers)
+            return [21L, 22L]
+        }
+
+        and:
+        inserted*.name == ["Aliyev, Ali", "Leyla"]
+        inserted[0].surname == 'Said "Junior"'
+        inserted[0].birthDate == LocalDate.of(1990, 2, 1)
+        inserted[1].birthDate == null
+        inserted[1].phoneNumber == "+994502222222"
+
+        and:
+        result.ids == [21L, 22L, null, null]
+        result.errors*.message == [ErrorMessage.BULK_INVALID_BIRTH_DATE, ErrorMessage.BULK_CSV_COLUMNS]
+    }
+
+    def "phone numbers should be normalized and may be used only once"() {
+        given:
+        def body = '''[
+            {"name": "Ali", "surname": "Aliyev", "phoneNumber": "+994 50 111 11 11"},
+            {"name": "Vali", "surname": "Valiyev", "phoneNumber": "00994501111111"},
+            {"name": "Leyla", "surname": "Hasanova", "phoneNumber": "+994 50 222 22 22"},
+            {"name": "Nigar", "surname": "Quliyeva", "phoneNumber": "none"}
+        ]'''
+
+        when:
+        def result = bulkCustomerService.createFromJson(stream(body))
+
+        then:
+        1 * bulkRepository.findTakenPhoneNumbers(["+994501111111", "+994502222222"]) >> (["+994502222222"] as Set)
+        1 * bulkRepository.insertAll({ it*.phoneNumber == ["+994501111111"] }, _) >> [31L]
+
+        and:
+        result.ids == [31L, null, null, null]
+        result.errors*.index == [1, 2, 3]
+        result.errors*.message == [ErrorMessage.PHONE_NUMBER_TAKEN + " +994501111111",
+                                   ErrorMessage.PHONE_NUMBER_TAKEN + " +994502222222",
+                                   ErrorMessage.INVALID_PHONE_NUMBER]
+    }
+
+    def "a chunk whose copy hits a number taken concurrently should be checked and copied again"() {
+        given:
+        def body = '''[
+            {"name": "Ali", "surname": "Aliyev", "phoneNumber": "+994501111111"},
+            {"name": "Leyla", "surname": "Hasanova", "phoneNumber": "+994502222222"}
+        ]'''
+
+        when:
+        def result = bulkCustomerService.createFromJson(stream(body))
+
+        then:
+        1 * bulkRepository.findTakenPhoneNumbers(["+994501111111", "+994502222222"]) >> ([] as Set)
+        1 * bulkRepository.insertAll(_, _) >> { throw new DuplicateKeyException("uk_customers_phone_number") }
+
+        then:
+        1 * bulkRepository.findTakenPhoneNumbers(["+994501111111", "+994502222222"]) >> (["+994502222222"] as Set)
+        1 * bulkRepository.insertAll({ it*.phoneNumber == ["+994501111111"] }, _) >> [41L]
+
+        and:
+        result.created == 1
+        result.ids == [41L, null]
+        result.errors*.message == [ErrorMessage.PHONE_NUMBER_TAKEN + " +994502222222"]
+    }
+
+    def "a chunk that conflicts again after the recheck should be reported as not created"() {
+        given:
+        def body = '''[
+            {"name": "Ali", "surname": "Aliyev", "phoneNumber": "+994501111111"},
+            {"name": "Leyla", "surname": "Hasanova", "phoneNumber": "+994502222222"}
+        ]'''
+
+        when:
+        def result = bulkCustomerService.createFromJson(stream(body))
+
+        then:
+        2 * bulkRepository.insertAll(_, _) >> { throw new DuplicateKeyException("uk_customers_phone_number") }
+
+        and:
+        result.created == 0
+        result.ids == [null, null]
+        result.errors*.index == [0, 1]
+        result.errors*.message.every { it == ErrorMessage.BULK_CHUNK_CONFLICT }
+    }
+
+    def "createFromCsv should reject a header that does not name the columns"() {
+        when:
+        bulkCustomerService.createFromCsv(stream("name,surname,phone\nAli,Aliyev,+994501111111\n"))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == ErrorMessage.BULK_CSV_HEADER
+        0 * bulkRepository._
+    }
+
+    def "uploads over the row limit should be rejected"() {
+        given:
+        def body = "name,surname,birthDate,phoneNumber\n" + (1..6).collect { "Name$it,Surname$it,,+99450000000$it" }.join("\n")
+        bulkRepository.insertAll(_, _) >> [1L, 2L]
+
+        when:
+        bulkCustomerService.createFromCsv(stream(body))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message.startsWith(ErrorMessage.BULK_TOO_LARGE)
+    }
+
+    def "createFromJson should fail on a malformed body"() {
+        when:
+        bulkCustomerService.createFromJson(stream('[{"name": "Ali", '))
+
+        then:
+        thrown(JsonParseException)
+    }
+
+    private static InputStream stream(String body) {
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))
+    }
+}
@@ -0,0 +1,78 @@
+package az.kb.mscustomer.service
+
+import az.kb.mscustomer.entity.Customer
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+
+import java.time.Duration
+
+class CustomerCacheSpec extends Specification {
+
+    def meterRegistry = new SimpleMeterRegistry()
+    def customerCache = new CustomerCache(meterRegistry, 100, Duration.ofMinutes(5))
+
+    def cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization()
+        }
+    }
+
+    def "put inside a transaction should become visible only after commit"() {
+        given:
+        TransactionSynchronizationManager.initSynchronization()
+
+        when:
+        customerCache.put(customer(1L, "150"))
+
+        then: "reads still go to the loader"
+        customerCache.get(1L, { Optional.of(customer(1L, "100")) }).get().balance == new BigDecimal("100")
+
+        when:
+        TransactionSynchronizationManager.synchronizations.each { it.afterCommit() }
+
+        then:
+        customerCache.get(1L, { throw new AssertionError("loader called") }).get().balance == new BigDecimal("150")
+    }
+
+    def "put inside a transaction that rolls back should cache nothing"() {
+        given:
+        TransactionSynchronizationManager.initSynchronization()
+
+        when:
+        customerCache.put(customer(1L, "150"))
+        TransactionSynchronizationManager.synchronizations.each {
+            it.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK)
+        }
+
+        then:
+        customerCache.get(1L, { Optional.of(customer(1L, "100")) }).get().balance == new BigDecimal("100")
+    }
+
+    def "put should notify the write listener"() {
+        given:
+        List<Long> written = []
+        customerCache.onWrite { long id -> written << id }
+
+        when:
+        customerCache.put(customer(7L, "10"))
+
+        then:
+        written == [7L]
+    }
+
+    def "hits and misses should be published as cache meters"() {
+        when:
+        customerCache.get(1L, { Optional.of(customer(1L, "100")) })
+        customerCache.get(1L, { Optional.of(customer(1L, "100")) })
+
+        then:
+        meterRegistry.get("cache.gets").tags("cache", "customers", "result", "miss").functionCounter().count() == 1
+        meterRegistry.get("cache.gets").tags("cache", "customers", "result", "hit").functionCounter().count() == 1
+    }
+
+    private static Customer customer(Long id, String balance) {
+        Customer.builder().id(id).balance(new BigDecimal(balance)).build()
+    }
+}
@@ -1,19 +1,41 @@
 package az.kb.mscustomer.service
 
+import az.kb.mscustomer.entity.BalanceOperation
 import az.kb.mscustomer.entity.Customer
+import az.kb.mscustomer.enums.BalanceOperationStatus
+import az.kb.mscustomer.enums.BalanceUpdateStatus
+import az.kb.mscustomer.exception.BalanceOperationConflictException
 import az.kb.mscustomer.exception.InsufficientBalanceException
 import az.kb.mscustomer.exception.NotFoundException
+import az.kb.mscustomer.model.BalanceUpdate
 import az.kb.mscustomer.model.CreateCustomerRequest
+import az.kb.mscustomer.model.CustomerBalance
+import az.kb.mscustomer.repository.BalanceBatchRepository
+import az.kb.mscustomer.repository.BalanceJournalRepository
+import az.kb.mscustomer.repository.BalanceOperationRepository
+import az.kb.mscustomer.repository.BalanceStripeRepository
 import az.kb.mscustomer.repository.CustomerRepository
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.data.domain.Limit
 import spock.lang.Specification
 
+import java.time.Duration
 import java.time.LocalDate
 import java.time.format.DateTimeFormatter
 
+import static az.kb.mscustomer.constant.ErrorMessage.PHONE_NUMBER_TAKEN
+
 class CustomerServiceSpec extends Specification {
 
     CustomerRepository repository = Mock()
-    CustomerService customerService = new CustomerService(repository)
+    BalanceOperationRepository operationRepository = Mock()
+    BalanceBatchRepository batchRepository = Mock()
+    BalanceStripeRepository stripeRepository = Mock()
+    BalanceJournalRepository journalRepository = Mock()
+    StripedBalanceService stripedBalances = new StripedBalanceService(repository, stripeRepository, journalRepository)
+    CustomerCache customerCache = new CustomerCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5))
+    CustomerService customerService = new CustomerService(repository, operationRepository, batchRepository, journalRepository, stripedBalances, customerCache)
 
     def "createCustomer should save customer with initial balance 100 and return saved customer"() {
         given:
@@ -37,7 +59,7 @@ class CustomerServiceSpec extends Specification {
         Customer result = customerService.createCustomer(request)
 
         then:
-        1 * repository.save(_ as Customer) >> { Customer customer ->
+        1 * repository.saveAndFlush(_ as Customer) >> { Customer customer ->
             assert customer.name == "John"
             assert customer.surname == "Doe"
             assert customer.birthDate == request.birthDate
@@ -45,9 +67,110 @@ class CustomerServiceSpec extends Specification {
             assert customer.balance == BigDecimal.valueOf(100)
             return savedCustomer
         }
+        1 * journalRepository.append(1L, BigDecimal.valueOf(100), null)
         result == savedCustomer
     }
 
+    def "createCustomer should store the phone number normalized"() {
+        when:
+        customerService.createCustomer(new CreateCustomerRequest(name: "John", surname: "Doe", phoneNumber: phoneNumber))
+
+        then:
+        1 * repository.existsByPhoneNumber(normalized) >> false
+        1 * repository.saveAndFlush({ it.phoneNumber == normalized }) >> { Customer customer -> customer.toBuilder().id(1L).build() }
+
+        where:
+        phoneNumber            || normalized
+        "+994 (50) 123-45-67"  || "+994501234567"
+        "00994501234567"       || "+994501234567"
+        " 050.123.45.67 "      || "0501234567"
+    }
+
+    def "createCustomer should reject a phone number that is missing or already taken"() {
+        given:
+        repository.existsByPhoneNumber("+994501234567") >> true
+
+        when:
+        customerService.createCustomer(new CreateCustomerRequest(name: "John", surname: "Doe", phoneNumber: phoneNumber))
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * repository.saveAndFlush(_)
+
+        where:
+        phoneNumber << [null, "n/a", "+994 50 123 45 67"]
+    }
+
+    def "createCustomer should reject a phone number taken by a concurrent create"() {
+        given:
+        repository.existsByPhoneNumber("+994501234567") >> false
+        repository.saveAndFlush(_ as Customer) >> { throw new DataIntegrityViolationException("uk_customers_phone_number") }
+
+        when:
+        customerService.createCustomer(new CreateCustomerRequest(name: "John", surname: "Doe", phoneNumber: "+994 50 123 45 67"))
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == PHONE_NUMBER_TAKEN + " +994501234567"
+        0 * journalRepository.append(*_)
+    }
+
+    def "getCustomerByPhoneNumber should look up the normalized number"() {
+        given:
+        def customer = Customer.builder().id(1L).phoneNumber("+994501234567").balance(BigDecimal.TEN).build()
+
+        when:
+        def result = customerService.getCustomerByPhoneNumber("00 994 50 123 45 67")
+
+        then:
+        1 * repository.findByPhoneNumber("+994501234567") >> Optional.of(customer)
+        result == customer
+    }
+
+    def "getCustomerByPhoneNumber should throw NotFoundException for an unknown number"() {
+        given:
+        repository.findByPhoneNumber(_) >> Optional.empty()
+
+        when:
+        customerService.getCustomerByPhoneNumber("+1 555 0100")
+
+        then:
+        NotFoundException exception = thrown()
+        exception.message.endsWith("+15550100")
+    }
+
+    def "searchCustomers should use the surname index when a surname prefix is given"() {
+        when:
+        customerService.searchCustomers(" Mamm ", name, 2, 500)
+
+        then:
+        1 * repository.searchBySurnamePrefix("Mamm", expectedName, 100, 200L) >> []
+        0 * repository.searchByNamePrefix(*_)
+
+        where:
+        name   || expectedName
+        null   || ""
+        "Mub " || "Mub"
+    }
+
+    def "searchCustomers should use the name index for a name prefix alone"() {
+        when:
+        def result = customerService.searchCustomers("", "Ali", 0, 20)
+
+        then:
+        1 * repository.searchByNamePrefix("Ali", 20, 0L) >> [Customer.builder().id(3L).name("Alim").build()]
+        result*.id == [3L]
+    }
+
+    def "searchCustomers should require a prefix"() {
+        when:
+        customerService.searchCustomers(" ", null, 0, 20)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * repository._
+    }
+
     def "getCustomer should return customer when found"() {
         given:
         Long customerId = 1L
@@ -81,20 +204,56 @@ class CustomerServiceSpec extends Specification {
         exception.message.contains("not found")
     }
 
-    def "updateBalance should add positive amount to existing balance and save customer"() {
+    def "getCustomer should serve repeated reads from the cache"() {
+        given:
+        def customer = Customer.builder().id(1L).balance(BigDecimal.valueOf(200)).build()
+
+        when:
+        customerService.getCustomer(1L)
+        Customer result = customerService.getCustomer(1L)
+
+        then:
+        1 * repository.findById(1L) >> Optional.of(customer)
+        result == customer
+    }
+
+    def "getCustomer should not cache a missing customer"() {
+        when:
+        customerService.getCustomer(999L)
+
+        then:
+        1 * repository.findById(999L) >> Optional.empty()
+        thrown(NotFoundException)
+
+        when:
+        customerService.getCustomer(999L)
+
+        then:
+        thrown(NotFoundException)
+        1 * repository.findById(999L) >> Optional.empty()
+    }
+
+    def "updateBalance should write the updated customer through to the cache"() {
+        given:
+        def stale = Customer.builder().id(1L).balance(BigDecimal.valueOf(100)).build()
+        def updated = Customer.builder().id(1L).balance(BigDecimal.valueOf(150)).build()
+        repository.findById(1L) >> Optional.of(stale)
+        customerService.getCustomer(1L)
+
+        when:
+        customerService.updateBalance(1L, BigDecimal.valueOf(50), null)
+        Customer result = customerService.getCustomer(1L)
+
+        then:
+        1 * repository.addToBalance(1L, BigDecimal.valueOf(50), _) >> Optional.of(updated)
+        result.balance == BigDecimal.valueOf(150)
+    }
+
+    def "updateBalance should apply positive amount atomically and return updated customer"() {
         given:
         Long customerId = 1L
         BigDecimal amount = BigDecimal.valueOf(50)
 
-        def existingCustomer = Customer.builder()
-                .id(customerId)
-                .name("Alice")
-                .surname("Johnson")
-                .birthDate(LocalDate.parse("20.10.1992", DateTimeFormatter.ofPattern("dd.MM.yyyy")))
-                .phoneNumber("+111222333")
-                .balance(BigDecimal.valueOf(100))
-                .build()
-
         def updatedCustomer = Customer.builder()
                 .id(customerId)
                 .name("Alice")
@@ -105,31 +264,20 @@ class CustomerServiceSpec extends Specification {
                 .build()
 
         when:
-        Customer result = customerService.updateBalance(customerId, amount)
+        Customer result = customerService.updateBalance(customerId, amount, null)
 
         then:
-        1 * repository.findById(customerId) >> Optional.of(existingCustomer)
-        1 * repository.save(_ as Customer) >> { Customer customer ->
-            assert customer.balance == BigDecimal.valueOf(150)
-            return updatedCustomer
-        }
+        1 * repository.addToBalance(customerId, amount, _) >> Optional.of(updatedCustomer)
+        0 * repository.findById(_)
+        0 * repository.save(_)
         result == updatedCustomer
     }
 
-    def "updateBalance should subtract negative amount from existing balance and save customer"() {
+    def "updateBalance should apply negative amount atomically and return updated customer"() {
         given:
         Long customerId = 1L
         BigDecimal amount = BigDecimal.valueOf(-30)
 
-        def existingCustomer = Customer.builder()
-                .id(customerId)
-                .name("Bob")
-                .surname("Wilson")
-                .birthDate(LocalDate.parse("10.03.1988", DateTimeFormatter.ofPattern("dd.MM.yyyy")))
-                .phoneNumber("+444555666")
-                .balance(BigDecimal.valueOf(100))
-                .build()
-
         def updatedCustomer = Customer.builder()
                 .id(customerId)
                 .name("Bob")
@@ -140,36 +288,25 @@ class CustomerServiceSpec extends Specification {
                 .build()
 
         when:
-        Customer result = customerService.updateBalance(customerId, amount)
+        Customer result = customerService.updateBalance(customerId, amount, null)
 
         then:
-        1 * repository.findById(customerId) >> Optional.of(existingCustomer)
-        1 * repository.save(_ as Customer) >> { Customer customer ->
-            assert customer.balance == BigDecimal.valueOf(70)
-            return updatedCustomer
-        }
+        1 * repository.addToBalance(customerId, amount, _) >> Optional.of(updatedCustomer)
+        0 * repository.existsById(_)
         result == updatedCustomer
     }
 
-    def "updateBalance should throw InsufficientBalanceException when new balance would be negative"() {
+    def "updateBalance should throw InsufficientBalanceException when conditional update is rejected for existing customer"() {
         given:
         Long customerId = 1L
         BigDecimal amount = BigDecimal.valueOf(-150)
 
-        def existingCustomer = Customer.builder()
-                .id(customerId)
-                .name("Charlie")
-                .surname("Brown")
-                .birthDate(LocalDate.parse("05.07.1995", DateTimeFormatter.ofPattern("dd.MM.yyyy")))
-                .phoneNumber("+777888999")
-                .balance(BigDecimal.valueOf(100))
-                .build()
-
         when:
-        customerService.updateBalance(customerId, amount)
+        customerService.updateBalance(customerId, amount, null)
 
         then:
-        1 * repository.findById(customerId) >> Optional.of(existingCustomer)
+        1 * repository.addToBalance(customerId, amount, _) >> Optional.empty()
+        1 * repository.findStripes(customerId) >> Optional.of(0)
         0 * repository.save(_ as Customer)
         InsufficientBalanceException exception = thrown()
         exception.message.contains("Insufficient")
@@ -181,10 +318,11 @@ class CustomerServiceSpec extends Specification {
         BigDecimal amount = BigDecimal.valueOf(50)
 
         when:
-        customerService.updateBalance(customerId, amount)
+        customerService.updateBalance(customerId, amount, null)
 
         then:
-        1 * repository.findById(customerId) >> Optional.empty()
+        1 * repository.addToBalance(customerId, amount, _) >> Optional.empty()
+        1 * repository.findStripes(customerId) >> Optional.empty()
         0 * repository.save(_ as Customer)
         NotFoundException exception = thrown()
         exception.message.contains("not found")
@@ -195,15 +333,6 @@ class CustomerServiceSpec extends Specification {
         Long customerId = 1L
         BigDecimal amount = BigDecimal.valueOf(-100)
 
-        def existingCustomer = Customer.builder()
-                .id(customerId)
-                .name("David")
-                .surname("Miller")
-                .birthDate(LocalDate.parse("12.12.1990", DateTimeFormatter.ofPattern("dd.MM.yyyy")))
-                .phoneNumber("+000111222")
-                .balance(BigDecimal.valueOf(100))
-                .build()
-
         def updatedCustomer = Customer.builder()
                 .id(customerId)
                 .name("David")
@@ -214,14 +343,259 @@ class CustomerServiceSpec extends Specification {
                 .build()
 
         when:
-        Customer result = customerService.updateBalance(customerId, amount)
+        Customer result = customerService.updateBalance(customerId, amount, null)
 
         then:
-        1 * repository.findById(customerId) >> Optional.of(existingCustomer)
-        1 * repository.save(_ as Customer) >> { Customer customer ->
-            assert customer.balance == BigDecimal.ZERO
-            return updatedCustomer
-        }
-        result == updatedCustomer
+        1 * repository.addToBalance(customerId, amount, _) >> Optional.of(updatedCustomer)
+        result.balance == BigDecimal.ZERO
+    }
+
+    def "updateBalance should claim the operation id before applying the change"() {
+        given:
+        def updated = Customer.builder().id(1L).balance(BigDecimal.valueOf(110)).build()
+
+        when:
+        Customer result = customerService.updateBalance(1L, BigDecimal.TEN, "txn-7")
+
+        then:
+        1 * operationRepository.claim("txn-7", 1L, BigDecimal.TEN) >> 1
+
+        then:
+        1 * repository.addToBalance(1L, BigDecimal.TEN, "txn-7") >> Optional.of(updated)
+        result == updated
+    }
+
+    def "updateBalance should return the customer unchanged when the operation was already applied"() {
+        given:
+        def customer = Customer.builder().id(1L).balance(BigDecimal.valueOf(110)).build()
+
+        when:
+        Customer result = customerService.updateBalance(1L, BigDecimal.TEN, "txn-7")
+
+        then:
+        1 * operationRepository.claim("txn-7", 1L, BigDecimal.TEN) >> 0
+        1 * operationRepository.findById("txn-7") >> Optional.of(BalanceOperation.builder()
+                .operationId("txn-7").status(BalanceOperationStatus.APPLIED).build())
+        1 * repository.findById(1L) >> Optional.of(customer)
+        0 * repository.addToBalance(_, _, _)
+        result == customer
+    }
+
+    def "updateBalance should reject an operation that was voided"() {
+        when:
+        customerService.updateBalance(1L, BigDecimal.TEN, "txn-7")
+
+        then:
+        1 * operationRepository.claim("txn-7", 1L, BigDecimal.TEN) >> 0
+        1 * operationRepository.findById("txn-7") >> Optional.of(BalanceOperation.builder()
+                .operationId("txn-7").status(BalanceOperationStatus.VOIDED).build())
+        0 * repository.addToBalance(_, _, _)
+        thrown(BalanceOperationConflictException)
+    }
+
+    def "resolveBalanceOperation should void unknown operations and return the stored state"() {
+        given:
+        def voided = BalanceOperation.builder().operationId("txn-9").status(BalanceOperationStatus.VOIDED).build()
+
+        when:
+        def result = customerService.resolveBalanceOperation("txn-9")
+
+        then:
+        1 * operationRepository.voidIfAbsent("txn-9") >> 1
+
+        then:
+        1 * operationRepository.findById("txn-9") >> Optional.of(voided)
+        result == voided
+    }
+
+    def "getBalances should page by id and cap the page size"() {
+        given:
+        def page = [new CustomerBalance(4L, BigDecimal.TEN), new CustomerBalance(7L, BigDecimal.ONE)]
+
+        when:
+        def result = customerService.getBalances(3L, 1_000_000)
+
+        then:
+        1 * repository.findBalancesAfter(3L, Limit.of(10_000)) >> page
+        result == page
+    }
+
+    def "getBalances should start from the first customer without a cursor"() {
+        when:
+        customerService.getBalances(null, 50)
+
+        then:
+        1 * repository.findBalancesAfter(0L, Limit.of(50)) >> []
+    }
+
+    def "updateBalances should claim by operation id, apply by customer id and report each item"() {
+        given:
+        def updates = [
+                new BalanceUpdate(2L, new BigDecimal("-500"), "op-b"),
+                new BalanceUpdate(1L, new BigDecimal("10"), "op-c"),
+                new BalanceUpdate(1L, new BigDecimal("-5"), "op-a"),
+                new BalanceUpdate(9L, new BigDecimal("1"), null)
+        ]
+
+        when:
+        def results = customerService.updateBalances(updates)
+
+        then: "operation ids are claimed in sorted order"
+        1 * batchRepository.claimOperations({ it*.operationId == ["op-a", "op-b", "op-c"] }) >> ([1, 1, 1] as int[])
+
+        then: "balances are updated in customer id order, request order within a customer"
+        1 * batchRepository.addToBalances({ it*.customerId == [1L, 1L, 2L, 9L] && it[0].operationId == "op-c" }) >> ([1, 1, 0, 0] as int[])
+        1 * repository.findBalancesByIdIn({ it as Set == [1L, 2L, 9L] as Set }) >>
+                [new CustomerBalance(1L, new BigDecimal("105")), new CustomerBalance(2L, new BigDecimal("20"))]
+
+        1 * repository.findStripedIdsIn([2L, 9L] as Set) >> []
+
+        and: "the claim of the rejected item is given back"
+        1 * operationRepository.deleteAllByIdInBatch(["op-b"])
+
+        and:
+        results*.status == [BalanceUpdateStatus.INSUFFICIENT_BALANCE, BalanceUpdateStatus.APPLIED,
+                            BalanceUpdateStatus.APPLIED, BalanceUpdateStatus.NOT_FOUND]
+        results*.index == [0, 1, 2, 3]
+        results[1].balance == new BigDecimal("105")
+        results[0].balance == null
+    }
+
+    def "updateBalances should not reapply taken operation ids"() {
+        given:
+        def updates = [new BalanceUpdate(1L, BigDecimal.TEN, "op-applied"), new BalanceUpdate(1L, BigDecimal.ONE, "op-voided")]
+
+        when:
+        def results = customerService.updateBalances(updates)
+
+        then:
+        1 * batchRepository.claimOperations(_) >> ([0, 0] as int[])
+        1 * operationRepository.findAllById(["op-applied", "op-voided"]) >> [
+                BalanceOperation.builder().operationId("op-applied").status(BalanceOperationStatus.APPLIED).build(),
+                BalanceOperation.builder().operationId("op-voided").status(BalanceOperationStatus.VOIDED).build()]
+        0 * batchRepository.addToBalances(_)
+        1 * repository.findBalancesByIdIn([1L] as Set) >> [new CustomerBalance(1L, new BigDecimal("110"))]
+
+        and:
+        results*.status == [BalanceUpdateStatus.ALREADY_APPLIED, BalanceUpdateStatus.VOIDED]
+        results[0].balance == new BigDecimal("110")
+    }
+
+    def "updateBalances should reject incomplete items and repeated operation ids without touching the database"() {
+        when:
+        def results = customerService.updateBalances([
+                new BalanceUpdate(null, BigDecimal.ONE, null),
+                new BalanceUpdate(1L, null, null)])
+
+        then:
+        0 * batchRepository._
+        results*.status == [BalanceUpdateStatus.INVALID, BalanceUpdateStatus.INVALID]
+
+        when:
+        results = customerService.updateBalances([
+                new BalanceUpdate(1L, BigDecimal.ONE, "op-1"),
+                new BalanceUpdate(1L, BigDecimal.ONE, "op-1")])
+
+        then:
+        1 * batchRepository.claimOperations({ it.size() == 1 }) >> ([1] as int[])
+        1 * batchRepository.addToBalances({ it.size() == 1 }) >> ([1] as int[])
+        1 * repository.findBalancesByIdIn(_) >> [new CustomerBalance(1L, BigDecimal.TEN)]
+        results*.status == [BalanceUpdateStatus.APPLIED, BalanceUpdateStatus.INVALID]
+    }
+
+    def "updateBalances should evict applied customers from the cache"() {
+        given:
+        repository.findById(1L) >> Optional.of(Customer.builder().id(1L).balance(BigDecimal.ONE).build())
+        customerService.getCustomer(1L)
+        batchRepository.addToBalances(_) >> ([1] as int[])
+        repository.findBalancesByIdIn(_) >> [new CustomerBalance(1L, BigDecimal.TEN)]
+
+        when:
+        customerService.updateBalances([new BalanceUpdate(1L, new BigDecimal("9"), null)])
+        customerService.getCustomer(1L)
+
+        then:
+        1 * repository.findById(1L) >> Optional.of(Customer.builder().id(1L).balance(BigDecimal.TEN).build())
+    }
+
+    def "updateBalances should reject batches above the configured limit"() {
+        when:
+        customerService.updateBalances((1..1001).collect { new BalanceUpdate(1L, BigDecimal.ONE, null) })
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * batchRepository._
+    }
+
+    def "updateBalance should route a striped customer's change to its stripes"() {
+        given:
+        def striped = Customer.builder().id(1L).balance(BigDecimal.ZERO).stripes(4).build()
+
+        when:
+        Customer result = customerService.updateBalance(1L, BigDecimal.TEN, null)
+
+        then: "the plain update skips the striped row"
+        1 * repository.addToBalance(1L, BigDecimal.TEN, _) >> Optional.empty()
+        1 * repository.findStripes(1L) >> Optional.of(4)
+        1 * stripeRepository.addToStripe(1L, { it in 0..3 }, BigDecimal.TEN, _) >> 1
+        1 * repository.findById(1L) >> Optional.of(striped)
+        1 * stripeRepository.sumBalance(1L) >> new BigDecimal("110")
+
+        and: "the caller sees the whole balance"
+        result.balance == new BigDecimal("110")
+        striped.balance == BigDecimal.ZERO
+    }
+
+    def "updateBalance should retry against the new layout when the stripes changed underneath"() {
+        given:
+        def plain = Customer.builder().id(1L).balance(new BigDecimal("110")).build()
+
+        when:
+        Customer result = customerService.updateBalance(1L, BigDecimal.TEN, null)
+
+        then:
+        1 * repository.addToBalance(1L, BigDecimal.TEN, _) >> Optional.empty()
+        1 * repository.findStripes(1L) >> Optional.of(4)
+        1 * stripeRepository.addToStripe(1L, _, BigDecimal.TEN, _) >> 0
+
+        then:
+        1 * repository.addToBalance(1L, BigDecimal.TEN, _) >> Optional.of(plain)
+        result == plain
+    }
+
+    def "getCustomer should return the sum of the stripes as the balance"() {
+        given:
+        repository.findById(1L) >> Optional.of(Customer.builder().id(1L).balance(BigDecimal.ZERO).stripes(8).build())
+        stripeRepository.sumBalance(1L) >> new BigDecimal("42.50")
+
+        expect:
+        customerService.getCustomer(1L).balance == new BigDecimal("42.50")
+    }
+
+    def "updateBalances should apply items of striped customers through their stripes"() {
+        given:
+        def updates = [new BalanceUpdate(1L, new BigDecimal("-5"), null), new BalanceUpdate(2L, BigDecimal.ONE, null)]
+        repository.findById(2L) >> Optional.of(Customer.builder().id(2L).balance(BigDecimal.ZERO).stripes(2).build())
+        stripeRepository.sumBalance(2L) >> BigDecimal.TEN
+
+        when:
+        def results = customerService.updateBalances(updates)
+
+        then:
+        1 * batchRepository.addToBalances(_) >> ([0, 0] as int[])
+        1 * repository.findStripedIdsIn([1L, 2L] as Set) >> [2L]
+
+        then: "the stripes are locked before any of them changes"
+        1 * stripeRepository.lockAllIn([2L] as Set)
+
+        then:
+        1 * repository.addToBalance(2L, BigDecimal.ONE, _) >> Optional.empty()
+        1 * repository.findStripes(2L) >> Optional.of(2)
+        1 * stripeRepository.addToStripe(2L, _, BigDecimal.ONE, _) >> 1
+        1 * repository.findBalancesByIdIn(_) >> [new CustomerBalance(1L, BigDecimal.ONE), new CustomerBalance(2L, BigDecimal.TEN)]
+
+        and:
+        results*.status == [BalanceUpdateStatus.INSUFFICIENT_BALANCE, BalanceUpdateStatus.APPLIED]
+        results[1].balance == BigDecimal.TEN
     }
-}
\ No newline at end of file
+}
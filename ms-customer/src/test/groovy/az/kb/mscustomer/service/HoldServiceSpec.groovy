@@ -0,0 +1,220 @@
+package az.kb.mscustomer.service
+
+import az.kb.mscustomer.entity.BalanceHold
+import az.kb.mscustomer.entity.Customer
+import az.kb.mscustomer.enums.HoldStatus
+import az.kb.mscustomer.exception.HoldConflictException
+import az.kb.mscustomer.exception.InsufficientBalanceException
+import az.kb.mscustomer.exception.NotFoundException
+import az.kb.mscustomer.model.HoldRequest
+import az.kb.mscustomer.repository.BalanceHoldRepository
+import az.kb.mscustomer.repository.CustomerRepository
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+
+import java.time.Duration
+import java.time.LocalDateTime
+
+class HoldServiceSpec extends Specification {
+
+    CustomerRepository customerRepository = Mock()
+    BalanceHoldRepository holdRepository = Mock()
+    CustomerCache customerCache = new CustomerCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5))
+    HoldService holdService = new HoldService(customerRepository, holdRepository, customerCache,
+            new TransactionTemplate(Mock(PlatformTransactionManager)),
+            Duration.ofMinutes(15), Duration.ofDays(7), true, 100)
+
+    def "reserve should claim the hold id and hold the amount against the balance"() {
+        given:
+        def request = HoldRequest.builder().holdId("txn-1").amount(new BigDecimal("30.00")).build()
+        def customer = Customer.builder().id(1L).balance(new BigDecimal("100.00")).heldBalance(new BigDecimal("30.00")).build()
+
+        when:
+        def result = holdService.reserve(1L, request)
+
+        then:
+        1 * holdRepository.claim("txn-1", 1L, new BigDecimal("30.00"), 900L) >> 1
+        1 * customerRepository.reserve(1L, new BigDecimal("30.00")) >> Optional.of(customer)
+        1 * holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.ACTIVE))
+
+        and:
+        result.status == HoldStatus.ACTIVE
+        customerCache.get(1L, { Optional.empty() }).get().heldBalance == new BigDecimal("30.00")
+    }
+
+    def "reserve should return the existing hold when the hold id was already claimed"() {
+        given:
+        def request = HoldRequest.builder().holdId("txn-1").amount(new BigDecimal("30.00")).ttlSeconds(60L).build()
+
+        when:
+        def result = holdService.reserve(1L, request)
+
+        then:
+        1 * holdRepository.claim("txn-1", 1L, new BigDecimal("30.00"), 60L) >> 0
+        1 * holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.ACTIVE))
+        0 * customerRepository.reserve(_, _)
+        result.holdId == "txn-1"
+    }
+
+    def "reserve should reject a hold id already used for another customer"() {
+        given:
+        def request = HoldRequest.builder().holdId("txn-1").amount(BigDecimal.TEN).build()
+
+        when:
+        holdService.reserve(2L, request)
+
+        then:
+        1 * holdRepository.claim(*_) >> 0
+        1 * holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.ACTIVE))
+        thrown(HoldConflictException)
+    }
+
+    def "reserve should explain why the amount could not be held"() {
+        given:
+        holdRepository.claim(*_) >> 1
+        customerRepository.reserve(_, _) >> Optional.empty()
+        customerRepository.findStripes(1L) >> stripes
+
+        when:
+        holdService.reserve(1L, HoldRequest.builder().amount(BigDecimal.TEN).build())
+
+        then:
+        thrown(expected)
+
+        where:
+        stripes          || expected
+        Optional.of(0)   || InsufficientBalanceException
+        Optional.of(4)   || IllegalArgumentException
+        Optional.empty() || NotFoundException
+    }
+
+    def "reserve should reject invalid amounts and ttls"() {
+        when:
+        holdService.reserve(1L, HoldRequest.builder().amount(amount).ttlSeconds(ttl).build())
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * holdRepository.claim(*_)
+
+        where:
+        amount          | ttl
+        null            | null
+        BigDecimal.ZERO | null
+        BigDecimal.TEN  | 0L
+        BigDecimal.TEN  | Duration.ofDays(8).toSeconds()
+    }
+
+    def "capture should debit the whole hold unless an amount is given"() {
+        given:
+        holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.ACTIVE))
+
+        when:
+        holdService.capture("txn-1", amount)
+
+        then:
+        1 * customerRepository.captureHold("txn-1", captured) >> Optional.of(Customer.builder().id(1L).balance(BigDecimal.ZERO).build())
+
+        where:
+        amount                  || captured
+        null                    || new BigDecimal("30.00")
+        new BigDecimal("12.50") || new BigDecimal("12.50")
+    }
+
+    def "capture should reject an amount above the hold"() {
+        given:
+        holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.ACTIVE))
+
+        when:
+        holdService.capture("txn-1", new BigDecimal("30.01"))
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * customerRepository.captureHold(_, _)
+    }
+
+    def "capture should return an already captured hold and reject a released one"() {
+        given:
+        holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", status))
+        customerRepository.captureHold(_, _) >> Optional.empty()
+
+        when:
+        def result = captured { holdService.capture("txn-1", null) }
+
+        then:
+        result == expected
+
+        where:
+        status              || expected
+        HoldStatus.CAPTURED || "CAPTURED"
+        HoldStatus.RELEASED || "HoldConflictException"
+        HoldStatus.EXPIRED  || "HoldConflictException"
+    }
+
+    def "capture of an active hold past its expiry should expire it on the spot"() {
+        given:
+        def expired = hold("txn-1", HoldStatus.ACTIVE)
+        expired.expiresAt = LocalDateTime.now().minusSeconds(1)
+        holdRepository.findById("txn-1") >> Optional.of(expired)
+
+        when:
+        holdService.capture("txn-1", null)
+
+        then:
+        1 * customerRepository.captureHold("txn-1", new BigDecimal("30.00")) >> Optional.empty()
+        1 * customerRepository.releaseHold("txn-1", "EXPIRED") >> Optional.of(Customer.builder().id(1L).build())
+        thrown(HoldConflictException)
+    }
+
+    def "release should give the held amount back"() {
+        when:
+        def result = holdService.release("txn-1")
+
+        then:
+        1 * customerRepository.releaseHold("txn-1", "RELEASED") >> Optional.of(Customer.builder().id(1L).balance(BigDecimal.TEN).build())
+        1 * holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.RELEASED))
+        result.status == HoldStatus.RELEASED
+    }
+
+    def "release should reject a captured hold"() {
+        when:
+        holdService.release("txn-1")
+
+        then:
+        1 * customerRepository.releaseHold("txn-1", "RELEASED") >> Optional.empty()
+        1 * holdRepository.findById("txn-1") >> Optional.of(hold("txn-1", HoldStatus.CAPTURED))
+        thrown(HoldConflictException)
+    }
+
+    def "expireDue should expire chunks until no hold is due and evict the affected customers"() {
+        given:
+        customerCache.put(Customer.builder().id(7L).balance(BigDecimal.TEN).build())
+
+        when:
+        def customers = holdService.expireDue()
+
+        then:
+        3 * holdRepository.expireDue(100) >>> [[7L, 8L], [9L], []]
+        customers == 3
+        customerCache.get(7L, { Optional.empty() }).isEmpty()
+    }
+
+    private static String captured(Closure<BalanceHold> step) {
+        try {
+            return step.call().status.name()
+        } catch (HoldConflictException ignored) {
+            return HoldConflictException.simpleName
+        }
+    }
+
+    private static BalanceHold hold(String holdId, HoldStatus status) {
+        BalanceHold.builder()
+                .holdId(holdId)
+                .customerId(1L)
+                .amount(new BigDecimal("30.00"))
+                .status(status)
+                .expiresAt(LocalDateTime.now().plusMinutes(15))
+                .build()
+    }
+}
@@ -0,0 +1,143 @@
+package az.kb.mscustomer.service
+
+import az.kb.mscustomer.entity.BalanceStripe
+import az.kb.mscustomer.entity.Customer
+import az.kb.mscustomer.exception.InsufficientBalanceException
+import az.kb.mscustomer.repository.BalanceJournalRepository
+import az.kb.mscustomer.repository.BalanceStripeRepository
+import az.kb.mscustomer.repository.CustomerRepository
+import spock.lang.Specification
+
+class StripedBalanceServiceSpec extends Specification {
+
+    CustomerRepository repository = Mock()
+    BalanceStripeRepository stripeRepository = Mock()
+    BalanceJournalRepository journalRepository = Mock()
+    StripedBalanceService stripedBalances = new StripedBalanceService(repository, stripeRepository, journalRepository)
+
+    def "add should credit a single random stripe"() {
+        when:
+        def applied = stripedBalances.add(1L, 8, BigDecimal.TEN, null)
+
+        then:
+        1 * stripeRepository.addToStripe(1L, { it in 0..7 }, BigDecimal.TEN, _) >> 1
+        0 * stripeRepository.lockAll(_)
+        applied
+    }
+
+    def "add should try every stripe once before draining them together"() {
+        given:
+        List<Integer> tried = []
+        def stripes = [stripe(0, "3"), stripe(1, "4"), stripe(2, "5")]
+
+        when:
+        def applied = stripedBalances.add(1L, 3, new BigDecimal("-10"), "txn-5")
+
+        then:
+        3 * stripeRepository.addToStripe(1L, _, new BigDecimal("-10"), "txn-5") >> { Long id, int stripe, BigDecimal amount, String operationId ->
+            tried << stripe
+            return 0
+        }
+
+        then:
+        1 * stripeRepository.lockAll(1L) >> stripes
+        1 * stripeRepository.saveAll(stripes)
+        1 * journalRepository.append(1L, new BigDecimal("-10"), "txn-5")
+
+        and:
+        applied
+        tried.toSorted() == [0, 1, 2]
+        stripes*.balance == [BigDecimal.ZERO, BigDecimal.ZERO, new BigDecimal("2")]
+    }
+
+    def "add should reject a debit the stripes cannot cover together"() {
+        given:
+        stripeRepository.addToStripe(*_) >> 0
+        stripeRepository.lockAll(1L) >> [stripe(0, "3"), stripe(1, "4")]
+
+        when:
+        stripedBalances.add(1L, 2, new BigDecimal("-10"), null)
+
+        then:
+        thrown(InsufficientBalanceException)
+        0 * stripeRepository.saveAll(_)
+    }
+
+    def "add should report a changed layout when the stripes are gone"() {
+        given:
+        stripeRepository.addToStripe(*_) >> 0
+        stripeRepository.lockAll(1L) >> []
+
+        expect:
+        !stripedBalances.add(1L, 2, new BigDecimal("-1"), null)
+    }
+
+    def "configure should split the whole balance evenly and empty the customer row"() {
+        given:
+        def customer = Customer.builder().id(1L).balance(new BigDecimal("100.00")).build()
+        List<BalanceStripe> saved = []
+
+        when:
+        Customer result = stripedBalances.configure(1L, 3)
+
+        then:
+        1 * repository.findForUpdate(1L) >> Optional.of(customer)
+        1 * stripeRepository.lockAll(1L) >> []
+        1 * stripeRepository.saveAll(_) >> { arguments -> saved.addAll(arguments[0]); arguments[0] }
+        1 * repository.save(customer) >> customer
+        stripeRepository.sumBalance(1L) >> new BigDecimal("100.00")
+
+        and:
+        saved*.stripe == [0, 1, 2]
+        saved*.balance == [new BigDecimal("33.34"), new BigDecimal("33.33"), new BigDecimal("33.33")]
+        customer.balance == BigDecimal.ZERO
+        customer.stripes == 3
+        result.balance == new BigDecimal("100.00")
+    }
+
+    def "configure with one stripe should fold the stripes back onto the customer row"() {
+        given:
+        def customer = Customer.builder().id(1L).balance(BigDecimal.ZERO).stripes(2).build()
+        def stripes = [stripe(0, "7"), stripe(1, "3")]
+
+        when:
+        stripedBalances.configure(1L, 1)
+
+        then:
+        1 * repository.findForUpdate(1L) >> Optional.of(customer)
+        1 * stripeRepository.lockAll(1L) >> stripes
+        1 * stripeRepository.deleteAllInBatch(stripes)
+        1 * repository.save(customer) >> customer
+        customer.balance == BigDecimal.TEN
+        customer.stripes == null
+    }
+
+    def "configure should not stripe a balance with active holds"() {
+        given:
+        def customer = Customer.builder().id(1L).balance(new BigDecimal("100.00")).heldBalance(new BigDecimal("30.00")).build()
+
+        when:
+        stripedBalances.configure(1L, 4)
+
+        then:
+        1 * repository.findForUpdate(1L) >> Optional.of(customer)
+        thrown(IllegalArgumentException)
+        0 * stripeRepository.saveAll(_)
+    }
+
+    def "configure should reject stripe counts out of range"() {
+        when:
+        stripedBalances.configure(1L, count)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * repository._
+
+        where:
+        count << [0, 65]
+    }
+
+    private static BalanceStripe stripe(int stripe, String balance) {
+        BalanceStripe.builder().customerId(1L).stripe(stripe).balance(new BigDecimal(balance)).build()
+    }
+}
@@ -0,0 +1,71 @@
+package az.kb.mstransaction.benchmark;
+
+import az.kb.mstransaction.config.JwtAuthenticationFilter;
+import az.kb.mstransaction.util.JwtUtil;
+import az.kb.mstransaction.util.VerifiedTokenCache;
+import io.jsonwebtoken.Jwts;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of authenticating an inbound service call: verifying the signature twice as
+ * JwtAuthenticationFilter used to (validate, then read the subject), against the verified-token
+ * cache. Run with {@code gradle jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final String SECRET = "fb04617512345678901234567890123456789012345678901234567890123456";
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private String token;
+    private MockHttpServletRequest request;
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter cachedFilter;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 3_600_000L);
+        token = jwtUtil.generateServiceToken("ms-core");
+
+        request = new MockHttpServletRequest("POST", "/api/v1/transactions/topup");
+        request.addHeader("Authorization", "Bearer " + token);
+        cachedFilter = new JwtAuthenticationFilter(new VerifiedTokenCache(jwtUtil, 10_000));
+    }
+
+    @Benchmark
+    public Object parseTwice() {
+        String header = request.getHeader("Authorization");
+        String bearer = header.substring(7);
+        Object principal = null;
+        if (jwtUtil.verifyServiceToken(bearer) != null) {
+            principal = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(bearer).getBody().getSubject();
+        }
+        return principal;
+    }
+
+    @Benchmark
+    public Object cachedFilter() throws Exception {
+        cachedFilter.doFilter(request, new MockHttpServletResponse(), chain);
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
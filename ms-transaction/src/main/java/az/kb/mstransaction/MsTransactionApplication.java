@@ -3,9 +3,11 @@ package az.kb.mstransaction;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableFeignClients(basePackages = "az.kb.mstransaction.client")
+@EnableScheduling
 public class MsTransactionApplication {
 
     public static void main(String[] args) {
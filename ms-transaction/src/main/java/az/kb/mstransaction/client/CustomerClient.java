@@ -1,15 +1,59 @@
 package az.kb.mstransaction.client;
 
+import az.kb.mstransaction.model.BalanceHold;
+import az.kb.mstransaction.model.BalanceOperationResult;
+import az.kb.mstransaction.model.BalanceUpdate;
+import az.kb.mstransaction.model.BalanceUpdateResult;
+import az.kb.mstransaction.model.CaptureHoldRequest;
+import az.kb.mstransaction.model.CustomerBalance;
+import az.kb.mstransaction.model.HoldRequest;
 import az.kb.mstransaction.model.UpdateBalanceRequest;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.cloud.openfeign.FeignClient;
 
+import java.util.List;
+
 
 @FeignClient(name = "ms-customer", url = "${client.ms-customer.url}")
 public interface CustomerClient {
 
+    @GetMapping("/api/v1/customers/balances")
+    List<CustomerBalance> getBalances(@RequestParam("after") Long after, @RequestParam("limit") int limit);
+
     @PutMapping("/api/v1/customers/{id}/balance")
     void updateBalance(@PathVariable("id") Long customerId, @RequestBody UpdateBalanceRequest request);
+
+    /**
+     * Applies all updates in one ms-customer transaction; every item gets its own outcome, in
+     * request order.
+     */
+    @PutMapping("/api/v1/customers/balances")
+    List<BalanceUpdateResult> updateBalances(@RequestBody List<BalanceUpdate> updates);
+
+    /**
+     * Returns whether the operation was applied, voiding it first if ms-customer never saw it.
+     */
+    @PostMapping("/api/v1/customers/balance-operations/{operationId}/resolve")
+    BalanceOperationResult resolveBalanceOperation(@PathVariable("operationId") String operationId);
+
+    /**
+     * Reserves the amount against the customer's balance; repeating a hold id returns the
+     * existing hold.
+     */
+    @PostMapping("/api/v1/customers/{id}/holds")
+    BalanceHold reserveHold(@PathVariable("id") Long customerId, @RequestBody HoldRequest request);
+
+    @PostMapping("/api/v1/customers/holds/{holdId}/capture")
+    BalanceHold captureHold(@PathVariable("holdId") String holdId, @RequestBody CaptureHoldRequest request);
+
+    @PostMapping("/api/v1/customers/holds/{holdId}/release")
+    BalanceHold releaseHold(@PathVariable("holdId") String holdId);
+
+    @GetMapping("/api/v1/customers/holds/{holdId}")
+    BalanceHold getHold(@PathVariable("holdId") String holdId);
 }
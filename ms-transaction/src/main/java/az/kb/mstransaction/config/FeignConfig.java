@@ -1,6 +1,6 @@
 package az.kb.mstransaction.config;
 
-import az.kb.mstransaction.util.JwtUtil;
+import az.kb.mstransaction.util.ServiceTokenProvider;
 import feign.RequestInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -11,13 +11,10 @@ import org.springframework.context.annotation.Configuration;
 public class FeignConfig {
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private ServiceTokenProvider serviceTokenProvider;
 
     @Bean
     public RequestInterceptor serviceAuthInterceptor() {
-        return requestTemplate -> {
-            String token = jwtUtil.generateServiceToken("ms-transaction");
-            requestTemplate.header("Authorization", "Bearer " + token);
-        };
+        return requestTemplate -> requestTemplate.header("Authorization", serviceTokenProvider.bearerToken("ms-transaction"));
     }
 }
@@ -1,95 +1,41 @@
 package az.kb.mstransaction.config;
 
-import az.kb.mstransaction.util.JwtUtil;
+import az.kb.mstransaction.util.VerifiedTokenCache;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.beans.factory.annotation.Autowired;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 @Component
+@RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    @Autowired
-    private JwtUtil jwtService;
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final VerifiedTokenCache verifiedTokenCache;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
                                     FilterChain filterChain) throws ServletException, IOException {
-
-        try {
-            String path = request.getRequestURI();
-            String method = request.getMethod();
-
-            System.out.println("=== JWT FILTER START ===");
-            System.out.println("Path: " + path);
-            System.out.println("Method: " + method);
-
-            String authHeader = request.getHeader("Authorization");
-            System.out.println("Auth Header: " + authHeader);
-
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                System.out.println("No Bearer token found");
-                filterChain.doFilter(request, response);
-                return;
+        String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authHeader != null && authHeader.startsWith(BEARER_PREFIX)
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            VerifiedTokenCache.ServicePrincipal principal =
+                    verifiedTokenCache.verify(authHeader.substring(BEARER_PREFIX.length()));
+            if (principal != null) {
+                SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken
+                        .authenticated(principal.name(), null, principal.authorities()));
             }
-
-            String token = authHeader.substring(7);
-            System.out.println("Token extracted: " + token.substring(0, 20) + "...");
-
-            if (jwtService.validateServiceToken(token)) {
-                System.out.println("Token is valid");
-
-                String username = jwtService.getServiceName(token);
-                System.out.println("Username from token: " + username);
-
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-                    List<GrantedAuthority> authorities = new ArrayList<>();
-
-                    if ("ms-transaction".equals(username) ||
-                            "ms-customer".equals(username) ||
-                            "ms-core".equals(username) ||
-                            "ms-notification".equals(username)) {
-                        authorities.add(new SimpleGrantedAuthority("ROLE_SERVICE"));
-                        System.out.println("Assigned ROLE_SERVICE to: " + username);
-                    }
-
-                    UsernamePasswordAuthenticationToken authToken =
-                            new UsernamePasswordAuthenticationToken(username, null, authorities);
-
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-
-                    System.out.println("Authentication set for user: " + username + " with authorities: " + authorities);
-                }
-            } else {
-                System.out.println("Token is invalid");
-            }
-
-            System.out.println("=== JWT FILTER END - Proceeding to controller ===");
-            filterChain.doFilter(request, response);
-
-        } catch (Exception e) {
-            System.out.println("=== JWT FILTER EXCEPTION ===");
-            System.out.println("Exception: " + e.getClass().getSimpleName());
-            System.out.println("Message: " + e.getMessage());
-            e.printStackTrace();
-
-            filterChain.doFilter(request, response);
         }
+        filterChain.doFilter(request, response);
     }
-
-}
\ No newline at end of file
+}
@@ -3,4 +3,15 @@ package az.kb.mstransaction.constant;
 public class ErrorMessage {
     public static final String TRANSACTION_NOT_FOUND = "Transaction not found with given id";
     public static final String INTERNAL_SERVER_ERROR = "Internal server error";
+    public static final String AMOUNT_MUST_BE_POSITIVE = "Amount must be positive";
+    public static final String TYPE_REQUIRED = "Transaction type is required";
+    public static final String CUSTOMER_REQUIRED = "Customer id is required";
+    public static final String REFUND_EXCEEDS_ORIGINAL = "Refund amount cannot be greater than original transaction amount";
+    public static final String AUTHORIZATION_NOT_OPEN = "Transaction is not an open authorization:";
+    public static final String REFUND_OF_UNSETTLED = "Only settled transactions can be refunded:";
+    public static final String BATCH_TOO_LARGE = "Batch size exceeds the limit of";
+    public static final String RECONCILIATION_NOT_FOUND = "Reconciliation not found with given id";
+    public static final String IDEMPOTENCY_KEY_IN_PROGRESS = "A request with this Idempotency-Key is still in progress";
+    public static final String IDEMPOTENCY_KEY_REUSED = "Idempotency-Key was already used for a different request";
+    public static final String IDEMPOTENCY_KEY_TOO_LONG = "Idempotency-Key must not be longer than 255 characters";
 }
@@ -0,0 +1,41 @@
+package az.kb.mstransaction.controller;
+
+import az.kb.mstransaction.enums.ReconciliationStatus;
+import az.kb.mstransaction.model.ReconciliationReport;
+import az.kb.mstransaction.service.ReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/v1/reconciliations")
+@RequiredArgsConstructor
+public class ReconciliationController {
+
+    private final ReconciliationService reconciliationService;
+
+    @PostMapping
+    public ResponseEntity<ReconciliationReport> start() {
+        ReconciliationReport report = reconciliationService.start();
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/reconciliations/" + report.getId()))
+                .body(report);
+    }
+
+    /**
+     * Returns 202 while the reconciliation is still running and 200 once its report is final.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ReconciliationReport> getReport(@PathVariable Long id) {
+        ReconciliationReport report = reconciliationService.getReport(id);
+        return report.getStatus() == ReconciliationStatus.RUNNING
+                ? ResponseEntity.accepted().body(report)
+                : ResponseEntity.ok(report);
+    }
+}
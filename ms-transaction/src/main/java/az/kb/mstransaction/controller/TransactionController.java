@@ -1,17 +1,33 @@
 package az.kb.mstransaction.controller;
 
 import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.enums.TransactionType;
+import az.kb.mstransaction.model.BatchTransactionResult;
+import az.kb.mstransaction.model.CaptureHoldRequest;
+import az.kb.mstransaction.model.TransactionPage;
 import az.kb.mstransaction.model.TransactionRequest;
+import az.kb.mstransaction.service.AuthorizationService;
+import az.kb.mstransaction.service.BatchTransactionService;
+import az.kb.mstransaction.service.IdempotencyService;
 import az.kb.mstransaction.service.TransactionService;
+import az.kb.mstransaction.service.TransactionStreamService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -19,31 +35,80 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TransactionController {
 
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final TransactionService transactionService;
+    private final BatchTransactionService batchTransactionService;
+    private final TransactionStreamService transactionStreamService;
+    private final IdempotencyService idempotencyService;
+    private final AuthorizationService authorizationService;
 
     @PostMapping("/topup")
-    public ResponseEntity<Transaction> topUp(@RequestBody TransactionRequest request) {
-        return ResponseEntity.ok(transactionService.topUp(request));
+    public ResponseEntity<Transaction> topUp(@RequestBody TransactionRequest request,
+                                             @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                             @RequestParam(defaultValue = "true") boolean wait) {
+        return respond(idempotencyService.execute(idempotencyKey, TransactionType.TOP_UP, request,
+                () -> transactionService.topUp(request)), wait);
     }
 
     @PostMapping("/purchase")
-    public ResponseEntity<Transaction> purchase(@RequestBody TransactionRequest request) {
-        return ResponseEntity.ok(transactionService.purchase(request));
+    public ResponseEntity<Transaction> purchase(@RequestBody TransactionRequest request,
+                                                @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                                @RequestParam(defaultValue = "true") boolean wait) {
+        return respond(idempotencyService.execute(idempotencyKey, TransactionType.PURCHASE, request,
+                () -> transactionService.purchase(request)), wait);
     }
 
     @PostMapping("/refund")
-    public ResponseEntity<Transaction> refund(@RequestBody TransactionRequest request) {
-        return ResponseEntity.ok(transactionService.refund(request));
+    public ResponseEntity<Transaction> refund(@RequestBody TransactionRequest request,
+                                              @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey,
+                                              @RequestParam(defaultValue = "true") boolean wait) {
+        return respond(idempotencyService.execute(idempotencyKey, TransactionType.REFUND, request,
+                () -> transactionService.refund(request)), wait);
+    }
+
+    @PostMapping("/authorize")
+    public ResponseEntity<Transaction> authorize(@RequestBody TransactionRequest request) {
+        return ResponseEntity.ok(authorizationService.authorize(request));
+    }
+
+    @PostMapping("/{id}/capture")
+    public ResponseEntity<Transaction> capture(@PathVariable Long id,
+                                               @RequestBody(required = false) CaptureHoldRequest request) {
+        return ResponseEntity.ok(authorizationService.capture(id, request != null ? request.getAmount() : null));
+    }
+
+    @PostMapping("/{id}/release")
+    public ResponseEntity<Transaction> release(@PathVariable Long id) {
+        return ResponseEntity.ok(authorizationService.release(id));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchTransactionResult>> processBatch(@RequestBody List<TransactionRequest> requests) {
+        return ResponseEntity.ok(batchTransactionService.processBatch(requests));
     }
 
     @GetMapping
-    public ResponseEntity<List<Transaction>> getAllTransactions() {
-        return ResponseEntity.ok(transactionService.getAllTransactions());
+    public ResponseEntity<TransactionPage> getTransactions(@RequestParam(required = false) Long after,
+                                                           @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(transactionService.getTransactions(after, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTransactions() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(transactionStreamService::writeAll);
     }
 
     @GetMapping("/{customerId}/by-customer")
-    public ResponseEntity<List<Transaction>> getCustomerTransactions(@PathVariable Long customerId) {
-        return ResponseEntity.ok(transactionService.getTransactionByCustomerId(customerId));
+    public ResponseEntity<List<Transaction>> getCustomerTransactions(
+            @PathVariable Long customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(transactionService.getTransactionByCustomerId(customerId, from, to, page, size));
     }
 
     @GetMapping("/{id}")
@@ -51,4 +116,23 @@ public class TransactionController {
         return ResponseEntity.ok(transactionService.getTransactionById(id));
     }
 
+    @GetMapping("/{id}/refunds")
+    public ResponseEntity<List<Transaction>> getRefunds(@PathVariable Long id) {
+        return ResponseEntity.ok(transactionService.getRefunds(id));
+    }
+
+    /**
+     * A transaction still PENDING (outbox mode) is answered with 202 and a Location to poll;
+     * with {@code wait=true} the request first waits for it to settle.
+     */
+    private ResponseEntity<Transaction> respond(Transaction transaction, boolean wait) {
+        Transaction result = wait ? transactionService.awaitSettled(transaction) : transaction;
+        if (result.getStatus() != TransactionStatus.PENDING) {
+            return ResponseEntity.ok(result);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/transactions/" + result.getId()))
+                .body(result);
+    }
+
 }
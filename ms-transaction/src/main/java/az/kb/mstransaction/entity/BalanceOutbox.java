@@ -0,0 +1,55 @@
+package az.kb.mstransaction.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A balance change that still has to be applied in ms-customer. Written in the same
+ * transaction as its PENDING {@link Transaction} and deleted once the transaction is settled.
+ */
+@Entity
+@Table(name = "balance_outbox", indexes = {
+        @Index(name = "idx_balance_outbox_transaction", columnList = "transaction_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_outbox_seq")
+    @SequenceGenerator(name = "balance_outbox_seq", sequenceName = "balance_outbox_id_seq", allocationSize = 50)
+    Long id;
+
+    Long transactionId;
+
+    Long customerId;
+
+    BigDecimal amount;
+
+    int attempts;
+
+    LocalDateTime lockedUntil;
+
+    @CreationTimestamp
+    LocalDateTime createdAt;
+}
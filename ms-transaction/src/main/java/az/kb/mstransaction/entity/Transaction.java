@@ -8,6 +8,8 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -16,6 +18,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -23,7 +26,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_customer_created", columnList = "customer_id, created_at, id"),
+        @Index(name = "idx_transactions_related", columnList = "related_transaction_id"),
+        @Index(name = "idx_transactions_status_created", columnList = "status, created_at, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,7 +40,8 @@ import java.time.LocalDateTime;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_id_seq", allocationSize = 50)
     Long id;
 
     Long customerId;
@@ -48,9 +56,27 @@ public class Transaction {
 
     Long relatedTransactionId;
 
+    /**
+     * Sum of the refunds reserved against this transaction; only changed through the conditional
+     * updates in {@link az.kb.mstransaction.repository.TransactionRepository}.
+     */
+    @Builder.Default
+    @ColumnDefault("0")
+    BigDecimal refundedTotal = BigDecimal.ZERO;
+
+    /**
+     * Id under which the balance change was sent to ms-customer, see {@link #operationIdOf}. Items
+     * of one customer in a batch share the id of the netted update.
+     */
+    String operationId;
+
     @CreationTimestamp
     LocalDateTime createdAt;
 
     @UpdateTimestamp
     LocalDateTime updatedAt;
+
+    public static String operationIdOf(Long transactionId) {
+        return "txn-" + transactionId;
+    }
 }
@@ -0,0 +1,6 @@
+package az.kb.mstransaction.enums;
+
+public enum BalanceOperationStatus {
+    APPLIED,
+    VOIDED
+}
@@ -0,0 +1,10 @@
+package az.kb.mstransaction.enums;
+
+public enum BalanceUpdateStatus {
+    APPLIED,
+    ALREADY_APPLIED,
+    INSUFFICIENT_BALANCE,
+    NOT_FOUND,
+    VOIDED,
+    INVALID
+}
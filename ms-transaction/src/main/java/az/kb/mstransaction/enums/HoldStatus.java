@@ -0,0 +1,8 @@
+package az.kb.mstransaction.enums;
+
+public enum HoldStatus {
+    ACTIVE,
+    CAPTURED,
+    RELEASED,
+    EXPIRED
+}
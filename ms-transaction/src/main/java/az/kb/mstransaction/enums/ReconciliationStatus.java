@@ -0,0 +1,7 @@
+package az.kb.mstransaction.enums;
+
+public enum ReconciliationStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -3,5 +3,8 @@ package az.kb.mstransaction.enums;
 public enum TransactionStatus {
     SUCCESS,
     FAILED,
-    PENDING
+    PENDING,
+    AUTHORIZED,
+    RELEASED,
+    EXPIRED
 }
@@ -0,0 +1,7 @@
+package az.kb.mstransaction.exception;
+
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
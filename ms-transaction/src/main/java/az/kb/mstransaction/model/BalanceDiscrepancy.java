@@ -0,0 +1,32 @@
+package az.kb.mstransaction.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+/**
+ * A customer whose balance in ms-customer differs from the initial balance plus their successful
+ * transactions. {@code balance} is null when ms-customer has no such customer.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceDiscrepancy {
+
+    Long customerId;
+
+    BigDecimal balance;
+
+    BigDecimal expected;
+
+    BigDecimal difference;
+}
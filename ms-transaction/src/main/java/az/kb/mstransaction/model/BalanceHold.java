@@ -0,0 +1,34 @@
+package az.kb.mstransaction.model;
+
+import az.kb.mstransaction.enums.HoldStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceHold {
+
+    String holdId;
+
+    Long customerId;
+
+    BigDecimal amount;
+
+    BigDecimal capturedAmount;
+
+    HoldStatus status;
+
+    LocalDateTime expiresAt;
+}
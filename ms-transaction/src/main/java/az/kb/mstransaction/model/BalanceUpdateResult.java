@@ -0,0 +1,33 @@
+package az.kb.mstransaction.model;
+
+import az.kb.mstransaction.enums.BalanceUpdateStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceUpdateResult {
+
+    int index;
+
+    Long customerId;
+
+    String operationId;
+
+    BalanceUpdateStatus status;
+
+    BigDecimal balance;
+
+    String message;
+}
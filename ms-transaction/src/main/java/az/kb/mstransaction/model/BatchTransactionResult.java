@@ -0,0 +1,27 @@
+package az.kb.mstransaction.model;
+
+import az.kb.mstransaction.enums.TransactionStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BatchTransactionResult {
+
+    int index;
+
+    Long transactionId;
+
+    TransactionStatus status;
+
+    String message;
+}
@@ -0,0 +1,13 @@
+package az.kb.mstransaction.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Net effect of a customer's successful transactions on their balance.
+ */
+public interface CustomerNetAmount {
+
+    Long getCustomerId();
+
+    BigDecimal getNet();
+}
@@ -0,0 +1,38 @@
+package az.kb.mstransaction.model;
+
+import az.kb.mstransaction.enums.ReconciliationStatus;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReconciliationReport {
+
+    Long id;
+
+    ReconciliationStatus status;
+
+    LocalDateTime startedAt;
+
+    LocalDateTime finishedAt;
+
+    long customersChecked;
+
+    long discrepancyCount;
+
+    List<BalanceDiscrepancy> discrepancies;
+
+    String error;
+}
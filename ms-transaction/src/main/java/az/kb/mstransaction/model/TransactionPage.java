@@ -0,0 +1,28 @@
+package az.kb.mstransaction.model;
+
+import az.kb.mstransaction.entity.Transaction;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TransactionPage {
+
+    List<Transaction> items;
+
+    /**
+     * Id to pass as {@code after} for the next page, or {@code null} when this is the last page.
+     */
+    Long nextCursor;
+}
@@ -1,5 +1,6 @@
 package az.kb.mstransaction.model;
 
+import az.kb.mstransaction.enums.TransactionType;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -23,4 +24,6 @@ public class TransactionRequest {
     BigDecimal amount;
 
     Long relatedTransactionId;
+
+    TransactionType type;
 }
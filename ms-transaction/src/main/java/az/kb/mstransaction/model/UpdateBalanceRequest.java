@@ -12,4 +12,6 @@ import java.math.BigDecimal;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class UpdateBalanceRequest {
     BigDecimal amount;
+
+    String operationId;
 }
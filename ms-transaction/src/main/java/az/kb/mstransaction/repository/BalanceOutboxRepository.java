@@ -0,0 +1,26 @@
+package az.kb.mstransaction.repository;
+
+import az.kb.mstransaction.entity.BalanceOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface BalanceOutboxRepository extends JpaRepository<BalanceOutbox, Long> {
+
+    /**
+     * Leases up to {@code limit} of the oldest unleased entries until {@code lockedUntil} in one
+     * short statement; concurrent dispatchers skip each other's rows instead of waiting on them.
+     */
+    @Transactional
+    @Query(value = "UPDATE balance_outbox SET locked_until = :lockedUntil, attempts = attempts + 1 " +
+            "WHERE id IN (SELECT id FROM balance_outbox " +
+            "WHERE locked_until IS NULL OR locked_until < :now " +
+            "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) RETURNING *", nativeQuery = true)
+    List<BalanceOutbox> claimBatch(@Param("now") LocalDateTime now,
+                                   @Param("lockedUntil") LocalDateTime lockedUntil,
+                                   @Param("limit") int limit);
+}
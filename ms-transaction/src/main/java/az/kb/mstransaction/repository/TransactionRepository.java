@@ -1,14 +1,110 @@
 package az.kb.mstransaction.repository;
 
 import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.model.CustomerNetAmount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
     Optional<Transaction> findByIdAndCustomerId(Long id, Long customerId);
 
-    Optional<List<Transaction>> findByCustomerId(Long customerId);
+    @Query("SELECT t FROM Transaction t WHERE t.customerId = :customerId " +
+            "AND t.createdAt >= :from AND t.createdAt < :to " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<Transaction> findCustomerHistory(@Param("customerId") Long customerId,
+                                          @Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to,
+                                          Pageable pageable);
+
+    List<Transaction> findByRelatedTransactionIdOrderByIdAsc(Long relatedTransactionId);
+
+    /**
+     * Next chunk of transactions left PENDING since before {@code cutoff}, walking the
+     * (status, created_at, id) index from the given position. Rows still owned by the balance
+     * outbox are skipped; the dispatcher settles those.
+     */
+    @Query("SELECT t FROM Transaction t WHERE t.status = :status AND t.createdAt < :cutoff " +
+            "AND (t.createdAt > :afterCreatedAt OR (t.createdAt = :afterCreatedAt AND t.id > :afterId)) " +
+            "AND NOT EXISTS (SELECT 1 FROM BalanceOutbox o WHERE o.transactionId = t.id) " +
+            "ORDER BY t.createdAt, t.id")
+    List<Transaction> findStale(@Param("status") TransactionStatus status,
+                                @Param("cutoff") LocalDateTime cutoff,
+                                @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                @Param("afterId") Long afterId,
+                                Limit limit);
+
+    /**
+     * Net balance effect of the SUCCESS transactions of customers with ids in
+     * {@code (after, upTo]}, one row per customer. A refund reverses its original, so it counts
+     * against the balance when it refunds a top-up and for it when it refunds a purchase.
+     */
+    @Query(value = "SELECT t.customer_id AS customerId, SUM(CASE " +
+            "WHEN t.type = 'TOP_UP' THEN t.amount " +
+            "WHEN t.type = 'PURCHASE' THEN -t.amount " +
+            "WHEN o.type = 'TOP_UP' THEN -t.amount " +
+            "ELSE t.amount END) AS net " +
+            "FROM transactions t LEFT JOIN transactions o ON o.id = t.related_transaction_id " +
+            "WHERE t.status = 'SUCCESS' AND t.customer_id > :after AND t.customer_id <= :upTo " +
+            "GROUP BY t.customer_id", nativeQuery = true)
+    List<CustomerNetAmount> sumNetByCustomer(@Param("after") Long after, @Param("upTo") Long upTo);
+
+    List<Transaction> findByIdGreaterThanOrderByIdAsc(Long after, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM Transaction t ORDER BY t.id")
+    Stream<Transaction> streamAll();
+
+    /**
+     * Moves those of {@code ids} that are still PENDING to {@code status} and returns how many
+     * changed; a row another writer settled first keeps its status.
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = :status, t.updatedAt = :updatedAt " +
+            "WHERE t.id IN :ids AND t.status = az.kb.mstransaction.enums.TransactionStatus.PENDING")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("status") TransactionStatus status,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Like {@link #updateStatus}, returning the ids of the rows that changed.
+     */
+    @Transactional
+    @Query(value = "UPDATE transactions SET status = :status, updated_at = :updatedAt " +
+            "WHERE id IN (:ids) AND status = 'PENDING' RETURNING id", nativeQuery = true)
+    List<Long> settlePending(@Param("ids") Collection<Long> ids,
+                             @Param("status") String status,
+                             @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Adds {@code amount} to the transaction's refunded total unless that would exceed its amount.
+     * Returns 0 when the refund does not fit; the row lock serializes concurrent refunds.
+     */
+    @Modifying
+    @Query("UPDATE Transaction t SET t.refundedTotal = COALESCE(t.refundedTotal, 0) + :amount " +
+            "WHERE t.id = :id AND COALESCE(t.refundedTotal, 0) + :amount <= t.amount")
+    int reserveRefund(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query("UPDATE Transaction t SET t.refundedTotal = t.refundedTotal - :amount WHERE t.id = :id")
+    int releaseRefund(@Param("id") Long id, @Param("amount") BigDecimal amount);
 }
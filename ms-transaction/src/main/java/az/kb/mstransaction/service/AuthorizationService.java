@@ -0,0 +1,255 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.client.CustomerClient;
+import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.entity.TransactionStatusHistory;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.enums.TransactionType;
+import az.kb.mstransaction.exception.NotFoundException;
+import az.kb.mstransaction.model.BalanceHold;
+import az.kb.mstransaction.model.CaptureHoldRequest;
+import az.kb.mstransaction.model.HoldRequest;
+import az.kb.mstransaction.model.TransactionRequest;
+import az.kb.mstransaction.repository.HistoryRepository;
+import az.kb.mstransaction.repository.TransactionRepository;
+import feign.FeignException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static az.kb.mstransaction.constant.ErrorMessage.AMOUNT_MUST_BE_POSITIVE;
+import static az.kb.mstransaction.constant.ErrorMessage.AUTHORIZATION_NOT_OPEN;
+import static az.kb.mstransaction.constant.ErrorMessage.TRANSACTION_NOT_FOUND;
+import static az.kb.mstransaction.enums.TransactionStatus.AUTHORIZED;
+import static az.kb.mstransaction.enums.TransactionStatus.EXPIRED;
+import static az.kb.mstransaction.enums.TransactionStatus.FAILED;
+import static az.kb.mstransaction.enums.TransactionStatus.PENDING;
+import static az.kb.mstransaction.enums.TransactionStatus.RELEASED;
+import static az.kb.mstransaction.enums.TransactionStatus.SUCCESS;
+
+/**
+ * Purchases in two steps: authorizing holds the amount on the customer's balance in
+ * ms-customer, and a later capture debits it, or a release gives it back. The hold id is the
+ * transaction's operation id. No database transaction is kept open across the calls to
+ * ms-customer; the PURCHASE row is written before and its status after each call. Holds
+ * neither captured nor released expire in ms-customer, and a periodic sync carries their
+ * outcome over to authorizations older than the hold ttl.
+ */
+@Slf4j
+@Service
+public class AuthorizationService {
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final TransactionRepository transactionRepository;
+    private final HistoryRepository historyRepository;
+    private final CustomerClient customerClient;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final boolean syncEnabled;
+    private final int chunkSize;
+    private final AtomicBoolean syncing = new AtomicBoolean();
+
+    public AuthorizationService(TransactionRepository transactionRepository,
+                                HistoryRepository historyRepository,
+                                CustomerClient customerClient,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${transaction.authorization.ttl:15m}") Duration ttl,
+                                @Value("${transaction.authorization.sync.enabled:true}") boolean syncEnabled,
+                                @Value("${transaction.authorization.sync.chunk-size:200}") int chunkSize) {
+        this.transactionRepository = transactionRepository;
+        this.historyRepository = historyRepository;
+        this.customerClient = customerClient;
+        this.transactionTemplate = transactionTemplate;
+        this.ttl = ttl;
+        this.syncEnabled = syncEnabled;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Records a PENDING purchase, holds its amount and marks it AUTHORIZED. When the hold is not
+     * taken the purchase is FAILED; if the outcome of the call is unknown, the hold is released
+     * so it does not sit on the balance until it expires.
+     */
+    public Transaction authorize(TransactionRequest request) {
+        validateAmount(request.getAmount());
+        Transaction transaction = transactionTemplate.execute(status -> {
+            Transaction created = transactionRepository.save(Transaction.builder()
+                    .customerId(request.getCustomerId())
+                    .type(TransactionType.PURCHASE)
+                    .amount(request.getAmount())
+                    .status(PENDING)
+                    .build());
+            created.setOperationId(Transaction.operationIdOf(created.getId()));
+            historyRepository.save(statusHistory(created.getId(), PENDING, LocalDateTime.now()));
+            return created;
+        });
+
+        try {
+            customerClient.reserveHold(request.getCustomerId(), HoldRequest.builder()
+                    .holdId(transaction.getOperationId())
+                    .amount(request.getAmount())
+                    .ttlSeconds(ttl.toSeconds())
+                    .build());
+        } catch (Exception e) {
+            if (!(e instanceof FeignException.FeignClientException)) {
+                releaseQuietly(transaction.getOperationId());
+            }
+            finish(transaction, FAILED);
+            throw new RuntimeException("Error authorizing transaction", e);
+        }
+        return finish(transaction, AUTHORIZED);
+    }
+
+    /**
+     * Debits {@code amount}, or the whole authorized amount without one; the purchase then
+     * carries the captured amount. An authorization that was released or has expired in the
+     * meantime is brought up to date and rejected.
+     */
+    public Transaction capture(Long id, BigDecimal amount) {
+        Transaction transaction = openAuthorization(id);
+        if (amount != null) {
+            validateAmount(amount);
+        }
+        BalanceHold hold;
+        try {
+            hold = customerClient.captureHold(transaction.getOperationId(),
+                    CaptureHoldRequest.builder().amount(amount).build());
+        } catch (FeignException.Conflict e) {
+            sync(transaction);
+            throw new IllegalArgumentException(AUTHORIZATION_NOT_OPEN + " " + id);
+        }
+        transaction.setAmount(hold.getCapturedAmount());
+        return finish(transaction, SUCCESS);
+    }
+
+    public Transaction release(Long id) {
+        Transaction transaction = openAuthorization(id);
+        try {
+            customerClient.releaseHold(transaction.getOperationId());
+        } catch (FeignException.Conflict e) {
+            sync(transaction);
+            throw new IllegalArgumentException(AUTHORIZATION_NOT_OPEN + " " + id);
+        }
+        return finish(transaction, RELEASED);
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.authorization.sync.interval:60000}",
+            initialDelayString = "${transaction.authorization.sync.interval:60000}")
+    public void poll() {
+        if (syncEnabled) {
+            syncStale();
+        }
+    }
+
+    /**
+     * Walks the authorizations created more than one hold ttl ago along the (status,
+     * created_at, id) index and settles those whose hold is no longer ACTIVE. Returns the
+     * number of authorizations settled.
+     */
+    public int syncStale() {
+        if (!syncing.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+            LocalDateTime afterCreatedAt = HISTORY_START;
+            long afterId = 0L;
+            int settled = 0;
+            List<Transaction> chunk;
+            do {
+                chunk = transactionRepository.findStale(AUTHORIZED, cutoff, afterCreatedAt, afterId, Limit.of(chunkSize));
+                for (Transaction transaction : chunk) {
+                    try {
+                        if (sync(transaction) != AUTHORIZED) {
+                            settled++;
+                        }
+                    } catch (Exception e) {
+                        log.warn("Could not sync authorization {}: {}", transaction.getId(), e.getMessage());
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    Transaction last = chunk.get(chunk.size() - 1);
+                    afterCreatedAt = last.getCreatedAt();
+                    afterId = last.getId();
+                }
+            } while (chunk.size() == chunkSize);
+            if (settled > 0) {
+                log.info("Settled {} stale authorizations", settled);
+            }
+            return settled;
+        } finally {
+            syncing.set(false);
+        }
+    }
+
+    /**
+     * Carries the state of the hold in ms-customer over to the authorization and returns the
+     * resulting status; an ACTIVE hold leaves it AUTHORIZED.
+     */
+    private TransactionStatus sync(Transaction transaction) {
+        BalanceHold hold = customerClient.getHold(transaction.getOperationId());
+        TransactionStatus status = switch (hold.getStatus()) {
+            case ACTIVE -> AUTHORIZED;
+            case CAPTURED -> SUCCESS;
+            case RELEASED -> RELEASED;
+            case EXPIRED -> EXPIRED;
+        };
+        if (status != AUTHORIZED) {
+            if (status == SUCCESS) {
+                transaction.setAmount(hold.getCapturedAmount());
+            }
+            finish(transaction, status);
+        }
+        return status;
+    }
+
+    private Transaction openAuthorization(Long id) {
+        Transaction transaction = transactionRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException(TRANSACTION_NOT_FOUND, id));
+        if (transaction.getStatus() != AUTHORIZED) {
+            throw new IllegalArgumentException(AUTHORIZATION_NOT_OPEN + " " + id);
+        }
+        return transaction;
+    }
+
+    private Transaction finish(Transaction transaction, TransactionStatus status) {
+        return transactionTemplate.execute(tx -> {
+            transaction.setStatus(status);
+            Transaction saved = transactionRepository.save(transaction);
+            historyRepository.save(statusHistory(saved.getId(), status, LocalDateTime.now()));
+            return saved;
+        });
+    }
+
+    private void releaseQuietly(String holdId) {
+        try {
+            customerClient.releaseHold(holdId);
+        } catch (Exception e) {
+            log.warn("Could not release hold {}, it will expire: {}", holdId, e.getMessage());
+        }
+    }
+
+    private TransactionStatusHistory statusHistory(Long transactionId, TransactionStatus status, LocalDateTime changedAt) {
+        return TransactionStatusHistory.builder()
+                .transactionId(transactionId)
+                .status(status)
+                .changedAt(changedAt)
+                .build();
+    }
+
+    private void validateAmount(BigDecimal amount) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException(AMOUNT_MUST_BE_POSITIVE);
+        }
+    }
+}
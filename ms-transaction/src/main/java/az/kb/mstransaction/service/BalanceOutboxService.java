@@ -0,0 +1,151 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.entity.BalanceOutbox;
+import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.entity.TransactionStatusHistory;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.enums.TransactionType;
+import az.kb.mstransaction.repository.BalanceOutboxRepository;
+import az.kb.mstransaction.repository.HistoryRepository;
+import az.kb.mstransaction.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static az.kb.mstransaction.enums.TransactionStatus.PENDING;
+
+/**
+ * Write and settle side of the balance outbox. Entries are enqueued inside the caller's
+ * transaction, settled in batches by {@link OutboxDispatcher}, and callers that want the final
+ * status can block on {@link #awaitCompletion} instead of polling.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceOutboxService {
+
+    private final BalanceOutboxRepository outboxRepository;
+    private final TransactionRepository transactionRepository;
+    private final HistoryRepository historyRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<Long, CompletableFuture<TransactionStatus>> waiters = new ConcurrentHashMap<>();
+
+    @Value("${transaction.outbox.wait-timeout:5s}")
+    private Duration waitTimeout = Duration.ofSeconds(5);
+
+    public void enqueue(Transaction transaction, BigDecimal signedAmount) {
+        outboxRepository.save(BalanceOutbox.builder()
+                .transactionId(transaction.getId())
+                .customerId(transaction.getCustomerId())
+                .amount(signedAmount)
+                .build());
+        eventPublisher.publishEvent(new OutboxEnqueuedEvent(transaction.getId()));
+    }
+
+    /**
+     * Marks the settled entries' transactions, appends their history and removes the entries,
+     * all in one transaction so a crash in between leaves them to be leased again. An entry
+     * settled as PENDING is only removed, which hands its transaction to
+     * {@link PendingTransactionSweeper}.
+     */
+    @Transactional
+    public void complete(Map<BalanceOutbox, TransactionStatus> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<BalanceOutbox, TransactionStatus> settled = outcomes.entrySet().stream()
+                .filter(entry -> entry.getValue() != PENDING)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+        settled.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue,
+                        Collectors.mapping(entry -> entry.getKey().getTransactionId(), Collectors.toList())))
+                .forEach((status, ids) -> transactionRepository.updateStatus(ids, status, now));
+        if (!settled.isEmpty()) {
+            historyRepository.saveAll(settled.entrySet().stream()
+                    .map(entry -> TransactionStatusHistory.builder()
+                            .transactionId(entry.getKey().getTransactionId())
+                            .status(entry.getValue())
+                            .changedAt(now)
+                            .build())
+                    .toList());
+        }
+        outboxRepository.deleteAllByIdInBatch(outcomes.keySet().stream().map(BalanceOutbox::getId).toList());
+        releaseFailedRefunds(settled);
+    }
+
+    /**
+     * A refund reserves its amount on the original when it is enqueued; give it back if the
+     * balance update was rejected so the original stays refundable.
+     */
+    private void releaseFailedRefunds(Map<BalanceOutbox, TransactionStatus> outcomes) {
+        List<Long> failedIds = outcomes.entrySet().stream()
+                .filter(entry -> entry.getValue() == TransactionStatus.FAILED)
+                .map(entry -> entry.getKey().getTransactionId())
+                .toList();
+        if (failedIds.isEmpty()) {
+            return;
+        }
+        transactionRepository.findAllById(failedIds).stream()
+                .filter(transaction -> transaction.getType() == TransactionType.REFUND)
+                .forEach(refund -> transactionRepository.releaseRefund(
+                        refund.getRelatedTransactionId(), refund.getAmount()));
+    }
+
+    /**
+     * Releases requests waiting on this node; must run after {@link #complete} has committed.
+     */
+    public void notifyWaiters(Map<BalanceOutbox, TransactionStatus> outcomes) {
+        outcomes.forEach((entry, status) -> {
+            CompletableFuture<TransactionStatus> waiter = waiters.get(entry.getTransactionId());
+            if (waiter != null) {
+                waiter.complete(status);
+            }
+        });
+    }
+
+    /**
+     * Waits up to {@code transaction.outbox.wait-timeout} for a PENDING transaction to settle and returns its latest
+     * state, which is still PENDING if the outbox has not caught up in time.
+     */
+    public Transaction awaitCompletion(Transaction transaction) {
+        Long id = transaction.getId();
+        CompletableFuture<TransactionStatus> waiter = waiters.computeIfAbsent(id, key -> new CompletableFuture<>());
+        try {
+            Transaction current = transactionRepository.findById(id).orElse(transaction);
+            if (current.getStatus() != PENDING) {
+                return current;
+            }
+            waiter.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Transaction {} still pending after {}", id, waitTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("Waiting for transaction {} failed: {}", id, e.getMessage());
+        } finally {
+            waiters.remove(id, waiter);
+        }
+        return transactionRepository.findById(id).orElse(transaction);
+    }
+
+    public record OutboxEnqueuedEvent(Long transactionId) {
+    }
+}
@@ -0,0 +1,294 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.client.CustomerClient;
+import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.entity.TransactionStatusHistory;
+import az.kb.mstransaction.enums.BalanceUpdateStatus;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.enums.TransactionType;
+import az.kb.mstransaction.model.BalanceUpdate;
+import az.kb.mstransaction.model.BalanceUpdateResult;
+import az.kb.mstransaction.model.BatchTransactionResult;
+import az.kb.mstransaction.model.TransactionRequest;
+import az.kb.mstransaction.repository.HistoryRepository;
+import az.kb.mstransaction.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static az.kb.mstransaction.constant.ErrorMessage.AMOUNT_MUST_BE_POSITIVE;
+import static az.kb.mstransaction.constant.ErrorMessage.BATCH_TOO_LARGE;
+import static az.kb.mstransaction.constant.ErrorMessage.CUSTOMER_REQUIRED;
+import static az.kb.mstransaction.constant.ErrorMessage.REFUND_EXCEEDS_ORIGINAL;
+import static az.kb.mstransaction.constant.ErrorMessage.REFUND_OF_UNSETTLED;
+import static az.kb.mstransaction.constant.ErrorMessage.TRANSACTION_NOT_FOUND;
+import static az.kb.mstransaction.constant.ErrorMessage.TYPE_REQUIRED;
+import static az.kb.mstransaction.enums.TransactionStatus.FAILED;
+import static az.kb.mstransaction.enums.TransactionStatus.PENDING;
+import static az.kb.mstransaction.enums.TransactionStatus.SUCCESS;
+
+/**
+ * Settles many top-ups, purchases and refunds at once: all rows are written in two batched
+ * transactions and each customer's balance is moved by a single netted update, all of them
+ * sent to ms-customer in one call. When that call fails without an answer, the items are
+ * returned PENDING and left to {@link PendingTransactionSweeper}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchTransactionService {
+
+    private final TransactionRepository transactionRepository;
+    private final HistoryRepository historyRepository;
+    private final CustomerClient customerClient;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${transaction.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    public List<BatchTransactionResult> processBatch(List<TransactionRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException(BATCH_TOO_LARGE + " " + maxBatchSize);
+        }
+
+        BatchTransactionResult[] results = new BatchTransactionResult[requests.size()];
+        Map<Long, Transaction> originals = loadOriginals(requests);
+        Map<Integer, Transaction> pending = new LinkedHashMap<>();
+        Map<Integer, BigDecimal> signedAmounts = new HashMap<>();
+        Map<Long, BigDecimal> refundsByOriginal = new HashMap<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            TransactionRequest request = requests.get(i);
+            String error = validate(request, originals, refundsByOriginal);
+            if (error != null) {
+                results[i] = result(i, null, FAILED, error);
+                continue;
+            }
+            if (request.getType() == TransactionType.REFUND) {
+                refundsByOriginal.merge(request.getRelatedTransactionId(), request.getAmount(), BigDecimal::add);
+            }
+            pending.put(i, Transaction.builder()
+                    .customerId(request.getCustomerId())
+                    .type(request.getType())
+                    .amount(request.getAmount())
+                    .status(PENDING)
+                    .relatedTransactionId(request.getRelatedTransactionId())
+                    .build());
+            signedAmounts.put(i, signedAmount(request, originals.get(request.getRelatedTransactionId())));
+        }
+
+        if (!pending.isEmpty()) {
+            Set<Long> overRefunded = insertPending(pending, refundsByOriginal);
+            pending.entrySet().removeIf(entry -> {
+                if (!isRefundOf(entry.getValue(), overRefunded)) {
+                    return false;
+                }
+                results[entry.getKey()] = result(entry.getKey(), null, FAILED, REFUND_EXCEEDS_ORIGINAL);
+                return true;
+            });
+            Map<Long, String> failedCustomers;
+            try {
+                failedCustomers = applyNetBalances(pending, signedAmounts);
+            } catch (Exception e) {
+                log.warn("Batch balance update failed for {} items, leaving them PENDING: {}", pending.size(), e.getMessage());
+                failedCustomers = null;
+            }
+
+            if (failedCustomers != null) {
+                Map<Long, String> rejected = failedCustomers;
+                pending.values().forEach(transaction -> transaction.setStatus(
+                        rejected.containsKey(transaction.getCustomerId()) ? FAILED : SUCCESS));
+                completeAll(pending.values());
+            }
+
+            Map<Long, String> messages = failedCustomers != null ? failedCustomers : Map.of();
+            pending.forEach((index, transaction) -> results[index] = result(index, transaction.getId(),
+                    transaction.getStatus(), messages.get(transaction.getCustomerId())));
+        }
+
+        return List.of(results);
+    }
+
+    private Map<Long, Transaction> loadOriginals(List<TransactionRequest> requests) {
+        List<Long> relatedIds = requests.stream()
+                .filter(request -> request.getType() == TransactionType.REFUND)
+                .map(TransactionRequest::getRelatedTransactionId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (relatedIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return transactionRepository.findAllById(relatedIds).stream()
+                .collect(Collectors.toMap(Transaction::getId, Function.identity()));
+    }
+
+    private String validate(TransactionRequest request, Map<Long, Transaction> originals,
+                            Map<Long, BigDecimal> refundsByOriginal) {
+        if (request.getType() == null) {
+            return TYPE_REQUIRED;
+        }
+        if (request.getCustomerId() == null) {
+            return CUSTOMER_REQUIRED;
+        }
+        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return AMOUNT_MUST_BE_POSITIVE;
+        }
+        if (request.getType() == TransactionType.REFUND) {
+            Transaction original = originals.get(request.getRelatedTransactionId());
+            if (original == null || !original.getCustomerId().equals(request.getCustomerId())
+                    || original.getType() == TransactionType.REFUND) {
+                return TRANSACTION_NOT_FOUND + " " + request.getRelatedTransactionId();
+            }
+            if (TransactionService.isOpenOrUncaptured(original)) {
+                return REFUND_OF_UNSETTLED + " " + original.getId();
+            }
+            BigDecimal refundable = original.getAmount()
+                    .subtract(Objects.requireNonNullElse(original.getRefundedTotal(), BigDecimal.ZERO))
+                    .subtract(refundsByOriginal.getOrDefault(original.getId(), BigDecimal.ZERO));
+            if (request.getAmount().compareTo(refundable) > 0) {
+                return REFUND_EXCEEDS_ORIGINAL;
+            }
+        }
+        return null;
+    }
+
+    private BigDecimal signedAmount(TransactionRequest request, Transaction original) {
+        BigDecimal amount = request.getAmount();
+        return switch (request.getType()) {
+            case TOP_UP -> amount;
+            case PURCHASE -> amount.negate();
+            case REFUND -> original.getType() == TransactionType.TOP_UP ? amount.negate() : amount;
+        };
+    }
+
+    /**
+     * Sends one netted update per customer in a single batch call. A rejected update fails
+     * every item of that customer only; the returned map holds the failure reason per customer.
+     * If the call itself fails, ms-customer may still have applied some of the updates, so the
+     * error is thrown and the items stay PENDING until {@link PendingTransactionSweeper}
+     * resolves their operation ids.
+     */
+    private Map<Long, String> applyNetBalances(Map<Integer, Transaction> pending, Map<Integer, BigDecimal> signedAmounts) {
+        Map<Long, BigDecimal> netByCustomer = new LinkedHashMap<>();
+        Map<Long, String> operationIds = new HashMap<>();
+        pending.forEach((index, transaction) -> {
+            netByCustomer.merge(transaction.getCustomerId(), signedAmounts.get(index), BigDecimal::add);
+            operationIds.put(transaction.getCustomerId(), transaction.getOperationId());
+        });
+        List<BalanceUpdate> updates = netByCustomer.entrySet().stream()
+                .map(entry -> BalanceUpdate.builder()
+                        .customerId(entry.getKey())
+                        .amount(entry.getValue())
+                        .operationId(operationIds.get(entry.getKey()))
+                        .build())
+                .toList();
+
+        Map<Long, String> failedCustomers = new HashMap<>();
+        for (BalanceUpdateResult result : customerClient.updateBalances(updates)) {
+            if (result.getStatus() != BalanceUpdateStatus.APPLIED
+                    && result.getStatus() != BalanceUpdateStatus.ALREADY_APPLIED) {
+                log.warn("Batch balance update rejected for customer {}: {}", result.getCustomerId(), result.getMessage());
+                failedCustomers.put(result.getCustomerId(), result.getMessage());
+            }
+        }
+        return failedCustomers;
+    }
+
+    /**
+     * Reserves each original's refunds with one conditional update and inserts the rest in the
+     * same transaction. Returns the originals whose refunds no longer fit because a concurrent
+     * refund got there first; their items are left out of the insert.
+     */
+    private Set<Long> insertPending(Map<Integer, Transaction> pending, Map<Long, BigDecimal> refundsByOriginal) {
+        return transactionTemplate.execute(status -> {
+            Set<Long> overRefunded = new HashSet<>();
+            refundsByOriginal.forEach((originalId, amount) -> {
+                if (transactionRepository.reserveRefund(originalId, amount) == 0) {
+                    overRefunded.add(originalId);
+                }
+            });
+            List<Transaction> transactions = pending.values().stream()
+                    .filter(transaction -> !isRefundOf(transaction, overRefunded))
+                    .toList();
+            transactionRepository.saveAll(transactions);
+            assignOperationIds(transactions);
+            historyRepository.saveAll(history(transactions));
+            return overRefunded;
+        });
+    }
+
+    /**
+     * The items of one customer are applied by one netted update; they share an operation id
+     * derived from the smallest transaction id among them.
+     */
+    private void assignOperationIds(List<Transaction> transactions) {
+        Map<Long, Long> firstIdByCustomer = new HashMap<>();
+        transactions.forEach(transaction -> firstIdByCustomer.merge(
+                transaction.getCustomerId(), transaction.getId(), Math::min));
+        transactions.forEach(transaction -> transaction.setOperationId(
+                Transaction.operationIdOf(firstIdByCustomer.get(transaction.getCustomerId()))));
+    }
+
+    private boolean isRefundOf(Transaction transaction, Set<Long> originalIds) {
+        return transaction.getType() == TransactionType.REFUND
+                && originalIds.contains(transaction.getRelatedTransactionId());
+    }
+
+    private void completeAll(Collection<Transaction> transactions) {
+        Map<TransactionStatus, List<Long>> idsByStatus = transactions.stream()
+                .collect(Collectors.groupingBy(Transaction::getStatus,
+                        Collectors.mapping(Transaction::getId, Collectors.toList())));
+        LocalDateTime now = LocalDateTime.now();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            idsByStatus.forEach((newStatus, ids) -> transactionRepository.updateStatus(ids, newStatus, now));
+            historyRepository.saveAll(history(transactions));
+            transactions.stream()
+                    .filter(transaction -> transaction.getStatus() == FAILED
+                            && transaction.getType() == TransactionType.REFUND)
+                    .collect(Collectors.groupingBy(Transaction::getRelatedTransactionId,
+                            Collectors.reducing(BigDecimal.ZERO, Transaction::getAmount, BigDecimal::add)))
+                    .forEach(transactionRepository::releaseRefund);
+        });
+    }
+
+    private List<TransactionStatusHistory> history(Collection<Transaction> transactions) {
+        LocalDateTime now = LocalDateTime.now();
+        List<TransactionStatusHistory> history = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            history.add(TransactionStatusHistory.builder()
+                    .transactionId(transaction.getId())
+                    .status(transaction.getStatus())
+                    .changedAt(now)
+                    .build());
+        }
+        return history;
+    }
+
+    private BatchTransactionResult result(int index, Long transactionId, TransactionStatus status, String message) {
+        return BatchTransactionResult.builder()
+                .index(index)
+                .transactionId(transactionId)
+                .status(status)
+                .message(message)
+                .build();
+    }
+}
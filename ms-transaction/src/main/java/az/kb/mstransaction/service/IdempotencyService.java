@@ -0,0 +1,184 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.entity.IdempotencyRecord;
+import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.enums.TransactionType;
+import az.kb.mstransaction.exception.IdempotencyConflictException;
+import az.kb.mstransaction.exception.NotFoundException;
+import az.kb.mstransaction.model.TransactionRequest;
+import az.kb.mstransaction.repository.IdempotencyRecordRepository;
+import az.kb.mstransaction.repository.TransactionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static az.kb.mstransaction.constant.ErrorMessage.IDEMPOTENCY_KEY_IN_PROGRESS;
+import static az.kb.mstransaction.constant.ErrorMessage.IDEMPOTENCY_KEY_REUSED;
+import static az.kb.mstransaction.constant.ErrorMessage.IDEMPOTENCY_KEY_TOO_LONG;
+import static az.kb.mstransaction.constant.ErrorMessage.TRANSACTION_NOT_FOUND;
+
+/**
+ * Runs a transaction-creating request at most once per Idempotency-Key and replays the original
+ * transaction for duplicates. Keys are resolved from a bounded in-memory cache first, then from
+ * the unique-indexed idempotency_keys table. Duplicates arriving together on one node wait for
+ * the first request; across nodes the unique key decides which request executes.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository idempotencyRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, IdempotencyRecord> cache;
+    private final Duration waitTimeout;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRepository,
+                              TransactionRepository transactionRepository,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${transaction.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${transaction.idempotency.cache-ttl:24h}") Duration cacheTtl,
+                              @Value("${transaction.idempotency.wait-timeout:10s}") Duration waitTimeout) {
+        this.idempotencyRepository = idempotencyRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        this.waitTimeout = waitTimeout;
+    }
+
+    public Transaction execute(String key, TransactionType type, TransactionRequest request,
+                               Supplier<Transaction> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(IDEMPOTENCY_KEY_TOO_LONG);
+        }
+
+        String requestHash = requestHash(type, request);
+        IdempotencyRecord cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        InFlight mine = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return awaitRunning(running, requestHash);
+        }
+        try {
+            Transaction transaction = executeOnce(key, requestHash, action);
+            mine.result().complete(transaction);
+            return transaction;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Claims the key and runs the action in one transaction, so a failed action releases the key
+     * for a retry. Losing the claim to another node means its request has committed; replay it.
+     */
+    private Transaction executeOnce(String key, String requestHash, Supplier<Transaction> action) {
+        Optional<IdempotencyRecord> stored = idempotencyRepository.findByIdempotencyKey(key);
+        if (stored.isPresent()) {
+            cache.put(key, stored.get());
+            return replay(stored.get(), requestHash);
+        }
+
+        IdempotencyRecord claim = IdempotencyRecord.builder()
+                .idempotencyKey(key)
+                .requestHash(requestHash)
+                .build();
+        Transaction transaction;
+        try {
+            transaction = transactionTemplate.execute(status -> {
+                idempotencyRepository.saveAndFlush(claim);
+                Transaction created = action.get();
+                claim.setTransactionId(created.getId());
+                return created;
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Idempotency-Key {} was claimed concurrently", key);
+            IdempotencyRecord winner = idempotencyRepository.findByIdempotencyKey(key)
+                    .orElseThrow(() -> new IdempotencyConflictException(IDEMPOTENCY_KEY_IN_PROGRESS));
+            cache.put(key, winner);
+            return replay(winner, requestHash);
+        }
+        cache.put(key, claim);
+        return transaction;
+    }
+
+    private Transaction replay(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(IDEMPOTENCY_KEY_REUSED);
+        }
+        return transactionRepository.findById(record.getTransactionId())
+                .orElseThrow(() -> new NotFoundException(TRANSACTION_NOT_FOUND, record.getTransactionId()));
+    }
+
+    private Transaction awaitRunning(InFlight running, String requestHash) {
+        if (!running.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(IDEMPOTENCY_KEY_REUSED);
+        }
+        try {
+            return running.result().get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException(IDEMPOTENCY_KEY_IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(IDEMPOTENCY_KEY_IN_PROGRESS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static String requestHash(TransactionType type, TransactionRequest request) {
+        String canonical = type + "|" + request.getCustomerId() + "|" + canonicalAmount(request.getAmount())
+                + "|" + request.getRelatedTransactionId();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String canonicalAmount(BigDecimal amount) {
+        return amount == null ? null : amount.stripTrailingZeros().toPlainString();
+    }
+
+    private record InFlight(String requestHash, CompletableFuture<Transaction> result) {
+    }
+}
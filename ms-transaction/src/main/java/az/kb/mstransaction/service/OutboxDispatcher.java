@@ -0,0 +1,191 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.client.CustomerClient;
+import az.kb.mstransaction.entity.BalanceOutbox;
+import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.enums.BalanceOperationStatus;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.model.BalanceOperationResult;
+import az.kb.mstransaction.model.UpdateBalanceRequest;
+import az.kb.mstransaction.repository.BalanceOutboxRepository;
+import feign.FeignException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static az.kb.mstransaction.enums.TransactionStatus.FAILED;
+import static az.kb.mstransaction.enums.TransactionStatus.PENDING;
+import static az.kb.mstransaction.enums.TransactionStatus.SUCCESS;
+
+/**
+ * Drains the balance outbox: leases a batch, applies every entry to ms-customer on a bounded
+ * worker pool and settles the whole batch in one transaction. No database connection is held
+ * while ms-customer is being called. Each entry is sent under its transaction's operation id,
+ * so a retry after a lost response is not applied twice. Workers are virtual threads when
+ * {@code spring.threads.virtual.enabled} is set; the pool size still caps concurrent calls.
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+
+    private final BalanceOutboxRepository outboxRepository;
+    private final BalanceOutboxService outboxService;
+    private final CustomerClient customerClient;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final ExecutorService workers;
+    private final ExecutorService trigger;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public OutboxDispatcher(BalanceOutboxRepository outboxRepository,
+                            BalanceOutboxService outboxService,
+                            CustomerClient customerClient,
+                            @Value("${transaction.outbox.enabled:false}") boolean enabled,
+                            @Value("${transaction.outbox.batch-size:100}") int batchSize,
+                            @Value("${transaction.outbox.max-attempts:5}") int maxAttempts,
+                            @Value("${transaction.outbox.lease:30s}") Duration lease,
+                            @Value("${transaction.outbox.workers:8}") int workers,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.outboxRepository = outboxRepository;
+        this.outboxService = outboxService;
+        this.customerClient = customerClient;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = lease;
+        this.workers = Executors.newFixedThreadPool(workers, threadFactory("outbox-worker-", virtualThreads));
+        this.trigger = Executors.newSingleThreadExecutor(threadFactory("outbox-trigger-", virtualThreads));
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.outbox.poll-interval:500}")
+    public void poll() {
+        if (enabled) {
+            drain();
+        }
+    }
+
+    /**
+     * Starts a drain as soon as an enqueuing transaction commits, so callers do not wait for
+     * the next poll.
+     */
+    @TransactionalEventListener
+    public void onEnqueued(BalanceOutboxService.OutboxEnqueuedEvent event) {
+        if (enabled) {
+            trigger.execute(this::drain);
+        }
+    }
+
+    /**
+     * Dispatches leased batches until the outbox runs dry. Only one drain runs per node at a
+     * time; other nodes are kept apart by the lease.
+     */
+    public void drain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<BalanceOutbox> batch;
+            do {
+                LocalDateTime now = LocalDateTime.now();
+                batch = outboxRepository.claimBatch(now, now.plus(lease), batchSize);
+                if (!batch.isEmpty()) {
+                    Map<BalanceOutbox, TransactionStatus> outcomes = dispatch(batch);
+                    outboxService.complete(outcomes);
+                    outboxService.notifyWaiters(outcomes);
+                }
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox drain failed", e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Applies each entry and returns the settled ones; entries that hit a transient error are
+     * left out so their lease expires and they are retried, up to {@code maxAttempts}. The last
+     * attempt's request may still have been applied, so its outcome is then asked of
+     * ms-customer, and an entry it cannot answer for is settled as PENDING for the sweeper.
+     */
+    private Map<BalanceOutbox, TransactionStatus> dispatch(List<BalanceOutbox> batch) {
+        List<CompletableFuture<TransactionStatus>> futures = new ArrayList<>(batch.size());
+        for (BalanceOutbox entry : batch) {
+            futures.add(CompletableFuture.supplyAsync(() -> apply(entry), workers));
+        }
+
+        Map<BalanceOutbox, TransactionStatus> outcomes = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            TransactionStatus status = futures.get(i).join();
+            if (status != null) {
+                outcomes.put(batch.get(i), status);
+            }
+        }
+        return outcomes;
+    }
+
+    private TransactionStatus apply(BalanceOutbox entry) {
+        try {
+            customerClient.updateBalance(entry.getCustomerId(),
+                    UpdateBalanceRequest.builder()
+                            .amount(entry.getAmount())
+                            .operationId(Transaction.operationIdOf(entry.getTransactionId()))
+                            .build());
+            return SUCCESS;
+        } catch (FeignException e) {
+            if (e.status() >= 400 && e.status() < 500) {
+                log.warn("Balance update rejected for transaction {}: {}", entry.getTransactionId(), e.getMessage());
+                return FAILED;
+            }
+            return retryOrResolve(entry, e);
+        } catch (Exception e) {
+            return retryOrResolve(entry, e);
+        }
+    }
+
+    private TransactionStatus retryOrResolve(BalanceOutbox entry, Exception e) {
+        if (entry.getAttempts() < maxAttempts) {
+            log.warn("Balance update for transaction {} failed, will retry: {}", entry.getTransactionId(), e.getMessage());
+            return null;
+        }
+        String operationId = Transaction.operationIdOf(entry.getTransactionId());
+        try {
+            BalanceOperationResult result = customerClient.resolveBalanceOperation(operationId);
+            log.warn("Balance update for transaction {} failed after {} attempts, operation was {}: {}",
+                    entry.getTransactionId(), entry.getAttempts(), result.getStatus(), e.getMessage());
+            return result.getStatus() == BalanceOperationStatus.APPLIED ? SUCCESS : FAILED;
+        } catch (Exception resolveError) {
+            log.error("Giving transaction {} to the sweeper after {} attempts: {}; resolving {} failed: {}",
+                    entry.getTransactionId(), entry.getAttempts(), e.getMessage(), operationId, resolveError.getMessage());
+            return PENDING;
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(prefix, 0).factory()
+                : Thread.ofPlatform().name(prefix, 0).daemon().factory();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trigger.shutdown();
+        workers.shutdown();
+    }
+}
@@ -0,0 +1,236 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.client.CustomerClient;
+import az.kb.mstransaction.entity.Transaction;
+import az.kb.mstransaction.entity.TransactionStatusHistory;
+import az.kb.mstransaction.enums.BalanceOperationStatus;
+import az.kb.mstransaction.enums.TransactionStatus;
+import az.kb.mstransaction.enums.TransactionType;
+import az.kb.mstransaction.model.BalanceOperationResult;
+import az.kb.mstransaction.repository.HistoryRepository;
+import az.kb.mstransaction.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static az.kb.mstransaction.enums.TransactionStatus.FAILED;
+import static az.kb.mstransaction.enums.TransactionStatus.PENDING;
+import static az.kb.mstransaction.enums.TransactionStatus.SUCCESS;
+
+/**
+ * Settles transactions left PENDING because the process died between the balance update and the
+ * status update. Stale rows are read in chunks along the (status, created_at, id) index, each
+ * chunk is resolved on a small worker pool by asking ms-customer what happened to its operation
+ * id, and the chunk is finalized in one transaction. Resolution voids operations ms-customer
+ * never saw, so a row marked FAILED here cannot be applied by a late retry. Calls to
+ * ms-customer are paced to {@code transaction.recovery.rate} per second so a large backlog does
+ * not crowd out live traffic.
+ */
+@Slf4j
+@Component
+public class PendingTransactionSweeper {
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final TransactionRepository transactionRepository;
+    private final HistoryRepository historyRepository;
+    private final CustomerClient customerClient;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration olderThan;
+    private final int chunkSize;
+    private final int parallelism;
+    private final long nanosPerCall;
+    private final ExecutorService workers;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final AtomicLong nextCallAt = new AtomicLong(System.nanoTime());
+
+    public PendingTransactionSweeper(TransactionRepository transactionRepository,
+                                     HistoryRepository historyRepository,
+                                     CustomerClient customerClient,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${transaction.recovery.enabled:true}") boolean enabled,
+                                     @Value("${transaction.recovery.older-than:5m}") Duration olderThan,
+                                     @Value("${transaction.recovery.chunk-size:200}") int chunkSize,
+                                     @Value("${transaction.recovery.workers:4}") int workers,
+                                     @Value("${transaction.recovery.rate:50}") int rate,
+                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.transactionRepository = transactionRepository;
+        this.historyRepository = historyRepository;
+        this.customerClient = customerClient;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.olderThan = olderThan;
+        this.chunkSize = chunkSize;
+        this.parallelism = workers;
+        this.nanosPerCall = TimeUnit.SECONDS.toNanos(1) / Math.max(rate, 1);
+        this.workers = Executors.newFixedThreadPool(workers, threadFactory(virtualThreads));
+    }
+
+    @Scheduled(fixedDelayString = "${transaction.recovery.interval:60000}",
+            initialDelayString = "${transaction.recovery.interval:60000}")
+    public void poll() {
+        if (enabled) {
+            sweep();
+        }
+    }
+
+    /**
+     * Walks all stale PENDING rows once, with at most {@code workers} chunks in flight. Rows
+     * that cannot be resolved now, e.g. because ms-customer is down, stay PENDING for the next
+     * sweep. Returns the number of rows settled.
+     */
+    public int sweep() {
+        if (!sweeping.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(olderThan);
+            LocalDateTime afterCreatedAt = HISTORY_START;
+            long afterId = 0L;
+            Semaphore inFlight = new Semaphore(parallelism);
+            List<CompletableFuture<Integer>> chunks = new ArrayList<>();
+
+            List<Transaction> chunk;
+            do {
+                chunk = transactionRepository.findStale(PENDING, cutoff, afterCreatedAt, afterId, Limit.of(chunkSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                Transaction last = chunk.get(chunk.size() - 1);
+                afterCreatedAt = last.getCreatedAt();
+                afterId = last.getId();
+
+                inFlight.acquireUninterruptibly();
+                List<Transaction> rows = chunk;
+                chunks.add(CompletableFuture.supplyAsync(() -> recover(rows), workers)
+                        .whenComplete((settled, error) -> inFlight.release()));
+            } while (chunk.size() == chunkSize);
+
+            int settled = chunks.stream().mapToInt(CompletableFuture::join).sum();
+            if (settled > 0) {
+                log.info("Recovered {} stale PENDING transactions", settled);
+            }
+            return settled;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private int recover(List<Transaction> chunk) {
+        Map<String, List<Transaction>> byOperation = chunk.stream()
+                .collect(Collectors.groupingBy(this::operationId, LinkedHashMap::new, Collectors.toList()));
+
+        Map<Transaction, TransactionStatus> outcomes = new LinkedHashMap<>();
+        byOperation.forEach((operationId, transactions) -> {
+            pace();
+            try {
+                BalanceOperationResult result = customerClient.resolveBalanceOperation(operationId);
+                TransactionStatus status = result.getStatus() == BalanceOperationStatus.APPLIED ? SUCCESS : FAILED;
+                transactions.forEach(transaction -> outcomes.put(transaction, status));
+            } catch (Exception e) {
+                log.warn("Could not resolve balance operation {}: {}", operationId, e.getMessage());
+            }
+        });
+        return settle(outcomes);
+    }
+
+    /**
+     * Writes the resolved statuses and their history, and gives back the refund reservation of
+     * refunds that turned out never to have been applied. Rows settled by someone else since
+     * they were read, e.g. a late outbox completion, are left as they are. Returns the number
+     * of rows settled here.
+     */
+    private int settle(Map<Transaction, TransactionStatus> outcomes) {
+        if (outcomes.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Integer settled = transactionTemplate.execute(status -> {
+            Set<Long> changed = new HashSet<>();
+            outcomes.entrySet().stream()
+                    .collect(Collectors.groupingBy(Map.Entry::getValue,
+                            Collectors.mapping(entry -> entry.getKey().getId(), Collectors.toList())))
+                    .forEach((newStatus, ids) -> changed.addAll(transactionRepository.settlePending(ids, newStatus.name(), now)));
+            if (changed.isEmpty()) {
+                return 0;
+            }
+            historyRepository.saveAll(outcomes.entrySet().stream()
+                    .filter(entry -> changed.contains(entry.getKey().getId()))
+                    .map(entry -> TransactionStatusHistory.builder()
+                            .transactionId(entry.getKey().getId())
+                            .status(entry.getValue())
+                            .changedAt(now)
+                            .build())
+                    .toList());
+            outcomes.forEach((transaction, newStatus) -> {
+                if (newStatus == FAILED && transaction.getType() == TransactionType.REFUND
+                        && changed.contains(transaction.getId())) {
+                    transactionRepository.releaseRefund(transaction.getRelatedTransactionId(), transaction.getAmount());
+                }
+            });
+            return changed.size();
+        });
+        return settled != null ? settled : 0;
+    }
+
+    /**
+     * Rows written before operation ids were sent have none; resolving the id they would have
+     * had voids it, which settles them as FAILED.
+     */
+    private String operationId(Transaction transaction) {
+        return transaction.getOperationId() != null
+                ? transaction.getOperationId()
+                : Transaction.operationIdOf(transaction.getId());
+    }
+
+    /**
+     * Spaces calls to ms-customer evenly across all workers; a worker that is ahead of its slot
+     * sleeps until the slot comes up.
+     */
+    private void pace() {
+        long now = System.nanoTime();
+        long slot = nextCallAt.getAndUpdate(next -> Math.max(next, now) + nanosPerCall);
+        long wait = Math.max(slot, now) - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ThreadFactory threadFactory(boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name("recovery-worker-", 0).factory()
+                : Thread.ofPlatform().name("recovery-worker-", 0).daemon().factory();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
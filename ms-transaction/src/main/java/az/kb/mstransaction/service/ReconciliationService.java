@@ -0,0 +1,259 @@
+package az.kb.mstransaction.service;
+
+import az.kb.mstransaction.client.CustomerClient;
+import az.kb.mstransaction.enums.ReconciliationStatus;
+import az.kb.mstransaction.exception.NotFoundException;
+import az.kb.mstransaction.model.BalanceDiscrepancy;
+import az.kb.mstransaction.model.CustomerBalance;
+import az.kb.mstransaction.model.CustomerNetAmount;
+import az.kb.mstransaction.model.ReconciliationReport;
+import az.kb.mstransaction.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static az.kb.mstransaction.constant.ErrorMessage.RECONCILIATION_NOT_FOUND;
+
+/**
+ * Checks every customer's balance in ms-customer against the initial balance plus the net of
+ * their SUCCESS transactions. Balances are paged from ms-customer in id order; each page is
+ * compared against one grouped aggregate over the same id range on a worker pool while the next
+ * page is already being fetched. At most {@code workers} pages are in flight, so memory stays
+ * flat however many customers there are. Transactions still settling while the job runs can
+ * show up as discrepancies; run it again to tell them apart from real ones.
+ */
+@Slf4j
+@Service
+public class ReconciliationService {
+
+    private final TransactionRepository transactionRepository;
+    private final CustomerClient customerClient;
+    private final BigDecimal initialBalance;
+    private final int chunkSize;
+    private final int workers;
+    private final int maxDiscrepancies;
+    private final ExecutorService coordinator;
+    private final ExecutorService fetcher;
+    private final ExecutorService comparators;
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, Run> runs;
+
+    public ReconciliationService(TransactionRepository transactionRepository,
+                                 CustomerClient customerClient,
+                                 @Value("${transaction.reconciliation.initial-balance:100}") BigDecimal initialBalance,
+                                 @Value("${transaction.reconciliation.chunk-size:5000}") int chunkSize,
+                                 @Value("${transaction.reconciliation.workers:4}") int workers,
+                                 @Value("${transaction.reconciliation.max-discrepancies:10000}") int maxDiscrepancies,
+                                 @Value("${transaction.reconciliation.retained-reports:20}") int retainedReports,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.transactionRepository = transactionRepository;
+        this.customerClient = customerClient;
+        this.initialBalance = initialBalance;
+        this.chunkSize = chunkSize;
+        this.workers = workers;
+        this.maxDiscrepancies = maxDiscrepancies;
+        this.coordinator = Executors.newSingleThreadExecutor(threadFactory("reconciliation-", virtualThreads));
+        this.fetcher = Executors.newSingleThreadExecutor(threadFactory("reconciliation-fetch-", virtualThreads));
+        this.comparators = Executors.newFixedThreadPool(workers, threadFactory("reconciliation-worker-", virtualThreads));
+        this.runs = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Run> eldest) {
+                return size() > retainedReports;
+            }
+        };
+    }
+
+    /**
+     * Starts a reconciliation in the background and returns its report so far. While one is
+     * running, that one is returned instead of starting another.
+     */
+    public ReconciliationReport start() {
+        Run run;
+        synchronized (runs) {
+            for (Run existing : runs.values()) {
+                if (existing.status == ReconciliationStatus.RUNNING) {
+                    return existing.report();
+                }
+            }
+            run = new Run(ids.incrementAndGet());
+            runs.put(run.id, run);
+        }
+        coordinator.execute(() -> reconcile(run));
+        return run.report();
+    }
+
+    public ReconciliationReport getReport(Long id) {
+        Run run;
+        synchronized (runs) {
+            run = runs.get(id);
+        }
+        if (run == null) {
+            throw new NotFoundException(RECONCILIATION_NOT_FOUND, id);
+        }
+        return run.report();
+    }
+
+    private void reconcile(Run run) {
+        Semaphore inFlight = new Semaphore(workers);
+        try {
+            long after = 0L;
+            CompletableFuture<List<CustomerBalance>> next = fetch(after);
+            boolean last;
+            do {
+                List<CustomerBalance> page = next.join();
+                last = page.size() < chunkSize;
+                long upTo = last ? Long.MAX_VALUE : page.get(page.size() - 1).getId();
+                if (!last) {
+                    next = fetch(upTo);
+                }
+
+                inFlight.acquireUninterruptibly();
+                long from = after;
+                try {
+                    CompletableFuture.runAsync(() -> compare(run, from, upTo, page), comparators)
+                            .whenComplete((ignored, error) -> {
+                                if (error != null) {
+                                    run.fail(error);
+                                }
+                                inFlight.release();
+                            });
+                } catch (RuntimeException e) {
+                    // Not submitted, e.g. rejected after shutdown, so the permit is not released by the page.
+                    inFlight.release();
+                    throw e;
+                }
+                after = upTo;
+            } while (!last && run.status == ReconciliationStatus.RUNNING);
+        } catch (Exception e) {
+            run.fail(e);
+        } finally {
+            inFlight.acquireUninterruptibly(workers);
+            run.finish();
+            log.info("Reconciliation {} {}: {} customers checked, {} discrepancies",
+                    run.id, run.status, run.checked.get(), run.discrepancyCount.get());
+        }
+    }
+
+    private CompletableFuture<List<CustomerBalance>> fetch(long after) {
+        return CompletableFuture.supplyAsync(() -> customerClient.getBalances(after, chunkSize), fetcher);
+    }
+
+    /**
+     * Compares one page of balances with the aggregate of the same id range. Customers that have
+     * transactions in the range but no row in ms-customer are reported with a null balance.
+     */
+    private void compare(Run run, long after, long upTo, List<CustomerBalance> page) {
+        Map<Long, BigDecimal> netByCustomer = new HashMap<>();
+        for (CustomerNetAmount net : transactionRepository.sumNetByCustomer(after, upTo)) {
+            netByCustomer.put(net.getCustomerId(), net.getNet());
+        }
+
+        for (CustomerBalance customer : page) {
+            BigDecimal expected = initialBalance.add(netByCustomer.getOrDefault(customer.getId(), BigDecimal.ZERO));
+            netByCustomer.remove(customer.getId());
+            if (customer.getBalance() == null || customer.getBalance().compareTo(expected) != 0) {
+                run.record(discrepancy(customer.getId(), customer.getBalance(), expected));
+            }
+        }
+        netByCustomer.forEach((customerId, net) ->
+                run.record(discrepancy(customerId, null, initialBalance.add(net))));
+        run.checked.addAndGet(page.size());
+    }
+
+    private BalanceDiscrepancy discrepancy(Long customerId, BigDecimal balance, BigDecimal expected) {
+        return BalanceDiscrepancy.builder()
+                .customerId(customerId)
+                .balance(balance)
+                .expected(expected)
+                .difference(balance != null ? balance.subtract(expected) : null)
+                .build();
+    }
+
+    private static ThreadFactory threadFactory(String prefix, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(prefix, 0).factory()
+                : Thread.ofPlatform().name(prefix, 0).daemon().factory();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        fetcher.shutdown();
+        comparators.shutdown();
+    }
+
+    /**
+     * Progress of one reconciliation; updated concurrently by the comparison workers. Only the
+     * first {@code maxDiscrepancies} discrepancies are kept, all of them are counted.
+     */
+    private final class Run {
+
+        private final Long id;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong checked = new AtomicLong();
+        private final AtomicLong discrepancyCount = new AtomicLong();
+        private final List<BalanceDiscrepancy> discrepancies = new ArrayList<>();
+        private volatile ReconciliationStatus status = ReconciliationStatus.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Run(Long id) {
+            this.id = id;
+        }
+
+        private void record(BalanceDiscrepancy discrepancy) {
+            if (discrepancyCount.incrementAndGet() <= maxDiscrepancies) {
+                synchronized (discrepancies) {
+                    discrepancies.add(discrepancy);
+                }
+            }
+        }
+
+        private void fail(Throwable e) {
+            log.error("Reconciliation {} failed", id, e);
+            error = e.getMessage();
+            status = ReconciliationStatus.FAILED;
+        }
+
+        private void finish() {
+            if (status == ReconciliationStatus.RUNNING) {
+                status = ReconciliationStatus.COMPLETED;
+            }
+            finishedAt = LocalDateTime.now();
+        }
+
+        private ReconciliationReport report() {
+            List<BalanceDiscrepancy> snapshot;
+            synchronized (discrepancies) {
+                snapshot = new ArrayList<>(discrepancies);
+            }
+            snapshot.sort(Comparator.comparing(BalanceDiscrepancy::getCustomerId));
+            return ReconciliationReport.builder()
+                    .id(id)
+                    .status(status)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .customersChecked(checked.get())
+                    .discrepancyCount(discrepancyCount.get())
+                    .discrepancies(snapshot)
+                    .error(error)
+                    .build();
+        }
+    }
+}
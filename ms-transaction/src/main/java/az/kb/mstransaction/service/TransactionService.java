@@ -6,21 +6,31 @@ import az.kb.mstransaction.entity.TransactionStatusHistory;
 import az.kb.mstransaction.enums.TransactionStatus;
 import az.kb.mstransaction.enums.TransactionType;
 import az.kb.mstransaction.exception.NotFoundException;
+import az.kb.mstransaction.model.TransactionPage;
 import az.kb.mstransaction.model.TransactionRequest;
 import az.kb.mstransaction.model.UpdateBalanceRequest;
 import az.kb.mstransaction.repository.HistoryRepository;
 import az.kb.mstransaction.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
+import static az.kb.mstransaction.constant.ErrorMessage.REFUND_EXCEEDS_ORIGINAL;
+import static az.kb.mstransaction.constant.ErrorMessage.REFUND_OF_UNSETTLED;
 import static az.kb.mstransaction.constant.ErrorMessage.TRANSACTION_NOT_FOUND;
+import static az.kb.mstransaction.enums.TransactionStatus.AUTHORIZED;
+import static az.kb.mstransaction.enums.TransactionStatus.EXPIRED;
 import static az.kb.mstransaction.enums.TransactionStatus.FAILED;
 import static az.kb.mstransaction.enums.TransactionStatus.PENDING;
+import static az.kb.mstransaction.enums.TransactionStatus.RELEASED;
 import static az.kb.mstransaction.enums.TransactionStatus.SUCCESS;
 
 @Service
@@ -30,78 +40,112 @@ public class TransactionService {
     private final TransactionRepository transactionRepository;
     private final HistoryRepository historyRepository;
     private final CustomerClient customerClient;
+    private final BalanceOutboxService outboxService;
+
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Value("${transaction.page.max-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${transaction.outbox.enabled:false}")
+    private boolean outboxEnabled;
 
     @Transactional
     public Transaction topUp(TransactionRequest request) {
         validateAmount(request.getAmount());
-        return processTransaction(request, TransactionType.TOP_UP);
+        return processTransaction(request, TransactionType.TOP_UP, request.getAmount());
     }
 
     @Transactional
     public Transaction purchase(TransactionRequest request) {
         validateAmount(request.getAmount());
-        return processTransaction(request, TransactionType.PURCHASE);
+        return processTransaction(request, TransactionType.PURCHASE, request.getAmount().negate());
     }
 
+    /**
+     * Loads the original once and reserves the amount against its refunded total with a
+     * conditional update, so concurrent partial refunds can never add up to more than the
+     * original. The reservation rolls back with this transaction if the balance update fails.
+     */
     @Transactional
     public Transaction refund(TransactionRequest request) {
         Transaction original = transactionRepository.findByIdAndCustomerId(
                 request.getRelatedTransactionId(), request.getCustomerId()
         ).orElseThrow(() -> new NotFoundException(TRANSACTION_NOT_FOUND, request.getRelatedTransactionId()));
         validateAmount(request.getAmount());
+        if (isOpenOrUncaptured(original)) {
+            throw new IllegalArgumentException(REFUND_OF_UNSETTLED + " " + original.getId());
+        }
+        BigDecimal signedAmount = refundAmount(original, request.getAmount());
 
-        if (request.getAmount().compareTo(original.getAmount()) > 0) {
-            throw new IllegalArgumentException("Refund amount cannot be greater than original transaction amount");
+        if (transactionRepository.reserveRefund(original.getId(), request.getAmount()) == 0) {
+            throw new IllegalArgumentException(REFUND_EXCEEDS_ORIGINAL);
         }
 
-        return processTransaction(request, TransactionType.REFUND);
+        return processTransaction(request, TransactionType.REFUND, signedAmount);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Transaction> getRefunds(Long transactionId) {
+        if (!transactionRepository.existsById(transactionId)) {
+            throw new NotFoundException(TRANSACTION_NOT_FOUND, transactionId);
+        }
+        return transactionRepository.findByRelatedTransactionIdOrderByIdAsc(transactionId);
     }
 
-    private Transaction processTransaction(TransactionRequest request, TransactionType type) {
+    /**
+     * In outbox mode the PENDING transaction is committed together with its outbox entry and
+     * returned right away; otherwise ms-customer is called inside this transaction. Either way
+     * the transaction's history rows are saved together so they flush as one insert batch.
+     */
+    private Transaction processTransaction(TransactionRequest request, TransactionType type, BigDecimal signedAmount) {
         Transaction transaction = createAndSaveTransaction(request, type, PENDING);
-        saveStatusHistory(transaction.getId(), PENDING);
+        transaction.setOperationId(Transaction.operationIdOf(transaction.getId()));
+        List<TransactionStatusHistory> history = new ArrayList<>(2);
+        history.add(statusHistory(transaction.getId(), PENDING));
+
+        if (outboxEnabled) {
+            historyRepository.saveAll(history);
+            outboxService.enqueue(transaction, signedAmount);
+            return transaction;
+        }
 
         try {
-            BigDecimal adjustedAmount = calculateAmountByType(request, type);
             UpdateBalanceRequest updateBalanceRequest = UpdateBalanceRequest.builder()
-                    .amount(adjustedAmount)
+                    .amount(signedAmount)
+                    .operationId(transaction.getOperationId())
                     .build();
             customerClient.updateBalance(request.getCustomerId(), updateBalanceRequest);
-            updateTransactionStatus(transaction, SUCCESS);
+            transaction.setStatus(SUCCESS);
         } catch (Exception e) {
-            updateTransactionStatus(transaction, FAILED);
+            transaction.setStatus(FAILED);
             throw new RuntimeException("Error updating transaction", e);
+        } finally {
+            transactionRepository.save(transaction);
+            history.add(statusHistory(transaction.getId(), transaction.getStatus()));
+            historyRepository.saveAll(history);
         }
 
         return transaction;
     }
 
-    private BigDecimal calculateAmountByType(TransactionRequest request, TransactionType type) {
-        BigDecimal amount = request.getAmount();
-
-        if (type == TransactionType.TOP_UP) {
-            return amount;
-        }
-
-        if (type == TransactionType.PURCHASE) {
-            return amount.negate();
-        }
-
-        if (type == TransactionType.REFUND) {
-            Transaction original = transactionRepository.findByIdAndCustomerId(
-                    request.getRelatedTransactionId(), request.getCustomerId()
-            ).orElseThrow(() -> new NotFoundException(TRANSACTION_NOT_FOUND, request.getRelatedTransactionId()));
-
-            if (original.getType() == TransactionType.TOP_UP) {
-                return amount.negate();
-            } else if (original.getType() == TransactionType.PURCHASE) {
-                return amount;
-            }
-        }
-
-        throw new IllegalArgumentException("Unsupported transaction type: " + type);
+    /**
+     * Authorized purchases have not moved any money yet, and released or expired ones never
+     * will, so there is nothing to refund.
+     */
+    static boolean isOpenOrUncaptured(Transaction original) {
+        return original.getStatus() == AUTHORIZED || original.getStatus() == RELEASED
+                || original.getStatus() == EXPIRED;
     }
 
+    private BigDecimal refundAmount(Transaction original, BigDecimal amount) {
+        return switch (original.getType()) {
+            case TOP_UP -> amount.negate();
+            case PURCHASE -> amount;
+            case REFUND -> throw new IllegalArgumentException("Unsupported transaction type: " + original.getType());
+        };
+    }
 
     private Transaction createAndSaveTransaction(TransactionRequest request, TransactionType type, TransactionStatus status) {
         Transaction transaction = Transaction.builder()
@@ -114,19 +158,12 @@ public class TransactionService {
         return transactionRepository.save(transaction);
     }
 
-    private void updateTransactionStatus(Transaction transaction, TransactionStatus status) {
-        transaction.setStatus(status);
-        transactionRepository.save(transaction);
-        saveStatusHistory(transaction.getId(), status);
-    }
-
-    private void saveStatusHistory(Long transactionId, TransactionStatus status) {
-        TransactionStatusHistory history = TransactionStatusHistory.builder()
+    private TransactionStatusHistory statusHistory(Long transactionId, TransactionStatus status) {
+        return TransactionStatusHistory.builder()
                 .transactionId(transactionId)
                 .status(status)
                 .changedAt(LocalDateTime.now())
                 .build();
-        historyRepository.save(history);
     }
 
     private void validateAmount(BigDecimal amount) {
@@ -135,9 +172,26 @@ public class TransactionService {
         }
     }
 
+    /**
+     * Returns the transaction once it has settled, or as it stands after the outbox wait timeout.
+     */
+    public Transaction awaitSettled(Transaction transaction) {
+        if (transaction.getStatus() != PENDING) {
+            return transaction;
+        }
+        return outboxService.awaitCompletion(transaction);
+    }
+
     @Transactional(readOnly = true)
-    public List<Transaction> getAllTransactions() {
-        return transactionRepository.findAll();
+    public TransactionPage getTransactions(Long after, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), maxPageSize);
+        List<Transaction> items = transactionRepository.findByIdGreaterThanOrderByIdAsc(
+                after != null ? after : 0L, Limit.of(pageSize));
+        Long nextCursor = items.size() == pageSize ? items.get(items.size() - 1).getId() : null;
+        return TransactionPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Transactional(readOnly = true)
@@ -146,10 +200,19 @@ public class TransactionService {
                 .orElseThrow(() -> new NotFoundException(TRANSACTION_NOT_FOUND, id));
     }
 
+    /**
+     * Newest-first page of a customer's transactions created in {@code [from, to)}; open bounds
+     * are widened to the full range so the (customer_id, created_at) index is always used.
+     */
     @Transactional(readOnly = true)
-    public List<Transaction> getTransactionByCustomerId(Long customerId) {
-        return transactionRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new NotFoundException(TRANSACTION_NOT_FOUND, customerId));
+    public List<Transaction> getTransactionByCustomerId(Long customerId, LocalDateTime from, LocalDateTime to,
+                                                        int page, int size) {
+        int pageSize = Math.min(Math.max(size, 1), maxPageSize);
+        return transactionRepository.findCustomerHistory(
+                customerId,
+                from != null ? from : HISTORY_START,
+                to != null ? to : HISTORY_END,
+                PageRequest.of(Math.max(page, 0), pageSize));
     }
 }
 
@@ -0,0 +1,76 @@
+package az.kb.mstransaction.util;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reuses one signed service token per service name instead of signing a new one per outbound
+ * request. Once a token enters the refresh window before its expiry, a single caller re-signs
+ * it while every other caller keeps sending the current, still valid token.
+ */
+@Component
+public class ServiceTokenProvider {
+
+    private final JwtUtil jwtUtil;
+    private final long lifetimeMillis;
+    private final long refreshAheadMillis;
+    private final Clock clock;
+    private final Map<String, CachedToken> tokens = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ServiceTokenProvider(JwtUtil jwtUtil,
+                                @Value("${security.expiration}") long expirationTime,
+                                @Value("${security.token-refresh-ahead:5m}") Duration refreshAhead) {
+        this(jwtUtil, expirationTime, refreshAhead, Clock.systemUTC());
+    }
+
+    ServiceTokenProvider(JwtUtil jwtUtil, long expirationTime, Duration refreshAhead, Clock clock) {
+        this.jwtUtil = jwtUtil;
+        this.lifetimeMillis = expirationTime;
+        this.refreshAheadMillis = Math.min(refreshAhead.toMillis(), expirationTime / 2);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the {@code Authorization} header value for calls made as {@code serviceName}.
+     */
+    public String bearerToken(String serviceName) {
+        CachedToken cached = tokens.get(serviceName);
+        long now = clock.millis();
+        if (cached != null && now < cached.refreshAt()) {
+            return cached.header();
+        }
+        if (cached != null && now < cached.expiresAt()) {
+            if (!cached.refreshing().compareAndSet(false, true)) {
+                return cached.header();
+            }
+            try {
+                CachedToken refreshed = mint(serviceName);
+                tokens.put(serviceName, refreshed);
+                return refreshed.header();
+            } catch (RuntimeException e) {
+                cached.refreshing().set(false);
+                return cached.header();
+            }
+        }
+        return tokens.compute(serviceName, (name, current) ->
+                current != null && clock.millis() < current.refreshAt() ? current : mint(name)).header();
+    }
+
+    private CachedToken mint(String serviceName) {
+        long issuedAt = clock.millis();
+        String header = "Bearer " + jwtUtil.generateServiceToken(serviceName);
+        long expiresAt = issuedAt + lifetimeMillis;
+        return new CachedToken(header, expiresAt - refreshAheadMillis, expiresAt, new AtomicBoolean());
+    }
+
+    private record CachedToken(String header, long refreshAt, long expiresAt, AtomicBoolean refreshing) {
+    }
+}
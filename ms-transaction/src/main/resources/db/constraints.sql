@@ -0,0 +1,5 @@
+-- Status columns were created with a CHECK constraint listing the TransactionStatus values of
+-- the time, which ddl-auto=update never widens. Drop them so new statuses can be stored; the
+-- constraints are recreated with the full list only for freshly created tables.
+ALTER TABLE IF EXISTS transactions DROP CONSTRAINT IF EXISTS transactions_status_check;
+ALTER TABLE IF EXISTS transaction_status_history DROP CONSTRAINT IF EXISTS transaction_status_history_status_check;
@@ -0,0 +1,26 @@
+-- Ids come from pooled sequences that hand out blocks of 50 (see @SequenceGenerator). On new
+-- databases this creates them before Hibernate creates the tables. Tables created while ids
+-- were IDENTITY keep the sequence behind their id column and only its increment changes, so new
+-- ids continue above the current maximum. That column is bigserial when Hibernate 6.4 made it,
+-- but a real identity column when a newer Hibernate or a hand-written schema did; the increment
+-- of an identity column's sequence is changed through ALTER TABLE. The block is quoted with
+-- single quotes because spring.sql.init splits scripts on semicolons outside quotes.
+DO '
+DECLARE
+    target record;
+BEGIN
+    FOR target IN SELECT * FROM (VALUES
+            (''transactions'', ''transactions_id_seq''),
+            (''transaction_status_history'', ''transaction_status_history_id_seq''),
+            (''balance_outbox'', ''balance_outbox_id_seq'')) AS t (table_name, sequence_name)
+    LOOP
+        IF EXISTS (SELECT 1 FROM information_schema.columns c
+                   WHERE c.table_schema = current_schema() AND c.table_name = target.table_name
+                     AND c.column_name = ''id'' AND c.is_identity = ''YES'') THEN
+            EXECUTE format(''ALTER TABLE %I ALTER COLUMN id SET INCREMENT BY 50'', target.table_name);
+        ELSE
+            EXECUTE format(''CREATE SEQUENCE IF NOT EXISTS %I INCREMENT BY 50'', target.sequence_name);
+            EXECUTE format(''ALTER SEQUENCE %I INCREMENT BY 50'', target.sequence_name);
+        END IF;
+    END LOOP;
+END';
@@ -0,0 +1,96 @@
+package az.kb.mstransaction.benchmark
+
+import az.kb.mstransaction.service.TransactionService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Stepwise
+
+import java.time.LocalDateTime
+
+/**
+ * Grows one customer's history from 1k to 1M rows and measures the latency of the first
+ * newest-first page and of a date-range page. Run with {@code gradle benchmark}.
+ */
+@Stepwise
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class CustomerHistoryBenchmarkSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    static final long CUSTOMER_ID = 42L
+    static final int WARMUP = 50
+    static final int SAMPLES = 200
+
+    @Autowired
+    TransactionService transactionService
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    @Shared
+    int seeded = 0
+
+    @Shared
+    Map<Integer, Double> firstPageMedians = [:]
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+    }
+
+    def "history page latency with #rows rows for one customer"() {
+        given:
+        seedUpTo(rows)
+        def rangeFrom = LocalDateTime.now().minusSeconds(rows.intdiv(2) + 3600)
+        def rangeTo = LocalDateTime.now().minusSeconds(rows.intdiv(2))
+
+        when:
+        double firstPage = medianMillis { transactionService.getTransactionByCustomerId(CUSTOMER_ID, null, null, 0, 20) }
+        double rangePage = medianMillis { transactionService.getTransactionByCustomerId(CUSTOMER_ID, rangeFrom, rangeTo, 0, 20) }
+        firstPageMedians[rows] = firstPage
+        println String.format("rows=%,9d  first page p50=%.3f ms  range page p50=%.3f ms", rows, firstPage, rangePage)
+
+        then:
+        firstPage < Math.max(firstPageMedians[1_000] * 5, 5d)
+
+        where:
+        rows << [1_000, 10_000, 100_000, 1_000_000]
+    }
+
+    private void seedUpTo(int rows) {
+        jdbcTemplate.update("""
+                INSERT INTO transactions (id, customer_id, type, status, amount, created_at, updated_at)
+                SELECT nextval('transactions_id_seq'), ?, 'TOP_UP', 'SUCCESS', 1.00, now() - make_interval(secs => g), now()
+                FROM generate_series(?, ?) g
+                """, CUSTOMER_ID, seeded + 1, rows)
+        jdbcTemplate.update("""
+                INSERT INTO transactions (id, customer_id, type, status, amount, created_at, updated_at)
+                SELECT nextval('transactions_id_seq'), g % 10000, 'PURCHASE', 'SUCCESS', 1.00, now() - make_interval(secs => g), now()
+                FROM generate_series(?, ?) g
+                """, seeded + 1, rows)
+        jdbcTemplate.execute("ANALYZE transactions")
+        seeded = rows
+    }
+
+    private static double medianMillis(Closure query) {
+        WARMUP.times { query.call() }
+        List<Long> samples = (1..SAMPLES).collect {
+            long start = System.nanoTime()
+            query.call()
+            System.nanoTime() - start
+        }.sort()
+        return samples[SAMPLES.intdiv(2)] / 1_000_000d
+    }
+}
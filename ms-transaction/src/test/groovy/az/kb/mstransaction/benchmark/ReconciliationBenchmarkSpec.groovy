@@ -0,0 +1,86 @@
+package az.kb.mstransaction.benchmark
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.enums.ReconciliationStatus
+import az.kb.mstransaction.model.CustomerBalance
+import az.kb.mstransaction.service.ReconciliationService
+import org.spockframework.spring.SpringBean
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Reconciles one million customers with one top-up each against an in-memory ms-customer in
+ * which every 1000th balance is off, and reports customers checked per second and heap growth.
+ * Run with {@code gradle benchmark}.
+ */
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class ReconciliationBenchmarkSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    static final long CUSTOMERS = 1_000_000
+
+    @SpringBean
+    CustomerClient customerClient = Stub() {
+        getBalances(_, _) >> { Long after, int limit ->
+            (after + 1..Math.min(after + limit, CUSTOMERS)).collect { long id ->
+                CustomerBalance.builder().id(id).balance(id % 1000 == 0 ? 100.00 : 101.00).build()
+            }
+        }
+    }
+
+    @Autowired
+    ReconciliationService reconciliationService
+
+    @Autowired
+    JdbcTemplate jdbcTemplate
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+        registry.add("transaction.recovery.enabled", { "false" })
+    }
+
+    def "reconciles a million customers"() {
+        given:
+        jdbcTemplate.update("""
+                INSERT INTO transactions (id, customer_id, type, status, amount, refunded_total, created_at, updated_at)
+                SELECT nextval('transactions_id_seq'), g, 'TOP_UP', 'SUCCESS', 1.00, 0, now(), now()
+                FROM generate_series(1, ?) g
+                """, CUSTOMERS)
+        jdbcTemplate.execute("ANALYZE transactions")
+        System.gc()
+        long heapBefore = usedHeap()
+
+        when:
+        long start = System.nanoTime()
+        def report = reconciliationService.start()
+        while (report.status == ReconciliationStatus.RUNNING) {
+            sleep(100)
+            report = reconciliationService.getReport(report.id)
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000d
+        println String.format("customers=%,d  %.1f s  %,.0f customers/s  heap growth=%,d KB",
+                report.customersChecked, seconds, report.customersChecked / seconds, (usedHeap() - heapBefore).intdiv(1024))
+
+        then:
+        report.status == ReconciliationStatus.COMPLETED
+        report.customersChecked == CUSTOMERS
+        report.discrepancyCount == CUSTOMERS.intdiv(1000)
+    }
+
+    private static long usedHeap() {
+        Runtime.runtime.totalMemory() - Runtime.runtime.freeMemory()
+    }
+}
@@ -0,0 +1,101 @@
+package az.kb.mstransaction.benchmark
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.model.TransactionRequest
+import az.kb.mstransaction.service.BatchTransactionService
+import az.kb.mstransaction.service.TransactionService
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.spockframework.spring.SpringBean
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Specification
+
+/**
+ * Measures transaction inserts per second through the single and the batch endpoints, with
+ * ms-customer stubbed out, and reports how many JDBC statements each transaction costs.
+ * Run with {@code gradle benchmark}; running it on a tree with IDENTITY ids gives the baseline.
+ */
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class TransactionInsertBenchmarkSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+
+    static final int WARMUP = 500
+    static final int TRANSACTIONS = 5_000
+    static final int BATCH_SIZE = 1_000
+
+    @SpringBean
+    CustomerClient customerClient = Stub()
+
+    @Autowired
+    TransactionService transactionService
+
+    @Autowired
+    BatchTransactionService batchTransactionService
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", { "true" })
+    }
+
+    def "single top-ups per second"() {
+        given:
+        WARMUP.times { transactionService.topUp(request(it)) }
+        def statistics = statistics()
+
+        when:
+        long start = System.nanoTime()
+        TRANSACTIONS.times { transactionService.topUp(request(it)) }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000d
+
+        then:
+        report("single", seconds, statistics.prepareStatementCount)
+    }
+
+    def "batched top-ups per second"() {
+        given:
+        batchTransactionService.processBatch((0..<BATCH_SIZE).collect { request(it) })
+        def statistics = statistics()
+
+        when:
+        long start = System.nanoTime()
+        TRANSACTIONS.intdiv(BATCH_SIZE).times {
+            batchTransactionService.processBatch((0..<BATCH_SIZE).collect { request(it) })
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000d
+
+        then:
+        report("batch", seconds, statistics.prepareStatementCount)
+    }
+
+    private def statistics() {
+        def statistics = entityManagerFactory.unwrap(SessionFactory).statistics
+        statistics.clear()
+        statistics
+    }
+
+    private static boolean report(String mode, double seconds, long statements) {
+        printf("%-6s %,10.0f transactions/s  %5.2f JDBC statements per transaction%n",
+                mode, TRANSACTIONS / seconds, statements / (double) TRANSACTIONS)
+        true
+    }
+
+    private static TransactionRequest request(int i) {
+        new TransactionRequest(customerId: (i % 1000) + 1L, amount: 1, type: TransactionType.TOP_UP)
+    }
+}
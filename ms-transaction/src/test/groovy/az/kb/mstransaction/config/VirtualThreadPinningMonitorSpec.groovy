@@ -0,0 +1,53 @@
+package az.kb.mstransaction.config
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+class VirtualThreadPinningMonitorSpec extends Specification {
+
+    static final long THRESHOLD_MS = 5
+    static final long PINNED_MS = 50
+
+    def meterRegistry = new SimpleMeterRegistry()
+    def monitor = new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(THRESHOLD_MS))
+
+    def cleanup() {
+        monitor.stop()
+    }
+
+    def "a virtual thread sleeping inside synchronized is counted as pinned"() {
+        given:
+        monitor.start()
+        def lock = new Object()
+
+        when:
+        Thread.ofVirtual().start {
+            synchronized (lock) {
+                Thread.sleep(PINNED_MS)
+            }
+        }.join()
+
+        then:
+        def timer = meterRegistry.get("jvm.threads.virtual.pinned").timer()
+        def deadline = System.currentTimeMillis() + 10_000
+        while (timer.count() == 0 && System.currentTimeMillis() < deadline) {
+            sleep(100)
+        }
+        timer.count() >= 1
+        timer.totalTime(TimeUnit.MILLISECONDS) > PINNED_MS / 2
+    }
+
+    def "stop closes the recording"() {
+        given:
+        monitor.start()
+
+        when:
+        monitor.stop()
+
+        then:
+        !monitor.running
+    }
+}
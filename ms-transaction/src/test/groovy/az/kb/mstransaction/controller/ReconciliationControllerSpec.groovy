@@ -0,0 +1,38 @@
+package az.kb.mstransaction.controller
+
+import az.kb.mstransaction.enums.ReconciliationStatus
+import az.kb.mstransaction.model.ReconciliationReport
+import az.kb.mstransaction.service.ReconciliationService
+import org.springframework.http.HttpStatus
+import spock.lang.Specification
+
+class ReconciliationControllerSpec extends Specification {
+
+    def reconciliationService = Mock(ReconciliationService)
+    def controller = new ReconciliationController(reconciliationService)
+
+    def "start should accept the run with a location to poll"() {
+        when:
+        def response = controller.start()
+
+        then:
+        1 * reconciliationService.start() >> new ReconciliationReport(id: 3L, status: ReconciliationStatus.RUNNING)
+        response.statusCode == HttpStatus.ACCEPTED
+        response.headers.getLocation().toString() == "/api/v1/reconciliations/3"
+    }
+
+    def "getReport should answer 202 while running and 200 once finished"() {
+        when:
+        def response = controller.getReport(3L)
+
+        then:
+        1 * reconciliationService.getReport(3L) >> new ReconciliationReport(id: 3L, status: status)
+        response.statusCode == expected
+
+        where:
+        status                           | expected
+        ReconciliationStatus.RUNNING     | HttpStatus.ACCEPTED
+        ReconciliationStatus.COMPLETED   | HttpStatus.OK
+        ReconciliationStatus.FAILED      | HttpStatus.OK
+    }
+}
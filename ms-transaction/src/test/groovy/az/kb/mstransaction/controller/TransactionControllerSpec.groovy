@@ -1,25 +1,43 @@
 package az.kb.mstransaction.controller
 
 import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.model.BatchTransactionResult
+import az.kb.mstransaction.model.CaptureHoldRequest
+import az.kb.mstransaction.model.TransactionPage
 import az.kb.mstransaction.model.TransactionRequest
+import az.kb.mstransaction.service.AuthorizationService
+import az.kb.mstransaction.service.BatchTransactionService
+import az.kb.mstransaction.service.IdempotencyService
 import az.kb.mstransaction.service.TransactionService
+import az.kb.mstransaction.service.TransactionStreamService
 import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
 import spock.lang.Specification
 
 class TransactionControllerSpec extends Specification {
 
     TransactionService transactionService = Mock()
-    TransactionController controller = new TransactionController(transactionService)
+    BatchTransactionService batchTransactionService = Mock()
+    TransactionStreamService transactionStreamService = Mock()
+    IdempotencyService idempotencyService = Mock() {
+        execute(*_) >> { arguments -> arguments[3].get() }
+    }
+    AuthorizationService authorizationService = Mock()
+    TransactionController controller = new TransactionController(
+            transactionService, batchTransactionService, transactionStreamService, idempotencyService, authorizationService)
 
     def "topUp should return created transaction"() {
         given:
         def request = new TransactionRequest(customerId: 1L, amount: 100)
-        def transaction = new Transaction(id: 1L, amount: 100)
+        def transaction = new Transaction(id: 1L, amount: 100, status: TransactionStatus.SUCCESS)
 
         when:
         transactionService.topUp(request) >> transaction
-        ResponseEntity<Transaction> response = controller.topUp(request)
+        transactionService.awaitSettled(transaction) >> transaction
+        ResponseEntity<Transaction> response = controller.topUp(request, null, true)
 
         then:
         response.statusCode == HttpStatus.OK
@@ -29,11 +47,12 @@ class TransactionControllerSpec extends Specification {
     def "purchase should return created transaction"() {
         given:
         def request = new TransactionRequest(customerId: 2L, amount: 50)
-        def transaction = new Transaction(id: 2L, amount: 50)
+        def transaction = new Transaction(id: 2L, amount: 50, status: TransactionStatus.SUCCESS)
 
         when:
         transactionService.purchase(request) >> transaction
-        ResponseEntity<Transaction> response = controller.purchase(request)
+        transactionService.awaitSettled(transaction) >> transaction
+        ResponseEntity<Transaction> response = controller.purchase(request, null, true)
 
         then:
         response.statusCode == HttpStatus.OK
@@ -43,28 +62,89 @@ class TransactionControllerSpec extends Specification {
     def "refund should return created transaction"() {
         given:
         def request = new TransactionRequest(customerId: 3L, amount: 20, relatedTransactionId: 10L)
-        def transaction = new Transaction(id: 3L, amount: 20)
+        def transaction = new Transaction(id: 3L, amount: 20, status: TransactionStatus.SUCCESS)
 
         when:
         transactionService.refund(request) >> transaction
-        ResponseEntity<Transaction> response = controller.refund(request)
+        transactionService.awaitSettled(transaction) >> transaction
+        ResponseEntity<Transaction> response = controller.refund(request, null, true)
 
         then:
         response.statusCode == HttpStatus.OK
         response.body == transaction
     }
 
-    def "getAllTransactions should return list of transactions"() {
+    def "topUp should accept a still pending transaction with a location to poll"() {
+        given:
+        def request = new TransactionRequest(customerId: 1L, amount: 100)
+        def transaction = new Transaction(id: 7L, amount: 100, status: TransactionStatus.PENDING)
+
+        when:
+        ResponseEntity<Transaction> response = controller.topUp(request, null, false)
+
+        then:
+        1 * transactionService.topUp(request) >> transaction
+        0 * transactionService.awaitSettled(_)
+        response.statusCode == HttpStatus.ACCEPTED
+        response.headers.getLocation() == URI.create("/api/v1/transactions/7")
+        response.body == transaction
+    }
+
+    def "topUp should answer 200 once waiting sees the transaction settled"() {
+        given:
+        def request = new TransactionRequest(customerId: 1L, amount: 100)
+        def pending = new Transaction(id: 8L, amount: 100, status: TransactionStatus.PENDING)
+        def settled = new Transaction(id: 8L, amount: 100, status: TransactionStatus.FAILED)
+
+        when:
+        ResponseEntity<Transaction> response = controller.topUp(request, null, true)
+
+        then:
+        1 * transactionService.topUp(request) >> pending
+        1 * transactionService.awaitSettled(pending) >> settled
+        response.statusCode == HttpStatus.OK
+        response.body == settled
+    }
+
+    def "purchase should run through the idempotency service with the client's key"() {
         given:
-        def transactions = [new Transaction(id: 1L), new Transaction(id: 2L)]
+        def request = new TransactionRequest(customerId: 2L, amount: 50)
+        def original = new Transaction(id: 2L, amount: 50, status: TransactionStatus.SUCCESS)
 
         when:
-        transactionService.getAllTransactions() >> transactions
-        ResponseEntity<List<Transaction>> response = controller.getAllTransactions()
+        ResponseEntity<Transaction> response = controller.purchase(request, "key-1", false)
 
         then:
+        1 * idempotencyService.execute("key-1", TransactionType.PURCHASE, request, _) >> original
+        0 * transactionService.purchase(_)
         response.statusCode == HttpStatus.OK
-        response.body == transactions
+        response.body == original
+    }
+
+    def "getTransactions should return a page of transactions"() {
+        given:
+        def page = new TransactionPage(items: [new Transaction(id: 1L), new Transaction(id: 2L)], nextCursor: 2L)
+
+        when:
+        transactionService.getTransactions(null, 2) >> page
+        ResponseEntity<TransactionPage> response = controller.getTransactions(null, 2)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == page
+    }
+
+    def "streamTransactions should delegate writing to the stream service"() {
+        given:
+        def out = new ByteArrayOutputStream()
+
+        when:
+        def response = controller.streamTransactions()
+        response.body.writeTo(out)
+
+        then:
+        1 * transactionStreamService.writeAll(out)
+        response.headers.getContentType() == MediaType.APPLICATION_NDJSON
     }
 
     def "getCustomerTransactions should return transaction for customer"() {
@@ -73,8 +153,8 @@ class TransactionControllerSpec extends Specification {
         def transaction = List.of(new Transaction(id: 5L))
 
         when:
-        transactionService.getTransactionByCustomerId(customerId) >> transaction
-        ResponseEntity<List<Transaction>> response = controller.getCustomerTransactions(customerId)
+        transactionService.getTransactionByCustomerId(customerId, null, null, 0, 20) >> transaction
+        ResponseEntity<List<Transaction>> response = controller.getCustomerTransactions(customerId, null, null, 0, 20)
 
         then:
         response.statusCode == HttpStatus.OK
@@ -94,4 +174,44 @@ class TransactionControllerSpec extends Specification {
         response.statusCode == HttpStatus.OK
         response.body == transaction
     }
+
+    def "getRefunds should return the refunds of a transaction"() {
+        given:
+        def refunds = [new Transaction(id: 8L, relatedTransactionId: 1L, type: TransactionType.REFUND)]
+
+        when:
+        transactionService.getRefunds(1L) >> refunds
+        ResponseEntity<List<Transaction>> response = controller.getRefunds(1L)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == refunds
+    }
+
+    def "processBatch should return per-item results"() {
+        given:
+        def requests = [new TransactionRequest(customerId: 1L, amount: 10, type: TransactionType.TOP_UP)]
+        def results = [new BatchTransactionResult(index: 0, transactionId: 7L, status: TransactionStatus.SUCCESS)]
+
+        when:
+        batchTransactionService.processBatch(requests) >> results
+        ResponseEntity<List<BatchTransactionResult>> response = controller.processBatch(requests)
+
+        then:
+        response.statusCode == HttpStatus.OK
+        response.body == results
+    }
+
+    def "capture should pass the requested amount on"() {
+        given:
+        def transaction = new Transaction(id: 5L, amount: 12, status: TransactionStatus.SUCCESS)
+
+        when:
+        ResponseEntity<Transaction> response = controller.capture(5L, new CaptureHoldRequest(amount: 12))
+
+        then:
+        1 * authorizationService.capture(5L, 12) >> transaction
+        response.statusCode == HttpStatus.OK
+        response.body == transaction
+    }
 }
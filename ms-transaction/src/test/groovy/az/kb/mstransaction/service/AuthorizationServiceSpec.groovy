@@ -0,0 +1,211 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.entity.TransactionStatusHistory
+import az.kb.mstransaction.enums.HoldStatus
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.model.BalanceHold
+import az.kb.mstransaction.model.HoldRequest
+import az.kb.mstransaction.model.TransactionRequest
+import az.kb.mstransaction.repository.HistoryRepository
+import az.kb.mstransaction.repository.TransactionRepository
+import feign.FeignException
+import feign.Request
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+import java.time.LocalDateTime
+
+class AuthorizationServiceSpec extends Specification {
+
+    def transactionRepository = Mock(TransactionRepository)
+    def historyRepository = Mock(HistoryRepository)
+    def customerClient = Mock(CustomerClient)
+
+    @Subject
+    AuthorizationService authorizationService = new AuthorizationService(
+            transactionRepository, historyRepository, customerClient,
+            new TransactionTemplate(Mock(PlatformTransactionManager)), Duration.ofMinutes(15), true, 2
+    )
+
+    List<TransactionStatus> history = []
+
+    def setup() {
+        transactionRepository.save(_) >> { arguments ->
+            Transaction transaction = arguments[0]
+            transaction.id = transaction.id ?: 5L
+            return transaction
+        }
+        historyRepository.save(_) >> { arguments ->
+            TransactionStatusHistory entry = arguments[0]
+            history << entry.status
+            return entry
+        }
+    }
+
+    def "authorize should hold the amount under the transaction's operation id"() {
+        when:
+        def result = authorizationService.authorize(request("30.00"))
+
+        then:
+        1 * customerClient.reserveHold(1L, _) >> { Long customerId, HoldRequest hold ->
+            assert hold.holdId == "txn-5"
+            assert hold.amount == new BigDecimal("30.00")
+            assert hold.ttlSeconds == 900L
+            return BalanceHold.builder().holdId("txn-5").status(HoldStatus.ACTIVE).build()
+        }
+
+        and:
+        result.type == TransactionType.PURCHASE
+        result.status == TransactionStatus.AUTHORIZED
+        result.operationId == "txn-5"
+        history == [TransactionStatus.PENDING, TransactionStatus.AUTHORIZED]
+    }
+
+    def "authorize should fail a declined hold without releasing it"() {
+        when:
+        authorizationService.authorize(request("30.00"))
+
+        then:
+        1 * customerClient.reserveHold(*_) >> { throw feignError(400) }
+        0 * customerClient.releaseHold(_)
+        thrown(RuntimeException)
+        history == [TransactionStatus.PENDING, TransactionStatus.FAILED]
+    }
+
+    def "authorize should release a hold whose outcome is unknown"() {
+        when:
+        authorizationService.authorize(request("30.00"))
+
+        then:
+        1 * customerClient.reserveHold(*_) >> { throw new RuntimeException("read timed out") }
+        1 * customerClient.releaseHold("txn-5")
+        thrown(RuntimeException)
+        history.last() == TransactionStatus.FAILED
+    }
+
+    def "authorize should reject non-positive amounts before writing anything"() {
+        when:
+        authorizationService.authorize(request("0"))
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * customerClient._
+        history.isEmpty()
+    }
+
+    def "capture should settle the purchase with the captured amount"() {
+        given:
+        transactionRepository.findById(5L) >> Optional.of(authorization())
+
+        when:
+        def result = authorizationService.capture(5L, new BigDecimal("12.50"))
+
+        then:
+        1 * customerClient.captureHold("txn-5", { it.amount == new BigDecimal("12.50") }) >>
+                hold(HoldStatus.CAPTURED, new BigDecimal("12.50"))
+        result.status == TransactionStatus.SUCCESS
+        result.amount == new BigDecimal("12.50")
+        history == [TransactionStatus.SUCCESS]
+    }
+
+    def "capture should only accept open authorizations"() {
+        given:
+        def settled = authorization()
+        settled.status = TransactionStatus.SUCCESS
+        transactionRepository.findById(5L) >> Optional.of(settled)
+
+        when:
+        authorizationService.capture(5L, null)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * customerClient._
+    }
+
+    def "capture of an expired hold should mark the authorization expired"() {
+        given:
+        transactionRepository.findById(5L) >> Optional.of(authorization())
+
+        when:
+        authorizationService.capture(5L, null)
+
+        then:
+        1 * customerClient.captureHold("txn-5", _) >> { throw feignError(409) }
+        1 * customerClient.getHold("txn-5") >> hold(HoldStatus.EXPIRED, null)
+        thrown(IllegalArgumentException)
+        history == [TransactionStatus.EXPIRED]
+    }
+
+    def "release should give the hold back"() {
+        given:
+        transactionRepository.findById(5L) >> Optional.of(authorization())
+
+        when:
+        def result = authorizationService.release(5L)
+
+        then:
+        1 * customerClient.releaseHold("txn-5") >> hold(HoldStatus.RELEASED, null)
+        result.status == TransactionStatus.RELEASED
+    }
+
+    def "syncStale should page through old authorizations and settle those whose hold is done"() {
+        given:
+        def first = authorization(1L)
+        def second = authorization(2L)
+        def third = authorization(3L)
+
+        when:
+        def settled = authorizationService.syncStale()
+
+        then:
+        1 * transactionRepository.findStale(TransactionStatus.AUTHORIZED, _, _, 0L, _) >> [first, second]
+        1 * transactionRepository.findStale(TransactionStatus.AUTHORIZED, _, first.createdAt, 2L, _) >> [third]
+        1 * customerClient.getHold("txn-1") >> hold(HoldStatus.CAPTURED, new BigDecimal("7.00"))
+        1 * customerClient.getHold("txn-2") >> hold(HoldStatus.ACTIVE, null)
+        1 * customerClient.getHold("txn-3") >> { throw new RuntimeException("ms-customer unavailable") }
+
+        and:
+        settled == 1
+        first.status == TransactionStatus.SUCCESS
+        first.amount == new BigDecimal("7.00")
+        second.status == TransactionStatus.AUTHORIZED
+        third.status == TransactionStatus.AUTHORIZED
+    }
+
+    private static TransactionRequest request(String amount) {
+        TransactionRequest.builder().customerId(1L).amount(new BigDecimal(amount)).build()
+    }
+
+    private static Transaction authorization(Long id = 5L) {
+        Transaction.builder()
+                .id(id)
+                .customerId(1L)
+                .type(TransactionType.PURCHASE)
+                .status(TransactionStatus.AUTHORIZED)
+                .amount(new BigDecimal("30.00"))
+                .operationId(Transaction.operationIdOf(id))
+                .createdAt(LocalDateTime.of(2024, 3, 1, 12, 0))
+                .build()
+    }
+
+    private static BalanceHold hold(HoldStatus status, BigDecimal capturedAmount) {
+        BalanceHold.builder().status(status).capturedAmount(capturedAmount).build()
+    }
+
+    private static FeignException feignError(int status) {
+        def request = Request.create(Request.HttpMethod.POST, "/api/v1/customers/holds/txn-5", [:], null,
+                StandardCharsets.UTF_8, null)
+        FeignException.errorStatus("hold", feign.Response.builder()
+                .status(status)
+                .request(request)
+                .headers([:])
+                .build())
+    }
+}
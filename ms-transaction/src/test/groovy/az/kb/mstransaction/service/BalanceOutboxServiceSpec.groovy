@@ -0,0 +1,73 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.entity.BalanceOutbox
+import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.repository.BalanceOutboxRepository
+import az.kb.mstransaction.repository.HistoryRepository
+import az.kb.mstransaction.repository.TransactionRepository
+import org.springframework.context.ApplicationEventPublisher
+import spock.lang.Specification
+import spock.lang.Subject
+
+class BalanceOutboxServiceSpec extends Specification {
+
+    def outboxRepository = Mock(BalanceOutboxRepository)
+    def transactionRepository = Mock(TransactionRepository)
+    def historyRepository = Mock(HistoryRepository)
+
+    @Subject
+    BalanceOutboxService outboxService = new BalanceOutboxService(
+            outboxRepository, transactionRepository, historyRepository, Mock(ApplicationEventPublisher)
+    )
+
+    def "complete should release the reservation of refunds that failed"() {
+        given:
+        def failedRefund = BalanceOutbox.builder().id(1L).transactionId(10L).customerId(1L).amount(-5.00).build()
+        def failedPurchase = BalanceOutbox.builder().id(2L).transactionId(11L).customerId(1L).amount(-3.00).build()
+        def settledRefund = BalanceOutbox.builder().id(3L).transactionId(12L).customerId(1L).amount(-2.00).build()
+
+        when:
+        outboxService.complete([(failedRefund): TransactionStatus.FAILED,
+                                (failedPurchase): TransactionStatus.FAILED,
+                                (settledRefund): TransactionStatus.SUCCESS])
+
+        then:
+        1 * transactionRepository.findAllById([10L, 11L]) >> [
+                Transaction.builder().id(10L).type(TransactionType.REFUND).relatedTransactionId(7L)
+                        .amount(new BigDecimal("5.00")).build(),
+                Transaction.builder().id(11L).type(TransactionType.PURCHASE).amount(new BigDecimal("3.00")).build()
+        ]
+        1 * transactionRepository.releaseRefund(7L, new BigDecimal("5.00"))
+        0 * transactionRepository.releaseRefund(_, _)
+    }
+
+    def "complete should not look up transactions when nothing failed"() {
+        given:
+        def entry = BalanceOutbox.builder().id(1L).transactionId(10L).customerId(1L).amount(5.00).build()
+
+        when:
+        outboxService.complete([(entry): TransactionStatus.SUCCESS])
+
+        then:
+        1 * transactionRepository.updateStatus([10L], TransactionStatus.SUCCESS, _)
+        1 * outboxRepository.deleteAllByIdInBatch([1L])
+        0 * transactionRepository.findAllById(_)
+    }
+
+    def "complete should only remove entries settled as PENDING, leaving their transaction to the sweeper"() {
+        given:
+        def unresolved = BalanceOutbox.builder().id(1L).transactionId(10L).customerId(1L).amount(-5.00).build()
+        def settled = BalanceOutbox.builder().id(2L).transactionId(11L).customerId(1L).amount(5.00).build()
+
+        when:
+        outboxService.complete([(unresolved): TransactionStatus.PENDING, (settled): TransactionStatus.SUCCESS])
+
+        then:
+        1 * transactionRepository.updateStatus([11L], TransactionStatus.SUCCESS, _)
+        0 * transactionRepository.updateStatus(_, TransactionStatus.PENDING, _)
+        1 * historyRepository.saveAll({ it*.transactionId == [11L] })
+        1 * outboxRepository.deleteAllByIdInBatch({ it as Set == [1L, 2L] as Set })
+    }
+}
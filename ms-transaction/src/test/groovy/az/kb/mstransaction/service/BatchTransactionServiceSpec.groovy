@@ -0,0 +1,285 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.enums.BalanceOperationStatus
+import az.kb.mstransaction.enums.BalanceUpdateStatus
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.model.BalanceOperationResult
+import az.kb.mstransaction.model.BalanceUpdate
+import az.kb.mstransaction.model.BalanceUpdateResult
+import az.kb.mstransaction.model.TransactionRequest
+import az.kb.mstransaction.repository.HistoryRepository
+import az.kb.mstransaction.repository.TransactionRepository
+import feign.Request
+import feign.RetryableException
+import org.springframework.test.util.ReflectionTestUtils
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+
+class BatchTransactionServiceSpec extends Specification {
+
+    def transactionRepository = Mock(TransactionRepository)
+    def historyRepository = Mock(HistoryRepository)
+    def customerClient = Mock(CustomerClient)
+    def transactionTemplate = new TransactionTemplate(Mock(PlatformTransactionManager))
+
+    @Subject
+    BatchTransactionService batchService = new BatchTransactionService(
+            transactionRepository, historyRepository, customerClient, transactionTemplate
+    )
+
+    long nextId = 1
+
+    def setup() {
+        ReflectionTestUtils.setField(batchService, "maxBatchSize", 100)
+        transactionRepository.saveAll(_) >> { arguments ->
+            arguments[0].each { Transaction transaction -> transaction.id = nextId++ }
+            return arguments[0].toList()
+        }
+        transactionRepository.reserveRefund(_, _) >> 1
+        customerClient.updateBalances(_) >> { arguments -> applied(arguments[0]) }
+    }
+
+    def "processBatch should net amounts per customer and issue one balance update per customer"() {
+        given: "two top-ups and a purchase for customer 1 and a purchase for customer 2"
+        def requests = [
+                request(1L, "100.00", TransactionType.TOP_UP),
+                request(1L, "30.00", TransactionType.PURCHASE),
+                request(2L, "20.00", TransactionType.PURCHASE),
+                request(1L, "5.00", TransactionType.TOP_UP)
+        ]
+
+        when:
+        def results = batchService.processBatch(requests)
+
+        then: "each customer receives its netted amount once, under the id of its first item, in one call"
+        1 * customerClient.updateBalances(_) >> { arguments ->
+            List<BalanceUpdate> updates = arguments[0]
+            assert updates*.customerId == [1L, 2L]
+            assert updates*.amount == [new BigDecimal("75.00"), new BigDecimal("-20.00")]
+            assert updates*.operationId == ["txn-1", "txn-3"]
+            return applied(updates)
+        }
+
+        and: "statuses are finalized in one statement per status"
+        1 * transactionRepository.updateStatus([1L, 2L, 3L, 4L], TransactionStatus.SUCCESS, _)
+        2 * historyRepository.saveAll(_) >> { arguments ->
+            assert arguments[0].size() == 4
+            return arguments[0].toList()
+        }
+
+        and:
+        results*.status == [TransactionStatus.SUCCESS] * 4
+        results*.transactionId == [1L, 2L, 3L, 4L]
+        results*.index == [0, 1, 2, 3]
+    }
+
+    def "processBatch should fail only the items of a customer whose balance update is rejected"() {
+        given:
+        def requests = [
+                request(1L, "500.00", TransactionType.PURCHASE),
+                request(2L, "10.00", TransactionType.TOP_UP)
+        ]
+
+        when:
+        def results = batchService.processBatch(requests)
+
+        then:
+        1 * customerClient.updateBalances(_) >> [
+                result(0, 1L, BalanceUpdateStatus.INSUFFICIENT_BALANCE, "Insufficient balance"),
+                result(1, 2L, BalanceUpdateStatus.APPLIED, null)]
+        1 * transactionRepository.updateStatus([1L], TransactionStatus.FAILED, _)
+        1 * transactionRepository.updateStatus([2L], TransactionStatus.SUCCESS, _)
+
+        and:
+        results[0].status == TransactionStatus.FAILED
+        results[0].message == "Insufficient balance"
+        results[1].status == TransactionStatus.SUCCESS
+    }
+
+    def "processBatch should reject invalid items without persisting them"() {
+        given:
+        def original = Transaction.builder().id(50L).customerId(1L)
+                .type(TransactionType.PURCHASE).amount(new BigDecimal("10.00")).build()
+        def requests = [
+                request(1L, "-1.00", TransactionType.TOP_UP),
+                request(1L, "5.00", null),
+                TransactionRequest.builder().customerId(1L).amount(new BigDecimal("20.00"))
+                        .type(TransactionType.REFUND).relatedTransactionId(50L).build(),
+                TransactionRequest.builder().customerId(1L).amount(new BigDecimal("4.00"))
+                        .type(TransactionType.REFUND).relatedTransactionId(50L).build()
+        ]
+
+        when:
+        def results = batchService.processBatch(requests)
+
+        then:
+        1 * transactionRepository.findAllById([50L]) >> [original]
+        1 * customerClient.updateBalances({ it*.amount == [new BigDecimal("4.00")] }) >> { arguments -> applied(arguments[0]) }
+
+        and:
+        results*.status == [TransactionStatus.FAILED, TransactionStatus.FAILED, TransactionStatus.FAILED, TransactionStatus.SUCCESS]
+        results[0].message == "Amount must be positive"
+        results[1].message == "Transaction type is required"
+        results[2].message == "Refund amount cannot be greater than original transaction amount"
+        results[0].transactionId == null
+    }
+
+    def "processBatch should count earlier and same-batch refunds against the original"() {
+        given: "an original of 10.00 already refunded by 4.00"
+        def original = Transaction.builder().id(50L).customerId(1L).type(TransactionType.PURCHASE)
+                .amount(new BigDecimal("10.00")).refundedTotal(new BigDecimal("4.00")).build()
+        def requests = [refund(1L, "5.00", 50L), refund(1L, "2.00", 50L), refund(1L, "1.00", 50L)]
+
+        when:
+        def results = batchService.processBatch(requests)
+
+        then: "only the refunds that still fit are reserved, in one update"
+        1 * transactionRepository.findAllById([50L]) >> [original]
+        1 * transactionRepository.reserveRefund(50L, new BigDecimal("6.00")) >> 1
+
+        and:
+        results*.status == [TransactionStatus.SUCCESS, TransactionStatus.FAILED, TransactionStatus.SUCCESS]
+        results[1].message == "Refund amount cannot be greater than original transaction amount"
+    }
+
+    def "processBatch should fail refunds whose reservation lost to a concurrent refund"() {
+        given:
+        def original = Transaction.builder().id(50L).customerId(1L).type(TransactionType.PURCHASE)
+                .amount(new BigDecimal("10.00")).build()
+        def requests = [refund(1L, "3.00", 50L), request(1L, "1.00", TransactionType.TOP_UP)]
+
+        when:
+        def results = batchService.processBatch(requests)
+
+        then:
+        1 * transactionRepository.findAllById([50L]) >> [original]
+        1 * transactionRepository.reserveRefund(50L, new BigDecimal("3.00")) >> 0
+        1 * transactionRepository.saveAll({ it*.type == [TransactionType.TOP_UP] }) >> { arguments ->
+            arguments[0].each { Transaction transaction -> transaction.id = nextId++ }
+            return arguments[0].toList()
+        }
+        1 * customerClient.updateBalances({ it*.amount == [new BigDecimal("1.00")] }) >> { arguments -> applied(arguments[0]) }
+
+        and:
+        results*.status == [TransactionStatus.FAILED, TransactionStatus.SUCCESS]
+        results[0].transactionId == null
+    }
+
+    def "processBatch should release the reservation of refunds whose balance update is rejected"() {
+        given:
+        def original = Transaction.builder().id(50L).customerId(1L).type(TransactionType.PURCHASE)
+                .amount(new BigDecimal("10.00")).build()
+
+        when:
+        batchService.processBatch([refund(1L, "3.00", 50L), refund(1L, "2.00", 50L)])
+
+        then:
+        1 * transactionRepository.findAllById([50L]) >> [original]
+        1 * customerClient.updateBalances(_) >> [result(0, 1L, BalanceUpdateStatus.NOT_FOUND, "Customer not found")]
+        1 * transactionRepository.releaseRefund(50L, new BigDecimal("5.00"))
+    }
+
+    def "processBatch should leave items PENDING for the sweeper when the balance call fails after being applied"() {
+        given:
+        def original = Transaction.builder().id(50L).customerId(1L).type(TransactionType.PURCHASE)
+                .amount(new BigDecimal("10.00")).build()
+        List<Transaction> saved = []
+        def sweeper = new PendingTransactionSweeper(transactionRepository, historyRepository,
+                customerClient, transactionTemplate, true, Duration.ZERO, 10, 1, 1000, false)
+
+        when: "ms-customer applies both netted updates but the response is lost"
+        def results = batchService.processBatch([
+                request(1L, "5.00", TransactionType.TOP_UP),
+                refund(1L, "3.00", 50L),
+                request(2L, "7.00", TransactionType.PURCHASE)])
+
+        then:
+        1 * transactionRepository.findAllById([50L]) >> [original]
+        1 * transactionRepository.saveAll(_) >> { arguments ->
+            arguments[0].each { Transaction transaction -> transaction.id = nextId++ }
+            saved.addAll(arguments[0])
+            return arguments[0].toList()
+        }
+        1 * customerClient.updateBalances(_) >> { throw new RetryableException(-1, "Read timed out",
+                Request.HttpMethod.PUT, (Long) null, Request.create(Request.HttpMethod.PUT, "/api/v1/customers/balances",
+                [:], null, StandardCharsets.UTF_8, null)) }
+        0 * transactionRepository.updateStatus(*_)
+        0 * transactionRepository.releaseRefund(*_)
+
+        and:
+        results*.status == [TransactionStatus.PENDING] * 3
+        results*.transactionId == [1L, 2L, 3L]
+        saved*.status == [TransactionStatus.PENDING] * 3
+        saved*.operationId == ["txn-1", "txn-1", "txn-3"]
+
+        when: "the sweeper resolves their operation ids"
+        def settled = sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(TransactionStatus.PENDING, _, _, 0L, _) >> saved
+        1 * customerClient.resolveBalanceOperation("txn-1") >> new BalanceOperationResult("txn-1", BalanceOperationStatus.APPLIED)
+        1 * customerClient.resolveBalanceOperation("txn-3") >> new BalanceOperationResult("txn-3", BalanceOperationStatus.APPLIED)
+        1 * transactionRepository.settlePending([1L, 2L, 3L], "SUCCESS", _) >> [1L, 2L, 3L]
+        0 * transactionRepository.releaseRefund(*_)
+        settled == 3
+
+        cleanup:
+        sweeper.shutdown()
+    }
+
+    def "processBatch should reject batches above the configured limit"() {
+        given:
+        def requests = (1..101).collect { request(1L, "1.00", TransactionType.TOP_UP) }
+
+        when:
+        batchService.processBatch(requests)
+
+        then:
+        thrown(IllegalArgumentException)
+        0 * customerClient._
+    }
+
+    def "processBatch should treat an operation ms-customer already applied as settled"() {
+        when:
+        def results = batchService.processBatch([request(1L, "5.00", TransactionType.TOP_UP)])
+
+        then:
+        1 * customerClient.updateBalances(_) >> [result(0, 1L, BalanceUpdateStatus.ALREADY_APPLIED, null)]
+        results*.status == [TransactionStatus.SUCCESS]
+    }
+
+    private static List<BalanceUpdateResult> applied(List<BalanceUpdate> updates) {
+        updates.withIndex().collect { BalanceUpdate update, int index ->
+            result(index, update.customerId, BalanceUpdateStatus.APPLIED, null)
+        }
+    }
+
+    private static BalanceUpdateResult result(int index, Long customerId, BalanceUpdateStatus status, String message) {
+        BalanceUpdateResult.builder().index(index).customerId(customerId).status(status).message(message).build()
+    }
+
+    private static TransactionRequest refund(Long customerId, String amount, Long relatedTransactionId) {
+        TransactionRequest.builder()
+                .customerId(customerId)
+                .amount(new BigDecimal(amount))
+                .type(TransactionType.REFUND)
+                .relatedTransactionId(relatedTransactionId)
+                .build()
+    }
+
+    private static TransactionRequest request(Long customerId, String amount, TransactionType type) {
+        TransactionRequest.builder()
+                .customerId(customerId)
+                .amount(new BigDecimal(amount))
+                .type(type)
+                .build()
+    }
+}
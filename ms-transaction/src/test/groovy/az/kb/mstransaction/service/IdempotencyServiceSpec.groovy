@@ -0,0 +1,175 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.entity.IdempotencyRecord
+import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.exception.IdempotencyConflictException
+import az.kb.mstransaction.model.TransactionRequest
+import az.kb.mstransaction.repository.IdempotencyRecordRepository
+import az.kb.mstransaction.repository.TransactionRepository
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class IdempotencyServiceSpec extends Specification {
+
+    def idempotencyRepository = Mock(IdempotencyRecordRepository)
+    def transactionRepository = Mock(TransactionRepository)
+    def transactionTemplate = new TransactionTemplate(Mock(PlatformTransactionManager))
+
+    @Subject
+    IdempotencyService idempotencyService = new IdempotencyService(
+            idempotencyRepository, transactionRepository, transactionTemplate,
+            100, Duration.ofHours(1), Duration.ofSeconds(5)
+    )
+
+    def request = new TransactionRequest(customerId: 1L, amount: new BigDecimal("10.00"))
+    def created = new Transaction(id: 77L, customerId: 1L, amount: new BigDecimal("10.00"), status: TransactionStatus.SUCCESS)
+
+    def "execute without a key should just run the request"() {
+        when:
+        def result = idempotencyService.execute(null, TransactionType.TOP_UP, request, { created })
+
+        then:
+        result == created
+        0 * idempotencyRepository._
+    }
+
+    def "execute should claim a new key with the transaction and replay it from memory afterwards"() {
+        given:
+        def calls = new AtomicInteger()
+
+        when:
+        def first = idempotencyService.execute("key-1", TransactionType.TOP_UP, request, { calls.incrementAndGet(); created })
+        def second = idempotencyService.execute("key-1", TransactionType.TOP_UP,
+                new TransactionRequest(customerId: 1L, amount: new BigDecimal("10")), { calls.incrementAndGet(); created })
+
+        then:
+        1 * idempotencyRepository.findByIdempotencyKey("key-1") >> Optional.empty()
+        1 * idempotencyRepository.saveAndFlush({ it.idempotencyKey == "key-1" && it.requestHash }) >> { arguments -> arguments[0] }
+        1 * transactionRepository.findById(77L) >> Optional.of(created)
+        first == created
+        second == created
+        calls.get() == 1
+    }
+
+    def "execute should replay a key stored by another node without running the request"() {
+        given:
+        def stored = new IdempotencyRecord()
+        idempotencyRepository.saveAndFlush(_) >> { arguments ->
+            stored.requestHash = arguments[0].requestHash
+            stored.transactionId = 77L
+            arguments[0]
+        }
+        idempotencyRepository.findByIdempotencyKey("seed") >> Optional.empty()
+        idempotencyService.execute("seed", TransactionType.PURCHASE, request, { created })
+
+        when:
+        def result = idempotencyService.execute("key-2", TransactionType.PURCHASE, request, { throw new AssertionError() })
+
+        then:
+        1 * idempotencyRepository.findByIdempotencyKey("key-2") >> Optional.of(stored)
+        1 * transactionRepository.findById(77L) >> Optional.of(created)
+        0 * idempotencyRepository.saveAndFlush(_)
+        result == created
+    }
+
+    def "execute should reject a key reused for a different request"() {
+        given:
+        idempotencyRepository.findByIdempotencyKey("key-3") >> Optional.empty()
+        idempotencyRepository.saveAndFlush(_) >> { arguments -> arguments[0] }
+        idempotencyService.execute("key-3", TransactionType.TOP_UP, request, { created })
+
+        when:
+        idempotencyService.execute("key-3", TransactionType.PURCHASE, request, { created })
+
+        then:
+        thrown(IdempotencyConflictException)
+    }
+
+    def "execute should replay the winner when another node claims the key first"() {
+        given:
+        def winner = new IdempotencyRecord()
+        idempotencyRepository.findByIdempotencyKey("key-4") >>> [Optional.empty(), Optional.of(winner)]
+        idempotencyRepository.saveAndFlush(_) >> { arguments ->
+            winner.idempotencyKey = "key-4"
+            winner.requestHash = arguments[0].requestHash
+            winner.transactionId = 5L
+            throw new DataIntegrityViolationException("duplicate key")
+        }
+        def original = new Transaction(id: 5L)
+
+        when:
+        def result = idempotencyService.execute("key-4", TransactionType.TOP_UP, request, { throw new AssertionError() })
+
+        then:
+        1 * transactionRepository.findById(5L) >> Optional.of(original)
+        result == original
+    }
+
+    def "execute should release the key when the request fails"() {
+        given:
+        idempotencyRepository.findByIdempotencyKey("key-5") >> Optional.empty()
+        idempotencyRepository.saveAndFlush(_) >> { arguments -> arguments[0] }
+
+        when:
+        idempotencyService.execute("key-5", TransactionType.TOP_UP, request, { throw new IllegalStateException("down") })
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        def retried = idempotencyService.execute("key-5", TransactionType.TOP_UP, request, { created })
+
+        then:
+        retried == created
+    }
+
+    def "concurrent duplicates should execute once and all get the same transaction"() {
+        given:
+        idempotencyRepository.findByIdempotencyKey("key-6") >> Optional.empty()
+        idempotencyRepository.saveAndFlush(_) >> { arguments -> arguments[0] }
+        transactionRepository.findById(77L) >> Optional.of(created)
+        def executions = new AtomicInteger()
+        def release = new CountDownLatch(1)
+        def pool = Executors.newFixedThreadPool(8)
+
+        when:
+        def futures = (1..8).collect {
+            pool.submit({
+                idempotencyService.execute("key-6", TransactionType.TOP_UP, request, {
+                    executions.incrementAndGet()
+                    release.await(5, TimeUnit.SECONDS)
+                    created
+                })
+            } as java.util.concurrent.Callable<Transaction>)
+        }
+        Thread.sleep(200)
+        release.countDown()
+        def results = futures*.get(5, TimeUnit.SECONDS)
+
+        then:
+        executions.get() == 1
+        results.every { it.id == 77L }
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    def "execute should reject overly long keys"() {
+        when:
+        idempotencyService.execute("k" * 256, TransactionType.TOP_UP, request, { created })
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
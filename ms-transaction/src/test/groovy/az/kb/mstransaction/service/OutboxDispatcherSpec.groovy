@@ -0,0 +1,164 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.entity.BalanceOutbox
+import az.kb.mstransaction.enums.BalanceOperationStatus
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.model.BalanceOperationResult
+import az.kb.mstransaction.model.UpdateBalanceRequest
+import az.kb.mstransaction.repository.BalanceOutboxRepository
+import feign.FeignException
+import feign.Request
+import feign.RetryableException
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.nio.charset.StandardCharsets
+import java.time.Duration
+
+class OutboxDispatcherSpec extends Specification {
+
+    def outboxRepository = Mock(BalanceOutboxRepository)
+    def outboxService = Mock(BalanceOutboxService)
+    def customerClient = Mock(CustomerClient)
+
+    @Subject
+    OutboxDispatcher dispatcher = new OutboxDispatcher(
+            outboxRepository, outboxService, customerClient, true, 3, 2, Duration.ofSeconds(30), 2, false)
+
+    def cleanup() {
+        dispatcher.shutdown()
+    }
+
+    def "drain should apply each leased entry and settle the batch together"() {
+        given:
+        def topUp = entry(1L, 10L, 100L, "25.00", 1)
+        def purchase = entry(2L, 11L, 200L, "-500.00", 1)
+
+        when:
+        dispatcher.drain()
+
+        then:
+        1 * outboxRepository.claimBatch(_, _, 3) >> [topUp, purchase]
+        1 * customerClient.updateBalance(100L, { it.amount == new BigDecimal("25.00") } as UpdateBalanceRequest)
+        1 * customerClient.updateBalance(200L, _) >> { throw feignError(400) }
+
+        then:
+        1 * outboxService.complete({ it == [(topUp): TransactionStatus.SUCCESS, (purchase): TransactionStatus.FAILED] })
+
+        then:
+        1 * outboxService.notifyWaiters({ it == [(topUp): TransactionStatus.SUCCESS, (purchase): TransactionStatus.FAILED] })
+    }
+
+    def "drain should leave transient failures for retry and then settle them as ms-customer resolves them"() {
+        given:
+        def fresh = entry(1L, 10L, 100L, "5.00", 1)
+        def exhausted = entry(2L, 11L, 200L, "5.00", 2)
+
+        when:
+        dispatcher.drain()
+
+        then:
+        1 * outboxRepository.claimBatch(_, _, 3) >> [fresh, exhausted]
+        2 * customerClient.updateBalance(_, _) >> { throw feignError(503) }
+        1 * customerClient.resolveBalanceOperation("txn-11") >> new BalanceOperationResult("txn-11", BalanceOperationStatus.VOIDED)
+        0 * customerClient.resolveBalanceOperation("txn-10")
+        1 * outboxService.complete({ it == [(exhausted): TransactionStatus.FAILED] })
+    }
+
+    def "a last attempt that timed out after ms-customer applied the update should settle as SUCCESS"() {
+        given:
+        def exhausted = entry(2L, 11L, 200L, "-5.00", 2)
+
+        when:
+        dispatcher.drain()
+
+        then:
+        1 * outboxRepository.claimBatch(_, _, 3) >> [exhausted]
+        1 * customerClient.updateBalance(200L, _) >> {
+            throw new RetryableException(-1, "Read timed out", Request.HttpMethod.PUT, (Long) null, feignRequest())
+        }
+        1 * customerClient.resolveBalanceOperation("txn-11") >> new BalanceOperationResult("txn-11", BalanceOperationStatus.APPLIED)
+        1 * outboxService.complete({ it == [(exhausted): TransactionStatus.SUCCESS] })
+        1 * outboxService.notifyWaiters({ it == [(exhausted): TransactionStatus.SUCCESS] })
+    }
+
+    def "a last attempt whose outcome cannot be resolved should be left PENDING for the sweeper"() {
+        given:
+        def exhausted = entry(2L, 11L, 200L, "-5.00", 2)
+
+        when:
+        dispatcher.drain()
+
+        then:
+        1 * outboxRepository.claimBatch(_, _, 3) >> [exhausted]
+        1 * customerClient.updateBalance(200L, _) >> { throw feignError(503) }
+        1 * customerClient.resolveBalanceOperation("txn-11") >> { throw feignError(503) }
+        1 * outboxService.complete({ it == [(exhausted): TransactionStatus.PENDING] })
+    }
+
+    def "a rejected update should fail without asking ms-customer to resolve it"() {
+        given:
+        def exhausted = entry(2L, 11L, 200L, "-5.00", 2)
+
+        when:
+        dispatcher.drain()
+
+        then:
+        1 * outboxRepository.claimBatch(_, _, 3) >> [exhausted]
+        1 * customerClient.updateBalance(200L, _) >> { throw feignError(422) }
+        0 * customerClient.resolveBalanceOperation(_)
+        1 * outboxService.complete({ it == [(exhausted): TransactionStatus.FAILED] })
+    }
+
+    def "drain should keep claiming while full batches come back"() {
+        when:
+        dispatcher.drain()
+
+        then:
+        2 * outboxRepository.claimBatch(_, _, 3) >>> [
+                [entry(1L, 1L, 1L, "1", 1), entry(2L, 2L, 1L, "1", 1), entry(3L, 3L, 1L, "1", 1)],
+                [entry(4L, 4L, 1L, "1", 1)]
+        ]
+        4 * customerClient.updateBalance(1L, _)
+        2 * outboxService.complete(_)
+    }
+
+    def "poll should do nothing when outbox mode is off"() {
+        given:
+        def disabled = new OutboxDispatcher(
+                outboxRepository, outboxService, customerClient, false, 3, 2, Duration.ofSeconds(30), 1, true)
+
+        when:
+        disabled.poll()
+
+        then:
+        0 * outboxRepository._
+
+        cleanup:
+        disabled.shutdown()
+    }
+
+    private static BalanceOutbox entry(Long id, Long transactionId, Long customerId, String amount, int attempts) {
+        BalanceOutbox.builder()
+                .id(id)
+                .transactionId(transactionId)
+                .customerId(customerId)
+                .amount(new BigDecimal(amount))
+                .attempts(attempts)
+                .build()
+    }
+
+    private static Request feignRequest() {
+        Request.create(Request.HttpMethod.PUT, "/api/v1/customers/1/balance", [:], null,
+                StandardCharsets.UTF_8, null)
+    }
+
+    private static FeignException feignError(int status) {
+        FeignException.errorStatus("updateBalance", feign.Response.builder()
+                .status(status)
+                .request(feignRequest())
+                .headers([:])
+                .build())
+    }
+}
@@ -0,0 +1,103 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.model.TransactionRequest
+import az.kb.mstransaction.repository.BalanceOutboxRepository
+import az.kb.mstransaction.repository.TransactionRepository
+import com.sun.net.httpserver.HttpServer
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.PostgreSQLContainer
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs outbox mode end to end against Postgres and an in-process stand-in for ms-customer
+ * that rejects purchases for customer 2 and accepts everything else.
+ */
+@SpringBootTest
+@Requires({ DockerClientFactory.instance().isDockerAvailable() })
+class OutboxStubCustomerSpec extends Specification {
+
+    static PostgreSQLContainer postgres = new PostgreSQLContainer("postgres:15")
+    static HttpServer customerStub = HttpServer.create(new InetSocketAddress(0), 0)
+    static Map<Long, AtomicInteger> balanceCalls = new ConcurrentHashMap<>()
+
+    @Autowired
+    TransactionService transactionService
+
+    @Autowired
+    TransactionRepository transactionRepository
+
+    @Autowired
+    BalanceOutboxRepository outboxRepository
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        postgres.start()
+        customerStub.createContext("/api/v1/customers/") { exchange ->
+            Long customerId = exchange.requestURI.path.split("/")[4] as Long
+            balanceCalls.computeIfAbsent(customerId, { new AtomicInteger() }).incrementAndGet()
+            exchange.requestBody.readAllBytes()
+            exchange.sendResponseHeaders(customerId == 2L ? 400 : 200, -1)
+            exchange.close()
+        }
+        customerStub.start()
+
+        registry.add("spring.datasource.url", { postgres.jdbcUrl })
+        registry.add("spring.datasource.username", { postgres.username })
+        registry.add("spring.datasource.password", { postgres.password })
+        registry.add("client.ms-customer.url", { "http://localhost:${customerStub.address.port}" as String })
+        registry.add("transaction.outbox.enabled", { "true" })
+    }
+
+    def cleanupSpec() {
+        customerStub.stop(0)
+    }
+
+    def "accepted transactions settle through the outbox and can be awaited"() {
+        when:
+        def accepted = transactionService.topUp(new TransactionRequest(customerId: 1L, amount: 10))
+        def settled = transactionService.awaitSettled(accepted)
+
+        then:
+        accepted.status == TransactionStatus.PENDING
+        settled.status == TransactionStatus.SUCCESS
+        balanceCalls[1L].get() == 1
+        outboxRepository.count() == 0
+    }
+
+    def "a rejected balance update fails the transaction without retrying"() {
+        when:
+        def accepted = transactionService.purchase(new TransactionRequest(customerId: 2L, amount: 10))
+        def settled = transactionService.awaitSettled(accepted)
+
+        then:
+        settled.status == TransactionStatus.FAILED
+        transactionRepository.findById(accepted.id).get().status == TransactionStatus.FAILED
+        balanceCalls[2L].get() == 1
+    }
+
+    def "accept-and-poll sees the transaction settle without waiting on it"() {
+        given:
+        def accepted = (1..20).collect {
+            transactionService.topUp(new TransactionRequest(customerId: 3L, amount: 1))
+        }
+
+        when:
+        def deadline = System.currentTimeMillis() + 10_000
+        while (System.currentTimeMillis() < deadline && outboxRepository.count() > 0) {
+            sleep(50)
+        }
+
+        then:
+        accepted.every { transactionRepository.findById(it.id).get().status == TransactionStatus.SUCCESS }
+        balanceCalls[3L].get() == 20
+    }
+}
@@ -0,0 +1,173 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.enums.BalanceOperationStatus
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.model.BalanceOperationResult
+import az.kb.mstransaction.repository.HistoryRepository
+import az.kb.mstransaction.repository.TransactionRepository
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.time.LocalDateTime
+
+class PendingTransactionSweeperSpec extends Specification {
+
+    def transactionRepository = Mock(TransactionRepository)
+    def historyRepository = Mock(HistoryRepository)
+    def customerClient = Mock(CustomerClient)
+    def transactionTemplate = new TransactionTemplate(Mock(PlatformTransactionManager))
+
+    @Subject
+    PendingTransactionSweeper sweeper = new PendingTransactionSweeper(transactionRepository, historyRepository,
+            customerClient, transactionTemplate, true, Duration.ofMinutes(5), 2, 2, 1000, false)
+
+    def cleanup() {
+        sweeper.shutdown()
+    }
+
+    def "sweep should settle stale rows by the fate of their balance operation"() {
+        given:
+        def applied = pending(1L, "txn-1")
+        def lost = pending(2L, "txn-2")
+
+        when:
+        def settled = sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(TransactionStatus.PENDING, _, _, 0L, _) >> [applied, lost]
+        1 * transactionRepository.findStale(TransactionStatus.PENDING, _, applied.createdAt.plusSeconds(1), 2L, _) >> []
+        1 * customerClient.resolveBalanceOperation("txn-1") >> result("txn-1", BalanceOperationStatus.APPLIED)
+        1 * customerClient.resolveBalanceOperation("txn-2") >> result("txn-2", BalanceOperationStatus.VOIDED)
+        1 * transactionRepository.settlePending([1L], "SUCCESS", _) >> [1L]
+        1 * transactionRepository.settlePending([2L], "FAILED", _) >> [2L]
+        1 * historyRepository.saveAll({ it*.transactionId == [1L, 2L] })
+        settled == 2
+    }
+
+    def "sweep should resolve a shared batch operation once for all its rows"() {
+        given:
+        def first = pending(10L, "txn-10")
+        def second = pending(11L, "txn-10")
+
+        when:
+        sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(_, _, _, 0L, _) >> [first, second]
+        1 * transactionRepository.findStale(_, _, _, 11L, _) >> []
+        1 * customerClient.resolveBalanceOperation("txn-10") >> result("txn-10", BalanceOperationStatus.APPLIED)
+        1 * transactionRepository.settlePending([10L, 11L], "SUCCESS", _) >> [10L, 11L]
+    }
+
+    def "sweep should leave rows PENDING when ms-customer cannot be reached"() {
+        given:
+        def row = pending(3L, "txn-3")
+
+        when:
+        def settled = sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(_, _, _, 0L, _) >> [row]
+        1 * customerClient.resolveBalanceOperation("txn-3") >> { throw new RuntimeException("Connection refused") }
+        0 * transactionRepository.settlePending(*_)
+        0 * historyRepository.saveAll(_)
+        settled == 0
+    }
+
+    def "sweep should release the reservation of refunds that were never applied"() {
+        given:
+        def refund = pending(4L, "txn-4")
+        refund.type = TransactionType.REFUND
+        refund.relatedTransactionId = 1L
+        refund.amount = new BigDecimal("7.50")
+
+        when:
+        sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(_, _, _, 0L, _) >> [refund]
+        1 * customerClient.resolveBalanceOperation("txn-4") >> result("txn-4", BalanceOperationStatus.VOIDED)
+        1 * transactionRepository.settlePending([4L], "FAILED", _) >> [4L]
+        1 * transactionRepository.releaseRefund(1L, new BigDecimal("7.50"))
+    }
+
+    def "sweep should leave rows settled by someone else since they were read alone"() {
+        given:
+        def refund = pending(6L, "txn-6")
+        refund.type = TransactionType.REFUND
+        refund.relatedTransactionId = 1L
+        def lost = pending(7L, "txn-7")
+
+        when:
+        def settled = sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(_, _, _, 0L, _) >> [refund, lost]
+        1 * transactionRepository.findStale(_, _, _, 7L, _) >> []
+        customerClient.resolveBalanceOperation(_) >> { String id -> result(id, BalanceOperationStatus.VOIDED) }
+        1 * transactionRepository.settlePending([6L, 7L], "FAILED", _) >> [7L]
+        1 * historyRepository.saveAll({ it*.transactionId == [7L] })
+        0 * transactionRepository.releaseRefund(*_)
+        settled == 1
+    }
+
+    def "sweep should fall back to the transaction id for rows without an operation id"() {
+        given:
+        def legacy = pending(5L, null)
+
+        when:
+        sweeper.sweep()
+
+        then:
+        1 * transactionRepository.findStale(_, _, _, 0L, _) >> [legacy]
+        1 * customerClient.resolveBalanceOperation("txn-5") >> result("txn-5", BalanceOperationStatus.VOIDED)
+        1 * transactionRepository.settlePending([5L], "FAILED", _) >> [5L]
+    }
+
+    def "sweep should keep chunks within the configured rate"() {
+        given:
+        def limited = new PendingTransactionSweeper(transactionRepository, historyRepository,
+                customerClient, transactionTemplate, true, Duration.ofMinutes(5), 2, 2, 20, false)
+        def rows = (1L..6L).collect { pending(it, "txn-" + it) }
+        transactionRepository.findStale(_, _, _, 0L, _) >> rows[0..1]
+        transactionRepository.findStale(_, _, _, 2L, _) >> rows[2..3]
+        transactionRepository.findStale(_, _, _, 4L, _) >> rows[4..5]
+        transactionRepository.findStale(_, _, _, 6L, _) >> []
+        customerClient.resolveBalanceOperation(_) >> { String id -> result(id, BalanceOperationStatus.APPLIED) }
+        transactionRepository.settlePending(*_) >> { Collection<Long> ids, String status, LocalDateTime at -> ids as List }
+
+        when:
+        long started = System.nanoTime()
+        def settled = limited.sweep()
+        long elapsedMillis = (System.nanoTime() - started).intdiv(1_000_000)
+
+        then: "six calls at 20 per second take at least five intervals of 50 ms"
+        settled == 6
+        elapsedMillis >= 240
+
+        cleanup:
+        limited.shutdown()
+    }
+
+    private static Transaction pending(Long id, String operationId) {
+        Transaction.builder()
+                .id(id)
+                .customerId(1L)
+                .type(TransactionType.TOP_UP)
+                .amount(BigDecimal.ONE)
+                .status(TransactionStatus.PENDING)
+                .operationId(operationId)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(id))
+                .build()
+    }
+
+    private static BalanceOperationResult result(String operationId, BalanceOperationStatus status) {
+        BalanceOperationResult.builder().operationId(operationId).status(status).build()
+    }
+}
@@ -0,0 +1,121 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.client.CustomerClient
+import az.kb.mstransaction.enums.ReconciliationStatus
+import az.kb.mstransaction.exception.NotFoundException
+import az.kb.mstransaction.model.CustomerBalance
+import az.kb.mstransaction.model.CustomerNetAmount
+import az.kb.mstransaction.model.ReconciliationReport
+import az.kb.mstransaction.repository.TransactionRepository
+import spock.lang.Specification
+
+class ReconciliationServiceSpec extends Specification {
+
+    def transactionRepository = Mock(TransactionRepository)
+    def customerClient = Mock(CustomerClient)
+
+    ReconciliationService service
+
+    def cleanup() {
+        service?.shutdown()
+    }
+
+    def "reconcile should page balances by id and compare each page with the aggregate of its range"() {
+        given:
+        service = newService(2, 100)
+        customerClient.getBalances(0L, 2) >> [balance(1L, "110.00"), balance(2L, "90.00")]
+        customerClient.getBalances(2L, 2) >> [balance(3L, "100.00")]
+        transactionRepository.sumNetByCustomer(0L, 2L) >> [net(1L, "10.00"), net(2L, "-5.00")]
+        transactionRepository.sumNetByCustomer(2L, Long.MAX_VALUE) >> [net(9L, "4.00")]
+
+        when:
+        def report = awaitFinished(service.start())
+
+        then: "customer 2 is 5.00 short and customer 9 has transactions but no balance"
+        report.status == ReconciliationStatus.COMPLETED
+        report.customersChecked == 3
+        report.discrepancyCount == 2
+        report.discrepancies*.customerId == [2L, 9L]
+        report.discrepancies[0].expected == new BigDecimal("95.00")
+        report.discrepancies[0].difference == new BigDecimal("-5.00")
+        report.discrepancies[1].balance == null
+        report.discrepancies[1].expected == new BigDecimal("104.00")
+    }
+
+    def "reconcile should count every discrepancy but keep only the configured number"() {
+        given:
+        service = newService(10, 1)
+        customerClient.getBalances(0L, 10) >> [balance(1L, "1.00"), balance(2L, "2.00"), balance(3L, "100")]
+        transactionRepository.sumNetByCustomer(0L, Long.MAX_VALUE) >> []
+
+        when:
+        def report = awaitFinished(service.start())
+
+        then:
+        report.discrepancyCount == 2
+        report.discrepancies.size() == 1
+    }
+
+    def "reconcile should fail the report when ms-customer cannot be read"() {
+        given:
+        service = newService(2, 100)
+        customerClient.getBalances(_, _) >> { throw new RuntimeException("ms-customer unavailable") }
+
+        when:
+        def report = awaitFinished(service.start())
+
+        then:
+        report.status == ReconciliationStatus.FAILED
+        report.error.contains("ms-customer unavailable")
+        report.finishedAt != null
+    }
+
+    def "reconcile should fail instead of hanging when a page cannot be submitted"() {
+        given:
+        service = newService(2, 100)
+        customerClient.getBalances(0L, 2) >> [balance(1L, "100.00")]
+        service.comparators.shutdown()
+
+        when:
+        def report = awaitFinished(service.start())
+
+        then:
+        report.status == ReconciliationStatus.FAILED
+        report.error.contains("rejected")
+        report.finishedAt != null
+    }
+
+    def "getReport should throw NotFoundException for an unknown id"() {
+        given:
+        service = newService(2, 100)
+
+        when:
+        service.getReport(42L)
+
+        then:
+        thrown(NotFoundException)
+    }
+
+    private ReconciliationService newService(int chunkSize, int maxDiscrepancies) {
+        new ReconciliationService(transactionRepository, customerClient, new BigDecimal("100"),
+                chunkSize, 2, maxDiscrepancies, 5, false)
+    }
+
+    private ReconciliationReport awaitFinished(ReconciliationReport started) {
+        def deadline = System.currentTimeMillis() + 5_000
+        def report = service.getReport(started.id)
+        while (report.status == ReconciliationStatus.RUNNING && System.currentTimeMillis() < deadline) {
+            sleep(10)
+            report = service.getReport(started.id)
+        }
+        report
+    }
+
+    private static CustomerBalance balance(Long id, String amount) {
+        CustomerBalance.builder().id(id).balance(new BigDecimal(amount)).build()
+    }
+
+    private static CustomerNetAmount net(Long customerId, String amount) {
+        [getCustomerId: { customerId }, getNet: { new BigDecimal(amount) }] as CustomerNetAmount
+    }
+}
@@ -10,6 +10,9 @@ import az.kb.mstransaction.model.TransactionRequest
 import az.kb.mstransaction.model.UpdateBalanceRequest
 import az.kb.mstransaction.repository.HistoryRepository
 import az.kb.mstransaction.repository.TransactionRepository
+import org.springframework.data.domain.Limit
+import org.springframework.data.domain.PageRequest
+import org.springframework.test.util.ReflectionTestUtils
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -21,10 +24,11 @@ class TransactionServiceSpec extends Specification {
     def transactionRepository = Mock(TransactionRepository)
     def historyRepository = Mock(HistoryRepository)
     def customerClient = Mock(CustomerClient)
+    def outboxService = Mock(BalanceOutboxService)
 
     @Subject
     TransactionService transactionService = new TransactionService(
-            transactionRepository, historyRepository, customerClient
+            transactionRepository, historyRepository, customerClient, outboxService
     )
 
     def "topUp should create successful TOP_UP transaction"() {
@@ -62,13 +66,6 @@ class TransactionServiceSpec extends Specification {
             return savedTransaction
         }
 
-        and: "status history is saved for PENDING"
-        1 * historyRepository.save(_ as TransactionStatusHistory) >> { TransactionStatusHistory history ->
-            assert history.transactionId == 123L
-            assert history.status == TransactionStatus.PENDING
-            return history
-        }
-
         and: "customer balance is updated with positive amount"
         1 * customerClient.updateBalance(1L, _ as UpdateBalanceRequest) >> { Long customerId, UpdateBalanceRequest updateRequest ->
             assert updateRequest.amount == new BigDecimal("100.00")
@@ -80,10 +77,11 @@ class TransactionServiceSpec extends Specification {
             return successTransaction
         }
 
-        and: "status history is saved for SUCCESS"
-        1 * historyRepository.save(_ as TransactionStatusHistory) >> { TransactionStatusHistory history ->
-            assert history.transactionId == 123L
-            assert history.status == TransactionStatus.SUCCESS
+        and: "PENDING and SUCCESS history rows are saved together"
+        1 * historyRepository.saveAll(_) >> { arguments ->
+            List<TransactionStatusHistory> history = arguments[0]
+            assert history*.transactionId == [123L, 123L]
+            assert history*.status == [TransactionStatus.PENDING, TransactionStatus.SUCCESS]
             return history
         }
 
@@ -92,6 +90,48 @@ class TransactionServiceSpec extends Specification {
         result.status == TransactionStatus.SUCCESS
     }
 
+    def "purchase in outbox mode should enqueue the balance change and leave the transaction pending"() {
+        given:
+        ReflectionTestUtils.setField(transactionService, "outboxEnabled", true)
+        def request = TransactionRequest.builder()
+                .customerId(1L)
+                .amount(new BigDecimal("40.00"))
+                .build()
+        def savedTransaction = Transaction.builder()
+                .id(124L)
+                .customerId(1L)
+                .type(TransactionType.PURCHASE)
+                .amount(new BigDecimal("40.00"))
+                .status(TransactionStatus.PENDING)
+                .build()
+
+        when:
+        def result = transactionService.purchase(request)
+
+        then:
+        1 * transactionRepository.save(_ as Transaction) >> savedTransaction
+        1 * historyRepository.saveAll({ it*.status == [TransactionStatus.PENDING] })
+        1 * outboxService.enqueue(savedTransaction, new BigDecimal("-40.00"))
+        0 * customerClient._
+        result.status == TransactionStatus.PENDING
+    }
+
+    def "awaitSettled should only wait on pending transactions"() {
+        given:
+        def pending = Transaction.builder().id(1L).status(TransactionStatus.PENDING).build()
+        def settled = Transaction.builder().id(1L).status(TransactionStatus.SUCCESS).build()
+
+        expect:
+        transactionService.awaitSettled(settled) == settled
+
+        when:
+        def result = transactionService.awaitSettled(pending)
+
+        then:
+        1 * outboxService.awaitCompletion(pending) >> settled
+        result == settled
+    }
+
 //    def "topUp should fail when customer client throws exception"() {
 //        given: "a valid top up request"
 //        def request = TransactionRequest.builder()
@@ -158,9 +198,6 @@ class TransactionServiceSpec extends Specification {
         then: "transaction is saved"
         1 * transactionRepository.save(_ as Transaction) >> savedTransaction
 
-        and: "status history is saved for PENDING"
-        1 * historyRepository.save(_ as TransactionStatusHistory)
-
         and: "customer balance is updated with negative amount"
         1 * customerClient.updateBalance(1L, _ as UpdateBalanceRequest) >> { Long customerId, UpdateBalanceRequest updateRequest ->
             assert updateRequest.amount == new BigDecimal("-50.00")
@@ -172,8 +209,8 @@ class TransactionServiceSpec extends Specification {
             return tx
         }
 
-        and: "status history is saved for SUCCESS"
-        1 * historyRepository.save(_ as TransactionStatusHistory)
+        and: "PENDING and SUCCESS history rows are saved together"
+        1 * historyRepository.saveAll({ it*.status == [TransactionStatus.PENDING, TransactionStatus.SUCCESS] })
 
         and: "result has correct type"
         result.type == TransactionType.PURCHASE
@@ -213,11 +250,8 @@ class TransactionServiceSpec extends Specification {
         and: "refund transaction is saved"
         1 * transactionRepository.save(_ as Transaction) >> savedRefundTransaction
 
-        and: "status history is saved for PENDING"
-        1 * historyRepository.save(_ as TransactionStatusHistory)
-
-        and: "original transaction is found again for amount calculation"
-        1 * transactionRepository.findByIdAndCustomerId(100L, 1L) >> Optional.of(originalTransaction)
+        and: "the refund is reserved against the original"
+        1 * transactionRepository.reserveRefund(100L, new BigDecimal("50.00")) >> 1
 
         and: "customer balance is updated with negative amount (refunding TOP_UP)"
         1 * customerClient.updateBalance(1L, _ as UpdateBalanceRequest) >> { Long customerId, UpdateBalanceRequest updateRequest ->
@@ -230,8 +264,8 @@ class TransactionServiceSpec extends Specification {
             return tx
         }
 
-        and: "status history is saved for SUCCESS"
-        1 * historyRepository.save(_ as TransactionStatusHistory)
+        and: "PENDING and SUCCESS history rows are saved together"
+        1 * historyRepository.saveAll({ it*.status == [TransactionStatus.PENDING, TransactionStatus.SUCCESS] })
 
         and: "result has correct type"
         result.type == TransactionType.REFUND
@@ -271,11 +305,8 @@ class TransactionServiceSpec extends Specification {
         and: "refund transaction is saved"
         1 * transactionRepository.save(_ as Transaction) >> savedRefundTransaction
 
-        and: "status history is saved for PENDING"
-        1 * historyRepository.save(_ as TransactionStatusHistory)
-
-        and: "original transaction is found again for amount calculation"
-        1 * transactionRepository.findByIdAndCustomerId(101L, 1L) >> Optional.of(originalTransaction)
+        and: "the refund is reserved against the original"
+        1 * transactionRepository.reserveRefund(101L, new BigDecimal("30.00")) >> 1
 
         and: "customer balance is updated with positive amount (refunding PURCHASE)"
         1 * customerClient.updateBalance(1L, _ as UpdateBalanceRequest) >> { Long customerId, UpdateBalanceRequest updateRequest ->
@@ -288,8 +319,8 @@ class TransactionServiceSpec extends Specification {
             return tx
         }
 
-        and: "status history is saved for SUCCESS"
-        1 * historyRepository.save(_ as TransactionStatusHistory)
+        and: "PENDING and SUCCESS history rows are saved together"
+        1 * historyRepository.saveAll({ it*.status == [TransactionStatus.PENDING, TransactionStatus.SUCCESS] })
     }
 
     def "refund should throw NotFoundException when original transaction not found"() {
@@ -332,27 +363,150 @@ class TransactionServiceSpec extends Specification {
         then: "original transaction is found"
         1 * transactionRepository.findByIdAndCustomerId(100L, 1L) >> Optional.of(originalTransaction)
 
+        and: "the conditional reservation matches no row"
+        1 * transactionRepository.reserveRefund(100L, new BigDecimal("100.00")) >> 0
+
         and: "IllegalArgumentException is thrown"
         def ex = thrown(IllegalArgumentException)
         ex.message == "Refund amount cannot be greater than original transaction amount"
+        0 * transactionRepository.save(_)
+        0 * customerClient._
+    }
+
+    def "refund should reject a partial refund once earlier refunds used up the original"() {
+        given: "an original that is already refunded down to 5.00"
+        def originalTransaction = Transaction.builder()
+                .id(100L)
+                .customerId(1L)
+                .type(TransactionType.PURCHASE)
+                .amount(new BigDecimal("50.00"))
+                .refundedTotal(new BigDecimal("45.00"))
+                .status(TransactionStatus.SUCCESS)
+                .build()
+
+        def request = TransactionRequest.builder()
+                .customerId(1L)
+                .amount(new BigDecimal("10.00"))
+                .relatedTransactionId(100L)
+                .build()
+
+        when:
+        transactionService.refund(request)
+
+        then: "the original is loaded once and the reservation is refused"
+        1 * transactionRepository.findByIdAndCustomerId(100L, 1L) >> Optional.of(originalTransaction)
+        1 * transactionRepository.reserveRefund(100L, new BigDecimal("10.00")) >> 0
+        thrown(IllegalArgumentException)
+        0 * customerClient._
+    }
+
+    def "refund should reject refunding a refund before reserving anything"() {
+        given:
+        def originalTransaction = Transaction.builder()
+                .id(100L)
+                .customerId(1L)
+                .type(TransactionType.REFUND)
+                .amount(new BigDecimal("50.00"))
+                .build()
+
+        def request = TransactionRequest.builder()
+                .customerId(1L)
+                .amount(new BigDecimal("10.00"))
+                .relatedTransactionId(100L)
+                .build()
+
+        when:
+        transactionService.refund(request)
+
+        then:
+        1 * transactionRepository.findByIdAndCustomerId(100L, 1L) >> Optional.of(originalTransaction)
+        0 * transactionRepository.reserveRefund(_, _)
+        thrown(IllegalArgumentException)
     }
 
-    def "getAllTransactions should return all transactions"() {
-        given: "transactions exist in repository"
+    def "refund should reject a purchase that was only authorized"() {
+        given:
+        def originalTransaction = Transaction.builder()
+                .id(100L)
+                .customerId(1L)
+                .type(TransactionType.PURCHASE)
+                .status(status)
+                .amount(new BigDecimal("50.00"))
+                .build()
+        def request = TransactionRequest.builder()
+                .customerId(1L)
+                .amount(new BigDecimal("10.00"))
+                .relatedTransactionId(100L)
+                .build()
+
+        when:
+        transactionService.refund(request)
+
+        then:
+        1 * transactionRepository.findByIdAndCustomerId(100L, 1L) >> Optional.of(originalTransaction)
+        0 * transactionRepository.reserveRefund(_, _)
+        0 * customerClient._
+        thrown(IllegalArgumentException)
+
+        where:
+        status << [TransactionStatus.AUTHORIZED, TransactionStatus.RELEASED, TransactionStatus.EXPIRED]
+    }
+
+    def "getRefunds should list the refunds of an existing transaction"() {
+        given:
+        def refunds = [
+                Transaction.builder().id(7L).relatedTransactionId(5L).type(TransactionType.REFUND).build(),
+                Transaction.builder().id(9L).relatedTransactionId(5L).type(TransactionType.REFUND).build()
+        ]
+
+        when:
+        def result = transactionService.getRefunds(5L)
+
+        then:
+        1 * transactionRepository.existsById(5L) >> true
+        1 * transactionRepository.findByRelatedTransactionIdOrderByIdAsc(5L) >> refunds
+        result*.id == [7L, 9L]
+    }
+
+    def "getRefunds should throw NotFoundException for an unknown transaction"() {
+        when:
+        transactionService.getRefunds(5L)
+
+        then:
+        1 * transactionRepository.existsById(5L) >> false
+        0 * transactionRepository.findByRelatedTransactionIdOrderByIdAsc(_)
+        thrown(NotFoundException)
+    }
+
+    def "getTransactions should return a full page with a cursor to the next one"() {
+        given: "more transactions exist than the requested limit"
         def transactions = [
-                Transaction.builder().id(1L).build(),
-                Transaction.builder().id(2L).build()
+                Transaction.builder().id(11L).build(),
+                Transaction.builder().id(12L).build()
         ]
 
-        when: "getAllTransactions is called"
-        def result = transactionService.getAllTransactions()
+        when: "getTransactions is called after id 10"
+        def result = transactionService.getTransactions(10L, 2)
+
+        then: "a keyset query is issued"
+        1 * transactionRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(2)) >> transactions
+        0 * transactionRepository.findAll()
 
-        then: "repository findAll is called"
-        1 * transactionRepository.findAll() >> transactions
+        and: "the last id is returned as the next cursor"
+        result.items == transactions
+        result.nextCursor == 12L
+    }
+
+    def "getTransactions should start from the beginning and end without a cursor on a partial page"() {
+        when:
+        def result = transactionService.getTransactions(null, 5000)
+
+        then: "limit is clamped to the maximum page size"
+        1 * transactionRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(500)) >> [Transaction.builder().id(1L).build()]
 
-        and: "all transactions are returned"
-        result == transactions
-        result.size() == 2
+        and:
+        result.items.size() == 1
+        result.nextCursor == null
     }
 
     def "getTransactionById should return transaction when found"() {
@@ -384,35 +538,34 @@ class TransactionServiceSpec extends Specification {
     }
 
 
-    def "getTransactionByCustomerId should return transaction when found"() {
+    def "getTransactionByCustomerId should return newest-first page within the date range"() {
         given: "a transaction exists for customer"
         def transaction = Transaction.builder()
                 .id(1L)
                 .customerId(1L)
                 .build()
-        def transactionList = [transaction]
+        def from = LocalDateTime.of(2025, 1, 1, 0, 0)
+        def to = LocalDateTime.of(2025, 2, 1, 0, 0)
 
-        when: "getTransactionByCustomerId is called"
-        def result = transactionService.getTransactionByCustomerId(1L)
+        when: "getTransactionByCustomerId is called with a range and page"
+        def result = transactionService.getTransactionByCustomerId(1L, from, to, 2, 10)
 
-        then: "repository findByCustomerId is called"
-        1 * transactionRepository.findByCustomerId(1L) >> Optional.of(transactionList)
+        then: "the indexed history query is used with the requested page"
+        1 * transactionRepository.findCustomerHistory(1L, from, to, PageRequest.of(2, 10)) >> [transaction]
 
         and: "transaction list is returned"
-        result == transactionList
-        result.size() == 1
-        result[0] == transaction
+        result == [transaction]
     }
 
-    def "getTransactionByCustomerId should throw NotFoundException when not found"() {
-        when: "getTransactionByCustomerId is called with non-existent customer"
-        transactionService.getTransactionByCustomerId(999L)
+    def "getTransactionByCustomerId should widen open bounds and clamp page size"() {
+        when: "getTransactionByCustomerId is called without a range"
+        def result = transactionService.getTransactionByCustomerId(999L, null, null, -1, 10_000)
 
-        then: "repository findByCustomerId is called"
-        1 * transactionRepository.findByCustomerId(999L) >> Optional.empty()
+        then: "the full range and maximum page size are used"
+        1 * transactionRepository.findCustomerHistory(999L, { it.year == 1970 }, { it.year == 9999 }, PageRequest.of(0, 500)) >> []
 
-        and: "NotFoundException is thrown"
-        thrown(NotFoundException)
+        and: "an empty page is not an error"
+        result.isEmpty()
     }
 
     def "validateAmount should throw IllegalArgumentException for invalid amounts"() {
@@ -433,7 +586,7 @@ class TransactionServiceSpec extends Specification {
         amount << [null, BigDecimal.ZERO, new BigDecimal("-10.00")]
     }
 
-    def "calculateAmountByType should return correct amounts for different transaction types"() {
+    def "balance update amount should be signed by the transaction type"() {
         given: "transaction request and original transaction (for refund cases)"
         def request = TransactionRequest.builder()
                 .customerId(1L)
@@ -444,9 +597,10 @@ class TransactionServiceSpec extends Specification {
         and: "original transaction exists when needed"
         if (originalTransaction) {
             transactionRepository.findByIdAndCustomerId(originalTransactionId, 1L) >> Optional.of(originalTransaction)
+            transactionRepository.reserveRefund(originalTransactionId, _) >> 1
         }
 
-        when: "processTransaction is called"
+        when: "the transaction is processed"
         def savedTransaction = Transaction.builder()
                 .id(123L)
                 .customerId(1L)
@@ -456,14 +610,17 @@ class TransactionServiceSpec extends Specification {
                 .build()
 
         transactionRepository.save(_ as Transaction) >> savedTransaction
-        historyRepository.save(_ as TransactionStatusHistory) >> Mock(TransactionStatusHistory)
         customerClient.updateBalance(1L, _ as UpdateBalanceRequest) >> { Long customerId, UpdateBalanceRequest updateRequest ->
             assert updateRequest.amount == expectedAmount
         }
         transactionRepository.save(_ as Transaction) >> savedTransaction
-        historyRepository.save(_ as TransactionStatusHistory) >> Mock(TransactionStatusHistory)
+        historyRepository.saveAll(_) >> []
 
-        transactionService.processTransaction(request, transactionType)
+        switch (transactionType) {
+            case TransactionType.TOP_UP -> transactionService.topUp(request)
+            case TransactionType.PURCHASE -> transactionService.purchase(request)
+            case TransactionType.REFUND -> transactionService.refund(request)
+        }
 
         then: "correct amount is calculated"
 
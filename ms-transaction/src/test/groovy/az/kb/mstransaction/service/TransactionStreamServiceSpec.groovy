@@ -0,0 +1,48 @@
+package az.kb.mstransaction.service
+
+import az.kb.mstransaction.entity.Transaction
+import az.kb.mstransaction.enums.TransactionStatus
+import az.kb.mstransaction.enums.TransactionType
+import az.kb.mstransaction.repository.TransactionRepository
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
+import jakarta.persistence.EntityManager
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.util.stream.Stream
+
+class TransactionStreamServiceSpec extends Specification {
+
+    def transactionRepository = Mock(TransactionRepository)
+    def entityManager = Mock(EntityManager)
+    def objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+
+    @Subject
+    TransactionStreamService streamService = new TransactionStreamService(transactionRepository, entityManager, objectMapper)
+
+    def "writeAll should write one JSON document per line and detach each row"() {
+        given:
+        def first = Transaction.builder().id(1L).customerId(7L).type(TransactionType.TOP_UP)
+                .status(TransactionStatus.SUCCESS).amount(new BigDecimal("10.00")).build()
+        def second = Transaction.builder().id(2L).customerId(7L).type(TransactionType.PURCHASE)
+                .status(TransactionStatus.FAILED).amount(new BigDecimal("5.00")).build()
+        def out = new ByteArrayOutputStream()
+        boolean streamClosed = false
+
+        when:
+        streamService.writeAll(out)
+
+        then:
+        1 * transactionRepository.streamAll() >> Stream.of(first, second).onClose { streamClosed = true }
+        1 * entityManager.detach(first)
+        1 * entityManager.detach(second)
+
+        and:
+        def lines = out.toString().readLines()
+        lines.size() == 2
+        objectMapper.readTree(lines[0]).get("id").asLong() == 1L
+        objectMapper.readTree(lines[1]).get("status").asText() == "FAILED"
+        streamClosed
+    }
+}
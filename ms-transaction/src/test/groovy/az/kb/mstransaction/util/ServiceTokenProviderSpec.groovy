@@ -0,0 +1,112 @@
+package az.kb.mstransaction.util
+
+import spock.lang.Specification
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ServiceTokenProviderSpec extends Specification {
+
+    static final long LIFETIME = Duration.ofHours(1).toMillis()
+
+    def jwtUtil = Mock(JwtUtil)
+    def clock = new MutableClock()
+    def provider = new ServiceTokenProvider(jwtUtil, LIFETIME, Duration.ofMinutes(5), clock)
+
+    def "bearerToken should sign once and reuse the token until the refresh window"() {
+        when:
+        def first = provider.bearerToken("ms-transaction")
+        clock.advance(Duration.ofMinutes(54))
+        def second = provider.bearerToken("ms-transaction")
+
+        then:
+        1 * jwtUtil.generateServiceToken("ms-transaction") >> "token-1"
+        first == "Bearer token-1"
+        second == "Bearer token-1"
+    }
+
+    def "bearerToken should re-sign inside the refresh window and after expiry"() {
+        given:
+        jwtUtil.generateServiceToken("ms-transaction") >>> ["token-1", "token-2", "token-3"]
+        provider.bearerToken("ms-transaction")
+
+        when:
+        clock.advance(Duration.ofMinutes(56))
+        def refreshed = provider.bearerToken("ms-transaction")
+        clock.advance(Duration.ofHours(2))
+        def afterExpiry = provider.bearerToken("ms-transaction")
+
+        then:
+        refreshed == "Bearer token-2"
+        afterExpiry == "Bearer token-3"
+    }
+
+    def "bearerToken should keep serving the current token when refreshing fails"() {
+        given:
+        jwtUtil.generateServiceToken("ms-transaction") >>> ["token-1"] >> { throw new IllegalStateException() } >> "token-2"
+        provider.bearerToken("ms-transaction")
+        clock.advance(Duration.ofMinutes(56))
+
+        expect:
+        provider.bearerToken("ms-transaction") == "Bearer token-1"
+        provider.bearerToken("ms-transaction") == "Bearer token-2"
+    }
+
+    def "concurrent callers on a cold or refreshing token should sign it only once"() {
+        given:
+        def signatures = new AtomicInteger()
+        def start = new CountDownLatch(1)
+        jwtUtil.generateServiceToken(_) >> { signatures.incrementAndGet(); Thread.sleep(20); "token-" + signatures.get() }
+        def pool = Executors.newFixedThreadPool(16)
+
+        when:
+        def callers = (1..64).collect { pool.submit({ start.await(); provider.bearerToken("ms-transaction") } as java.util.concurrent.Callable) }
+        start.countDown()
+        def tokens = callers*.get(5, TimeUnit.SECONDS)
+
+        then:
+        signatures.get() == 1
+        tokens.toSet() == ["Bearer token-1"] as Set
+
+        when:
+        clock.advance(Duration.ofMinutes(56))
+        def refreshing = (1..64).collect { pool.submit({ provider.bearerToken("ms-transaction") } as java.util.concurrent.Callable) }
+        refreshing*.get(5, TimeUnit.SECONDS)
+
+        then:
+        signatures.get() == 2
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    static class MutableClock extends Clock {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z")
+
+        void advance(Duration duration) {
+            now = now + duration
+        }
+
+        @Override
+        ZoneId getZone() {
+            ZoneOffset.UTC
+        }
+
+        @Override
+        Clock withZone(ZoneId zone) {
+            this
+        }
+
+        @Override
+        Instant instant() {
+            now
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package az.kb.mstransaction.util
+
+import io.jsonwebtoken.Jwts
+import io.jsonwebtoken.SignatureAlgorithm
+import org.springframework.test.util.ReflectionTestUtils
+import spock.lang.Specification
+
+class VerifiedTokenCacheSpec extends Specification {
+
+    static final String SECRET = "fb04617512345678901234567890123456789012345678901234567890123456"
+
+    def jwtUtil = Spy(JwtUtil)
+    def cache = new VerifiedTokenCache(jwtUtil, 100)
+
+    def setup() {
+        ReflectionTestUtils.setField(jwtUtil, "secretKey", SECRET)
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 3_600_000L)
+    }
+
+    def "verify should check the signature once and serve repeats from the cache"() {
+        given:
+        def token = jwtUtil.generateServiceToken("ms-core")
+
+        when:
+        def first = cache.verify(token)
+        def second = cache.verify(token)
+
+        then:
+        1 * jwtUtil.verifyServiceToken(token)
+        first.is(second)
+        first.name() == "ms-core"
+        first.authorities()*.authority == ["ROLE_SERVICE"]
+    }
+
+    def "verify should not cache rejected tokens"() {
+        given:
+        def forged = Jwts.builder()
+                .setSubject("ms-core")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, SECRET.reverse())
+                .compact()
+
+        when:
+        def first = cache.verify(forged)
+        def second = cache.verify(forged)
+
+        then:
+        2 * jwtUtil.verifyServiceToken(forged)
+        first == null
+        second == null
+    }
+
+    def "verify should grant no role to unknown service subjects"() {
+        given:
+        def token = jwtUtil.generateServiceToken("service:reporting")
+
+        expect:
+        cache.verify(token).authorities().isEmpty()
+    }
+
+    def "verify should drop entries once the token expires"() {
+        given:
+        ReflectionTestUtils.setField(jwtUtil, "expirationTime", 1_500L)
+        def token = jwtUtil.generateServiceToken("ms-core")
+
+        when:
+        def fresh = cache.verify(token)
+        Thread.sleep(2_000)
+        def expired = cache.verify(token)
+
+        then:
+        2 * jwtUtil.verifyServiceToken(token)
+        fresh != null
+        expired == null
+    }
+}